@@ -1,5 +1,6 @@
 package com.hachimi.mamboaiplatform;
 
+import com.hachimi.mamboaiplatform.ai.http.SharedHttpTransport;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -19,6 +20,8 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 public class MamboAiPlatformApplication {
 
     public static void main(String[] args) {
+        // JDK HttpClient 连接池参数是 JVM 全局配置，须在任何 HttpClient 加载前设置
+        SharedHttpTransport.applyJdkHttpClientDefaults();
         SpringApplication.run(MamboAiPlatformApplication.class, args);
     }
 
@@ -8,45 +8,54 @@ import dev.langchain4j.service.SystemMessage;
 import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.UserMessage;
 import dev.langchain4j.service.guardrail.InputGuardrails;
+import dev.langchain4j.service.memory.ChatMemoryAccess;
 import reactor.core.publisher.Flux;
 
-public interface AiCodeGeneratorService {
+/**
+ * 每种生成类型只构建一个代理，通过 @MemoryId 按应用取对话记忆；
+ * 所有方法都必须声明 @MemoryId，不提供共享的默认记忆，避免不同调用方串到同一段对话
+ */
+public interface AiCodeGeneratorService extends ChatMemoryAccess {
 
     /**
-     * 生成 HTML 代码
+     * 生成 HTML 代码（使用应用的对话记忆）
      *
+     * @param appId       应用ID（记忆ID）
      * @param userMessage 用户消息
      * @return 生成的代码结果
      */
     @SystemMessage(fromResource = "prompt/codegen-html-system-prompt.txt")
-    HtmlCodeResult generateHtmlCode(String userMessage);
+    HtmlCodeResult generateHtmlCode(@MemoryId Long appId, @UserMessage String userMessage);
 
     /**
-     * 生成多文件代码
+     * 生成多文件代码（使用应用的对话记忆）
      *
+     * @param appId       应用ID（记忆ID）
      * @param userMessage 用户消息
      * @return 生成的代码结果
      */
     @SystemMessage(fromResource = "prompt/codegen-multi-file-system-prompt.txt")
-    MultiFileCodeResult generateMultiFileCode(String userMessage);
+    MultiFileCodeResult generateMultiFileCode(@MemoryId Long appId, @UserMessage String userMessage);
 
     /**
-     * 生成 HTML 代码 流式
+     * 生成 HTML 代码 流式（使用应用的对话记忆）
      *
+     * @param appId       应用ID（记忆ID）
      * @param userMessage 用户消息
      * @return 生成的代码结果
      */
     @SystemMessage(fromResource = "prompt/codegen-html-system-prompt.txt")
-    Flux<String> generateHtmlCodeStream(String userMessage);
+    Flux<String> generateHtmlCodeStream(@MemoryId Long appId, @UserMessage String userMessage);
 
     /**
-     * 生成多文件代码 流式
+     * 生成多文件代码 流式（使用应用的对话记忆）
      *
+     * @param appId       应用ID（记忆ID）
      * @param userMessage 用户消息
      * @return 生成的代码结果
      */
     @SystemMessage(fromResource = "prompt/codegen-multi-file-system-prompt.txt")
-    Flux<String> generateMultiFileCodeStream(String userMessage);
+    Flux<String> generateMultiFileCodeStream(@MemoryId Long appId, @UserMessage String userMessage);
 
     /**
      * 生成vue项目代码 流式
@@ -2,29 +2,36 @@ package com.hachimi.mamboaiplatform.ai;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
 import com.hachimi.mamboaiplatform.ai.guardrail.PromptSafetyInputGuardrail;
+import com.hachimi.mamboaiplatform.ai.memory.ChatMemoryCompactor;
+import com.hachimi.mamboaiplatform.ai.memory.WriteBehindChatMemoryStore;
 import com.hachimi.mamboaiplatform.ai.guardrail.RetryOutputGuardrail;
 import com.hachimi.mamboaiplatform.ai.tools.*;
+import com.hachimi.mamboaiplatform.config.ChatMemoryStoreConfig;
 import com.hachimi.mamboaiplatform.exception.BusinessException;
 import com.hachimi.mamboaiplatform.exception.ErrorCode;
 import com.hachimi.mamboaiplatform.model.enums.CodeGenTypeEnum;
-import com.hachimi.mamboaiplatform.monitor.MonitorContext;
-import com.hachimi.mamboaiplatform.monitor.MonitorContextHolder;
 import com.hachimi.mamboaiplatform.service.ChatHistoryService;
 import com.hachimi.mamboaiplatform.utils.SpringContextUtil;
 import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
 import dev.langchain4j.data.message.ToolExecutionResultMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.memory.chat.ChatMemoryProvider;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.service.AiServices;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
 
 import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * 创建工厂
@@ -39,6 +46,15 @@ public class AiCodeGeneratorServiceFactory {
   @Resource
   private RedisChatMemoryStore redisChatMemoryStore;
 
+  @Resource
+  private WriteBehindChatMemoryStore writeBehindChatMemoryStore;
+
+  @Resource
+  private ChatMemoryStoreConfig chatMemoryStoreConfig;
+
+  @Resource
+  private ChatMemoryCompactor chatMemoryCompactor;
+
   @Resource
   private ChatHistoryService chatHistoryService;
 
@@ -51,59 +67,117 @@ public class AiCodeGeneratorServiceFactory {
   // }
 
   /**
-   * AI 服务实例缓存
+   * 每种生成类型一个预构建的 AI 服务代理（工具规格、护轨等只解析一次），对话记忆按 @MemoryId 从记忆缓存中获取
+   */
+  private final ConcurrentMap<CodeGenTypeEnum, AiCodeGeneratorService> serviceProxies = new ConcurrentHashMap<>();
+
+  /**
+   * 对话记忆缓存
    * 缓存策略：
-   * - 最大缓存 1000 个实例
+   * - 最大缓存 1000 个记忆
    * - 写入后 30 分钟过期
    * - 访问后 10 分钟过期
+   * 记忆被移除时同步从代理中移除，否则代理内部会一直持有该记忆
    */
-  private final Cache<String, AiCodeGeneratorService> serviceCache = Caffeine.newBuilder()
+  private final Cache<String, ChatMemory> memoryCache = Caffeine.newBuilder()
       .maximumSize(1000)
       .expireAfterWrite(Duration.ofMinutes(30))
       .expireAfterAccess(Duration.ofMinutes(10))
-      .removalListener((key, value, cause) -> {
-        log.debug("AI 服务实例被移除，缓存键: {}, 原因: {}", key, cause);
+      .removalListener((String key, ChatMemory value, RemovalCause cause) -> {
+        log.debug("对话记忆被移除，缓存键: {}, 原因: {}", key, cause);
+        if (value != null) {
+          evictFromProxy(key, value);
+        }
       })
       .build();
 
   /**
-   * 根据 appId 获取服务（带缓存）
+   * 应用启动后预构建所有生成类型的代理，首个请求不再承担构建耗时
    */
-  public AiCodeGeneratorService getAiCodeGeneratorService(long appId) {
-    // 如果appId没有获取到aiservice，调用createAiCodeGeneratorService快速生成一个aiservice
-    return createAiCodeGeneratorService(appId, CodeGenTypeEnum.HTML);
+  @EventListener(ApplicationReadyEvent.class)
+  public void prebuildServiceProxies() {
+    for (CodeGenTypeEnum codeGenType : CodeGenTypeEnum.values()) {
+      try {
+        serviceProxy(codeGenType);
+      } catch (Exception e) {
+        log.warn("预构建 AI 服务代理失败，首次使用时重试，codeGenType: {}, error: {}", codeGenType.getValue(), e.getMessage());
+      }
+    }
   }
 
   /**
    * 根据 appId 获取服务（带缓存）支持传入代码生成类型
+   * 返回的是该生成类型共享的代理，调用时需通过 @MemoryId 传入 appId
    */
   public AiCodeGeneratorService getAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenType) {
-    // 如果appId没有获取到aiservice，调用createAiCodeGeneratorService快速生成一个aiservice
-    String cacheKey = buildCacheKey(appId, codeGenType);
-    return serviceCache.get(cacheKey, key -> createAiCodeGeneratorService(appId, codeGenType));
+    // 获取服务即表示本节点将运行该会话，取得对话记忆的写入权
+    if (chatMemoryStoreConfig.isEnabled()) {
+      writeBehindChatMemoryStore.claim(appId);
+    }
+    // 在调用方线程上提前准备好对话记忆（缺失时补齐历史），代理调用时直接命中缓存
+    getChatMemory(appId, codeGenType);
+    return serviceProxy(codeGenType);
+  }
+
+  /**
+   * 预热会话：构建（或复用）服务代理并按水位线补齐对话记忆，不取得写入权
+   * 预热只代表用户可能要发消息，写入权仍属于正在运行该会话的节点，真正生成时再由 {@link #getAiCodeGeneratorService} 取得
+   */
+  public void prewarm(long appId, CodeGenTypeEnum codeGenType) {
+    serviceProxy(codeGenType);
+    getChatMemory(appId, codeGenType);
+  }
+
+  private AiCodeGeneratorService serviceProxy(CodeGenTypeEnum codeGenType) {
+    return serviceProxies.computeIfAbsent(codeGenType, this::createAiCodeGeneratorService);
+  }
+
+  /**
+   * 获取应用的对话记忆（带缓存）
+   */
+  private ChatMemory getChatMemory(long appId, CodeGenTypeEnum codeGenType) {
+    return memoryCache.get(buildCacheKey(appId, codeGenType), key -> createChatMemory(appId, codeGenType));
+  }
+
+  private ChatMemory createChatMemory(long appId, CodeGenTypeEnum codeGenType) {
+    log.info("创建新的对话记忆，appId: {}, codeGenType: {}", appId, codeGenType.getValue());
+    // 根据appId构建独立的对话记忆，按生成类型的 token 预算约束（超出时后台压缩较早的轮次）
+    ChatMemory chatMemory = chatMemoryCompactor.createMemory(appId,
+        chatMemoryStoreConfig.isEnabled() ? writeBehindChatMemoryStore : redisChatMemoryStore, codeGenType);
+    // 按水位线补齐会话历史：Redis 中记忆完整时只加载数据库中的增量，缺失时才全量加载
+    chatHistoryService.hydrateChatMemory(appId, chatMemory, 50); // 增加加载的历史消息数量
+    return chatMemory;
+  }
+
+  /**
+   * 代理的记忆提供者：记忆ID 即 appId，服务方法都通过 @MemoryId 传入
+   */
+  private ChatMemoryProvider chatMemoryProvider(CodeGenTypeEnum codeGenType) {
+    return memoryId -> {
+      if (!(memoryId instanceof Number number)) {
+        throw new BusinessException(ErrorCode.SYSTEM_ERROR, "对话记忆ID必须为 appId: " + memoryId);
+      }
+      return getChatMemory(number.longValue(), codeGenType);
+    };
+  }
+
+  private void evictFromProxy(String cacheKey, ChatMemory chatMemory) {
+    CodeGenTypeEnum codeGenType = CodeGenTypeEnum.getEnumByValue(cacheKey.substring(cacheKey.indexOf('_') + 1));
+    AiCodeGeneratorService proxy = codeGenType == null ? null : serviceProxies.get(codeGenType);
+    if (proxy == null) {
+      return;
+    }
+    proxy.evictChatMemory(chatMemory.id());
   }
 
   /**
-   * 为每个应用单独创建一个aiservice
+   * 为每种生成类型创建一个aiservice代理
    * 
-   * @param appId
    * @param codeGenType 生成类型
    * @return
    */
-  private AiCodeGeneratorService createAiCodeGeneratorService(Long appId, CodeGenTypeEnum codeGenType) {
-    log.info("创建新的 AiCodeGeneratorService 实例，appId: {}", appId);
-
-    // 确保在创建AI服务时设置监控上下文
-    ensureMonitorContextForService(appId);
-
-    // 根据appId构建独立的对话记忆
-    MessageWindowChatMemory chatMemory = MessageWindowChatMemory.builder()
-        .id(appId)
-        .chatMemoryStore(redisChatMemoryStore)
-        .maxMessages(100) // 增加消息数量限制，避免重要上下文丢失
-        .build();
-    // 从数据库中加载会话历史到记忆中
-    chatHistoryService.loadChatHistoryToMemory(appId, chatMemory, 50); // 增加加载的历史消息数量
+  private AiCodeGeneratorService createAiCodeGeneratorService(CodeGenTypeEnum codeGenType) {
+    log.info("创建 AiCodeGeneratorService 代理，codeGenType: {}", codeGenType.getValue());
     return switch (codeGenType) {
       // 普通生成
       case HTML, MULTI_FILE -> {
@@ -113,7 +187,7 @@ public class AiCodeGeneratorServiceFactory {
         yield AiServices.builder(AiCodeGeneratorService.class)
             .streamingChatModel(streamingChatModel)
             .chatModel(chatModel)
-            .chatMemory(chatMemory)
+            .chatMemoryProvider(chatMemoryProvider(codeGenType))
             .inputGuardrails(new PromptSafetyInputGuardrail()) // 输入护轨
             // .outputGuardrails(new RetryOutputGuardrail()) //输出护轨 但是注意，流式输出最好不要用输出护轨
             // 经过测试，如果用了输出护轨，可能会导致流式输出的响应不及时，
@@ -123,14 +197,14 @@ public class AiCodeGeneratorServiceFactory {
 
       // vue生成
       case VUE_PROJECT -> {
-        // 使用多例模式的streamingchatmodel来解决并发问题
+        // 流式模型不持有请求状态，同一类型的所有会话共享一个实例
         StreamingChatModel reasoningStreamingChatModel = SpringContextUtil
             .getBean("reasoningStreamingChatModelPrototype", StreamingChatModel.class);
         yield AiServices.builder(AiCodeGeneratorService.class)
             .chatModel(chatModel)
             .streamingChatModel(reasoningStreamingChatModel)
-            // 必须为每个memoryId绑定对话记忆
-            .chatMemoryProvider(memoryId -> chatMemory)
+            // 按memoryId获取对话记忆
+            .chatMemoryProvider(chatMemoryProvider(codeGenType))
             .tools(
                 (Object[]) toolManager.getAllTools())
             // 处理调用不存在的工具
@@ -146,18 +220,6 @@ public class AiCodeGeneratorServiceFactory {
     };
   }
 
-  /**
-   * 创建 AiCodeGeneratorService 的 Bean
-   * 使用 AiServices 工厂方法创建服务实例 分别创建流式调用和非流式调用
-   * 老方法
-   * 
-   * @return AiCodeGeneratorService 实例
-   */
-  // @Bean
-  public AiCodeGeneratorService aiCodeGeneratorService() {
-    return getAiCodeGeneratorService(0L);
-  }
-
   /**
    * 构造缓存键(从一个参数变成了两个参数)
    *
@@ -169,33 +231,4 @@ public class AiCodeGeneratorServiceFactory {
     return appId + "_" + codeGenType.getValue();
   }
 
-  /**
-   * 确保监控上下文存在，专用于AI服务创建
-   *
-   * @param appId 应用ID
-   */
-  private void ensureMonitorContextForService(Long appId) {
-    MonitorContext existingContext = MonitorContextHolder.getContext();
-    if (existingContext == null) {
-      log.info("AI服务创建时MonitorContext为空，创建默认上下文 appId: {} on thread: {}",
-              appId, Thread.currentThread().getName());
-      MonitorContext defaultContext = MonitorContext.builder()
-          .userId("system") // AI服务创建时使用系统标识
-          .appId(appId.toString())
-          .build();
-      MonitorContextHolder.setContext(defaultContext);
-
-      // 验证设置是否成功
-      MonitorContext verifyContext = MonitorContextHolder.getContext();
-      if (verifyContext != null) {
-        log.info("AI服务MonitorContext设置成功: userId={}, appId={}",
-                verifyContext.getUserId(), verifyContext.getAppId());
-      } else {
-        log.error("AI服务MonitorContext设置失败，仍为null");
-      }
-    } else {
-      log.debug("AI服务创建时MonitorContext已存在: userId={}, appId={}",
-              existingContext.getUserId(), existingContext.getAppId());
-    }
-  }
 }
@@ -0,0 +1,210 @@
+package com.hachimi.mamboaiplatform.ai;
+
+import cn.hutool.core.thread.ExecutorBuilder;
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hachimi.mamboaiplatform.ai.http.SharedHttpTransport;
+import com.hachimi.mamboaiplatform.config.ChatPrewarmConfig;
+import com.hachimi.mamboaiplatform.config.ModelEndpoint;
+import com.hachimi.mamboaiplatform.config.ReasoningStreamingChatModelConfig;
+import com.hachimi.mamboaiplatform.config.StreamingChatModelConfig;
+import com.hachimi.mamboaiplatform.core.admission.GenerationAdmissionController;
+import com.hachimi.mamboaiplatform.model.entity.App;
+import com.hachimi.mamboaiplatform.model.entity.User;
+import com.hachimi.mamboaiplatform.model.enums.CodeGenTypeEnum;
+import com.hachimi.mamboaiplatform.service.AppService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对话页预热
+ * 用户打开应用对话页（查询对话历史）后大概率马上发消息，而首条消息要先构建 AI 服务、从数据库补齐对话记忆、
+ * 写入 Redis，再建立到模型服务的连接，之后才有首个 token。这里在后台提前完成这些工作：
+ * 预热线程池有界，队列满、系统负载高或该模型已满负荷时直接放弃（预热只是优化，不能和真实请求抢资源）。
+ */
+@Slf4j
+@Component
+public class ChatSessionPrewarmer {
+
+    @Resource
+    private ChatPrewarmConfig chatPrewarmConfig;
+
+    @Resource
+    private AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory;
+
+    @Resource
+    @Lazy // 避免循环依赖
+    private AppService appService;
+
+    @Resource
+    private GenerationAdmissionController generationAdmissionController;
+
+    @Resource
+    private SharedHttpTransport sharedHttpTransport;
+
+    @Resource
+    private StreamingChatModelConfig streamingChatModelConfig;
+
+    @Resource
+    private ReasoningStreamingChatModelConfig reasoningStreamingChatModelConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private ThreadPoolExecutor executor;
+
+    /**
+     * 最近预热过的应用与用户（appId:userId），避免翻页或刷新时重复预热；
+     * 按用户区分，其他人（如管理员）查看历史不会挡住创建者的预热
+     */
+    private Cache<String, Boolean> recentPrewarms;
+
+    private final ConcurrentMap<String, Counter> countersCache = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        executor = ExecutorBuilder.create()
+                .setCorePoolSize(chatPrewarmConfig.getPoolSize())
+                .setMaxPoolSize(chatPrewarmConfig.getPoolSize())
+                .setKeepAliveTime(60, TimeUnit.SECONDS)
+                .setAllowCoreThreadTimeOut(true)
+                .setWorkQueue(new ArrayBlockingQueue<>(chatPrewarmConfig.getQueueCapacity()))
+                .setThreadFactory(ThreadFactoryBuilder.create().setNamePrefix("chat-prewarm-").setDaemon(true).build())
+                .setHandler(new ThreadPoolExecutor.AbortPolicy())
+                .build();
+        recentPrewarms = Caffeine.newBuilder()
+                .maximumSize(10000)
+                .expireAfterWrite(Duration.ofMinutes(chatPrewarmConfig.getDedupMinutes()))
+                .build();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 异步预热应用的对话会话，不阻塞、不抛异常
+     *
+     * @param appId     应用ID
+     * @param loginUser 登录用户
+     */
+    public void prewarm(Long appId, User loginUser) {
+        if (!chatPrewarmConfig.isEnabled() || appId == null || loginUser == null) {
+            return;
+        }
+        Long userId = loginUser.getId();
+        String dedupKey = appId + ":" + userId;
+        if (recentPrewarms.asMap().putIfAbsent(dedupKey, Boolean.TRUE) != null) {
+            record("skipped_recent");
+            return;
+        }
+        if (systemOverloaded()) {
+            recentPrewarms.invalidate(dedupKey);
+            record("skipped_load");
+            return;
+        }
+        try {
+            executor.execute(() -> doPrewarm(appId, userId, dedupKey));
+        } catch (RejectedExecutionException e) {
+            recentPrewarms.invalidate(dedupKey);
+            record("rejected");
+        }
+    }
+
+    private void doPrewarm(Long appId, Long userId, String dedupKey) {
+        long start = System.nanoTime();
+        try {
+            App app = appService.getById(appId);
+            // 只有创建者可以在应用中对话，其他人查看历史不预热
+            if (app == null || !app.getUserId().equals(userId)) {
+                record("skipped_not_owner");
+                return;
+            }
+            CodeGenTypeEnum codeGenType = CodeGenTypeEnum.getEnumByValue(app.getCodeGenType());
+            if (codeGenType == null) {
+                return;
+            }
+            if (generationAdmissionController.isSaturated(codeGenType)) {
+                recentPrewarms.invalidate(dedupKey);
+                record("skipped_load");
+                return;
+            }
+            // 构建（或复用）服务代理并按水位线补齐对话记忆，不抢占其他节点上进行中会话的写入权
+            aiCodeGeneratorServiceFactory.prewarm(appId, codeGenType);
+            for (String baseUrl : baseUrlsOf(codeGenType)) {
+                sharedHttpTransport.warmUp(baseUrl);
+            }
+            record("warmed");
+            Timer.builder("ai_chat_prewarm_seconds")
+                    .description("对话页预热耗时")
+                    .tag("code_gen_type", codeGenType.getValue())
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            log.debug("对话会话预热完成 appId={} codeGenType={} 耗时={}ms", appId, codeGenType.getValue(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (Exception e) {
+            record("failed");
+            log.warn("对话会话预热失败 appId={} error={}", appId, e.getMessage());
+        }
+    }
+
+    /**
+     * 生成类型使用的模型的所有端点地址
+     */
+    private Set<String> baseUrlsOf(CodeGenTypeEnum codeGenType) {
+        String baseUrl;
+        Iterable<ModelEndpoint> endpoints;
+        if (codeGenType == CodeGenTypeEnum.VUE_PROJECT) {
+            baseUrl = reasoningStreamingChatModelConfig.getBaseUrl();
+            endpoints = reasoningStreamingChatModelConfig.getEndpoints();
+        } else {
+            baseUrl = streamingChatModelConfig.getBaseUrl();
+            endpoints = streamingChatModelConfig.getEndpoints();
+        }
+        Set<String> baseUrls = new LinkedHashSet<>();
+        baseUrls.add(baseUrl);
+        for (ModelEndpoint endpoint : endpoints) {
+            baseUrls.add(endpoint.getBaseUrl() != null ? endpoint.getBaseUrl() : baseUrl);
+        }
+        return baseUrls;
+    }
+
+    private boolean systemOverloaded() {
+        if (chatPrewarmConfig.getMaxLoadPerCpu() <= 0) {
+            return false;
+        }
+        double loadAverage = ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage();
+        // 部分平台不支持平均负载，返回负数
+        return loadAverage >= 0
+                && loadAverage / Runtime.getRuntime().availableProcessors() > chatPrewarmConfig.getMaxLoadPerCpu();
+    }
+
+    private void record(String result) {
+        countersCache.computeIfAbsent(result, k ->
+                Counter.builder("ai_chat_prewarm_total")
+                        .description("对话页预热次数")
+                        .tag("result", result)
+                        .register(meterRegistry)
+        ).increment();
+    }
+}
@@ -0,0 +1,158 @@
+package com.hachimi.mamboaiplatform.ai.balancer;
+
+import java.util.Arrays;
+
+/**
+ * 单个模型端点的统计与熔断状态
+ * 首 token 延迟与错误率使用 EWMA 平滑，另保留最近若干个延迟样本用于计算分位数；
+ * 熔断器：连续失败达到阈值后打开，打开期满后放行一个探测请求（半开），探测成功关闭、失败重新打开。
+ * 时间均由调用方以 System.nanoTime() 传入，便于测试。
+ */
+public class EndpointStats {
+
+    private static final int WINDOW_SIZE = 128;
+
+    public enum CircuitState {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final String name;
+
+    private final double alpha;
+
+    private final int failureThreshold;
+
+    private final long openNanos;
+
+    private final long[] latencyWindow = new long[WINDOW_SIZE];
+
+    private int latencyCount;
+
+    private int latencyIndex;
+
+    private double ewmaLatencyMs = -1;
+
+    private double ewmaErrorRate;
+
+    private int consecutiveFailures;
+
+    private CircuitState state = CircuitState.CLOSED;
+
+    private long openUntilNanos;
+
+    private boolean probeInFlight;
+
+    public EndpointStats(String name, double alpha, int failureThreshold, long openNanos) {
+        this.name = name;
+        this.alpha = alpha;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openNanos;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 熔断器是否放行一个请求；半开状态只放行一个探测请求
+     */
+    public synchronized boolean tryAcquire(long nowNanos) {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (nowNanos - openUntilNanos < 0) {
+                    return false;
+                }
+                state = CircuitState.HALF_OPEN;
+                probeInFlight = true;
+                return true;
+            default:
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    /**
+     * 收到首个 token：记录延迟，视为端点健康
+     */
+    public synchronized void recordFirstToken(long latencyMs) {
+        recordLatency(latencyMs);
+        ewmaErrorRate = (1 - alpha) * ewmaErrorRate;
+        consecutiveFailures = 0;
+        state = CircuitState.CLOSED;
+        probeInFlight = false;
+    }
+
+    /**
+     * 记录延迟样本（对冲落败的请求以已等待时间作为下界记录）
+     */
+    public synchronized void recordLatency(long latencyMs) {
+        ewmaLatencyMs = ewmaLatencyMs < 0 ? latencyMs : alpha * latencyMs + (1 - alpha) * ewmaLatencyMs;
+        latencyWindow[latencyIndex] = latencyMs;
+        latencyIndex = (latencyIndex + 1) % WINDOW_SIZE;
+        latencyCount = Math.min(latencyCount + 1, WINDOW_SIZE);
+    }
+
+    /**
+     * 请求失败，达到阈值或探测失败时打开熔断
+     */
+    public synchronized void recordFailure(long nowNanos) {
+        ewmaErrorRate = alpha + (1 - alpha) * ewmaErrorRate;
+        consecutiveFailures++;
+        if (state == CircuitState.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = CircuitState.OPEN;
+            openUntilNanos = nowNanos + openNanos;
+        }
+        probeInFlight = false;
+    }
+
+    /**
+     * 请求被放弃（对冲落败或调用方取消），不计成功也不计失败，只归还探测名额
+     */
+    public synchronized void recordAbandoned() {
+        probeInFlight = false;
+    }
+
+    /**
+     * 选择得分，越小越优先；没有样本的端点得分为 0，优先被探索
+     */
+    public synchronized double score(double errorPenalty) {
+        if (ewmaLatencyMs < 0) {
+            return 0;
+        }
+        return ewmaLatencyMs * (1 + errorPenalty * ewmaErrorRate);
+    }
+
+    /**
+     * 最近延迟样本的分位数
+     *
+     * @param quantile   分位（0~1）
+     * @param minSamples 最少样本数
+     * @return 分位数（毫秒），样本不足时为 -1
+     */
+    public synchronized long latencyQuantileMs(double quantile, int minSamples) {
+        if (latencyCount < Math.max(1, minSamples)) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(latencyWindow, latencyCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(quantile * latencyCount) - 1;
+        return sorted[Math.max(0, Math.min(index, latencyCount - 1))];
+    }
+
+    public synchronized double getEwmaLatencyMs() {
+        return ewmaLatencyMs;
+    }
+
+    public synchronized double getEwmaErrorRate() {
+        return ewmaErrorRate;
+    }
+
+    public synchronized CircuitState getState() {
+        return state;
+    }
+}
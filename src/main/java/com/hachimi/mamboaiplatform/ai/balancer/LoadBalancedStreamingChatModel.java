@@ -0,0 +1,467 @@
+package com.hachimi.mamboaiplatform.ai.balancer;
+
+import com.hachimi.mamboaiplatform.config.ModelLoadBalancingConfig;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelErrorContext;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
+import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.chat.response.StreamingHandle;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 多端点负载均衡的流式模型
+ * 1. 按首 token 延迟 EWMA 与错误率选择端点，熔断中的端点不参与选择；
+ * 2. 主请求超过该端点首 token 延迟 p95 仍未产出时，向另一个端点发起对冲请求，先产出首个事件的请求胜出，
+ * 另一个请求立即取消（关闭 HTTP 流）；
+ * 3. 首个事件之前失败时换一个端点重试，此时尚未向调用方输出任何内容，不会产生重复。
+ * 监听器挂在均衡模型上，每次调用只通知一次（胜者完成或最终失败），对冲与重试请求不会重复记录请求数与提示词大小。
+ */
+@Slf4j
+public class LoadBalancedStreamingChatModel implements StreamingChatModel {
+
+    /**
+     * 端点
+     *
+     * @param name  端点名
+     * @param model 端点的模型
+     * @param stats 端点统计（跨实例共享）
+     */
+    public record Endpoint(String name, StreamingChatModel model, EndpointStats stats) {
+    }
+
+    private final String modelName;
+
+    private final List<Endpoint> endpoints;
+
+    private final List<ChatModelListener> listeners;
+
+    private final ModelLoadBalancingConfig config;
+
+    private final StreamingModelBalancer balancer;
+
+    public LoadBalancedStreamingChatModel(String modelName, List<Endpoint> endpoints, List<ChatModelListener> listeners,
+                                          ModelLoadBalancingConfig config, StreamingModelBalancer balancer) {
+        this.modelName = modelName;
+        this.endpoints = List.copyOf(endpoints);
+        this.listeners = List.copyOf(listeners);
+        this.config = config;
+        this.balancer = balancer;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        new HedgedCall(chatRequest, handler).start();
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return primary().defaultRequestParameters();
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        return listeners;
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return primary().provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return primary().supportedCapabilities();
+    }
+
+    private StreamingChatModel primary() {
+        return endpoints.getFirst().model();
+    }
+
+    /**
+     * 选择端点
+     *
+     * @param excluded 已尝试过的端点
+     * @param force    全部熔断时是否仍返回一个端点（首个请求不能因熔断直接失败）
+     * @return 端点，没有可用端点时为 null
+     */
+    Endpoint select(List<Endpoint> excluded, boolean force) {
+        long now = System.nanoTime();
+        List<Endpoint> candidates = new ArrayList<>(endpoints);
+        candidates.removeAll(excluded);
+        candidates.sort(Comparator.comparingDouble(endpoint -> endpoint.stats().score(config.getErrorPenalty())));
+        for (Endpoint candidate : candidates) {
+            if (candidate.stats().tryAcquire(now)) {
+                return candidate;
+            }
+        }
+        return force && !candidates.isEmpty() ? candidates.getFirst() : null;
+    }
+
+    /**
+     * 对冲等待时间：主端点首 token 延迟 p95 的倍数，样本不足时用初始值
+     */
+    long hedgeDelayMs(EndpointStats stats) {
+        long p95 = stats.latencyQuantileMs(0.95, config.getHedgeMinSamples());
+        long delay = p95 < 0 ? config.getHedgeInitialDelayMs() : (long) (p95 * config.getHedgeDelayMultiplier());
+        return Math.max(config.getHedgeMinDelayMs(), Math.min(config.getHedgeMaxDelayMs(), delay));
+    }
+
+    /**
+     * 一次对话调用：可能包含主请求、对冲请求与失败重试，最终只有一个请求（胜者）的事件转发给调用方
+     */
+    private final class HedgedCall {
+
+        private final ChatRequest request;
+
+        private final StreamingChatResponseHandler handler;
+
+        private final StreamingHandle parentHandle;
+
+        /**
+         * 监听器看到的请求：合并主端点默认参数，与端点自带监听器看到的一致
+         */
+        private final ChatRequest observedRequest;
+
+        private final Map<Object, Object> attributes = new ConcurrentHashMap<>();
+
+        /**
+         * 注册在调用方句柄上的取消回调，调用结束时注销（同一句柄贯穿多轮工具调用，不注销会逐轮累积）
+         */
+        private final Runnable parentCancelCallback = () -> {
+            attempts.forEach(attempt -> attempt.abandon(parentHandle.cancelReason()));
+            finish();
+        };
+
+        private final List<Attempt> attempts = new CopyOnWriteArrayList<>();
+
+        private volatile Attempt winner;
+
+        private Disposable hedgeTimer;
+
+        private boolean hedged;
+
+        private boolean finished;
+
+        HedgedCall(ChatRequest request, StreamingChatResponseHandler handler) {
+            this.request = request;
+            this.handler = handler;
+            this.parentHandle = handler.streamingHandle();
+            this.observedRequest = listeners.isEmpty() ? request : ChatRequest.builder()
+                    .messages(request.messages())
+                    .parameters(defaultRequestParameters().overrideWith(request.parameters()))
+                    .build();
+        }
+
+        void start() {
+            if (parentHandle != null) {
+                parentHandle.onCancel(parentCancelCallback);
+            }
+            Runnable onRequest = () -> notifyListeners(listener ->
+                    listener.onRequest(new ChatModelRequestContext(observedRequest, provider(), attributes)));
+            if (parentHandle != null) {
+                // 监听器通过当前句柄读取会话上下文，与端点模型发起请求时一样绑定调用方句柄
+                StreamingHandle.runWith(parentHandle, onRequest);
+            } else {
+                onRequest.run();
+            }
+            launch(select(List.of(), true));
+        }
+
+        void onComplete(ChatResponse response) {
+            notifyListeners(listener -> listener.onResponse(
+                    new ChatModelResponseContext(response, observedRequest, provider(), attributes)));
+            handler.onCompleteResponse(response);
+        }
+
+        private void onFailed(Throwable error) {
+            notifyListeners(listener -> listener.onError(
+                    new ChatModelErrorContext(error, observedRequest, provider(), attributes)));
+            handler.onError(error);
+        }
+
+        private void notifyListeners(Consumer<ChatModelListener> action) {
+            for (ChatModelListener listener : listeners) {
+                try {
+                    action.accept(listener);
+                } catch (Exception e) {
+                    log.warn("模型 {} 监听器执行失败: {}", modelName, e.getMessage());
+                }
+            }
+        }
+
+        private List<Endpoint> tried() {
+            return attempts.stream().map(attempt -> attempt.endpoint).toList();
+        }
+
+        private boolean parentCancelled() {
+            return parentHandle != null && parentHandle.isCancelled();
+        }
+
+        private void launch(Endpoint endpoint) {
+            Attempt attempt = new Attempt(this, endpoint);
+            attempts.add(attempt);
+            balancer.record(modelName, "selected", endpoint.name());
+            if (parentCancelled()) {
+                attempt.abandon(parentHandle.cancelReason());
+                return;
+            }
+            StreamingHandle.runWith(attempt.handle, () -> {
+                try {
+                    endpoint.model().chat(request, attempt);
+                } catch (Exception e) {
+                    attempt.onError(e);
+                }
+            });
+            scheduleHedge(attempt);
+        }
+
+        private void scheduleHedge(Attempt attempt) {
+            if (!config.isHedgeEnabled() || endpoints.size() < 2) {
+                return;
+            }
+            long delayMs = hedgeDelayMs(attempt.endpoint.stats());
+            synchronized (this) {
+                if (hedged || finished || winner != null || !attempt.isRunning()) {
+                    return;
+                }
+                disposeTimer();
+                // 启动请求会建立连接（可能阻塞），不能放在 parallel 调度器上
+                hedgeTimer = Schedulers.boundedElastic().schedule(this::hedge, delayMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void hedge() {
+            Endpoint endpoint;
+            synchronized (this) {
+                if (hedged || finished || winner != null || parentCancelled()) {
+                    return;
+                }
+                endpoint = select(tried(), false);
+                if (endpoint == null || !balancer.tryStartHedge()) {
+                    if (endpoint != null) {
+                        endpoint.stats().recordAbandoned();
+                    }
+                    return;
+                }
+                hedged = true;
+            }
+            log.info("模型 {} 首 token 超时，向端点 {} 发起对冲请求", modelName, endpoint.name());
+            balancer.record(modelName, "hedge_started", endpoint.name());
+            launch(endpoint);
+        }
+
+        /**
+         * 首个事件到达时选出胜者，其余请求取消
+         *
+         * @return 该请求是否为胜者
+         */
+        private boolean claim(Attempt attempt) {
+            Attempt current = winner;
+            if (current != null) {
+                return current == attempt;
+            }
+            List<Attempt> losers;
+            synchronized (this) {
+                if (winner != null) {
+                    return winner == attempt;
+                }
+                if (attempt.failed || finished) {
+                    return false;
+                }
+                winner = attempt;
+                disposeTimer();
+                losers = attempts.stream().filter(other -> other != attempt).toList();
+            }
+            if (!losers.isEmpty()) {
+                balancer.record(modelName, "hedge_won", attempt.endpoint.name());
+            }
+            for (Attempt loser : losers) {
+                // 落败的请求以已等待时间作为延迟下界，引导后续选择避开慢端点
+                loser.endpoint.stats().recordLatency(loser.elapsedMs());
+                loser.abandon("hedge_lost");
+            }
+            return true;
+        }
+
+        private void onAttemptError(Attempt attempt, Throwable error) {
+            Endpoint next = null;
+            boolean forward;
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                if (winner != null) {
+                    forward = winner == attempt;
+                    if (!forward) {
+                        return;
+                    }
+                } else {
+                    attempt.failed = true;
+                    boolean othersRunning = attempts.stream().anyMatch(other -> other != attempt && other.isRunning());
+                    if (othersRunning) {
+                        // 另一个请求仍在进行，交由它产出结果
+                        return;
+                    }
+                    if (!parentCancelled()) {
+                        next = select(tried(), false);
+                    }
+                    forward = next == null;
+                }
+            }
+            if (forward) {
+                finish();
+                onFailed(error);
+                return;
+            }
+            log.warn("模型 {} 端点 {} 在首个事件前失败，切换到端点 {}: {}", modelName, attempt.endpoint.name(),
+                    next.name(), error.getMessage());
+            balancer.record(modelName, "failover", next.name());
+            launch(next);
+        }
+
+        private void finish() {
+            boolean releaseHedge;
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                finished = true;
+                releaseHedge = hedged;
+                disposeTimer();
+            }
+            if (parentHandle != null) {
+                parentHandle.removeCancelCallback(parentCancelCallback);
+            }
+            if (releaseHedge) {
+                balancer.finishHedge();
+            }
+        }
+
+        private void disposeTimer() {
+            if (hedgeTimer != null) {
+                hedgeTimer.dispose();
+                hedgeTimer = null;
+            }
+        }
+    }
+
+    /**
+     * 发往单个端点的一次请求
+     */
+    private static final class Attempt implements StreamingChatResponseHandler {
+
+        private final HedgedCall call;
+
+        private final Endpoint endpoint;
+
+        private final StreamingHandle handle = new StreamingHandle();
+
+        private final long startNanos = System.nanoTime();
+
+        private volatile boolean firstEventSeen;
+
+        private volatile boolean failed;
+
+        private volatile boolean abandoned;
+
+        private volatile boolean completed;
+
+        Attempt(HedgedCall call, Endpoint endpoint) {
+            this.call = call;
+            this.endpoint = endpoint;
+            if (call.parentHandle != null) {
+                // 会话上下文随取消句柄传递，对冲请求在其他线程上启动时同样可用
+                handle.attach(call.parentHandle.attachment());
+            }
+        }
+
+        long elapsedMs() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+
+        boolean isRunning() {
+            return !failed && !abandoned && !completed;
+        }
+
+        void abandon(String reason) {
+            if (abandoned || completed || failed) {
+                return;
+            }
+            abandoned = true;
+            endpoint.stats().recordAbandoned();
+            handle.cancel(reason);
+        }
+
+        private boolean onEvent() {
+            if (!firstEventSeen) {
+                firstEventSeen = true;
+                endpoint.stats().recordFirstToken(elapsedMs());
+            }
+            return call.claim(this);
+        }
+
+        @Override
+        public void onPartialResponse(String partialResponse) {
+            if (onEvent()) {
+                call.handler.onPartialResponse(partialResponse);
+            }
+        }
+
+        @Override
+        public void onPartialToolExecutionRequest(int index, ToolExecutionRequest partialToolExecutionRequest) {
+            if (onEvent()) {
+                call.handler.onPartialToolExecutionRequest(index, partialToolExecutionRequest);
+            }
+        }
+
+        @Override
+        public void onCompleteToolExecutionRequest(int index, ToolExecutionRequest completeToolExecutionRequest) {
+            if (onEvent()) {
+                call.handler.onCompleteToolExecutionRequest(index, completeToolExecutionRequest);
+            }
+        }
+
+        @Override
+        public void onCompleteResponse(ChatResponse completeResponse) {
+            if (onEvent()) {
+                completed = true;
+                call.finish();
+                call.onComplete(completeResponse);
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            if (abandoned) {
+                return;
+            }
+            endpoint.stats().recordFailure(System.nanoTime());
+            call.onAttemptError(this, error);
+        }
+
+        @Override
+        public StreamingHandle streamingHandle() {
+            return handle;
+        }
+    }
+}
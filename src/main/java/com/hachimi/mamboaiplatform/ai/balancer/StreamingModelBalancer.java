@@ -0,0 +1,140 @@
+package com.hachimi.mamboaiplatform.ai.balancer;
+
+import com.hachimi.mamboaiplatform.config.ModelLoadBalancingConfig;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 流式模型多端点均衡器
+ * 端点统计按模型与端点跨模型实例共享（多例模型每次创建都会包装一次），并负责对冲名额与指标
+ */
+@Component
+public class StreamingModelBalancer {
+
+    @Resource
+    private ModelLoadBalancingConfig modelLoadBalancingConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<String, EndpointStats> statsMap = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Counter> countersCache = new ConcurrentHashMap<>();
+
+    private final AtomicInteger hedgesInFlight = new AtomicInteger();
+
+    public StreamingModelBalancer() {
+    }
+
+    StreamingModelBalancer(ModelLoadBalancingConfig modelLoadBalancingConfig, MeterRegistry meterRegistry) {
+        this.modelLoadBalancingConfig = modelLoadBalancingConfig;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 给定数量的端点是否会被包装为均衡模型
+     *
+     * @param endpointCount 端点数
+     * @return 是否均衡
+     */
+    public boolean isBalanced(int endpointCount) {
+        return endpointCount > 1 && modelLoadBalancingConfig.isEnabled();
+    }
+
+    /**
+     * 包装多个端点的模型；只有一个端点或未启用时直接返回该模型
+     * 均衡时端点模型不应再挂监听器，由均衡模型对每次调用只通知一次
+     *
+     * @param modelName 模型名（指标标签）
+     * @param models    端点名 -> 模型，第一个为主端点
+     * @param listeners 均衡模型的监听器
+     * @return 流式模型
+     */
+    public StreamingChatModel balance(String modelName, Map<String, StreamingChatModel> models,
+                                      List<ChatModelListener> listeners) {
+        if (!isBalanced(models.size())) {
+            return models.values().iterator().next();
+        }
+        List<LoadBalancedStreamingChatModel.Endpoint> endpoints = new ArrayList<>(models.size());
+        models.forEach((name, model) -> endpoints.add(new LoadBalancedStreamingChatModel.Endpoint(name, model,
+                statsOf(modelName, name))));
+        return new LoadBalancedStreamingChatModel(modelName, endpoints, listeners, modelLoadBalancingConfig, this);
+    }
+
+    /**
+     * 端点统计按模型区分：同一服务地址上的不同模型（如推理模型）首 token 延迟差异很大
+     */
+    private EndpointStats statsOf(String modelName, String endpoint) {
+        return statsMap.computeIfAbsent(modelName + "|" + endpoint, key -> {
+            EndpointStats stats = new EndpointStats(endpoint, modelLoadBalancingConfig.getEwmaAlpha(),
+                    modelLoadBalancingConfig.getFailureThreshold(),
+                    TimeUnit.SECONDS.toNanos(modelLoadBalancingConfig.getOpenSeconds()));
+            Gauge.builder("ai_model_endpoint_first_token_ewma_ms", stats, EndpointStats::getEwmaLatencyMs)
+                    .description("端点首 token 延迟 EWMA（毫秒）")
+                    .tag("model_name", modelName)
+                    .tag("endpoint", endpoint)
+                    .register(meterRegistry);
+            Gauge.builder("ai_model_endpoint_error_rate", stats, EndpointStats::getEwmaErrorRate)
+                    .description("端点错误率 EWMA")
+                    .tag("model_name", modelName)
+                    .tag("endpoint", endpoint)
+                    .register(meterRegistry);
+            Gauge.builder("ai_model_endpoint_circuit_state", stats, s -> s.getState().ordinal())
+                    .description("端点熔断状态（0 关闭，1 半开，2 打开）")
+                    .tag("model_name", modelName)
+                    .tag("endpoint", endpoint)
+                    .register(meterRegistry);
+            return stats;
+        });
+    }
+
+    /**
+     * 申请对冲名额
+     */
+    boolean tryStartHedge() {
+        while (true) {
+            int current = hedgesInFlight.get();
+            if (current >= modelLoadBalancingConfig.getMaxConcurrentHedges()) {
+                return false;
+            }
+            if (hedgesInFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void finishHedge() {
+        hedgesInFlight.decrementAndGet();
+    }
+
+    /**
+     * 记录均衡事件
+     *
+     * @param modelName 模型名
+     * @param event     selected（按端点）、hedge_started、hedge_won、failover
+     * @param endpoint  端点名
+     */
+    void record(String modelName, String event, String endpoint) {
+        countersCache.computeIfAbsent(modelName + "_" + event + "_" + endpoint, k ->
+                Counter.builder("ai_model_balancer_events_total")
+                        .description("流式模型多端点均衡事件次数")
+                        .tag("model_name", modelName)
+                        .tag("event", event)
+                        .tag("endpoint", endpoint)
+                        .register(meterRegistry)
+        ).increment();
+    }
+}
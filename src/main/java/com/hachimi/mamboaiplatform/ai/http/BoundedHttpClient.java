@@ -0,0 +1,149 @@
+package com.hachimi.mamboaiplatform.ai.http;
+
+import com.hachimi.mamboaiplatform.exception.BusinessException;
+import com.hachimi.mamboaiplatform.exception.ErrorCode;
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpRequest;
+import dev.langchain4j.http.client.SuccessfulHttpResponse;
+import dev.langchain4j.http.client.sse.ServerSentEvent;
+import dev.langchain4j.http.client.sse.ServerSentEventListener;
+import dev.langchain4j.http.client.sse.ServerSentEventParser;
+import io.micrometer.core.instrument.Counter;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 限制单个端点并发请求数的 HTTP 客户端
+ * 并发已满时立即拒绝而不是阻塞调用线程等待（调用线程可能是模型回调或 Reactor 线程），
+ * 负载均衡模型收到拒绝后换端点重试，排队由上游的生成准入控制负责。
+ * 同步请求在返回后归还许可；流式请求在流关闭或出错时归还许可
+ */
+public class BoundedHttpClient implements HttpClient {
+
+    private final HttpClient delegate;
+
+    private final EndpointPool pool;
+
+    public BoundedHttpClient(HttpClient delegate, EndpointPool pool) {
+        this.delegate = delegate;
+        this.pool = pool;
+    }
+
+    @Override
+    public SuccessfulHttpResponse execute(HttpRequest request) {
+        acquire();
+        try {
+            return delegate.execute(request);
+        } finally {
+            pool.release();
+        }
+    }
+
+    @Override
+    public void execute(HttpRequest request, ServerSentEventParser parser, ServerSentEventListener listener) {
+        acquire();
+        ReleasingListener releasingListener = new ReleasingListener(listener);
+        try {
+            delegate.execute(request, parser, releasingListener);
+        } catch (RuntimeException e) {
+            releasingListener.release();
+            throw e;
+        }
+    }
+
+    private void acquire() {
+        if (!pool.tryAcquire()) {
+            throw new BusinessException(ErrorCode.TOO_MANY_REQUESTS_ERROR,
+                    "模型服务连接繁忙，请稍后再试（" + pool.getEndpoint() + "）");
+        }
+    }
+
+    /**
+     * 流结束（正常关闭或出错）时归还一次许可
+     */
+    private class ReleasingListener implements ServerSentEventListener {
+
+        private final ServerSentEventListener delegate;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        ReleasingListener(ServerSentEventListener delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onOpen(SuccessfulHttpResponse response) {
+            delegate.onOpen(response);
+        }
+
+        @Override
+        public void onEvent(ServerSentEvent event) {
+            delegate.onEvent(event);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            release();
+            delegate.onError(throwable);
+        }
+
+        @Override
+        public void onClose() {
+            release();
+            delegate.onClose();
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                pool.release();
+            }
+        }
+    }
+
+    /**
+     * 端点并发许可与指标
+     */
+    public static class EndpointPool {
+
+        private final String endpoint;
+
+        private final Semaphore permits;
+
+        private final AtomicInteger active = new AtomicInteger();
+
+        private final Counter rejectedCounter;
+
+        public EndpointPool(String endpoint, int maxConcurrent, Counter rejectedCounter) {
+            this.endpoint = endpoint;
+            this.permits = new Semaphore(maxConcurrent);
+            this.rejectedCounter = rejectedCounter;
+        }
+
+        public String getEndpoint() {
+            return endpoint;
+        }
+
+        public int getActive() {
+            return active.get();
+        }
+
+        /**
+         * 尝试获取许可，不等待
+         */
+        boolean tryAcquire() {
+            if (!permits.tryAcquire()) {
+                rejectedCounter.increment();
+                return false;
+            }
+            active.incrementAndGet();
+            return true;
+        }
+
+        void release() {
+            active.decrementAndGet();
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.hachimi.mamboaiplatform.ai.http;
+
+import cn.hutool.core.io.IoUtil;
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpRequest;
+import dev.langchain4j.http.client.SuccessfulHttpResponse;
+import dev.langchain4j.http.client.sse.ServerSentEventListener;
+import dev.langchain4j.http.client.sse.ServerSentEventParser;
+import dev.langchain4j.model.chat.response.StreamingHandle;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 支持取消的 HTTP 客户端
+ * 流式请求启动时读取当前线程绑定的 StreamingHandle，取消时直接关闭响应体输入流，
+ * 底层连接随之断开，模型端停止继续生成，不再为后续 token 付费。
+ */
+@Slf4j
+public class CancellableHttpClient implements HttpClient {
+
+    private final HttpClient delegate;
+
+    public CancellableHttpClient(HttpClient delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public SuccessfulHttpResponse execute(HttpRequest request) {
+        return delegate.execute(request);
+    }
+
+    @Override
+    public void execute(HttpRequest request, ServerSentEventParser parser, ServerSentEventListener listener) {
+        StreamingHandle streamingHandle = StreamingHandle.current();
+        if (streamingHandle == null) {
+            delegate.execute(request, parser, listener);
+            return;
+        }
+        delegate.execute(request, (httpResponseBody, eventListener) -> {
+            // 替换上一个请求的关闭动作（同一句柄贯穿多轮工具调用请求），已取消时会立即执行
+            streamingHandle.onCancelRequest(() -> {
+                log.info("流式请求已取消，关闭 HTTP 响应流，原因: {}", streamingHandle.cancelReason());
+                IoUtil.close(httpResponseBody);
+            });
+            if (streamingHandle.isCancelled()) {
+                return;
+            }
+            parser.parse(httpResponseBody, eventListener);
+        }, listener);
+    }
+}
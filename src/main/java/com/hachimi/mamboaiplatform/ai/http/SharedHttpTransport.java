@@ -0,0 +1,240 @@
+package com.hachimi.mamboaiplatform.ai.http;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.core.util.URLUtil;
+import com.hachimi.mamboaiplatform.config.AiHttpTransportConfig;
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpClientBuilder;
+import dev.langchain4j.http.client.HttpMethod;
+import dev.langchain4j.http.client.HttpRequest;
+import dev.langchain4j.http.client.jdk.JdkHttpClient;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模型调用共享 HTTP 传输
+ * 多例模型每次创建都会调用 HttpClientBuilder.build()，原先每个缓存的 AI 服务各自持有一个 JDK HttpClient
+ * （独立的选择器线程、连接池与 TLS 会话）。这里按端点与超时复用同一个客户端，
+ * 同一端点的所有模型共享连接（HTTP/2 下多路复用），并按端点限制并发请求数。
+ */
+@Slf4j
+@Component
+public class SharedHttpTransport {
+
+    /**
+     * 空闲连接保活时间（秒）的默认值，对应 jdk.httpclient.keepalive.timeout
+     */
+    static final long DEFAULT_KEEP_ALIVE_SECONDS = 300;
+
+    /**
+     * HTTP/1.1 空闲连接池大小的默认值，对应 jdk.httpclient.connectionPoolSize（0 表示不限）
+     */
+    static final int DEFAULT_CONNECTION_POOL_SIZE = 64;
+
+    private static final String KEEP_ALIVE_PROPERTY = "jdk.httpclient.keepalive.timeout";
+
+    @Resource
+    private AiHttpTransportConfig aiHttpTransportConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 端点 + 连接超时 + 读超时 -> 共享客户端
+     */
+    private final ConcurrentMap<String, HttpClient> clients = new ConcurrentHashMap<>();
+
+    /**
+     * 端点 -> 并发许可
+     */
+    private final ConcurrentMap<String, BoundedHttpClient.EndpointPool> pools = new ConcurrentHashMap<>();
+
+    /**
+     * 端点 -> 最近一次预热时间
+     */
+    private final ConcurrentMap<String, Long> lastWarmUpNanos = new ConcurrentHashMap<>();
+
+    /**
+     * 设置 JDK HttpClient 连接池参数的默认值，在 main 中、Spring 启动前调用。
+     * 这些参数只在 JDK HttpClient 首次加载时读取一次且 JVM 内全局生效，不能放在 Bean 初始化中设置
+     * （此前可能已有其他组件加载过 HttpClient）；需要调整时通过 JVM 参数指定，已指定时不覆盖。
+     */
+    public static void applyJdkHttpClientDefaults() {
+        setIfAbsent(KEEP_ALIVE_PROPERTY, DEFAULT_KEEP_ALIVE_SECONDS);
+        setIfAbsent(KEEP_ALIVE_PROPERTY + ".h2", DEFAULT_KEEP_ALIVE_SECONDS);
+        setIfAbsent("jdk.httpclient.connectionPoolSize", DEFAULT_CONNECTION_POOL_SIZE);
+    }
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("ai_http_transport_clients", clients, ConcurrentMap::size)
+                .description("共享的模型 HTTP 客户端数量")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 获取指定端点的 HttpClientBuilder，供模型构建器使用
+     *
+     * @param baseUrl 模型服务地址
+     * @return 返回共享客户端的构建器
+     */
+    public HttpClientBuilder builder(String baseUrl) {
+        return new SharedHttpClientBuilder(baseUrl);
+    }
+
+    /**
+     * 预热到端点的连接：通过该地址已创建的共享客户端发送一个轻量请求（GET models），
+     * 让 TCP/TLS（及 HTTP/2）连接提前建立并留在连接池中，响应状态无关紧要（未带密钥时通常为 401）。
+     * 端点上已有进行中的请求（连接本就是热的）或半个保活周期内已预热过时跳过。
+     *
+     * @param baseUrl 模型服务地址
+     * @return 是否发出了预热请求
+     */
+    public boolean warmUp(String baseUrl) {
+        String endpoint = endpointOf(baseUrl);
+        BoundedHttpClient.EndpointPool pool = pools.get(endpoint);
+        if (pool != null && pool.getActive() > 0) {
+            return false;
+        }
+        long now = System.nanoTime();
+        long interval = TimeUnit.SECONDS.toNanos(Long.getLong(KEEP_ALIVE_PROPERTY, DEFAULT_KEEP_ALIVE_SECONDS)) / 2;
+        Long last = lastWarmUpNanos.get(endpoint);
+        if (last != null && now - last < interval) {
+            return false;
+        }
+        boolean won = last == null
+                ? lastWarmUpNanos.putIfAbsent(endpoint, now) == null
+                : lastWarmUpNanos.replace(endpoint, last, now);
+        if (!won) {
+            return false;
+        }
+        HttpRequest request = HttpRequest.builder()
+                .method(HttpMethod.GET)
+                .url(baseUrl, "models")
+                .build();
+        boolean sent = false;
+        // 连接池属于单个 JDK 客户端，同一地址按超时区分的每个客户端都要预热
+        for (Map.Entry<String, HttpClient> entry : clients.entrySet()) {
+            if (!entry.getKey().startsWith(baseUrl + "|")) {
+                continue;
+            }
+            sent = true;
+            try {
+                entry.getValue().execute(request);
+            } catch (Exception e) {
+                log.debug("预热模型连接 endpoint={} 返回: {}", endpoint, e.getMessage());
+            }
+        }
+        return sent;
+    }
+
+    private HttpClient obtain(String baseUrl, Duration connectTimeout, Duration readTimeout) {
+        String key = baseUrl + "|" + connectTimeout + "|" + readTimeout;
+        return clients.computeIfAbsent(key, k -> {
+            String endpoint = endpointOf(baseUrl);
+            java.net.http.HttpClient.Builder jdkBuilder = java.net.http.HttpClient.newBuilder()
+                    .version(aiHttpTransportConfig.isHttp2()
+                            ? java.net.http.HttpClient.Version.HTTP_2
+                            : java.net.http.HttpClient.Version.HTTP_1_1);
+            HttpClient jdkClient = JdkHttpClient.builder()
+                    .httpClientBuilder(jdkBuilder)
+                    .connectTimeout(connectTimeout)
+                    .readTimeout(readTimeout)
+                    .build();
+            log.info("创建共享模型 HTTP 客户端 endpoint={} connectTimeout={} readTimeout={}",
+                    endpoint, connectTimeout, readTimeout);
+            return new CancellableHttpClient(new BoundedHttpClient(jdkClient, poolOf(endpoint)));
+        });
+    }
+
+    private BoundedHttpClient.EndpointPool poolOf(String endpoint) {
+        return pools.computeIfAbsent(endpoint, k -> {
+            BoundedHttpClient.EndpointPool pool = new BoundedHttpClient.EndpointPool(endpoint,
+                    aiHttpTransportConfig.getMaxConcurrentRequestsPerEndpoint(),
+                    Counter.builder("ai_http_transport_rejected_total")
+                            .description("端点并发已满而直接拒绝的请求数")
+                            .tag("endpoint", endpoint)
+                            .register(meterRegistry));
+            Gauge.builder("ai_http_transport_active_requests", pool, BoundedHttpClient.EndpointPool::getActive)
+                    .description("端点上进行中的请求数（含流式请求）")
+                    .tag("endpoint", endpoint)
+                    .register(meterRegistry);
+            return pool;
+        });
+    }
+
+    /**
+     * 端点名（用于指标标签），只取主机与端口，避免路径带来高基数
+     */
+    public static String endpointOf(String baseUrl) {
+        if (StrUtil.isBlank(baseUrl)) {
+            return "default";
+        }
+        try {
+            java.net.URL url = URLUtil.url(baseUrl);
+            return url.getPort() > 0 ? url.getHost() + ":" + url.getPort() : url.getHost();
+        } catch (Exception e) {
+            return baseUrl;
+        }
+    }
+
+    private static void setIfAbsent(String property, long value) {
+        if (System.getProperty(property) == null) {
+            System.setProperty(property, String.valueOf(value));
+        }
+    }
+
+    /**
+     * 记录模型构建器设置的超时，build() 时返回共享客户端
+     */
+    private class SharedHttpClientBuilder implements HttpClientBuilder {
+
+        private final String baseUrl;
+
+        private Duration connectTimeout;
+
+        private Duration readTimeout;
+
+        SharedHttpClientBuilder(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        @Override
+        public Duration connectTimeout() {
+            return connectTimeout;
+        }
+
+        @Override
+        public HttpClientBuilder connectTimeout(Duration timeout) {
+            this.connectTimeout = timeout;
+            return this;
+        }
+
+        @Override
+        public Duration readTimeout() {
+            return readTimeout;
+        }
+
+        @Override
+        public HttpClientBuilder readTimeout(Duration timeout) {
+            this.readTimeout = timeout;
+            return this;
+        }
+
+        @Override
+        public HttpClient build() {
+            return obtain(baseUrl, connectTimeout, readTimeout);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.hachimi.mamboaiplatform.ai.memory;
+
+import com.hachimi.mamboaiplatform.config.ChatMemoryBudgetConfig;
+import com.hachimi.mamboaiplatform.model.enums.CodeGenTypeEnum;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 对话记忆后台压缩与指标
+ * 压缩在 boundedElastic 线程上执行，不占用请求路径；同一记忆同时只有一个压缩任务
+ */
+@Component
+@Slf4j
+public class ChatMemoryCompactor {
+
+    @Resource
+    private ChatMemoryBudgetConfig chatMemoryBudgetConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final Set<Object> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final ConcurrentMap<String, Counter> countersCache = new ConcurrentHashMap<>();
+
+    /**
+     * 按生成类型的 token 预算创建对话记忆
+     *
+     * @param memoryId    记忆ID
+     * @param store       底层存储
+     * @param codeGenType 生成类型
+     * @return 对话记忆
+     */
+    public TokenBudgetChatMemory createMemory(Object memoryId, ChatMemoryStore store, CodeGenTypeEnum codeGenType) {
+        return new TokenBudgetChatMemory(memoryId, store, codeGenType,
+                chatMemoryBudgetConfig.budgetOf(codeGenType),
+                chatMemoryBudgetConfig.getCompactThresholdRatio(),
+                chatMemoryBudgetConfig.getMaxMessages(),
+                this);
+    }
+
+    /**
+     * 请求后台压缩，已有进行中的压缩时忽略
+     */
+    void requestCompaction(TokenBudgetChatMemory memory) {
+        Object memoryId = memory.id();
+        if (!inFlight.add(memoryId)) {
+            return;
+        }
+        Schedulers.boundedElastic().schedule(() -> {
+            try {
+                compact(memory);
+            } catch (Exception e) {
+                count("ai_chat_memory_compaction_total", memory.getCodeGenType(), "error");
+                log.warn("对话记忆压缩失败 memoryId={} error={}", memoryId, e.getMessage());
+            } finally {
+                inFlight.remove(memoryId);
+            }
+        });
+    }
+
+    private void compact(TokenBudgetChatMemory memory) {
+        List<ChatMessage> rest = memory.snapshot().stream()
+                .filter(message -> !(message instanceof SystemMessage))
+                .toList();
+        int targetTokens = (int) (memory.getBudgetTokens() * chatMemoryBudgetConfig.getCompactTargetRatio());
+        MemoryCompaction.Plan plan = MemoryCompaction.plan(rest, targetTokens,
+                chatMemoryBudgetConfig.getSummaryMaxChars());
+        if (plan == null) {
+            count("ai_chat_memory_compaction_total", memory.getCodeGenType(), "skipped");
+            return;
+        }
+        boolean applied = memory.applyCompaction(plan.getCompacted(), plan.getSummary());
+        count("ai_chat_memory_compaction_total", memory.getCodeGenType(), applied ? "applied" : "conflict");
+        if (applied) {
+            int before = plan.getCompacted().stream().mapToInt(TokenEstimator::estimate).sum();
+            int after = TokenEstimator.estimate(plan.getSummary());
+            log.info("对话记忆已压缩 memoryId={} 压缩消息数={} token {} -> {}", memory.id(),
+                    plan.getCompacted().size(), before, after);
+        }
+    }
+
+    /**
+     * 记录超出预算时同步淘汰的消息数
+     */
+    void recordEvicted(CodeGenTypeEnum codeGenType, int count) {
+        String type = codeGenType == null ? "unknown" : codeGenType.getValue();
+        countersCache.computeIfAbsent("evicted_" + type, k ->
+                Counter.builder("ai_chat_memory_evicted_messages_total")
+                        .description("超出 token 预算时同步淘汰的消息数")
+                        .tag("code_gen_type", type)
+                        .register(meterRegistry)
+        ).increment(count);
+    }
+
+    private void count(String name, CodeGenTypeEnum codeGenType, String result) {
+        String type = codeGenType == null ? "unknown" : codeGenType.getValue();
+        countersCache.computeIfAbsent(name + "_" + type + "_" + result, k ->
+                Counter.builder(name)
+                        .description("对话记忆后台压缩次数")
+                        .tag("code_gen_type", type)
+                        .tag("result", result)
+                        .register(meterRegistry)
+        ).increment();
+    }
+}
@@ -0,0 +1,166 @@
+package com.hachimi.mamboaiplatform.ai.memory;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 对话记忆压缩：把较早的若干轮对话在本地压缩成一条摘要消息（不调用模型）
+ * 只在轮次边界（用户消息之前）切分，保证工具调用与工具结果不被拆开；至少保留最后一轮完整对话
+ */
+public final class MemoryCompaction {
+
+    /**
+     * 摘要消息的前缀，用于识别已有摘要并在下次压缩时合并
+     */
+    public static final String SUMMARY_PREFIX = "【早期对话摘要】\n";
+
+    private static final Pattern CODE_BLOCK_PATTERN = Pattern.compile("```[\\w-]*\\n?([\\s\\S]*?)```");
+
+    private static final int USER_MAX_CHARS = 200;
+
+    private static final int AI_MAX_CHARS = 300;
+
+    private static final int TOOL_MAX_CHARS = 100;
+
+    private MemoryCompaction() {
+    }
+
+    /**
+     * 压缩计划：把前 {@code compacted} 条消息替换为 {@code summary}
+     */
+    @Getter
+    public static class Plan {
+
+        private final List<ChatMessage> compacted;
+
+        private final UserMessage summary;
+
+        private Plan(List<ChatMessage> compacted, UserMessage summary) {
+            this.compacted = compacted;
+            this.summary = summary;
+        }
+    }
+
+    /**
+     * 计算压缩计划
+     *
+     * @param messages        不含系统消息的对话记忆（按时间正序）
+     * @param targetTokens    压缩后的目标 token 数
+     * @param summaryMaxChars 摘要最大字符数
+     * @return 压缩计划，无可压缩内容时为 null
+     */
+    public static Plan plan(List<ChatMessage> messages, int targetTokens, int summaryMaxChars) {
+        int size = messages.size();
+        int[] suffixTokens = new int[size + 1];
+        for (int i = size - 1; i >= 0; i--) {
+            suffixTokens[i] = suffixTokens[i + 1] + TokenEstimator.estimate(messages.get(i));
+        }
+        // 摘要按最大长度预留
+        int reserve = TokenEstimator.MESSAGE_OVERHEAD + summaryMaxChars / 2;
+        int cut = -1;
+        for (int i = 1; i < size; i++) {
+            if (!isTurnStart(messages.get(i))) {
+                continue;
+            }
+            cut = i;
+            if (suffixTokens[i] + reserve <= targetTokens) {
+                break;
+            }
+        }
+        if (cut <= 0 || (cut == 1 && isSummary(messages.getFirst()))) {
+            return null;
+        }
+        List<ChatMessage> compacted = List.copyOf(messages.subList(0, cut));
+        return new Plan(compacted, summarize(compacted, summaryMaxChars));
+    }
+
+    /**
+     * 是否为压缩生成的摘要消息
+     */
+    public static boolean isSummary(ChatMessage message) {
+        return message instanceof UserMessage userMessage && userMessage.hasSingleText()
+                && userMessage.singleText().startsWith(SUMMARY_PREFIX);
+    }
+
+    static UserMessage summarize(List<ChatMessage> messages, int summaryMaxChars) {
+        StringBuilder body = new StringBuilder();
+        for (ChatMessage message : messages) {
+            String line = summarizeLine(message);
+            if (line != null && !line.isEmpty()) {
+                body.append(line).append('\n');
+            }
+        }
+        String text = body.toString().strip();
+        if (text.length() > summaryMaxChars) {
+            // 保留较新的内容
+            text = "…" + text.substring(text.length() - summaryMaxChars + 1);
+        }
+        return UserMessage.from(SUMMARY_PREFIX + text);
+    }
+
+    private static String summarizeLine(ChatMessage message) {
+        if (isSummary(message)) {
+            return ((UserMessage) message).singleText().substring(SUMMARY_PREFIX.length()).strip();
+        }
+        return switch (message) {
+            case UserMessage m -> m.hasSingleText() ? "用户：" + oneLine(m.singleText(), USER_MAX_CHARS) : null;
+            case AiMessage m -> summarizeAi(m);
+            case ToolExecutionResultMessage m -> "工具 " + m.toolName() + " 结果：" + oneLine(m.text(), TOOL_MAX_CHARS);
+            default -> null;
+        };
+    }
+
+    private static String summarizeAi(AiMessage message) {
+        StringBuilder line = new StringBuilder();
+        if (message.text() != null && !message.text().isBlank()) {
+            line.append("AI：").append(oneLine(stripCodeBlocks(message.text()), AI_MAX_CHARS));
+        }
+        if (message.hasToolExecutionRequests()) {
+            if (!line.isEmpty()) {
+                line.append('\n');
+            }
+            line.append("AI 调用工具：").append(message.toolExecutionRequests().stream()
+                    .map(ToolExecutionRequest::name)
+                    .collect(Collectors.joining("、")));
+        }
+        return line.toString();
+    }
+
+    /**
+     * 代码块只保留行数，生成的整份文件是记忆膨胀的主要来源
+     */
+    private static String stripCodeBlocks(String text) {
+        Matcher matcher = CODE_BLOCK_PATTERN.matcher(text);
+        StringBuilder result = new StringBuilder();
+        while (matcher.find()) {
+            long lines = matcher.group(1).lines().count();
+            matcher.appendReplacement(result, Matcher.quoteReplacement("[代码 " + lines + " 行]"));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    private static String oneLine(String text, int maxChars) {
+        if (text == null) {
+            return "";
+        }
+        String line = text.replaceAll("\\s+", " ").strip();
+        return line.length() <= maxChars ? line : line.substring(0, maxChars) + "…";
+    }
+
+    /**
+     * 轮次起点：真实的用户消息（摘要不算）
+     */
+    static boolean isTurnStart(ChatMessage message) {
+        return message instanceof UserMessage && !isSummary(message);
+    }
+}
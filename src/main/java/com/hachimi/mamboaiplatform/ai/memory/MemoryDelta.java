@@ -0,0 +1,60 @@
+package com.hachimi.mamboaiplatform.ai.memory;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 两次记忆快照之间的增量：从表头裁掉若干条（窗口淘汰），再在表尾追加若干条（新消息）
+ * 对应 Redis 的一次 LTRIM 加一次 RPUSH
+ */
+@Getter
+public class MemoryDelta {
+
+    /**
+     * 需要从表头移除的条数
+     */
+    private final int trimHead;
+
+    /**
+     * 需要追加到表尾的消息（已序列化）
+     */
+    private final List<String> appended;
+
+    private MemoryDelta(int trimHead, List<String> appended) {
+        this.trimHead = trimHead;
+        this.appended = appended;
+    }
+
+    public boolean isEmpty() {
+        return trimHead == 0 && appended.isEmpty();
+    }
+
+    /**
+     * 计算增量：找到最小的 d，使 persisted[d..] 恰为 current 的前缀
+     * d 等于 persisted 长度时退化为整表重写（清空后全部追加）
+     *
+     * @param persisted 已写入 Redis 的消息
+     * @param current   当前消息
+     * @return 增量
+     */
+    public static MemoryDelta between(List<String> persisted, List<String> current) {
+        int size = persisted.size();
+        for (int d = 0; d < size; d++) {
+            int overlap = size - d;
+            if (overlap <= current.size() && matches(persisted, d, current, overlap)) {
+                return new MemoryDelta(d, List.copyOf(current.subList(overlap, current.size())));
+            }
+        }
+        return new MemoryDelta(size, List.copyOf(current));
+    }
+
+    private static boolean matches(List<String> persisted, int from, List<String> current, int length) {
+        for (int i = 0; i < length; i++) {
+            if (!persisted.get(from + i).equals(current.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
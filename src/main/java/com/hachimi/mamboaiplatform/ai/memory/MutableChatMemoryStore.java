@@ -0,0 +1,23 @@
+package com.hachimi.mamboaiplatform.ai.memory;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 支持原地修改的对话记忆存储
+ * 追加一条消息时直接修改存储持有的列表，不必先复制整表再用 updateMessages 整体替换
+ */
+public interface MutableChatMemoryStore extends ChatMemoryStore {
+
+    /**
+     * 原地修改会话记忆，修改期间该会话的其他读写被阻塞
+     *
+     * @param memoryId 记忆ID
+     * @param mutator  修改逻辑，参数为存储持有的可变列表，仅在回调期间有效
+     * @return 修改逻辑的返回值
+     */
+    <R> R mutateMessages(Object memoryId, Function<List<ChatMessage>, R> mutator);
+}
@@ -0,0 +1,219 @@
+package com.hachimi.mamboaiplatform.ai.memory;
+
+import com.hachimi.mamboaiplatform.model.enums.CodeGenTypeEnum;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按 token 预算（而非消息条数）约束的对话记忆
+ * 1. 超过预算的一定比例时请求后台压缩（较早的轮次压成摘要），不阻塞请求；
+ * 2. 压缩尚未完成就超出预算时，同步淘汰最早的完整轮次兜底：按用户消息切分轮次，整轮淘汰，
+ *    工具结果不会脱离其工具调用；进行中的轮次（最后一条用户消息及其后的工具往返）从不淘汰，即使它本身超出预算；
+ * 3. 存储支持原地修改时（{@link MutableChatMemoryStore}）直接在存储的列表上追加与淘汰，不复制整表；
+ * 提示词大小分布在请求真正发往模型时由模型监听器统计，记忆读取（含加载、预热）不记录指标。
+ */
+public class TokenBudgetChatMemory implements ChatMemory {
+
+    private final Object id;
+
+    private final ChatMemoryStore store;
+
+    private final CodeGenTypeEnum codeGenType;
+
+    private final int budgetTokens;
+
+    private final int compactThresholdTokens;
+
+    private final int maxMessages;
+
+    private final ChatMemoryCompactor compactor;
+
+    /**
+     * 消息 token 估算缓存（按对象身份），避免每次 add 都重新估算整个记忆
+     */
+    private final Map<ChatMessage, Integer> tokenCache = new IdentityHashMap<>();
+
+    public TokenBudgetChatMemory(Object id, ChatMemoryStore store, CodeGenTypeEnum codeGenType, int budgetTokens,
+                                 double compactThresholdRatio, int maxMessages, ChatMemoryCompactor compactor) {
+        this.id = id;
+        this.store = store;
+        this.codeGenType = codeGenType;
+        this.budgetTokens = budgetTokens;
+        this.compactThresholdTokens = (int) (budgetTokens * compactThresholdRatio);
+        this.maxMessages = maxMessages;
+        this.compactor = compactor;
+    }
+
+    @Override
+    public Object id() {
+        return id;
+    }
+
+    @Override
+    public synchronized void add(ChatMessage message) {
+        int tokens;
+        if (store instanceof MutableChatMemoryStore mutableStore) {
+            tokens = mutableStore.mutateMessages(id, messages -> append(messages, message));
+        } else {
+            List<ChatMessage> messages = new ArrayList<>(store.getMessages(id));
+            tokens = append(messages, message);
+            if (tokens < 0) {
+                return;
+            }
+            store.updateMessages(id, messages);
+        }
+        if (tokens > compactThresholdTokens) {
+            compactor.requestCompaction(this);
+        }
+    }
+
+    @Override
+    public synchronized List<ChatMessage> messages() {
+        return new ArrayList<>(store.getMessages(id));
+    }
+
+    @Override
+    public synchronized void clear() {
+        store.deleteMessages(id);
+        tokenCache.clear();
+    }
+
+    CodeGenTypeEnum getCodeGenType() {
+        return codeGenType;
+    }
+
+    int getBudgetTokens() {
+        return budgetTokens;
+    }
+
+    /**
+     * 读取当前记忆快照（供后台压缩使用）
+     */
+    synchronized List<ChatMessage> snapshot() {
+        return new ArrayList<>(store.getMessages(id));
+    }
+
+    /**
+     * 应用压缩结果：仅当当前记忆的开头仍与计划压缩的消息一致时替换为摘要，否则放弃（期间被淘汰或清空）
+     *
+     * @param compacted 计划压缩的消息（不含系统消息）
+     * @param summary   摘要消息
+     * @return 是否已应用
+     */
+    synchronized boolean applyCompaction(List<ChatMessage> compacted, ChatMessage summary) {
+        List<ChatMessage> messages = new ArrayList<>(store.getMessages(id));
+        SystemMessage system = findSystemMessage(messages);
+        List<ChatMessage> rest = new ArrayList<>(messages);
+        rest.remove(system);
+        if (rest.size() <= compacted.size() || !rest.subList(0, compacted.size()).equals(compacted)) {
+            return false;
+        }
+        List<ChatMessage> result = new ArrayList<>(rest.size() - compacted.size() + 2);
+        if (system != null) {
+            result.add(system);
+        }
+        result.add(summary);
+        result.addAll(rest.subList(compacted.size(), rest.size()));
+        store.updateMessages(id, result);
+        return true;
+    }
+
+    /**
+     * 加入一条消息并按预算淘汰
+     *
+     * @return 淘汰后的 token 数，系统消息未变化时返回 -1
+     */
+    private int append(List<ChatMessage> messages, ChatMessage message) {
+        if (message instanceof SystemMessage) {
+            SystemMessage existing = findSystemMessage(messages);
+            if (message.equals(existing)) {
+                return -1;
+            }
+            messages.remove(existing);
+            messages.addFirst(message);
+        } else {
+            messages.add(message);
+        }
+        return ensureCapacity(messages);
+    }
+
+    /**
+     * 超出预算或条数上限时，从最早的轮次开始整轮淘汰，进行中的轮次不淘汰
+     *
+     * @return 淘汰后的 token 数
+     */
+    private int ensureCapacity(List<ChatMessage> messages) {
+        int tokens = countTokens(messages);
+        int start = !messages.isEmpty() && messages.getFirst() instanceof SystemMessage ? 1 : 0;
+        int current = lastTurnStart(messages, start);
+        int end = start;
+        while ((tokens > budgetTokens || messages.size() - end > maxMessages) && end < current) {
+            int next = nextTurnStart(messages, end + 1, current);
+            for (int i = end; i < next; i++) {
+                tokens -= tokensOf(messages.get(i));
+            }
+            end = next;
+        }
+        if (end > start) {
+            List<ChatMessage> evicted = messages.subList(start, end);
+            evicted.forEach(tokenCache::remove);
+            compactor.recordEvicted(codeGenType, evicted.size());
+            evicted.clear();
+        }
+        return tokens;
+    }
+
+    /**
+     * 最后一个轮次（进行中的轮次）的起点；没有用户消息时整段视为进行中
+     */
+    private static int lastTurnStart(List<ChatMessage> messages, int start) {
+        for (int i = messages.size() - 1; i >= start; i--) {
+            if (MemoryCompaction.isTurnStart(messages.get(i))) {
+                return i;
+            }
+        }
+        return start;
+    }
+
+    private static int nextTurnStart(List<ChatMessage> messages, int from, int limit) {
+        for (int i = from; i < limit; i++) {
+            if (MemoryCompaction.isTurnStart(messages.get(i))) {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    private int countTokens(List<ChatMessage> messages) {
+        if (tokenCache.size() > messages.size() * 2) {
+            // 压缩或清空替换了消息对象，丢弃已不存在的估算
+            tokenCache.clear();
+        }
+        int tokens = 0;
+        for (ChatMessage message : messages) {
+            tokens += tokenCache.computeIfAbsent(message, TokenEstimator::estimate);
+        }
+        return tokens;
+    }
+
+    private int tokensOf(ChatMessage message) {
+        Integer estimate = tokenCache.get(message);
+        return estimate != null ? estimate : TokenEstimator.estimate(message);
+    }
+
+    private static SystemMessage findSystemMessage(List<ChatMessage> messages) {
+        for (ChatMessage message : messages) {
+            if (message instanceof SystemMessage systemMessage) {
+                return systemMessage;
+            }
+        }
+        return null;
+    }
+}
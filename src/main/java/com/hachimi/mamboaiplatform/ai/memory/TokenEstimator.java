@@ -0,0 +1,81 @@
+package com.hachimi.mamboaiplatform.ai.memory;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.Content;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+
+/**
+ * 本地 token 估算器（不调用分词服务）
+ * 中日韩字符按 1 token/字，其余字符按约 4 字符/token 计，每条消息另加固定开销
+ * 用于预算判断与指标，不要求与模型计费完全一致
+ */
+public final class TokenEstimator {
+
+    /**
+     * 每条消息的角色、分隔符等固定开销
+     */
+    static final int MESSAGE_OVERHEAD = 4;
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(ChatMessage message) {
+        return MESSAGE_OVERHEAD + switch (message) {
+            case SystemMessage m -> estimate(m.text());
+            case UserMessage m -> estimateUser(m);
+            case AiMessage m -> estimateAi(m);
+            case ToolExecutionResultMessage m -> estimate(m.toolName()) + estimate(m.text());
+            default -> 0;
+        };
+    }
+
+    public static int estimate(CharSequence text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (isCjk(text.charAt(i))) {
+                cjk++;
+            } else {
+                other++;
+            }
+        }
+        return cjk + (other + 3) / 4;
+    }
+
+    private static int estimateUser(UserMessage message) {
+        int tokens = 0;
+        for (Content content : message.contents()) {
+            if (content instanceof TextContent textContent) {
+                tokens += estimate(textContent.text());
+            }
+        }
+        return tokens;
+    }
+
+    private static int estimateAi(AiMessage message) {
+        int tokens = estimate(message.text());
+        if (message.hasToolExecutionRequests()) {
+            for (ToolExecutionRequest request : message.toolExecutionRequests()) {
+                tokens += estimate(request.name()) + estimate(request.arguments());
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isCjk(char c) {
+        return (c >= '\u4e00' && c <= '\u9fff')    // CJK 统一汉字
+                || (c >= '\u3400' && c <= '\u4dbf') // CJK 扩展 A
+                || (c >= '\u3040' && c <= '\u30ff') // 平假名、片假名
+                || (c >= '\uac00' && c <= '\ud7af') // 韩文音节
+                || (c >= '\u3000' && c <= '\u303f') // CJK 标点
+                || (c >= '\uff00' && c <= '\uffef'); // 全角字符
+    }
+}
@@ -0,0 +1,612 @@
+package com.hachimi.mamboaiplatform.ai.memory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.hachimi.mamboaiplatform.config.ChatMemoryStoreConfig;
+import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageDeserializer;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.data.message.SystemMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 两级写回对话记忆存储
+ * 1. 本地 Caffeine 层：对话记忆每次 add 的读与整表写都只落在本地；
+ * 2. Redis 层：按固定间隔批量写回，且只写增量——表头淘汰用一次 LTRIM，新消息用一次 RPUSH，系统消息单独存放；
+ * 3. 所有权令牌：运行会话的节点通过 {@link #claim(Object)} 取得写入权，并在本地持有期间定期续期；
+ *    写回脚本只接受当前令牌，令牌缺失（过期）时不会被写回顺带接管，需显式重新取得（SET NX），其他节点的写回被拒绝并丢弃本地副本；
+ * 4. 水位线：记忆已包含的最后一条对话历史 ID，与消息在同一脚本中原子写回，用于只从数据库补齐增量。
+ * Redis 中两边长度不一致（过期、被外部修改）时自动退化为整表重写。
+ * 本地淘汰时还有未写回更新的会话转入待写回表，写回成功前持续重试，期间再次访问会直接取回该副本，不会丢失。
+ */
+@Component
+@Slf4j
+public class WriteBehindChatMemoryStore implements MutableChatMemoryStore {
+
+    /**
+     * KEYS: 1 所有权键 2 消息列表 3 系统消息 4 水位线
+     * ARGV: 1 令牌 2 令牌有效期(ms) 3 表头裁剪条数(-1 表示整表重写) 4 过期时间(s)
+     * 5 系统消息操作(0 不变 1 写入 2 删除) 6 系统消息 7 期望长度 8 水位线(空串不变，del 删除) 9.. 追加的消息
+     * 返回：-1 写入权属于其他节点，-2 写后长度与期望不符，-3 写入权已过期，否则为列表长度
+     */
+    private static final String FLUSH_SCRIPT = """
+            local owner = redis.call('GET', KEYS[1])
+            if not owner then
+              return -3
+            end
+            if owner ~= ARGV[1] then
+              return -1
+            end
+            redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            local trim = tonumber(ARGV[3])
+            if trim < 0 then
+              redis.call('DEL', KEYS[2])
+            elseif trim > 0 then
+              redis.call('LTRIM', KEYS[2], trim, -1)
+            end
+            if #ARGV > 8 then
+              redis.call('RPUSH', KEYS[2], unpack(ARGV, 9))
+            end
+            if ARGV[5] == '1' then
+              redis.call('SET', KEYS[3], ARGV[6])
+            elseif ARGV[5] == '2' then
+              redis.call('DEL', KEYS[3])
+            end
+            if ARGV[8] == 'del' then
+              redis.call('DEL', KEYS[4])
+            elseif ARGV[8] ~= '' then
+              redis.call('SET', KEYS[4], ARGV[8])
+            end
+            local ttl = tonumber(ARGV[4])
+            if ttl > 0 then
+              redis.call('EXPIRE', KEYS[2], ttl)
+              redis.call('EXPIRE', KEYS[3], ttl)
+              redis.call('EXPIRE', KEYS[4], ttl)
+            end
+            local length = redis.call('LLEN', KEYS[2])
+            if length ~= tonumber(ARGV[7]) then
+              return -2
+            end
+            return length
+            """;
+
+    private static final long RESULT_NOT_OWNER = -1;
+
+    private static final long RESULT_LENGTH_MISMATCH = -2;
+
+    private static final long RESULT_OWNER_EXPIRED = -3;
+
+    /**
+     * 仅在令牌仍属于本节点时续期，返回 1 表示续期成功
+     */
+    private static final String RENEW_SCRIPT = """
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+              return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            end
+            return 0
+            """;
+
+    private static final String WATERMARK_KEEP = "";
+
+    private static final String WATERMARK_DELETE = "del";
+
+    @Resource
+    private ChatMemoryStoreConfig chatMemoryStoreConfig;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisChatMemoryStore redisChatMemoryStore;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 本节点的所有权令牌
+     */
+    private final String ownerToken = UUID.randomUUID().toString();
+
+    private final Set<Object> dirtyIds = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 已被本地层淘汰、但还有未写回更新的会话，由定时写回继续重试
+     */
+    private final Map<Object, MemoryEntry> evictedDirty = new ConcurrentHashMap<>();
+
+    /**
+     * 本节点持有写入权的会话 -> 上次续期时间（毫秒）
+     */
+    private final Map<Object, Long> ownedIds = new ConcurrentHashMap<>();
+
+    private final DefaultRedisScript<Long> flushScript = new DefaultRedisScript<>(FLUSH_SCRIPT, Long.class);
+
+    private final DefaultRedisScript<Long> renewScript = new DefaultRedisScript<>(RENEW_SCRIPT, Long.class);
+
+    private Cache<Object, MemoryEntry> localCache;
+
+    private Scheduler flushScheduler;
+
+    private Disposable flushTask;
+
+    private Counter appendedCounter;
+
+    private Counter trimmedCounter;
+
+    private final Map<String, Counter> flushCounters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        localCache = Caffeine.newBuilder()
+                .maximumSize(chatMemoryStoreConfig.getLocalMaxEntries())
+                .expireAfterAccess(Duration.ofMinutes(chatMemoryStoreConfig.getLocalExpireMinutes()))
+                .evictionListener((Object memoryId, MemoryEntry entry, RemovalCause cause) -> {
+                    if (memoryId == null || entry == null) {
+                        return;
+                    }
+                    // 与淘汰原子执行（不在此访问 Redis）：还有未写回更新的会话转入待写回表，由定时写回负责写回与重试，
+                    // 写回前再次访问会取回该副本，不会读到 Redis 中的旧数据
+                    if (entry.isDirty()) {
+                        evictedDirty.put(memoryId, entry);
+                        dirtyIds.add(memoryId);
+                    } else {
+                        ownedIds.remove(memoryId);
+                    }
+                })
+                .build();
+        appendedCounter = Counter.builder("ai_chat_memory_appended_messages_total")
+                .description("写回 Redis 时追加的消息条数")
+                .register(meterRegistry);
+        trimmedCounter = Counter.builder("ai_chat_memory_trimmed_messages_total")
+                .description("写回 Redis 时从表头淘汰的消息条数")
+                .register(meterRegistry);
+        Gauge.builder("ai_chat_memory_dirty_sessions", dirtyIds, Set::size)
+                .description("等待写回 Redis 的会话数")
+                .register(meterRegistry);
+        flushScheduler = Schedulers.newSingle("chat-memory-flush", true);
+        long interval = chatMemoryStoreConfig.getFlushIntervalMs();
+        flushTask = flushScheduler.schedulePeriodically(() -> {
+            flushDirty();
+            renewOwnership();
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flushTask.dispose();
+        // 停机前把剩余更新全部写回
+        while (!dirtyIds.isEmpty()) {
+            int before = dirtyIds.size();
+            flushDirty();
+            if (dirtyIds.size() >= before) {
+                log.warn("停机时仍有 {} 个会话的对话记忆未能写回", dirtyIds.size());
+                break;
+            }
+        }
+        flushScheduler.dispose();
+    }
+
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        return localCache.get(memoryId, this::load).messages();
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        localCache.get(memoryId, this::load).update(messages);
+        dirtyIds.add(memoryId);
+    }
+
+    @Override
+    public <R> R mutateMessages(Object memoryId, Function<List<ChatMessage>, R> mutator) {
+        R result = localCache.get(memoryId, this::load).mutate(mutator);
+        dirtyIds.add(memoryId);
+        return result;
+    }
+
+    @Override
+    public void deleteMessages(Object memoryId) {
+        // 清空同样走写回：随后的重新加载会与清空合并成一次增量；记忆清空后水位线失效
+        localCache.get(memoryId, this::load).clear();
+        dirtyIds.add(memoryId);
+    }
+
+    /**
+     * 获取记忆已包含的最后一条对话历史 ID
+     *
+     * @param memoryId 记忆ID
+     * @return 水位线，记忆不存在或从未记录时为 null
+     */
+    public Long getWatermark(Object memoryId) {
+        return localCache.get(memoryId, this::load).watermark();
+    }
+
+    /**
+     * 推进水位线（只增不减），随下一次写回与消息一起落盘
+     *
+     * @param memoryId  记忆ID
+     * @param watermark 记忆已包含的最后一条对话历史 ID
+     */
+    public void advanceWatermark(Object memoryId, long watermark) {
+        if (localCache.get(memoryId, this::load).advanceWatermark(watermark)) {
+            dirtyIds.add(memoryId);
+        }
+    }
+
+    /**
+     * 会话记忆当前是否在本节点的本地层中（即会话正在本节点上运行）
+     */
+    public boolean isLive(Object memoryId) {
+        return localCache.getIfPresent(memoryId) != null;
+    }
+
+    /**
+     * 声明本节点运行该会话，取得写入权
+     * 写入权原属于其他节点时，本地副本可能已过期，未修改的副本直接丢弃
+     *
+     * @param memoryId 记忆ID
+     */
+    public void claim(Object memoryId) {
+        String ownerKey = key(memoryId, "owner");
+        String previous;
+        try {
+            previous = stringRedisTemplate.opsForValue().getAndSet(ownerKey, ownerToken);
+            stringRedisTemplate.expire(ownerKey, chatMemoryStoreConfig.getOwnerTtlSeconds(), TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("获取对话记忆写入权失败 memoryId={} error={}", memoryId, e.getMessage());
+            return;
+        }
+        ownedIds.put(memoryId, System.currentTimeMillis());
+        if (previous != null && !ownerToken.equals(previous)) {
+            MemoryEntry entry = localCache.getIfPresent(memoryId);
+            if (entry != null && !entry.isDirty()) {
+                localCache.asMap().remove(memoryId, entry);
+            }
+            log.info("对话记忆写入权已转移到本节点 memoryId={}", memoryId);
+        }
+    }
+
+    /**
+     * 为本地仍持有的会话续期写入权，每个会话每三分之一有效期续期一次；续期失败说明写入权已转移，停止续期
+     */
+    private void renewOwnership() {
+        long now = System.currentTimeMillis();
+        long ownerTtlMillis = TimeUnit.SECONDS.toMillis(chatMemoryStoreConfig.getOwnerTtlSeconds());
+        for (Map.Entry<Object, Long> owned : ownedIds.entrySet()) {
+            Object memoryId = owned.getKey();
+            if (now - owned.getValue() < ownerTtlMillis / 3) {
+                continue;
+            }
+            // containsKey 不刷新访问时间，续期不会让本地副本常驻
+            if (!localCache.asMap().containsKey(memoryId) && !evictedDirty.containsKey(memoryId)) {
+                ownedIds.remove(memoryId);
+                continue;
+            }
+            try {
+                Long renewed = stringRedisTemplate.execute(renewScript, List.of(key(memoryId, "owner")), ownerToken,
+                        String.valueOf(ownerTtlMillis));
+                if (renewed != null && renewed == 1) {
+                    ownedIds.replace(memoryId, owned.getValue(), now);
+                } else {
+                    ownedIds.remove(memoryId);
+                    log.info("对话记忆写入权已不属于本节点，停止续期 memoryId={}", memoryId);
+                }
+            } catch (Exception e) {
+                log.warn("续期对话记忆写入权失败 memoryId={} error={}", memoryId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 写入权已过期时显式重新取得（仅在无人持有时成功）
+     */
+    private boolean reacquire(Object memoryId) {
+        Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(key(memoryId, "owner"), ownerToken,
+                Duration.ofSeconds(chatMemoryStoreConfig.getOwnerTtlSeconds()));
+        if (Boolean.TRUE.equals(acquired)) {
+            ownedIds.put(memoryId, System.currentTimeMillis());
+            log.info("对话记忆写入权已过期，本节点重新取得 memoryId={}", memoryId);
+            return true;
+        }
+        return false;
+    }
+
+    private MemoryEntry load(Object memoryId) {
+        MemoryEntry evicted = evictedDirty.remove(memoryId);
+        if (evicted != null) {
+            // 淘汰后尚未写回的副本比 Redis 新，直接取回
+            return evicted;
+        }
+        String system = stringRedisTemplate.opsForValue().get(key(memoryId, "system"));
+        String watermark = stringRedisTemplate.opsForValue().get(key(memoryId, "watermark"));
+        List<String> json = stringRedisTemplate.opsForList().range(key(memoryId, "messages"), 0, -1);
+        if (json == null) {
+            json = Collections.emptyList();
+        }
+        if (system == null && json.isEmpty()) {
+            // 兼容旧存储：读出整表后标记为待写回，迁移到增量格式
+            List<ChatMessage> legacy = loadLegacy(memoryId);
+            if (!legacy.isEmpty()) {
+                MemoryEntry entry = new MemoryEntry(Collections.emptyList(), null, Collections.emptyList(), null);
+                entry.update(legacy);
+                dirtyIds.add(memoryId);
+                return entry;
+            }
+        }
+        List<ChatMessage> messages = new ArrayList<>(json.size() + 1);
+        if (system != null) {
+            messages.add(ChatMessageDeserializer.messageFromJson(system));
+        }
+        for (String item : json) {
+            messages.add(ChatMessageDeserializer.messageFromJson(item));
+        }
+        return new MemoryEntry(messages, system, json, watermark == null ? null : Long.valueOf(watermark));
+    }
+
+    private List<ChatMessage> loadLegacy(Object memoryId) {
+        try {
+            return redisChatMemoryStore.getMessages(memoryId);
+        } catch (Exception e) {
+            log.debug("读取旧格式对话记忆失败 memoryId={} error={}", memoryId, e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    private void flushDirty() {
+        int budget = chatMemoryStoreConfig.getFlushBatchSize();
+        Iterator<Object> iterator = dirtyIds.iterator();
+        while (iterator.hasNext() && budget-- > 0) {
+            Object memoryId = iterator.next();
+            iterator.remove();
+            MemoryEntry entry = localCache.getIfPresent(memoryId);
+            if (entry == null) {
+                entry = evictedDirty.get(memoryId);
+                if (entry == null) {
+                    continue;
+                }
+            }
+            if (!flushQuietly(memoryId, entry) || entry.isDirty()) {
+                dirtyIds.add(memoryId);
+            } else if (evictedDirty.remove(memoryId, entry)) {
+                ownedIds.remove(memoryId);
+            }
+        }
+    }
+
+    private boolean flushQuietly(Object memoryId, MemoryEntry entry) {
+        try {
+            flush(memoryId, entry);
+            return true;
+        } catch (Exception e) {
+            countFlush("error");
+            log.warn("对话记忆写回失败，稍后重试 memoryId={} error={}", memoryId, e.getMessage());
+            return false;
+        }
+    }
+
+    private void flush(Object memoryId, MemoryEntry entry) {
+        // 定时写回与淘汰写回可能同时发生，同一会话串行写回，避免重复追加
+        synchronized (entry.flushLock) {
+            doFlush(memoryId, entry);
+        }
+    }
+
+    private void doFlush(Object memoryId, MemoryEntry entry) {
+        MemoryEntry.Snapshot snapshot = entry.snapshot();
+        String system = null;
+        List<String> json = new ArrayList<>(snapshot.messages().size());
+        Map<ChatMessage, String> serialized = new IdentityHashMap<>();
+        for (ChatMessage message : snapshot.messages()) {
+            // 同一消息对象只序列化一次
+            String item = snapshot.serialized().get(message);
+            if (item == null) {
+                item = ChatMessageSerializer.messageToJson(message);
+            }
+            serialized.put(message, item);
+            if (message instanceof SystemMessage) {
+                system = item;
+            } else {
+                json.add(item);
+            }
+        }
+        MemoryDelta delta = MemoryDelta.between(snapshot.persistedJson(), json);
+        boolean systemChanged = !Objects.equals(system, snapshot.persistedSystem());
+        boolean watermarkChanged = !Objects.equals(snapshot.watermark(), snapshot.persistedWatermark());
+        if (delta.isEmpty() && !systemChanged && !watermarkChanged) {
+            entry.markPersisted(snapshot.version(), system, json, snapshot.watermark(), serialized);
+            return;
+        }
+        String systemOp = !systemChanged ? "0" : system == null ? "2" : "1";
+        String watermarkArg = !watermarkChanged ? WATERMARK_KEEP
+                : snapshot.watermark() == null ? WATERMARK_DELETE : String.valueOf(snapshot.watermark());
+        long result = execute(memoryId, delta.getTrimHead(), delta.getAppended(), systemOp, system, watermarkArg,
+                json.size());
+        if (result == RESULT_OWNER_EXPIRED) {
+            // 写入权过期期间可能有其他节点写过，重新取得后整表重写，不以本地记录的已写回状态为准
+            if (!reacquire(memoryId)) {
+                result = RESULT_NOT_OWNER;
+            } else {
+                countFlush("rewrite");
+                watermarkArg = snapshot.watermark() == null ? WATERMARK_DELETE : String.valueOf(snapshot.watermark());
+                result = execute(memoryId, -1, json, system == null ? "2" : "1", system, watermarkArg, json.size());
+            }
+        }
+        if (result == RESULT_LENGTH_MISMATCH) {
+            countFlush("rewrite");
+            log.info("Redis 中的对话记忆与本地不一致，整表重写 memoryId={}", memoryId);
+            watermarkArg = snapshot.watermark() == null ? WATERMARK_DELETE : String.valueOf(snapshot.watermark());
+            result = execute(memoryId, -1, json, system == null ? "2" : "1", system, watermarkArg, json.size());
+        }
+        if (result == RESULT_NOT_OWNER) {
+            countFlush("rejected");
+            log.warn("对话记忆写入权属于其他节点，丢弃本地更新 memoryId={}", memoryId);
+            localCache.asMap().remove(memoryId, entry);
+            evictedDirty.remove(memoryId, entry);
+            ownedIds.remove(memoryId);
+            return;
+        }
+        if (result < 0) {
+            throw new IllegalStateException("写回后长度仍不一致");
+        }
+        countFlush("success");
+        appendedCounter.increment(delta.getAppended().size());
+        trimmedCounter.increment(Math.max(delta.getTrimHead(), 0));
+        entry.markPersisted(snapshot.version(), system, json, snapshot.watermark(), serialized);
+    }
+
+    private long execute(Object memoryId, int trimHead, List<String> appended, String systemOp, String system,
+                         String watermark, int expectedLength) {
+        List<String> keys = List.of(key(memoryId, "owner"), key(memoryId, "messages"), key(memoryId, "system"),
+                key(memoryId, "watermark"));
+        List<Object> args = new ArrayList<>(appended.size() + 8);
+        args.add(ownerToken);
+        args.add(String.valueOf(TimeUnit.SECONDS.toMillis(chatMemoryStoreConfig.getOwnerTtlSeconds())));
+        args.add(String.valueOf(trimHead));
+        args.add(String.valueOf(chatMemoryStoreConfig.getTtlSeconds()));
+        args.add(systemOp);
+        args.add(system == null ? "" : system);
+        args.add(String.valueOf(expectedLength));
+        args.add(watermark);
+        args.addAll(appended);
+        Long result = stringRedisTemplate.execute(flushScript, keys, args.toArray());
+        return result == null ? RESULT_LENGTH_MISMATCH : result;
+    }
+
+    private String key(Object memoryId, String suffix) {
+        // 花括号保证同一会话的键落在同一个集群槽，便于脚本原子执行
+        return chatMemoryStoreConfig.getKeyPrefix() + "{" + memoryId + "}:" + suffix;
+    }
+
+    private void countFlush(String result) {
+        flushCounters.computeIfAbsent(result, k ->
+                Counter.builder("ai_chat_memory_flush_total")
+                        .description("对话记忆写回 Redis 次数")
+                        .tag("result", k)
+                        .register(meterRegistry)
+        ).increment();
+    }
+
+    /**
+     * 单个会话的本地记忆：当前消息与最近一次写回 Redis 的状态
+     */
+    private static final class MemoryEntry {
+
+        private final Object flushLock = new Object();
+
+        private List<ChatMessage> messages;
+
+        private long version;
+
+        private long persistedVersion;
+
+        private String persistedSystem;
+
+        private List<String> persistedJson;
+
+        private Long watermark;
+
+        private Long persistedWatermark;
+
+        /**
+         * 已写回消息对象到序列化结果的映射（按对象身份），避免重复序列化
+         */
+        private Map<ChatMessage, String> serialized = new IdentityHashMap<>();
+
+        private MemoryEntry(List<ChatMessage> messages, String persistedSystem, List<String> persistedJson,
+                            Long persistedWatermark) {
+            this.messages = new ArrayList<>(messages);
+            this.persistedSystem = persistedSystem;
+            this.persistedJson = persistedJson;
+            this.watermark = persistedWatermark;
+            this.persistedWatermark = persistedWatermark;
+        }
+
+        private synchronized List<ChatMessage> messages() {
+            return new ArrayList<>(messages);
+        }
+
+        private synchronized void update(List<ChatMessage> newMessages) {
+            messages = new ArrayList<>(newMessages);
+            version++;
+        }
+
+        private synchronized <R> R mutate(Function<List<ChatMessage>, R> mutator) {
+            R result = mutator.apply(messages);
+            version++;
+            return result;
+        }
+
+        private synchronized void clear() {
+            messages = new ArrayList<>();
+            watermark = null;
+            version++;
+        }
+
+        private synchronized Long watermark() {
+            return watermark;
+        }
+
+        private synchronized boolean advanceWatermark(long newWatermark) {
+            if (watermark != null && watermark >= newWatermark) {
+                return false;
+            }
+            watermark = newWatermark;
+            version++;
+            return true;
+        }
+
+        private synchronized boolean isDirty() {
+            return version != persistedVersion;
+        }
+
+        private synchronized Snapshot snapshot() {
+            return new Snapshot(new ArrayList<>(messages), version, persistedSystem, persistedJson, watermark,
+                    persistedWatermark, serialized);
+        }
+
+        private synchronized void markPersisted(long version, String system, List<String> json, Long watermark,
+                                                Map<ChatMessage, String> serialized) {
+            if (version < persistedVersion) {
+                return;
+            }
+            this.persistedVersion = version;
+            this.persistedSystem = system;
+            this.persistedJson = json;
+            this.persistedWatermark = watermark;
+            this.serialized = serialized;
+        }
+
+        private record Snapshot(List<ChatMessage> messages, long version, String persistedSystem,
+                                List<String> persistedJson, Long watermark, Long persistedWatermark,
+                                Map<ChatMessage, String> serialized) {
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.hachimi.mamboaiplatform.ai.model.message;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * 文件写入完成消息（代码块结束并落盘后发出，前端可据此提前刷新预览）
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public class FileClosedMessage extends StreamMessage {
+
+    /**
+     * 文件名（相对生成目录）
+     */
+    private String fileName;
+
+    /**
+     * 文件大小（字节）
+     */
+    private long size;
+
+    public FileClosedMessage(String fileName, long size) {
+        super(StreamMessageTypeEnum.FILE_CLOSED.getValue());
+        this.fileName = fileName;
+        this.size = size;
+    }
+}
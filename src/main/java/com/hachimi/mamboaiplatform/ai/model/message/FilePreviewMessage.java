@@ -0,0 +1,30 @@
+package com.hachimi.mamboaiplatform.ai.model.message;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * 文件内容预览消息（writeFile 参数流式解码出的内容增量）
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public class FilePreviewMessage extends StreamMessage {
+
+    /**
+     * 文件相对路径
+     */
+    private String fileName;
+
+    /**
+     * 新增内容
+     */
+    private String delta;
+
+    public FilePreviewMessage(String fileName, String delta) {
+        super(StreamMessageTypeEnum.FILE_PREVIEW.getValue());
+        this.fileName = fileName;
+        this.delta = delta;
+    }
+}
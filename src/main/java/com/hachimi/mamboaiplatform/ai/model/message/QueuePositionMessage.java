@@ -0,0 +1,30 @@
+package com.hachimi.mamboaiplatform.ai.model.message;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * 排队位置消息（生成请求等待准入期间发出）
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public class QueuePositionMessage extends StreamMessage {
+
+    /**
+     * 当前排在第几位，从 1 开始
+     */
+    private int position;
+
+    /**
+     * 该模型当前排队总数
+     */
+    private int queued;
+
+    public QueuePositionMessage(int position, int queued) {
+        super(StreamMessageTypeEnum.QUEUE_POSITION.getValue());
+        this.position = position;
+        this.queued = queued;
+    }
+}
@@ -10,7 +10,10 @@ public enum StreamMessageTypeEnum {
 
     AI_RESPONSE("ai_response", "AI响应"),
     TOOL_REQUEST("tool_request", "工具请求"),
-    TOOL_EXECUTED("tool_executed", "工具执行结果");
+    TOOL_EXECUTED("tool_executed", "工具执行结果"),
+    FILE_CLOSED("file_closed", "文件写入完成"),
+    FILE_PREVIEW("file_preview", "文件内容预览"),
+    QUEUE_POSITION("queue_position", "排队位置");
 
     private final String value;
     private final String text;
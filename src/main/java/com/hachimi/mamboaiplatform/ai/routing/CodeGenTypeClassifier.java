@@ -0,0 +1,221 @@
+package com.hachimi.mamboaiplatform.ai.routing;
+
+import com.hachimi.mamboaiplatform.model.enums.CodeGenTypeEnum;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 本地代码生成类型分类器（多项式朴素贝叶斯）
+ * 特征为英文单词与中文/字母数字的 2、3 字符片段，训练样本来自历史应用的初始提示词与生成类型，
+ * 另外内置少量关键词样本，保证没有历史数据时也能识别明显的需求。
+ * 实例不可变，重新训练时整体替换。
+ */
+public final class CodeGenTypeClassifier {
+
+    /**
+     * 内置关键词样本的权重（相当于多少条历史样本）
+     */
+    private static final double SEED_WEIGHT = 3.0;
+
+    private static final Map<CodeGenTypeEnum, List<String>> SEED_KEYWORDS = Map.of(
+            CodeGenTypeEnum.HTML, List.of("单页", "一个页面", "单个页面", "单个html", "落地页", "着陆页", "展示页",
+                    "简单页面", "静态页面", "个人主页", "个人名片", "活动海报", "倒计时", "简历"),
+            CodeGenTypeEnum.MULTI_FILE, List.of("多文件", "分离css", "分离js", "css文件", "js文件",
+                    "企业官网", "公司官网", "几个页面", "多个静态页面", "官网首页"),
+            CodeGenTypeEnum.VUE_PROJECT, List.of("vue", "前端工程", "后台管理", "管理系统", "登录注册", "购物车", "商城",
+                    "数据管理", "状态管理", "路由", "组件化", "增删改查", "crud", "dashboard", "仪表盘", "用户管理",
+                    "复杂交互", "博客系统")
+    );
+
+    private final Map<CodeGenTypeEnum, Map<String, Double>> featureCounts;
+
+    private final Map<CodeGenTypeEnum, Double> totalFeatureCounts;
+
+    private final Map<CodeGenTypeEnum, Double> classWeights;
+
+    private final double totalWeight;
+
+    private final int vocabularySize;
+
+    private final int sampleCount;
+
+    private CodeGenTypeClassifier(Map<CodeGenTypeEnum, Map<String, Double>> featureCounts,
+                                  Map<CodeGenTypeEnum, Double> classWeights, int sampleCount) {
+        this.featureCounts = featureCounts;
+        this.classWeights = classWeights;
+        this.sampleCount = sampleCount;
+        this.totalFeatureCounts = new EnumMap<>(CodeGenTypeEnum.class);
+        Set<String> vocabulary = new HashSet<>();
+        for (Map.Entry<CodeGenTypeEnum, Map<String, Double>> entry : featureCounts.entrySet()) {
+            totalFeatureCounts.put(entry.getKey(),
+                    entry.getValue().values().stream().mapToDouble(Double::doubleValue).sum());
+            vocabulary.addAll(entry.getValue().keySet());
+        }
+        this.vocabularySize = Math.max(1, vocabulary.size());
+        this.totalWeight = classWeights.values().stream().mapToDouble(Double::doubleValue).sum();
+    }
+
+    /**
+     * 训练样本
+     *
+     * @param prompt 初始提示词
+     * @param type   生成类型
+     */
+    public record Sample(String prompt, CodeGenTypeEnum type) {
+    }
+
+    /**
+     * 分类结果
+     *
+     * @param type            概率最高的类型
+     * @param probability     该类型的后验概率
+     * @param matchedFeatures 提示词中在训练词表里出现过的特征数
+     */
+    public record Prediction(CodeGenTypeEnum type, double probability, int matchedFeatures) {
+
+        /**
+         * 是否足够确定，可以不再询问模型
+         */
+        public boolean isConfident(double minProbability, int minMatchedFeatures) {
+            return type != null && probability >= minProbability && matchedFeatures >= minMatchedFeatures;
+        }
+    }
+
+    /**
+     * 训练分类器（内置关键词样本 + 历史样本）
+     *
+     * @param samples 历史样本
+     * @return 分类器
+     */
+    public static CodeGenTypeClassifier train(Collection<Sample> samples) {
+        Map<CodeGenTypeEnum, Map<String, Double>> featureCounts = new EnumMap<>(CodeGenTypeEnum.class);
+        Map<CodeGenTypeEnum, Double> classWeights = new EnumMap<>(CodeGenTypeEnum.class);
+        for (CodeGenTypeEnum type : CodeGenTypeEnum.values()) {
+            featureCounts.put(type, new HashMap<>());
+            classWeights.put(type, 0.0);
+        }
+        // 内置关键词只贡献特征，不影响类别先验
+        SEED_KEYWORDS.forEach((type, keywords) -> keywords.forEach(keyword ->
+                addFeatures(featureCounts.get(type), features(normalize(keyword)), SEED_WEIGHT)));
+        int sampleCount = 0;
+        for (Sample sample : samples) {
+            if (sample.type() == null || sample.prompt() == null || sample.prompt().isBlank()) {
+                continue;
+            }
+            addFeatures(featureCounts.get(sample.type()), features(normalize(sample.prompt())), 1.0);
+            classWeights.merge(sample.type(), 1.0, Double::sum);
+            sampleCount++;
+        }
+        return new CodeGenTypeClassifier(featureCounts, classWeights, sampleCount);
+    }
+
+    /**
+     * 预测生成类型
+     *
+     * @param prompt 初始提示词
+     * @return 分类结果
+     */
+    public Prediction predict(String prompt) {
+        // 训练词表之外的特征不携带类别信息，只会偏向特征总数较少的类别，直接忽略
+        List<String> features = features(normalize(prompt)).stream()
+                .filter(feature -> featureCounts.values().stream().anyMatch(counts -> counts.containsKey(feature)))
+                .toList();
+        int matched = new HashSet<>(features).size();
+        CodeGenTypeEnum[] types = CodeGenTypeEnum.values();
+        double[] logScores = new double[types.length];
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < types.length; i++) {
+            CodeGenTypeEnum type = types[i];
+            // 类别先验做加一平滑，没有历史样本时为均匀先验
+            double score = Math.log((classWeights.get(type) + 1) / (totalWeight + types.length));
+            Map<String, Double> counts = featureCounts.get(type);
+            double denominator = totalFeatureCounts.get(type) + vocabularySize;
+            for (String feature : features) {
+                score += Math.log((counts.getOrDefault(feature, 0.0) + 1) / denominator);
+            }
+            logScores[i] = score;
+            max = Math.max(max, score);
+        }
+        double sum = 0;
+        int best = 0;
+        for (int i = 0; i < types.length; i++) {
+            logScores[i] = Math.exp(logScores[i] - max);
+            sum += logScores[i];
+            if (logScores[i] > logScores[best]) {
+                best = i;
+            }
+        }
+        return new Prediction(types[best], logScores[best] / sum, matched);
+    }
+
+    /**
+     * 参与训练的历史样本数
+     */
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * 归一化提示词：全角转半角、小写、合并空白，用于特征提取与缓存键
+     */
+    public static String normalize(String prompt) {
+        if (prompt == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(prompt, Normalizer.Form.NFKC).toLowerCase();
+        return normalized.replaceAll("\\s+", " ").strip();
+    }
+
+    /**
+     * 提取特征：英文单词 + 每段连续中文的 2、3 字符片段
+     */
+    static List<String> features(String normalized) {
+        List<String> features = new ArrayList<>();
+        StringBuilder segment = new StringBuilder();
+        for (int i = 0; i <= normalized.length(); i++) {
+            char c = i < normalized.length() ? normalized.charAt(i) : ' ';
+            boolean wordChar = Character.isLetterOrDigit(c);
+            // 英文与中文之间也断开，"vue项目" 中的 vue 作为单独的单词
+            if (!segment.isEmpty() && (!wordChar || isAscii(c) != isAscii(segment.charAt(0)))) {
+                addSegmentFeatures(segment.toString(), features);
+                segment.setLength(0);
+            }
+            if (wordChar) {
+                segment.append(c);
+            }
+        }
+        return features;
+    }
+
+    private static void addSegmentFeatures(String segment, List<String> features) {
+        if (isAscii(segment.charAt(0))) {
+            if (segment.length() > 1) {
+                features.add("w:" + segment);
+            }
+            return;
+        }
+        for (int n = 2; n <= 3; n++) {
+            for (int i = 0; i + n <= segment.length(); i++) {
+                features.add(segment.substring(i, i + n));
+            }
+        }
+    }
+
+    private static boolean isAscii(char c) {
+        return c < 128;
+    }
+
+    private static void addFeatures(Map<String, Double> counts, List<String> features, double weight) {
+        for (String feature : features) {
+            counts.merge(feature, weight, Double::sum);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.hachimi.mamboaiplatform.ai.routing;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hachimi.mamboaiplatform.ai.AiCodeGenTypeRoutingService;
+import com.hachimi.mamboaiplatform.config.CodeGenRoutingConfig;
+import com.hachimi.mamboaiplatform.mapper.AppMapper;
+import com.hachimi.mamboaiplatform.model.entity.App;
+import com.hachimi.mamboaiplatform.model.enums.CodeGenTypeEnum;
+import com.mybatisflex.core.query.QueryWrapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 代码生成类型路由
+ * 1. 按归一化提示词的哈希缓存决策；
+ * 2. 本地分类器（由历史应用的初始提示词与生成类型训练）足够确定时直接返回；
+ * 3. 只有不确定的提示词才询问路由模型，模型失败时使用本地分类结果兜底。
+ */
+@Slf4j
+@Component
+public class CodeGenTypeRouter {
+
+    @Resource
+    private CodeGenRoutingConfig codeGenRoutingConfig;
+
+    @Resource
+    private AiCodeGenTypeRoutingService aiCodeGenTypeRoutingService;
+
+    @Resource
+    private AppMapper appMapper;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 当前使用的分类器，重新训练时整体替换
+     */
+    private volatile CodeGenTypeClassifier classifier = CodeGenTypeClassifier.train(List.of());
+
+    private Cache<String, CodeGenTypeEnum> decisionCache;
+
+    private final ConcurrentMap<String, Counter> countersCache = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        decisionCache = Caffeine.newBuilder()
+                .maximumSize(codeGenRoutingConfig.getCacheMaxEntries())
+                .expireAfterWrite(Duration.ofHours(codeGenRoutingConfig.getCacheExpireHours()))
+                .build();
+    }
+
+    /**
+     * 启动后在后台训练，不阻塞启动
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void trainOnStartup() {
+        Schedulers.boundedElastic().schedule(this::retrain);
+    }
+
+    /**
+     * 每小时用最新的历史应用重新训练
+     */
+    @Scheduled(cron = "0 0 * * * ?")
+    public void retrain() {
+        try {
+            List<App> apps = appMapper.selectListByQuery(QueryWrapper.create()
+                    .select(App::getInitPrompt, App::getCodeGenType)
+                    .isNotNull(App::getInitPrompt)
+                    .isNotNull(App::getCodeGenType)
+                    .orderBy(App::getId, false)
+                    .limit(codeGenRoutingConfig.getTrainingSampleSize()));
+            List<CodeGenTypeClassifier.Sample> samples = apps.stream()
+                    .map(app -> new CodeGenTypeClassifier.Sample(app.getInitPrompt(),
+                            CodeGenTypeEnum.getEnumByValue(app.getCodeGenType())))
+                    .filter(sample -> sample.type() != null)
+                    .toList();
+            classifier = CodeGenTypeClassifier.train(samples);
+            log.info("代码生成类型分类器训练完成，历史样本数: {}", samples.size());
+        } catch (Exception e) {
+            log.warn("代码生成类型分类器训练失败，继续使用当前分类器: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 选择代码生成类型
+     *
+     * @param prompt 初始提示词
+     * @return 生成类型
+     */
+    public CodeGenTypeEnum route(String prompt) {
+        String cacheKey = DigestUtil.sha256Hex(CodeGenTypeClassifier.normalize(prompt));
+        CodeGenTypeEnum cached = decisionCache.getIfPresent(cacheKey);
+        if (cached != null) {
+            count("cache");
+            return cached;
+        }
+        CodeGenTypeClassifier.Prediction prediction = classifier.predict(prompt);
+        if (codeGenRoutingConfig.isLocalEnabled() && prediction.isConfident(
+                codeGenRoutingConfig.getMinProbability(), codeGenRoutingConfig.getMinMatchedFeatures())) {
+            log.info("本地路由选择类型: {}，概率: {}", prediction.type().getValue(), prediction.probability());
+            decisionCache.put(cacheKey, prediction.type());
+            count("local");
+            return prediction.type();
+        }
+        try {
+            CodeGenTypeEnum selected = Objects.requireNonNull(aiCodeGenTypeRoutingService.getCodeGenType(prompt),
+                    "路由模型未返回类型");
+            decisionCache.put(cacheKey, selected);
+            count("llm");
+            return selected;
+        } catch (Exception e) {
+            // 兜底结果不缓存，下次仍会询问模型
+            CodeGenTypeEnum fallback = prediction.matchedFeatures() > 0 ? prediction.type() : CodeGenTypeEnum.HTML;
+            log.warn("路由模型调用失败，使用本地分类结果 {}: {}", fallback.getValue(), e.getMessage());
+            count("fallback");
+            return fallback;
+        }
+    }
+
+    private void count(String source) {
+        countersCache.computeIfAbsent(source, k ->
+                Counter.builder("ai_codegen_routing_total")
+                        .description("代码生成类型路由决策次数（按决策来源）")
+                        .tag("source", k)
+                        .register(meterRegistry)
+        ).increment();
+    }
+}
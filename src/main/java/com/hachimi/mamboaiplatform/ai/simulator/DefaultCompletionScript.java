@@ -0,0 +1,22 @@
+package com.hachimi.mamboaiplatform.ai.simulator;
+
+import com.hachimi.mamboaiplatform.config.OpenAiSimulatorConfig.CompletionReply;
+
+import java.util.List;
+
+/**
+ * 内置的非流式脚本回复：按系统提示词识别工作流中的结构化输出服务，返回能解析且让流程继续的最小 JSON
+ * （不收集图片、质检通过、不做修改）
+ */
+final class DefaultCompletionScript {
+
+    static final List<CompletionReply> REPLIES = List.of(
+            new CompletionReply("图片收集规划师",
+                    "{\"contentImageTasks\":[],\"illustrationTasks\":[],\"diagramTasks\":[],\"logoTasks\":[]}"),
+            new CompletionReply("代码质量检查专家",
+                    "{\"isValid\":true,\"errors\":[],\"suggestions\":[],\"failedFiles\":[]}"),
+            new CompletionReply("代码修复专家", "{\"edits\":[]}"));
+
+    private DefaultCompletionScript() {
+    }
+}
@@ -0,0 +1,105 @@
+package com.hachimi.mamboaiplatform.ai.simulator;
+
+import cn.hutool.json.JSONUtil;
+import com.hachimi.mamboaiplatform.config.OpenAiSimulatorConfig.ToolCallStep;
+
+import java.util.List;
+
+/**
+ * 内置的 Vue 工程工具调用脚本：写入一个可构建的最小 Vite + Vue 工程，读取目录、修改文件后退出，
+ * 覆盖 writeFile、readDir、modifyFile、exit 四种工具
+ */
+final class DefaultToolScript {
+
+    static final List<ToolCallStep> STEPS = List.of(
+            writeFile("package.json", """
+                    {
+                      "name": "simulated-app",
+                      "private": true,
+                      "version": "0.0.0",
+                      "type": "module",
+                      "scripts": {
+                        "dev": "vite",
+                        "build": "vite build"
+                      },
+                      "dependencies": {
+                        "vue": "^3.4.0"
+                      },
+                      "devDependencies": {
+                        "@vitejs/plugin-vue": "^5.0.0",
+                        "vite": "^5.0.0"
+                      }
+                    }
+                    """),
+            writeFile("vite.config.js", """
+                    import { defineConfig } from 'vite'
+                    import vue from '@vitejs/plugin-vue'
+
+                    export default defineConfig({
+                      base: './',
+                      plugins: [vue()]
+                    })
+                    """),
+            writeFile("index.html", """
+                    <!DOCTYPE html>
+                    <html lang="zh-CN">
+                    <head>
+                      <meta charset="UTF-8">
+                      <meta name="viewport" content="width=device-width, initial-scale=1.0">
+                      <title>模拟生成工程</title>
+                    </head>
+                    <body>
+                      <div id="app"></div>
+                      <script type="module" src="/src/main.js"></script>
+                    </body>
+                    </html>
+                    """),
+            writeFile("src/main.js", """
+                    import { createApp } from 'vue'
+                    import App from './App.vue'
+
+                    createApp(App).mount('#app')
+                    """),
+            writeFile("src/App.vue", """
+                    <template>
+                      <main class="card">
+                        <h1>模拟生成工程</h1>
+                        <button @click="count++">点击次数：{{ count }}</button>
+                      </main>
+                    </template>
+
+                    <script setup>
+                    import { ref } from 'vue'
+
+                    const count = ref(0)
+                    </script>
+
+                    <style scoped>
+                    .card {
+                      padding: 32px;
+                      font-family: sans-serif;
+                    }
+                    </style>
+                    """),
+            step("readDir", JSONUtil.createObj().set("relativeDirPath", "").toString()),
+            step("modifyFile", JSONUtil.createObj()
+                    .set("relativeFilePath", "src/App.vue")
+                    .set("oldContent", "<h1>模拟生成工程</h1>")
+                    .set("newContent", "<h1>模拟生成工程（已修改）</h1>")
+                    .toString()),
+            step("exit", "{}"));
+
+    private DefaultToolScript() {
+    }
+
+    private static ToolCallStep writeFile(String relativeFilePath, String content) {
+        return step("writeFile", JSONUtil.createObj()
+                .set("relativeFilePath", relativeFilePath)
+                .set("content", content)
+                .toString());
+    }
+
+    private static ToolCallStep step(String name, String arguments) {
+        return new ToolCallStep(name, arguments);
+    }
+}
@@ -0,0 +1,39 @@
+package com.hachimi.mamboaiplatform.ai.simulator;
+
+import com.hachimi.mamboaiplatform.config.OpenAiSimulatorConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * 随应用启动 OpenAI 兼容模拟服务（ai.simulator.enabled=true，一般通过 simulator profile 开启）
+ * 模型在首次请求时才建立连接，服务在应用上下文初始化阶段启动即可
+ */
+@Component
+@ConditionalOnProperty(prefix = "ai.simulator", name = "enabled", havingValue = "true")
+public class OpenAiSimulatorLauncher {
+
+    @Resource
+    private OpenAiSimulatorConfig openAiSimulatorConfig;
+
+    private OpenAiStreamingSimulator simulator;
+
+    @PostConstruct
+    public void start() throws IOException {
+        simulator = new OpenAiStreamingSimulator(openAiSimulatorConfig);
+        simulator.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        simulator.stop();
+    }
+
+    public OpenAiStreamingSimulator getSimulator() {
+        return simulator;
+    }
+}
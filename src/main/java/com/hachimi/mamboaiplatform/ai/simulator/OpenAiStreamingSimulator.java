@@ -0,0 +1,483 @@
+package com.hachimi.mamboaiplatform.ai.simulator;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.hachimi.mamboaiplatform.config.OpenAiSimulatorConfig;
+import com.hachimi.mamboaiplatform.config.OpenAiSimulatorConfig.CompletionReply;
+import com.hachimi.mamboaiplatform.config.OpenAiSimulatorConfig.ToolCallStep;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * OpenAI 兼容的流式模拟服务（chat/completions SSE 协议），用于离线压测生成链路
+ * 1. 按配置的首 token 延迟与输出速度分块输出，支持按概率注入错误状态码或在流中途断开；
+ * 2. 请求携带工具时按脚本逐轮返回工具调用（每轮一个），轮次由最后一条用户消息之后的助手消息数决定，
+ * 因此服务本身无状态，多个会话可以并发压测；脚本执行完后返回最终文本；
+ * 3. 非流式请求依次按脚本回复（配置的脚本优先，内置脚本覆盖工作流的结构化输出服务）、
+ * 按 response_format 的 JSON Schema 生成示例、要求 JSON 时返回空对象，否则返回固定内容（默认满足生成类型路由）。
+ * 每个请求大部分时间在按速率休眠，使用虚拟线程处理，并发数只受内存限制。
+ * 可嵌入应用（ai.simulator.enabled）或通过 main 方法单独启动。
+ */
+@Slf4j
+public class OpenAiStreamingSimulator {
+
+    private static final String DEFAULT_RESPONSE_TEXT = """
+            好的，下面是生成的页面代码。
+
+            ```html
+            <!DOCTYPE html>
+            <html lang="zh-CN">
+            <head>
+                <meta charset="UTF-8">
+                <meta name="viewport" content="width=device-width, initial-scale=1.0">
+                <title>模拟生成页面</title>
+                <link rel="stylesheet" href="style.css">
+            </head>
+            <body>
+                <main class="card">
+                    <h1>模拟生成页面</h1>
+                    <p>这段内容由 OpenAI 兼容模拟服务生成，用于压测代码生成链路。</p>
+                    <button id="action">点我</button>
+                </main>
+                <script src="script.js"></script>
+            </body>
+            </html>
+            ```
+
+            ```css
+            body { margin: 0; min-height: 100vh; display: flex; align-items: center; justify-content: center;
+                   font-family: sans-serif; background: #f5f7fa; }
+            .card { padding: 32px; border-radius: 12px; background: #fff; box-shadow: 0 4px 16px rgba(0, 0, 0, .08); }
+            ```
+
+            ```js
+            document.getElementById('action').addEventListener('click', () => alert('你好！'));
+            ```
+            """;
+
+    private static final String TOOL_SCRIPT_FINAL_TEXT = "Vue 项目已生成完成，可以在预览中查看效果。";
+
+    private final OpenAiSimulatorConfig config;
+
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    public OpenAiStreamingSimulator(OpenAiSimulatorConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * 单独启动：java ... OpenAiStreamingSimulator [端口]
+     */
+    public static void main(String[] args) throws IOException {
+        OpenAiSimulatorConfig config = new OpenAiSimulatorConfig();
+        if (args.length > 0) {
+            config.setPort(Integer.parseInt(args[0]));
+        }
+        new OpenAiStreamingSimulator(config).start();
+    }
+
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+        server = HttpServer.create(new InetSocketAddress(config.getPort()), 0);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/v1/chat/completions", this::handleChatCompletions);
+        server.createContext("/v1/models", this::handleModels);
+        server.start();
+        log.info("OpenAI 兼容模拟服务已启动 baseUrl={} firstTokenDelayMs={} tokensPerSecond={} errorRate={}",
+                getBaseUrl(), config.getFirstTokenDelayMs(), config.getTokensPerSecond(), config.getErrorRate());
+    }
+
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(0);
+        executor.shutdownNow();
+        server = null;
+        log.info("OpenAI 兼容模拟服务已停止，共处理请求 {} 个", requestCount.get());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * 模型配置使用的 baseUrl
+     */
+    public String getBaseUrl() {
+        return "http://localhost:" + getPort() + "/v1";
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    private void handleModels(HttpExchange exchange) throws IOException {
+        JSONObject model = JSONUtil.createObj().set("id", "simulator").set("object", "model");
+        sendJson(exchange, 200, JSONUtil.createObj().set("object", "list").set("data", JSONUtil.createArray().set(model)));
+    }
+
+    private void handleChatCompletions(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        JSONObject request = JSONUtil.parseObj(body);
+        String model = request.getStr("model", "simulator");
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < config.getErrorRate()) {
+            JSONObject error = JSONUtil.createObj()
+                    .set("message", "simulated failure")
+                    .set("type", "server_error")
+                    .set("code", config.getErrorStatus());
+            sendJson(exchange, config.getErrorStatus(), JSONUtil.createObj().set("error", error));
+            return;
+        }
+        // 粗略估算输入 token，仅用于用量统计
+        int promptTokens = Math.max(1, body.length() / 4);
+        if (!request.getBool("stream", false)) {
+            sendCompletion(exchange, request, model, promptTokens);
+            return;
+        }
+        ToolCallStep toolCall = nextToolCall(request);
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        // 中途断开时不能正常关闭交换（那会补齐分块结束标记），直接抛出异常让服务端丢弃连接
+        OutputStream out = exchange.getResponseBody();
+        SseWriter writer = new SseWriter(out, "chatcmpl-" + IdUtil.fastSimpleUUID(), model);
+        sleep(config.getFirstTokenDelayMs());
+        int completionTokens;
+        String finishReason;
+        if (toolCall != null) {
+            completionTokens = streamToolCall(writer, toolCall);
+            finishReason = "tool_calls";
+        } else {
+            String text = StrUtil.blankToDefault(config.getResponseText(),
+                    hasTools(request) ? TOOL_SCRIPT_FINAL_TEXT : DEFAULT_RESPONSE_TEXT);
+            completionTokens = streamText(writer, text);
+            finishReason = "stop";
+        }
+        writer.write(writer.chunk(JSONUtil.createObj(), finishReason));
+        JSONObject streamOptions = request.getJSONObject("stream_options");
+        if (streamOptions != null && streamOptions.getBool("include_usage", false)) {
+            writer.write(writer.base().set("choices", JSONUtil.createArray())
+                    .set("usage", usage(promptTokens, completionTokens)).toString());
+        }
+        writer.write("[DONE]");
+        exchange.close();
+    }
+
+    private int streamText(SseWriter writer, String text) throws IOException {
+        List<String> tokens = split(text);
+        int failAt = failurePoint(tokens.size());
+        Pacer pacer = new Pacer();
+        for (int i = 0; i < tokens.size(); i++) {
+            if (i == failAt) {
+                throw new IOException("simulated mid-stream failure");
+            }
+            JSONObject delta = JSONUtil.createObj().set("content", tokens.get(i));
+            if (i == 0) {
+                delta.set("role", "assistant");
+            }
+            writer.write(writer.chunk(delta, null));
+            pacer.next();
+        }
+        return tokens.size();
+    }
+
+    private int streamToolCall(SseWriter writer, ToolCallStep toolCall) throws IOException {
+        JSONObject function = JSONUtil.createObj().set("name", toolCall.getName()).set("arguments", "");
+        JSONObject call = JSONUtil.createObj()
+                .set("index", 0)
+                .set("id", "call_" + IdUtil.fastSimpleUUID())
+                .set("type", "function")
+                .set("function", function);
+        writer.write(writer.chunk(JSONUtil.createObj()
+                .set("role", "assistant")
+                .set("tool_calls", JSONUtil.createArray().set(call)), null));
+        List<String> tokens = split(StrUtil.blankToDefault(toolCall.getArguments(), "{}"));
+        int failAt = failurePoint(tokens.size());
+        Pacer pacer = new Pacer();
+        for (int i = 0; i < tokens.size(); i++) {
+            if (i == failAt) {
+                throw new IOException("simulated mid-stream failure");
+            }
+            JSONObject argumentsDelta = JSONUtil.createObj()
+                    .set("index", 0)
+                    .set("function", JSONUtil.createObj().set("arguments", tokens.get(i)));
+            writer.write(writer.chunk(JSONUtil.createObj()
+                    .set("tool_calls", JSONUtil.createArray().set(argumentsDelta)), null));
+            pacer.next();
+        }
+        return tokens.size() + 1;
+    }
+
+    private void sendCompletion(HttpExchange exchange, JSONObject request, String model, int promptTokens)
+            throws IOException {
+        sleep(config.getFirstTokenDelayMs());
+        String text = completionText(request);
+        JSONObject message = JSONUtil.createObj().set("role", "assistant").set("content", text);
+        JSONObject choice = JSONUtil.createObj().set("index", 0).set("message", message).set("finish_reason", "stop");
+        JSONObject response = JSONUtil.createObj()
+                .set("id", "chatcmpl-" + IdUtil.fastSimpleUUID())
+                .set("object", "chat.completion")
+                .set("created", System.currentTimeMillis() / 1000)
+                .set("model", model)
+                .set("choices", JSONUtil.createArray().set(choice))
+                .set("usage", usage(promptTokens, split(text).size()));
+        sendJson(exchange, 200, response);
+    }
+
+    /**
+     * 非流式请求的回复内容
+     */
+    private String completionText(JSONObject request) {
+        String scripted = scriptedReply(request, config.getCompletionScript());
+        if (scripted != null) {
+            return scripted;
+        }
+        JSONObject responseFormat = request.getJSONObject("response_format");
+        String formatType = responseFormat == null ? null : responseFormat.getStr("type");
+        if ("json_schema".equals(formatType)) {
+            JSONObject jsonSchema = responseFormat.getJSONObject("json_schema");
+            JSONObject schema = jsonSchema == null ? null : jsonSchema.getJSONObject("schema");
+            if (schema != null && sample(schema, schema) instanceof JSONObject example) {
+                return example.toString();
+            }
+        }
+        scripted = scriptedReply(request, DefaultCompletionScript.REPLIES);
+        if (scripted != null) {
+            return scripted;
+        }
+        return "json_object".equals(formatType) || "json_schema".equals(formatType) ? "{}" : config.getCompletionText();
+    }
+
+    /**
+     * 第一个匹配请求消息的脚本回复
+     *
+     * @return 回复内容，没有匹配时为 null
+     */
+    private static String scriptedReply(JSONObject request, List<CompletionReply> replies) {
+        JSONArray messages = request.getJSONArray("messages");
+        if (messages == null || replies.isEmpty()) {
+            return null;
+        }
+        for (CompletionReply reply : replies) {
+            if (StrUtil.isEmpty(reply.getMatch())) {
+                continue;
+            }
+            for (int i = 0; i < messages.size(); i++) {
+                // 多段内容时取到的是 JSON 数组文本，同样包含原文
+                if (StrUtil.contains(messages.getJSONObject(i).getStr("content"), reply.getMatch())) {
+                    return StrUtil.nullToEmpty(reply.getText());
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 按 JSON Schema 生成满足结构的最小示例：对象填齐所有属性，数组为空，枚举取第一个值
+     *
+     * @param schema 当前节点
+     * @param root   根节点（解析 $ref）
+     */
+    private static Object sample(JSONObject schema, JSONObject root) {
+        String ref = schema.getStr("$ref");
+        if (ref != null && ref.startsWith("#/")) {
+            Object target = root.getByPath(ref.substring(2).replace('/', '.'));
+            return target instanceof JSONObject resolved ? sample(resolved, root) : null;
+        }
+        JSONArray anyOf = schema.getJSONArray("anyOf");
+        if (anyOf != null && !anyOf.isEmpty()) {
+            return sample(anyOf.getJSONObject(0), root);
+        }
+        JSONArray enumValues = schema.getJSONArray("enum");
+        if (enumValues != null && !enumValues.isEmpty()) {
+            return enumValues.get(0);
+        }
+        Object type = schema.get("type");
+        if (type instanceof JSONArray types) {
+            // 可空类型如 ["string", "null"]，取第一个非 null 类型
+            type = types.stream().filter(t -> !"null".equals(t)).findFirst().orElse("null");
+        }
+        return switch (String.valueOf(type)) {
+            case "object" -> {
+                JSONObject object = JSONUtil.createObj();
+                JSONObject properties = schema.getJSONObject("properties");
+                if (properties != null) {
+                    properties.forEach((name, property) -> object.set(name, property instanceof JSONObject child
+                            ? sample(child, root) : null));
+                }
+                yield object;
+            }
+            case "array" -> JSONUtil.createArray();
+            case "boolean" -> true;
+            case "integer", "number" -> 0;
+            case "string" -> "模拟";
+            default -> null;
+        };
+    }
+
+    /**
+     * 本轮应返回的工具调用：最后一条用户消息之后每有一条助手消息，说明脚本已推进一步
+     *
+     * @return 工具调用，请求未携带工具或脚本已执行完时为 null
+     */
+    private ToolCallStep nextToolCall(JSONObject request) {
+        if (!hasTools(request)) {
+            return null;
+        }
+        JSONArray messages = request.getJSONArray("messages");
+        int step = 0;
+        for (int i = 0; messages != null && i < messages.size(); i++) {
+            String role = messages.getJSONObject(i).getStr("role");
+            if ("user".equals(role)) {
+                step = 0;
+            } else if ("assistant".equals(role)) {
+                step++;
+            }
+        }
+        List<ToolCallStep> script = config.getToolScript().isEmpty() ? DefaultToolScript.STEPS : config.getToolScript();
+        return step < script.size() ? script.get(step) : null;
+    }
+
+    private static boolean hasTools(JSONObject request) {
+        JSONArray tools = request.getJSONArray("tools");
+        return tools != null && !tools.isEmpty();
+    }
+
+    /**
+     * 按字符数切分为 token（按码点切分，不拆开代理对）
+     */
+    private List<String> split(String text) {
+        int size = Math.max(1, config.getCharsPerToken());
+        int[] codePoints = text.codePoints().toArray();
+        List<String> tokens = new ArrayList<>(codePoints.length / size + 1);
+        for (int i = 0; i < codePoints.length; i += size) {
+            tokens.add(new String(codePoints, i, Math.min(size, codePoints.length - i)));
+        }
+        return tokens;
+    }
+
+    private int failurePoint(int tokenCount) {
+        if (tokenCount < 2 || ThreadLocalRandom.current().nextDouble() >= config.getMidStreamFailureRate()) {
+            return -1;
+        }
+        return tokenCount / 2;
+    }
+
+    private static JSONObject usage(int promptTokens, int completionTokens) {
+        return JSONUtil.createObj()
+                .set("prompt_tokens", promptTokens)
+                .set("completion_tokens", completionTokens)
+                .set("total_tokens", promptTokens + completionTokens);
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, JSONObject json) throws IOException {
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 按目标速率输出：按起始时间计算每个 token 的截止时间，避免休眠误差累积
+     */
+    private final class Pacer {
+
+        private final long startNanos = System.nanoTime();
+
+        private final long intervalNanos = config.getTokensPerSecond() > 0
+                ? (long) (TimeUnit.SECONDS.toNanos(1) / config.getTokensPerSecond())
+                : 0;
+
+        private long count;
+
+        void next() {
+            if (intervalNanos == 0) {
+                return;
+            }
+            count++;
+            long waitNanos = startNanos + count * intervalNanos - System.nanoTime();
+            if (waitNanos > 0) {
+                sleep(TimeUnit.NANOSECONDS.toMillis(waitNanos));
+            }
+        }
+    }
+
+    /**
+     * 单个响应的 SSE 输出
+     */
+    private static final class SseWriter {
+
+        private final OutputStream out;
+
+        private final String id;
+
+        private final String model;
+
+        private final long created = System.currentTimeMillis() / 1000;
+
+        SseWriter(OutputStream out, String id, String model) {
+            this.out = out;
+            this.id = id;
+            this.model = model;
+        }
+
+        JSONObject base() {
+            return JSONUtil.createObj()
+                    .set("id", id)
+                    .set("object", "chat.completion.chunk")
+                    .set("created", created)
+                    .set("model", model);
+        }
+
+        String chunk(JSONObject delta, String finishReason) {
+            JSONObject choice = JSONUtil.createObj().set("index", 0).set("delta", delta);
+            if (finishReason != null) {
+                choice.set("finish_reason", finishReason);
+            }
+            return base().set("choices", JSONUtil.createArray().set(choice)).toString();
+        }
+
+        void write(String data) throws IOException {
+            out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+    }
+}
@@ -3,13 +3,16 @@ package com.hachimi.mamboaiplatform.ai.tools;
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.json.JSONObject;
 import com.hachimi.mamboaiplatform.constant.AppConstant;
+import com.hachimi.mamboaiplatform.core.saver.LiveFileMaterializer;
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
 import dev.langchain4j.agent.tool.ToolMemoryId;
+import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -23,6 +26,9 @@ import java.nio.file.StandardOpenOption;
 @Component
 public class FileWriteTool extends BaseTool {
 
+    @Resource
+    private LiveFileMaterializer liveFileMaterializer;
+
     @Tool("写入文件到指定路径")
     public String writeFile(
             @P("文件的相对路径")
@@ -32,20 +38,19 @@ public class FileWriteTool extends BaseTool {
             @ToolMemoryId Long appId
     ) {
         try {
-            Path path = Paths.get(relativeFilePath);
-            if (!path.isAbsolute()) {
-                // 相对路径处理，创建基于 appId 的项目目录
-                String projectDirName = "vue_project_" + appId;
-                Path projectRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, projectDirName);
-                path = projectRoot.resolve(relativeFilePath);
-            }
+            Path path = resolvePath(relativeFilePath, appId);
             // 创建父目录（如果不存在）
             Path parentDir = path.getParent();
             if (parentDir != null) {
                 Files.createDirectories(parentDir);
             }
+            // 参数流式到达时内容已写入暂存文件，校验一致后直接重命名
+            if (liveFileMaterializer.commit(appId, relativeFilePath, path, content)) {
+                log.info("成功写入文件（暂存文件重命名）: {}", path.toAbsolutePath());
+                return "文件写入成功: " + relativeFilePath;
+            }
             // 写入文件内容
-            Files.write(path, content.getBytes(),
+            Files.write(path, content.getBytes(StandardCharsets.UTF_8),
                     StandardOpenOption.CREATE,
                     StandardOpenOption.TRUNCATE_EXISTING); // 覆盖写入
             log.info("成功写入文件: {}", path.toAbsolutePath());
@@ -58,6 +63,24 @@ public class FileWriteTool extends BaseTool {
         }
     }
 
+    /**
+     * 解析文件的实际路径：相对路径基于 appId 的项目目录
+     *
+     * @param relativeFilePath 文件路径
+     * @param appId            应用 ID
+     * @return 实际路径
+     */
+    public static Path resolvePath(String relativeFilePath, Long appId) {
+        Path path = Paths.get(relativeFilePath);
+        if (!path.isAbsolute()) {
+            // 相对路径处理，创建基于 appId 的项目目录
+            String projectDirName = "vue_project_" + appId;
+            Path projectRoot = Paths.get(AppConstant.CODE_OUTPUT_ROOT_DIR, projectDirName);
+            path = projectRoot.resolve(relativeFilePath);
+        }
+        return path;
+    }
+
     @Override
     public String getToolName() {
         return "writeFile";
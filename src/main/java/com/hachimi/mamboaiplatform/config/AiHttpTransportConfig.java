@@ -0,0 +1,27 @@
+package com.hachimi.mamboaiplatform.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 模型调用共享 HTTP 传输配置
+ * 所有多例模型（流式、推理、路由）按端点共享 HTTP 客户端、连接池与 TLS 会话。
+ * 空闲连接保活时间与连接池大小是 JVM 全局参数，通过 -Djdk.httpclient.keepalive.timeout、
+ * -Djdk.httpclient.connectionPoolSize 指定，未指定时使用 SharedHttpTransport 中的默认值。
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.http-transport")
+@Data
+public class AiHttpTransportConfig {
+
+    /**
+     * 是否优先使用 HTTP/2（同一连接多路复用多个流式请求），服务端不支持时自动降级为 HTTP/1.1
+     */
+    private boolean http2 = true;
+
+    /**
+     * 单个端点同时进行的请求数上限（含流式请求），达到上限时新请求直接拒绝
+     */
+    private int maxConcurrentRequestsPerEndpoint = 64;
+}
@@ -0,0 +1,52 @@
+package com.hachimi.mamboaiplatform.config;
+
+import com.hachimi.mamboaiplatform.model.enums.CodeGenTypeEnum;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 对话记忆 token 预算与后台压缩配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chat-memory.budget")
+@Data
+public class ChatMemoryBudgetConfig {
+
+    /**
+     * 未单独配置的生成类型使用的 token 预算
+     */
+    private int defaultTokens = 16000;
+
+    /**
+     * 按生成类型（CodeGenTypeEnum 的 value）配置的 token 预算
+     */
+    private Map<String, Integer> typeTokens = new HashMap<>();
+
+    /**
+     * 记忆超过预算的该比例时触发后台压缩
+     */
+    private double compactThresholdRatio = 0.75;
+
+    /**
+     * 压缩后的目标占比（摘要 + 保留的近期对话）
+     */
+    private double compactTargetRatio = 0.5;
+
+    /**
+     * 消息条数上限（与 token 预算同时生效）
+     */
+    private int maxMessages = 100;
+
+    /**
+     * 单条摘要的最大字符数，超出时保留较新的内容
+     */
+    private int summaryMaxChars = 2000;
+
+    public int budgetOf(CodeGenTypeEnum codeGenType) {
+        return typeTokens.getOrDefault(codeGenType.getValue(), defaultTokens);
+    }
+}
@@ -0,0 +1,54 @@
+package com.hachimi.mamboaiplatform.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 对话记忆两级存储（本地 Caffeine + Redis 增量写回）配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "chat-memory.store")
+@Data
+public class ChatMemoryStoreConfig {
+
+    /**
+     * 是否启用两级写回存储，关闭时回退为整表覆盖写的 RedisChatMemoryStore
+     */
+    private boolean enabled = true;
+
+    /**
+     * Redis 键前缀
+     */
+    private String keyPrefix = "chat_memory:";
+
+    /**
+     * 本地缓存最多保留的会话数
+     */
+    private long localMaxEntries = 1000;
+
+    /**
+     * 本地缓存访问后过期时间（分钟）
+     */
+    private long localExpireMinutes = 30;
+
+    /**
+     * 批量写回间隔（毫秒），间隔内同一会话的多次更新合并为一次增量写
+     */
+    private long flushIntervalMs = 200;
+
+    /**
+     * 单次写回最多处理的会话数
+     */
+    private int flushBatchSize = 256;
+
+    /**
+     * Redis 中记忆的过期时间（秒），0 表示不过期
+     */
+    private long ttlSeconds = 3600;
+
+    /**
+     * 会话写入权（所有权令牌）的有效期（秒），每次写回时续期
+     */
+    private long ownerTtlSeconds = 1800;
+}
@@ -0,0 +1,39 @@
+package com.hachimi.mamboaiplatform.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 对话页预热配置：打开应用对话页时提前准备 AI 服务、对话记忆与模型连接
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.prewarm")
+@Data
+public class ChatPrewarmConfig {
+
+    /**
+     * 是否启用预热
+     */
+    private boolean enabled = true;
+
+    /**
+     * 预热线程数
+     */
+    private int poolSize = 2;
+
+    /**
+     * 预热任务队列容量，队列满时直接放弃预热
+     */
+    private int queueCapacity = 16;
+
+    /**
+     * 同一应用在该时间内只预热一次（分钟），不超过对话记忆缓存的访问过期时间
+     */
+    private long dedupMinutes = 5;
+
+    /**
+     * 系统平均负载与 CPU 核数之比超过该值时不预热，小于等于 0 表示不检查
+     */
+    private double maxLoadPerCpu = 0.8;
+}
@@ -0,0 +1,44 @@
+package com.hachimi.mamboaiplatform.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 代码生成类型路由配置：本地分类器 + 决策缓存，不确定时才询问模型
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.routing")
+@Data
+public class CodeGenRoutingConfig {
+
+    /**
+     * 是否启用本地分类器，关闭后除缓存命中外都询问模型
+     */
+    private boolean localEnabled = true;
+
+    /**
+     * 本地分类结果的最低后验概率
+     */
+    private double minProbability = 0.9;
+
+    /**
+     * 提示词中至少命中的特征数，过短或与历史无关的提示词交给模型判断
+     */
+    private int minMatchedFeatures = 3;
+
+    /**
+     * 训练使用的最近历史应用数
+     */
+    private int trainingSampleSize = 5000;
+
+    /**
+     * 决策缓存最大条目数
+     */
+    private long cacheMaxEntries = 10000;
+
+    /**
+     * 决策缓存过期时间（小时）
+     */
+    private long cacheExpireHours = 24;
+}
@@ -0,0 +1,61 @@
+package com.hachimi.mamboaiplatform.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 生成准入（排队调度）配置，作用于单个节点
+ */
+@Configuration
+@ConfigurationProperties(prefix = "generation.admission")
+@Data
+public class GenerationAdmissionConfig {
+
+    /**
+     * 是否启用准入调度，关闭后请求直接开始生成
+     */
+    private boolean enabled = true;
+
+    /**
+     * 未单独配置的模型的并发上限
+     */
+    private int defaultModelConcurrency = 8;
+
+    /**
+     * 按模型名配置的并发上限
+     */
+    private Map<String, Integer> modelConcurrency = new HashMap<>();
+
+    /**
+     * 单个用户同时进行的生成数上限（跨模型）
+     */
+    private int maxConcurrentPerUser = 2;
+
+    /**
+     * 单个模型的最大排队数，超出直接拒绝
+     */
+    private int maxQueueLength = 200;
+
+    /**
+     * 排队超时时间（秒）
+     */
+    private long queueTimeoutSeconds = 120;
+
+    /**
+     * VIP 用户在公平队列中的权重（普通用户为 1）
+     */
+    private int vipWeight = 2;
+
+    /**
+     * VIP 通道连续放行该数量的请求后，若普通通道有请求等待则放行一个，防止普通用户饿死
+     */
+    private int vipBurst = 3;
+
+    public int concurrencyOf(String modelName) {
+        return modelConcurrency.getOrDefault(modelName, defaultModelConcurrency);
+    }
+}
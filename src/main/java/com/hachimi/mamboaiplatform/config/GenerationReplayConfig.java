@@ -0,0 +1,59 @@
+package com.hachimi.mamboaiplatform.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 生成流断线续传（回放日志）配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "stream.replay")
+@Data
+public class GenerationReplayConfig {
+
+    /**
+     * 单个会话内存环形缓冲的最大事件数
+     */
+    private int ringCapacity = 1024;
+
+    /**
+     * 单个连接允许积压的最大事件数，慢客户端超出后断开连接，由浏览器携带 Last-Event-ID 重连续传
+     */
+    private int maxConnectionBufferedEvents = 512;
+
+    /**
+     * 是否写入 Redis Stream（跨节点续传）
+     */
+    private boolean redisEnabled = true;
+
+    /**
+     * Redis Stream 的近似最大长度
+     */
+    private long redisMaxLen = 4096;
+
+    /**
+     * Redis Stream 过期时间（分钟）
+     */
+    private long redisTtlMinutes = 30;
+
+    /**
+     * 生成结束后内存会话保留时间（秒），用于结束前后短暂断线的续传
+     */
+    private long retainSecondsAfterDone = 300;
+
+    /**
+     * 最后一个订阅者离开后，等待重连的宽限期（秒），期满取消上游生成
+     */
+    private long idleTeardownSeconds = 30;
+
+    /**
+     * 跨节点续传时轮询 Redis Stream 的间隔（毫秒）
+     */
+    private long tailPollMs = 300;
+
+    /**
+     * 跨节点续传时无新事件的最长等待（秒）
+     */
+    private long tailIdleTimeoutSeconds = 120;
+}
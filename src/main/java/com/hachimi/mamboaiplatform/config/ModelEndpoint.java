@@ -0,0 +1,30 @@
+package com.hachimi.mamboaiplatform.config;
+
+import lombok.Data;
+
+/**
+ * 模型的额外端点（其他服务地址或同一地址的其他 key）
+ */
+@Data
+public class ModelEndpoint {
+
+    /**
+     * 端点名称，用于指标标签，默认取服务地址的主机名
+     */
+    private String name;
+
+    /**
+     * 服务地址，为空时沿用主端点地址
+     */
+    private String baseUrl;
+
+    /**
+     * API key，为空时沿用主端点 key
+     */
+    private String apiKey;
+
+    /**
+     * 模型名，为空时沿用主端点模型名
+     */
+    private String modelName;
+}
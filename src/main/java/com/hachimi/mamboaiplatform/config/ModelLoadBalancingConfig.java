@@ -0,0 +1,75 @@
+package com.hachimi.mamboaiplatform.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 流式模型多端点负载均衡配置
+ * 各模型在自身配置的 endpoints 中声明额外的端点（或同一端点的其他 key），只有一个端点时不启用均衡
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.load-balancing")
+@Data
+public class ModelLoadBalancingConfig {
+
+    /**
+     * 是否启用多端点均衡
+     */
+    private boolean enabled = true;
+
+    /**
+     * 首 token 延迟与错误率的 EWMA 平滑系数
+     */
+    private double ewmaAlpha = 0.2;
+
+    /**
+     * 选择端点时错误率的惩罚系数：得分 = 首 token 延迟 EWMA * (1 + 惩罚系数 * 错误率)
+     */
+    private double errorPenalty = 4.0;
+
+    /**
+     * 是否在首 token 迟迟未到时向另一个端点发起对冲请求
+     */
+    private boolean hedgeEnabled = true;
+
+    /**
+     * 对冲等待时间 = 首 token 延迟 p95 * 该倍数
+     */
+    private double hedgeDelayMultiplier = 1.0;
+
+    /**
+     * 样本不足时的对冲等待时间（毫秒）
+     */
+    private long hedgeInitialDelayMs = 8000;
+
+    /**
+     * 对冲等待时间下限（毫秒）
+     */
+    private long hedgeMinDelayMs = 1000;
+
+    /**
+     * 对冲等待时间上限（毫秒）
+     */
+    private long hedgeMaxDelayMs = 15000;
+
+    /**
+     * 计算 p95 所需的最少样本数
+     */
+    private int hedgeMinSamples = 20;
+
+    /**
+     * 同时进行的对冲请求上限，避免整体变慢时请求量翻倍
+     */
+    private int maxConcurrentHedges = 8;
+
+    /**
+     * 连续失败该次数后熔断端点
+     */
+    private int failureThreshold = 5;
+
+    /**
+     * 熔断持续时间（秒），之后放行一个探测请求
+     */
+    private long openSeconds = 30;
+}
@@ -0,0 +1,128 @@
+package com.hachimi.mamboaiplatform.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * OpenAI 兼容模拟服务配置（离线压测用），启用 simulator profile 时模型地址指向该服务
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.simulator")
+@Data
+public class OpenAiSimulatorConfig {
+
+    /**
+     * 是否随应用启动模拟服务
+     */
+    private boolean enabled = false;
+
+    /**
+     * 监听端口，0 表示随机端口
+     */
+    private int port = 18080;
+
+    /**
+     * 首 token 延迟（毫秒）
+     */
+    private long firstTokenDelayMs = 800;
+
+    /**
+     * 输出速度（token/秒），小于等于 0 表示不限速
+     */
+    private double tokensPerSecond = 50;
+
+    /**
+     * 每个 token 的字符数
+     */
+    private int charsPerToken = 4;
+
+    /**
+     * 请求直接返回错误状态的概率（0~1）
+     */
+    private double errorRate = 0;
+
+    /**
+     * 注入错误时返回的 HTTP 状态码（如 500、429、503）
+     */
+    private int errorStatus = 500;
+
+    /**
+     * 流输出到一半时断开连接的概率（0~1）
+     */
+    private double midStreamFailureRate = 0;
+
+    /**
+     * 非流式请求返回的内容（默认满足代码生成类型路由），没有匹配的脚本回复且请求未要求 JSON 时使用
+     */
+    private String completionText = "HTML";
+
+    /**
+     * 非流式请求的脚本回复：请求消息包含 match 时返回对应内容，按顺序取第一个匹配，
+     * 优先于内置回复（图片收集规划、代码质检、代码修复）
+     */
+    private List<CompletionReply> completionScript = new ArrayList<>();
+
+    /**
+     * 没有工具或工具脚本执行完后流式返回的内容，为空时使用内置的 HTML/CSS/JS 示例
+     */
+    private String responseText;
+
+    /**
+     * 请求携带工具时按顺序返回的工具调用，每轮一个，为空时使用内置的 Vue 工程脚本
+     */
+    private List<ToolCallStep> toolScript = new ArrayList<>();
+
+    /**
+     * 非流式请求的一条脚本回复
+     */
+    @Data
+    public static class CompletionReply {
+
+        /**
+         * 请求消息（通常是系统提示词）中包含的文本
+         */
+        private String match;
+
+        /**
+         * 返回的内容
+         */
+        private String text;
+
+        public CompletionReply() {
+        }
+
+        public CompletionReply(String match, String text) {
+            this.match = match;
+            this.text = text;
+        }
+    }
+
+    /**
+     * 脚本中的一次工具调用
+     */
+    @Data
+    public static class ToolCallStep {
+
+        /**
+         * 工具名，如 writeFile、modifyFile、readDir、exit
+         */
+        private String name;
+
+        /**
+         * 工具参数（JSON）
+         */
+        private String arguments = "{}";
+
+        public ToolCallStep() {
+        }
+
+        public ToolCallStep(String name, String arguments) {
+            this.name = name;
+            this.arguments = arguments;
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.hachimi.mamboaiplatform.config;
 
 
+import com.hachimi.mamboaiplatform.ai.balancer.StreamingModelBalancer;
+import com.hachimi.mamboaiplatform.ai.http.SharedHttpTransport;
 import com.hachimi.mamboaiplatform.monitor.AiModelMonitorListener;
 import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
 import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
 import jakarta.annotation.Resource;
 import lombok.Data;
@@ -12,7 +15,10 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Scope;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Configuration
 @ConfigurationProperties( prefix = "langchain4j.open-ai.reasoning-stream-model")
@@ -35,9 +41,20 @@ public class ReasoningStreamingChatModelConfig {
 
     private double temperature;
 
+    /**
+     * 额外端点（其他服务地址或其他 key），配置后按延迟与错误率均衡并在首 token 超时时对冲
+     */
+    private List<ModelEndpoint> endpoints = new ArrayList<>();
+
     @Resource
     private AiModelMonitorListener aiModelMonitorListener;
 
+    @Resource
+    private SharedHttpTransport sharedHttpTransport;
+
+    @Resource
+    private StreamingModelBalancer streamingModelBalancer;
+
     /**
      * 流式推理模型
      * @return
@@ -45,16 +62,36 @@ public class ReasoningStreamingChatModelConfig {
     @Bean
     @Scope("prototype") // Use prototype scope to create a new instance each time
     public StreamingChatModel reasoningStreamingChatModelPrototype() {
+        List<ChatModelListener> listeners = List.of(aiModelMonitorListener);
+        // 多端点均衡时监听器挂在均衡模型上，一次调用只记录一次，对冲与重试请求不重复计入
+        List<ChatModelListener> endpointListeners = streamingModelBalancer.isBalanced(endpoints.size() + 1)
+                ? List.of() : listeners;
+        Map<String, StreamingChatModel> models = new LinkedHashMap<>();
+        models.put(SharedHttpTransport.endpointOf(baseUrl), buildModel(baseUrl, apiKey, modelName, endpointListeners));
+        for (ModelEndpoint endpoint : endpoints) {
+            String endpointBaseUrl = endpoint.getBaseUrl() != null ? endpoint.getBaseUrl() : baseUrl;
+            String name = endpoint.getName() != null ? endpoint.getName()
+                    : SharedHttpTransport.endpointOf(endpointBaseUrl) + "#" + models.size();
+            models.put(name, buildModel(endpointBaseUrl,
+                    endpoint.getApiKey() != null ? endpoint.getApiKey() : apiKey,
+                    endpoint.getModelName() != null ? endpoint.getModelName() : modelName, endpointListeners));
+        }
+        return streamingModelBalancer.balance(modelName, models, listeners);
+    }
+
+    private StreamingChatModel buildModel(String endpointBaseUrl, String endpointApiKey, String endpointModelName,
+                                          List<ChatModelListener> listeners) {
         return OpenAiStreamingChatModel.builder()
-                .baseUrl(baseUrl)
-                .apiKey(apiKey)
-                .modelName(modelName)
+                .baseUrl(endpointBaseUrl)
+                .apiKey(endpointApiKey)
+                .modelName(endpointModelName)
                 .maxTokens(maxTokens)
                 .logRequests(logRequests)
                 .logResponses(logResponses)
                 .timeout(timeout)
                 .temperature(temperature)
-                .listeners(List.of(aiModelMonitorListener))
+                .httpClientBuilder(sharedHttpTransport.builder(endpointBaseUrl))
+                .listeners(listeners)
                 .build();
     }
 }
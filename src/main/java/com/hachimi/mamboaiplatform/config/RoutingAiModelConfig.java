@@ -1,7 +1,9 @@
 package com.hachimi.mamboaiplatform.config;
 
+import com.hachimi.mamboaiplatform.ai.http.SharedHttpTransport;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.openai.OpenAiChatModel;
+import jakarta.annotation.Resource;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -29,6 +31,9 @@ public class RoutingAiModelConfig {
 
     private Integer maxRetries;
 
+    @Resource
+    private SharedHttpTransport sharedHttpTransport;
+
     /**
      * 创建用于路由判断的ChatModel
      */
@@ -44,6 +49,7 @@ public class RoutingAiModelConfig {
                 .logRequests(logRequests)
                 .logResponses(logResponses)
                 .maxRetries(maxRetries)
+                .httpClientBuilder(sharedHttpTransport.builder(baseUrl))
                 .build();
     }
 }
@@ -0,0 +1,45 @@
+package com.hachimi.mamboaiplatform.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * TokenStream -> Flux 桥接队列配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "stream.bridge")
+@Data
+public class StreamBridgeConfig {
+
+    /**
+     * 单会话队列最大消息数
+     */
+    private int maxQueuedMessages = 256;
+
+    /**
+     * 单会话队列最大字节数（按字符串堆内存估算）
+     */
+    private long maxQueuedBytes = 1024 * 1024;
+
+    /**
+     * 队列超限时的处理策略
+     */
+    private OverflowPolicy overflowPolicy = OverflowPolicy.COALESCE;
+
+    /**
+     * BLOCK 策略下生产者最长阻塞时间（毫秒），超时后退化为合并
+     */
+    private long blockTimeoutMs = 5000;
+
+    public enum OverflowPolicy {
+        /**
+         * 合并文本片段和同一工具的参数片段，工具事件从不丢弃
+         */
+        COALESCE,
+        /**
+         * 阻塞生产者（模型响应读取线程），通过 TCP 背压减缓上游，超时后按 COALESCE 处理
+         */
+        BLOCK
+    }
+}
@@ -0,0 +1,50 @@
+package com.hachimi.mamboaiplatform.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * SSE 输出合并（微批）配置
+ * 将模型逐 token 产生的小片段按时间窗口和字节阈值合并为较大的 SSE 帧
+ */
+@Configuration
+@ConfigurationProperties(prefix = "stream.coalesce")
+@Data
+public class StreamCoalesceConfig {
+
+    /**
+     * 是否开启合并，关闭后逐片段直接输出
+     */
+    private boolean enabled = true;
+
+    /**
+     * 最小合并窗口（毫秒），客户端消费及时时窗口收敛到该值
+     */
+    private long minWindowMs = 15;
+
+    /**
+     * 最大合并窗口（毫秒），客户端消费缓慢时窗口逐步放大到该值
+     */
+    private long maxWindowMs = 250;
+
+    /**
+     * 单帧字节阈值，累计达到后立即输出
+     */
+    private int maxBytes = 2048;
+
+    /**
+     * 首个片段是否立即输出（保证首字延迟）
+     */
+    private boolean flushFirstImmediately = true;
+
+    /**
+     * 下游无需求时最多暂存的帧数，超出后以溢出错误结束该连接（客户端可凭 Last-Event-ID 续传）
+     */
+    private int maxBufferedFrames = 1024;
+
+    /**
+     * 下游无需求时最多累积的文本字节数，超出后同样以溢出错误结束
+     */
+    private int maxPendingBytes = 1024 * 1024;
+}
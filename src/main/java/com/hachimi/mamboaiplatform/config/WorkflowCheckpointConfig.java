@@ -0,0 +1,29 @@
+package com.hachimi.mamboaiplatform.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 工作流检查点配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "workflow.checkpoint")
+@Data
+public class WorkflowCheckpointConfig {
+
+    /**
+     * 是否在节点完成后保存检查点
+     */
+    private boolean enabled = true;
+
+    /**
+     * 检查点保留时间（小时），超时后无法恢复
+     */
+    private long ttlHours = 24;
+
+    /**
+     * 恢复锁的最长持有时间（分钟），应覆盖一次恢复执行的时长；进程异常退出时锁到期自动释放
+     */
+    private long resumeLockMinutes = 30;
+}
@@ -0,0 +1,41 @@
+package com.hachimi.mamboaiplatform.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 工作流并行节点执行器配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "workflow.executor")
+@Data
+public class WorkflowExecutorConfig {
+
+    /**
+     * 未单独配置的工作流同时执行的并行分支数上限（跨所有运行）
+     */
+    private int defaultMaxConcurrency = 16;
+
+    /**
+     * 按工作流名配置的并行分支数上限
+     */
+    private Map<String, Integer> maxConcurrency = new HashMap<>();
+
+    /**
+     * 单个工作流等待执行的分支数上限，超出时拒绝提交
+     */
+    private int maxQueued = 200;
+
+    /**
+     * 关闭时等待进行中分支结束的时间（秒）
+     */
+    private long shutdownTimeoutSeconds = 30;
+
+    public int concurrencyOf(String workflow) {
+        return maxConcurrency.getOrDefault(workflow, defaultMaxConcurrency);
+    }
+}
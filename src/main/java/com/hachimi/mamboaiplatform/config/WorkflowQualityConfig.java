@@ -0,0 +1,24 @@
+package com.hachimi.mamboaiplatform.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 工作流代码质检配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "workflow.quality")
+@Data
+public class WorkflowQualityConfig {
+
+    /**
+     * 是否在模型质检前做本地静态预检，预检发现错误时直接判定不通过，不再调用模型
+     */
+    private boolean staticValidationEnabled = true;
+
+    /**
+     * 单次模型质检的代码 token 上限，超出时按文件分组多次检查
+     */
+    private int maxChunkTokens = 24000;
+}
@@ -0,0 +1,24 @@
+package com.hachimi.mamboaiplatform.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 工作流质检修复配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "workflow.repair")
+@Data
+public class WorkflowRepairConfig {
+
+    /**
+     * 质检未通过时最多修复（定向修改或整体重新生成）的轮数，用完后不再重试，带着质检问题继续后续流程
+     */
+    private int maxRounds = 3;
+
+    /**
+     * 单轮修复提供给模型的问题文件总字符数上限，超出的文件不参与本轮修复
+     */
+    private int maxFileChars = 60000;
+}
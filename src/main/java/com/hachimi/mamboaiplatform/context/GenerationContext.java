@@ -0,0 +1,140 @@
+package com.hachimi.mamboaiplatform.context;
+
+import com.hachimi.mamboaiplatform.model.entity.User;
+import com.hachimi.mamboaiplatform.monitor.MonitorContext;
+import com.hachimi.mamboaiplatform.monitor.MonitorContextHolder;
+import dev.langchain4j.model.chat.response.StreamingHandle;
+import lombok.Getter;
+import reactor.util.context.ContextView;
+
+import java.util.function.Supplier;
+
+/**
+ * 一次生成会话的上下文快照（监控上下文 + 当前用户），不可变。
+ * 传播方式：
+ * 1. Reactor：通过 {@link #KEY} 写入订阅 Context，订阅时读取；
+ * 2. 模型回调线程：会话开始时挂到 StreamingHandle 上（一次），监听器经 StreamingHandle.current() 读取；
+ * 3. 虚拟线程 / 同步调用：{@link #wrap(Runnable)} / {@link #run(Runnable)} 在作用域内绑定，结束后还原线程原有值。
+ * 作用域语义对应 ScopedValue（Java 21 中仍为预览特性），这里用“绑定-执行-还原”实现，避免上下文残留在复用线程上。
+ */
+@Getter
+public final class GenerationContext {
+
+  /**
+   * Reactor Context 中的键
+   */
+  public static final Class<GenerationContext> KEY = GenerationContext.class;
+
+  private final MonitorContext monitorContext;
+
+  private final User user;
+
+  private GenerationContext(MonitorContext monitorContext, User user) {
+    this.monitorContext = monitorContext;
+    this.user = user;
+  }
+
+  public static GenerationContext of(MonitorContext monitorContext, User user) {
+    return new GenerationContext(monitorContext, user);
+  }
+
+  /**
+   * 获取当前线程可见的上下文：优先作用域内绑定的值，其次当前模型请求所属会话挂载的上下文
+   *
+   * @return 上下文，不存在时为 null
+   */
+  public static GenerationContext current() {
+    MonitorContext monitorContext = MonitorContextHolder.getContext();
+    User user = UserContextHolder.get();
+    if (monitorContext != null || user != null) {
+      return new GenerationContext(monitorContext, user);
+    }
+    StreamingHandle handle = StreamingHandle.current();
+    if (handle != null && handle.attachment() instanceof GenerationContext attached) {
+      return attached;
+    }
+    return null;
+  }
+
+  /**
+   * 获取当前监控上下文，规则同 {@link #current()}
+   */
+  public static MonitorContext currentMonitorContext() {
+    GenerationContext context = current();
+    return context == null ? null : context.getMonitorContext();
+  }
+
+  /**
+   * 从订阅 Context 解析会话上下文，依次回退到当前线程可见的上下文、系统默认上下文
+   *
+   * @param contextView 订阅 Context
+   * @param appId       应用ID（用于默认上下文）
+   * @return 非空的上下文
+   */
+  public static GenerationContext resolve(ContextView contextView, Long appId) {
+    GenerationContext context = contextView.getOrDefault(KEY, null);
+    if (context == null) {
+      context = current();
+    }
+    if (context == null || context.getMonitorContext() == null) {
+      MonitorContext defaultMonitorContext = MonitorContext.builder()
+          .userId("system") // 如果没有用户上下文，使用系统标识
+          .appId(String.valueOf(appId))
+          .build();
+      context = new GenerationContext(defaultMonitorContext, context == null ? null : context.getUser());
+    }
+    return context;
+  }
+
+  /**
+   * 在本上下文作用域内执行，结束后还原当前线程原有上下文
+   */
+  public void run(Runnable action) {
+    call(() -> {
+      action.run();
+      return null;
+    });
+  }
+
+  /**
+   * 在本上下文作用域内执行并返回结果，结束后还原当前线程原有上下文
+   */
+  public <T> T call(Supplier<T> action) {
+    MonitorContext previousMonitorContext = MonitorContextHolder.getContext();
+    User previousUser = UserContextHolder.get();
+    bind(monitorContext, user);
+    try {
+      return action.get();
+    } finally {
+      bind(previousMonitorContext, previousUser);
+    }
+  }
+
+  /**
+   * 包装任务，使其在执行线程（如虚拟线程）上带着本上下文运行
+   */
+  public Runnable wrap(Runnable action) {
+    return () -> run(action);
+  }
+
+  /**
+   * 捕获调用线程当前的上下文并包装任务；当前无上下文时原样返回
+   */
+  public static Runnable propagate(Runnable action) {
+    GenerationContext context = current();
+    return context == null ? action : context.wrap(action);
+  }
+
+  private static void bind(MonitorContext monitorContext, User user) {
+    if (monitorContext == null) {
+      MonitorContextHolder.clearContext();
+    } else {
+      MonitorContextHolder.setContext(monitorContext);
+    }
+    if (user == null) {
+      UserContextHolder.clear();
+    } else {
+      UserContextHolder.set(user);
+    }
+  }
+}
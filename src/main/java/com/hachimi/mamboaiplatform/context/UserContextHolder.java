@@ -3,12 +3,13 @@ package com.hachimi.mamboaiplatform.context;
 import com.hachimi.mamboaiplatform.model.entity.User;
 
 /**
- * 保存当前请求用户的轻量上下文，供异步/回调线程获取，避免再次依赖 HttpSession。
- * 最小实现：ThreadLocal；如需跨线程池或虚拟线程，可改为 InheritableThreadLocal。
+ * 保存当前请求用户的轻量上下文，避免再次依赖 HttpSession。
+ * 仅在作用域内绑定（见 {@link GenerationContext#run(Runnable)}），跨线程传递需显式包装，
+ * 不使用 InheritableThreadLocal，以免新建线程继承到过期用户。
  */
 public class UserContextHolder {
 
-  private static final InheritableThreadLocal<User> CTX = new InheritableThreadLocal<>();
+  private static final ThreadLocal<User> CTX = new ThreadLocal<>();
 
   public static void set(User user) {
     CTX.set(user);
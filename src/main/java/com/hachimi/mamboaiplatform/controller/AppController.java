@@ -2,14 +2,18 @@ package com.hachimi.mamboaiplatform.controller;
 
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONUtil;
 import com.hachimi.mamboaiplatform.annotation.AuthCheck;
 import com.hachimi.mamboaiplatform.common.BaseResponse;
 import com.hachimi.mamboaiplatform.common.DeleteRequest;
 import com.hachimi.mamboaiplatform.common.ResultUtils;
 import com.hachimi.mamboaiplatform.constant.AppConstant;
 import com.hachimi.mamboaiplatform.constant.UserConstant;
-import com.hachimi.mamboaiplatform.context.UserContextHolder;
+import com.hachimi.mamboaiplatform.ai.model.message.StreamMessage;
+import com.hachimi.mamboaiplatform.core.handler.StreamMessageCoalescer;
+import com.hachimi.mamboaiplatform.core.GenerationSessionRegistry;
+import com.hachimi.mamboaiplatform.core.handler.StreamMessageJsonWriter;
+import com.hachimi.mamboaiplatform.core.stream.GenerationReplayLog;
+import com.hachimi.mamboaiplatform.core.stream.ReplayEvent;
 import com.hachimi.mamboaiplatform.exception.BusinessException;
 import com.hachimi.mamboaiplatform.exception.ErrorCode;
 import com.hachimi.mamboaiplatform.exception.ThrowUtils;
@@ -35,7 +39,6 @@ import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import com.hachimi.mamboaiplatform.model.entity.App;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Mono;
 
 import java.io.File;
 import java.time.LocalDateTime;
@@ -63,43 +66,74 @@ public class AppController {
   @Resource
   private GenerationStatusService generationStatusService;
 
+  @Resource
+  private StreamMessageJsonWriter streamMessageJsonWriter;
+
+  @Resource
+  private StreamMessageCoalescer streamMessageCoalescer;
+
+  @Resource
+  private GenerationReplayLog generationReplayLog;
+
   /**
    * 应用聊天生成代码（流式 SSE）
+   * 每个事件带有 sessionId-seq 形式的事件 ID，断线重连携带 Last-Event-ID 时从回放日志续传
    *
-   * @param appId   应用 ID
-   * @param message 用户消息
-   * @param request 请求对象
+   * @param appId       应用 ID
+   * @param message     用户消息
+   * @param lastEventId 断线重连时浏览器自动携带的最后事件 ID
+   * @param request     请求对象
    * @return 生成结果流
    */
   @GetMapping(value = "/chat/gen/code", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
   @RateLimit(limitType = RateLimitType.USER, rate = 5, vipRate = 20, rateInterval = 60, enableVipDifferentiation = true, message = "AI对话请求过于频繁，请稍后再试。升级VIP可享有更高频率限制", vipMessage = "VIP用户AI对话请求过于频繁，请稍后再试")
   public Flux<ServerSentEvent<String>> chatToGenCode(@RequestParam Long appId,
       @RequestParam String message,
+      @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
       HttpServletRequest request) {
     // 参数校验
     ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID无效");
     ThrowUtils.throwIf(StrUtil.isBlank(message), ErrorCode.PARAMS_ERROR, "用户消息不能为空");
     // 获取当前登录用户
     User loginUser = userService.getLoginUser(request);
-    // 设置用户上下文，供后续异步回调使用
-    UserContextHolder.set(loginUser);
-    // 调用服务生成代码（流式）
-    Flux<String> stringFlux = appService.chatToGenCode(appId, message, loginUser)
-        .doFinally(sig -> UserContextHolder.clear());
-    // 对这个流式结果进行一层封装，防止空格的丢失
-    Flux<ServerSentEvent<String>> dataFlux = stringFlux.map(chunk -> {
-      Map<String, String> resultMap = Map.of("d", chunk);
-      String jsonData = JSONUtil.toJsonStr(resultMap);
-      return ServerSentEvent.<String>builder()
-          .data(jsonData)
-          .build();
-    });
-    // 在正常完成时发送一个 done 事件，方便前端统一处理（之前只有异常才有 done）
-    ServerSentEvent<String> doneEvent = ServerSentEvent.<String>builder()
-        .event("done")
-        .data("{}")
-        .build();
-    return dataFlux.concatWith(Mono.just(doneEvent));
+    // 断线重连：从回放日志补发缺失事件并接上实时尾部，不再重新调用模型
+    if (StrUtil.isNotBlank(lastEventId)) {
+      checkGenStreamAccess(appId, loginUser);
+      return streamMessageCoalescer.coalesceFrames(generationReplayLog.resume(appId, lastEventId))
+          .map(this::toServerSentEvent);
+    }
+    // 单飞：同一应用已有相同需求的生成时直接加入共享流（重复提交、多标签页、管理员旁观），需求不同则拒绝，否则启动新生成
+    Flux<ReplayEvent> events = generationReplayLog.joinOrPublish(appId, message, () -> {
+      // 调用服务生成代码（流式），用户与监控上下文由服务层随订阅传播
+      Flux<StreamMessage> messageFlux = appService.chatToGenCode(appId, message, loginUser);
+      // 对这个流式结果进行一层封装，防止空格的丢失（整条链路只在这里序列化一次）
+      return messageFlux.map(streamMessageJsonWriter::writeFrame);
+    }, () -> checkGenStreamAccess(appId, loginUser));
+    // 按连接合并细碎的 token 帧，减少 SSE 帧数和 flush 次数；合并放在回放日志之后，才能感知该连接自己的消费速度
+    return streamMessageCoalescer.coalesceFrames(events).map(this::toServerSentEvent);
+  }
+
+  /**
+   * 校验是否可以观看应用的生成流（本人或管理员）
+   */
+  private void checkGenStreamAccess(Long appId, User loginUser) {
+    App app = appService.getById(appId);
+    ThrowUtils.throwIf(app == null, ErrorCode.NOT_FOUND_ERROR, "应用不存在");
+    boolean isAdmin = UserConstant.ADMIN_ROLE.equals(loginUser.getUserRole());
+    ThrowUtils.throwIf(!isAdmin && !app.getUserId().equals(loginUser.getId()), ErrorCode.NO_AUTH_ERROR,
+        "无权限访问该应用");
+  }
+
+  private ServerSentEvent<String> toServerSentEvent(ReplayEvent replayEvent) {
+    ServerSentEvent.Builder<String> builder = ServerSentEvent.<String>builder()
+        .data(replayEvent.getData());
+    if (replayEvent.getSessionId() != null) {
+      builder.id(replayEvent.getEventId());
+    }
+    if (replayEvent.getEvent() != null) {
+      builder.event(replayEvent.getEvent());
+    }
+    return builder.build();
   }
 
   /** 主动取消当前生成 */
@@ -108,11 +142,11 @@ public class AppController {
     if (appId == null || appId <= 0) {
       return ResultUtils.error(ErrorCode.PARAMS_ERROR, "appId 无效");
     }
-    String sessionId = com.hachimi.mamboaiplatform.core.GenerationSessionRegistry.getSession(appId);
+    String sessionId = GenerationSessionRegistry.getSession(appId);
     if (sessionId == null) {
       return ResultUtils.success("no_active_generation");
     }
-    com.hachimi.mamboaiplatform.core.GenerationSessionRegistry.cancel(appId);
+    GenerationSessionRegistry.cancel(appId);
     generationStatusService.markStopped(appId, sessionId, "user_stopped");
     return ResultUtils.success("cancelled");
   }
@@ -1,5 +1,6 @@
 package com.hachimi.mamboaiplatform.controller;
 
+import com.hachimi.mamboaiplatform.ai.ChatSessionPrewarmer;
 import com.hachimi.mamboaiplatform.annotation.AuthCheck;
 import com.hachimi.mamboaiplatform.common.BaseResponse;
 import com.hachimi.mamboaiplatform.common.ResultUtils;
@@ -36,6 +37,9 @@ public class ChatHistoryController {
     @Resource
     private UserService userService;
 
+    @Resource
+    private ChatSessionPrewarmer chatSessionPrewarmer;
+
     /**
      * 分页查询某个应用的对话历史（游标查询）
      *
@@ -52,6 +56,10 @@ public class ChatHistoryController {
                                                               HttpServletRequest request) {
         User loginUser = userService.getLoginUser(request);
         Page<ChatHistory> result = chatHistoryService.listAppChatHistoryByPage(appId, pageSize, lastCreateTime, loginUser);
+        // 首页查询说明刚打开对话页，用户即将发消息，后台预热 AI 服务、对话记忆与模型连接
+        if (lastCreateTime == null) {
+            chatSessionPrewarmer.prewarm(appId, loginUser);
+        }
         return ResultUtils.success(result);
     }
 
@@ -1,10 +1,17 @@
 package com.hachimi.mamboaiplatform.controller;
 
 
+import com.hachimi.mamboaiplatform.common.BaseResponse;
+import com.hachimi.mamboaiplatform.common.ResultUtils;
 import com.hachimi.mamboaiplatform.langgraph4j.CodeGenWorkflow;
+import com.hachimi.mamboaiplatform.langgraph4j.WorkflowGraphRegistry;
 import com.hachimi.mamboaiplatform.langgraph4j.state.WorkflowContext;
+import com.hachimi.mamboaiplatform.model.entity.User;
 import com.hachimi.mamboaiplatform.ratelimit.annotation.RateLimit;
 import com.hachimi.mamboaiplatform.ratelimit.enums.RateLimitType;
+import com.hachimi.mamboaiplatform.service.UserService;
+import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
@@ -20,8 +27,14 @@ import reactor.core.publisher.Flux;
 @Slf4j
 public class WorkflowSseController {
 
+    @Resource
+    private WorkflowGraphRegistry workflowGraphRegistry;
+
+    @Resource
+    private UserService userService;
+
     /**
-     * 同步执行工作流
+     * 同步执行工作流，失败时错误信息中带有 runId，可用于从检查点恢复
      */
     @PostMapping("/execute")
     @RateLimit(
@@ -33,9 +46,10 @@ public class WorkflowSseController {
         message = "工作流执行过于频繁，5分钟内最多执行3次。升级VIP可享有更高限额",
         vipMessage = "VIP用户工作流执行过于频繁，5分钟内最多执行10次"
     )
-    public WorkflowContext executeWorkflow(@RequestParam String prompt) {
+    public WorkflowContext executeWorkflow(@RequestParam String prompt, HttpServletRequest request) {
         log.info("收到同步工作流执行请求: {}", prompt);
-        return new CodeGenWorkflow().executeWorkflow(prompt);
+        User loginUser = userService.getLoginUser(request);
+        return new CodeGenWorkflow(workflowGraphRegistry).executeWorkflow(prompt, loginUser.getId());
     }
 
     /**
@@ -51,9 +65,10 @@ public class WorkflowSseController {
         message = "流式工作流执行过于频繁，5分钟内最多执行3次。升级VIP可享有更高限额",
         vipMessage = "VIP用户流式工作流执行过于频繁，5分钟内最多执行10次"
     )
-    public Flux<String> executeWorkflowWithFlux(@RequestParam String prompt) {
+    public Flux<String> executeWorkflowWithFlux(@RequestParam String prompt, HttpServletRequest request) {
         log.info("收到 Flux 工作流执行请求: {}", prompt);
-        return new CodeGenWorkflow().executeWorkflowWithFlux(prompt);
+        User loginUser = userService.getLoginUser(request);
+        return new CodeGenWorkflow(workflowGraphRegistry).executeWorkflowWithFlux(prompt, loginUser.getId());
     }
 
     /**
@@ -69,8 +84,37 @@ public class WorkflowSseController {
         message = "SSE工作流执行过于频繁，5分钟内最多执行3次。升级VIP可享有更高限额",
         vipMessage = "VIP用户SSE工作流执行过于频繁，5分钟内最多执行10次"
     )
-    public SseEmitter executeWorkflowWithSse(@RequestParam String prompt) {
+    public SseEmitter executeWorkflowWithSse(@RequestParam String prompt, HttpServletRequest request) {
         log.info("收到 SSE 工作流执行请求: {}", prompt);
-        return new CodeGenWorkflow().executeWorkflowWithSse(prompt);
+        User loginUser = userService.getLoginUser(request);
+        return new CodeGenWorkflow(workflowGraphRegistry).executeWorkflowWithSse(prompt, loginUser.getId());
+    }
+
+    /**
+     * 从最近的检查点恢复执行（代码生成、项目构建等节点失败后重试，已完成的图片收集不再重复）
+     * 仅发起执行的用户可以恢复，同一执行同时只允许一个恢复请求
+     */
+    @PostMapping("/resume")
+    @RateLimit(
+        limitType = RateLimitType.USER,
+        rate = 3,
+        vipRate = 10,
+        rateInterval = 300,
+        enableVipDifferentiation = true,
+        message = "工作流恢复过于频繁，5分钟内最多执行3次。升级VIP可享有更高限额",
+        vipMessage = "VIP用户工作流恢复过于频繁，5分钟内最多执行10次"
+    )
+    public WorkflowContext resumeWorkflow(@RequestParam String runId, HttpServletRequest request) {
+        log.info("收到工作流恢复请求: runId={}", runId);
+        User loginUser = userService.getLoginUser(request);
+        return new CodeGenWorkflow(workflowGraphRegistry).resumeWorkflow(runId, loginUser.getId());
+    }
+
+    /**
+     * 获取工作流图（Mermaid），启动时渲染一次
+     */
+    @GetMapping("/graph")
+    public BaseResponse<String> getWorkflowGraph(@RequestParam(defaultValue = WorkflowGraphRegistry.CODE_GEN) String name) {
+        return ResultUtils.success(workflowGraphRegistry.getMermaid(name));
     }
-}
\ No newline at end of file
+}
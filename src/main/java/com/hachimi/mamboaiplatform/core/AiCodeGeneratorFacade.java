@@ -1,41 +1,53 @@
 package com.hachimi.mamboaiplatform.core;
 
-import cn.hutool.json.JSONUtil;
 import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
 import com.hachimi.mamboaiplatform.ai.AiCodeGeneratorService;
 import com.hachimi.mamboaiplatform.ai.AiCodeGeneratorServiceFactory;
+import com.hachimi.mamboaiplatform.ai.memory.TokenEstimator;
 import com.hachimi.mamboaiplatform.ai.model.HtmlCodeResult;
 import com.hachimi.mamboaiplatform.ai.model.MultiFileCodeResult;
 import com.hachimi.mamboaiplatform.ai.model.message.AiResponseMessage;
+import com.hachimi.mamboaiplatform.ai.model.message.FileClosedMessage;
+import com.hachimi.mamboaiplatform.ai.model.message.StreamMessage;
 import com.hachimi.mamboaiplatform.ai.model.message.ToolExecutedMessage;
 import com.hachimi.mamboaiplatform.ai.model.message.ToolRequestMessage;
 import com.hachimi.mamboaiplatform.ai.tools.BaseTool;
 import com.hachimi.mamboaiplatform.ai.tools.ToolManager;
+import com.hachimi.mamboaiplatform.context.GenerationContext;
 import com.hachimi.mamboaiplatform.core.builder.VueProjectBuilder;
-import com.hachimi.mamboaiplatform.core.parser.CodeParserExecutor;
+import com.hachimi.mamboaiplatform.core.parser.StreamingCodeBlockParser;
 import com.hachimi.mamboaiplatform.core.saver.CodeFileSaverExecutor;
+import com.hachimi.mamboaiplatform.core.saver.LiveFileMaterializer;
+import com.hachimi.mamboaiplatform.core.saver.StreamingCodeFileWriter;
+import com.hachimi.mamboaiplatform.core.stream.TokenStreamBridge;
 import com.hachimi.mamboaiplatform.exception.BusinessException;
 import com.hachimi.mamboaiplatform.exception.ErrorCode;
 import com.hachimi.mamboaiplatform.model.enums.CodeGenTypeEnum;
 import com.hachimi.mamboaiplatform.model.enums.ChatHistoryMessageTypeEnum;
+import com.hachimi.mamboaiplatform.model.entity.User;
+import com.hachimi.mamboaiplatform.monitor.GenerationCancelMetricsCollector;
 import com.hachimi.mamboaiplatform.monitor.MonitorContext;
-import com.hachimi.mamboaiplatform.monitor.MonitorContextHolder;
 import com.hachimi.mamboaiplatform.service.GenerationStatusService;
 import com.hachimi.mamboaiplatform.service.ChatHistoryService;
 
 import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingHandle;
 import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.tool.ToolExecution;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.hachimi.mamboaiplatform.constant.AppConstant.CODE_OUTPUT_ROOT_DIR;
 
@@ -58,6 +70,15 @@ public class AiCodeGeneratorFacade {
   @Resource
   private ToolManager toolManager;
 
+  @Resource
+  private GenerationCancelMetricsCollector generationCancelMetricsCollector;
+
+  @Resource
+  private TokenStreamBridge tokenStreamBridge;
+
+  @Resource
+  private LiveFileMaterializer liveFileMaterializer;
+
   /**
    * 统一入口：根据类型生成并保存代码
    *
@@ -71,26 +92,26 @@ public class AiCodeGeneratorFacade {
       throw new BusinessException(ErrorCode.SYSTEM_ERROR, "生成类型为空");
     }
 
-    // 确保监控上下文存在
-    ensureMonitorContext(appId);
+    // 同步调用在当前线程上执行，仅在调用期间绑定监控上下文（没有时使用系统默认上下文）
+    GenerationContext generationContext = GenerationContext.resolve(Context.empty(), appId);
 
     // 通过工厂来获得aiservice
     AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId,
         codeGenTypeEnum);
-    return switch (codeGenTypeEnum) {
+    return generationContext.call(() -> switch (codeGenTypeEnum) {
       case HTML -> {
-        HtmlCodeResult result = aiCodeGeneratorService.generateHtmlCode(userMessage);
+        HtmlCodeResult result = aiCodeGeneratorService.generateHtmlCode(appId, userMessage);
         yield CodeFileSaverExecutor.executeSaver(result, CodeGenTypeEnum.HTML, appId);
       }
       case MULTI_FILE -> {
-        MultiFileCodeResult result = aiCodeGeneratorService.generateMultiFileCode(userMessage);
+        MultiFileCodeResult result = aiCodeGeneratorService.generateMultiFileCode(appId, userMessage);
         yield CodeFileSaverExecutor.executeSaver(result, CodeGenTypeEnum.MULTI_FILE, appId);
       }
       default -> {
         String errorMessage = "不支持的生成类型：" + codeGenTypeEnum.getValue();
         throw new BusinessException(ErrorCode.SYSTEM_ERROR, errorMessage);
       }
-    };
+    });
   }
 
   /**
@@ -99,26 +120,24 @@ public class AiCodeGeneratorFacade {
    * @param userMessage     用户提示词
    * @param codeGenTypeEnum 生成类型
    * @param appId           应用ID
+   * @return 类型化的流式消息（仅在 SSE 出口处序列化一次）
    */
-  public Flux<String> generateCodeAndSaveStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId) {
+  public Flux<StreamMessage> generateCodeAndSaveStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId) {
     if (codeGenTypeEnum == null) {
       throw new BusinessException(ErrorCode.SYSTEM_ERROR, "生成类型为空");
     }
 
-    // 确保监控上下文存在
-    ensureMonitorContext(appId);
-
     // 通过工厂来获得aiservice
     AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId,
         codeGenTypeEnum);
 
     return switch (codeGenTypeEnum) {
       case HTML -> {
-        Flux<String> codeStream = aiCodeGeneratorService.generateHtmlCodeStream(userMessage);
+        Flux<String> codeStream = aiCodeGeneratorService.generateHtmlCodeStream(appId, userMessage);
         yield processCodeStream(codeStream, CodeGenTypeEnum.HTML, appId);
       }
       case MULTI_FILE -> {
-        Flux<String> codeStream = aiCodeGeneratorService.generateMultiFileCodeStream(userMessage);
+        Flux<String> codeStream = aiCodeGeneratorService.generateMultiFileCodeStream(appId, userMessage);
         yield processCodeStream(codeStream, CodeGenTypeEnum.MULTI_FILE, appId);
       }
       case VUE_PROJECT -> {
@@ -129,84 +148,66 @@ public class AiCodeGeneratorFacade {
   }
 
   /**
-   * 确保监控上下文存在，如果不存在则创建一个默认的
-   *
-   * @param appId 应用ID
-   */
-  private void ensureMonitorContext(Long appId) {
-    MonitorContext existingContext = MonitorContextHolder.getContext();
-    if (existingContext == null) {
-      log.info("MonitorContext not found, creating default context for appId: {} on thread: {}",
-          appId, Thread.currentThread().getName());
-      MonitorContext defaultContext = MonitorContext.builder()
-          .userId("system") // 如果没有用户上下文，使用系统标识
-          .appId(appId.toString())
-          .build();
-      MonitorContextHolder.setContext(defaultContext);
-
-      // 验证设置是否成功
-      MonitorContext verifyContext = MonitorContextHolder.getContext();
-      if (verifyContext != null) {
-        log.info("MonitorContext successfully set: userId={}, appId={}",
-            verifyContext.getUserId(), verifyContext.getAppId());
-      } else {
-        log.error("Failed to set MonitorContext, still null after setting");
-      }
-    } else {
-      log.debug("MonitorContext already exists: userId={}, appId={} on thread: {}",
-          existingContext.getUserId(), existingContext.getAppId(), Thread.currentThread().getName());
-    }
-  }
-
-  /**
-   * 将 TokenStream 转换为 Flux<String>，并传递工具调用信息 适配器模式
+   * 将 TokenStream 转换为 Flux<StreamMessage>，并传递工具调用信息 适配器模式
+   * 消息以对象形式向下游传递，不在此处做 JSON 序列化；经有界桥接队列按下游需求输出
+   * 会话上下文在订阅时从 Reactor Context 取出一次：回调直接使用捕获的值，模型监听器经 StreamingHandle 读取，
+   * 回调线程上不再写 ThreadLocal
    *
    * @param tokenStream TokenStream 对象
    * @param appId       应用ID
-   * @return Flux<String> 流式响应
+   * @return Flux<StreamMessage> 流式响应
    */
-  private Flux<String> processTokenStream(TokenStream tokenStream, Long appId) {
-    // 在TokenStream启动前，获取当前的监控上下文
-    MonitorContext currentContext = MonitorContextHolder.getContext();
-    if (currentContext == null) {
-      log.warn("processTokenStream: MonitorContext is null, creating default context for appId: {}", appId);
-      currentContext = MonitorContext.builder()
-          .userId("system")
-          .appId(appId.toString())
-          .build();
-      MonitorContextHolder.setContext(currentContext);
-    }
+  private Flux<StreamMessage> processTokenStream(TokenStream tokenStream, Long appId) {
+    return Flux.deferContextual(contextView -> {
+      final GenerationContext generationContext = GenerationContext.resolve(contextView, appId);
+      return processTokenStream(tokenStream, appId, generationContext);
+    });
+  }
 
-    // 保存上下文引用，用于在TokenStream回调中恢复
-    final MonitorContext contextForCallbacks = currentContext;
+  private Flux<StreamMessage> processTokenStream(TokenStream tokenStream, Long appId,
+      GenerationContext generationContext) {
+    final MonitorContext contextForCallbacks = generationContext.getMonitorContext();
+    // 当前用户（可能为 null）
+    final User contextUser = generationContext.getUser();
 
-    return Flux.create(sink -> {
+    return tokenStreamBridge.bridge(sink -> {
       final AtomicInteger toolCallCount = new AtomicInteger(0);
       final AtomicBoolean cancelNotified = new AtomicBoolean(false);
-      // 预先捕获当前用户上下文（可能为 null）
-      com.hachimi.mamboaiplatform.model.entity.User contextUser = com.hachimi.mamboaiplatform.context.UserContextHolder
-          .get();
-      // 累积局部工具参数（流式分片 JSON 拼接用） key=index
-      Map<String, StringBuilder> partialToolArgs = new ConcurrentHashMap<>();
+      // writeFile 参数边生成边落盘暂存文件，并推送文件内容预览
+      final LiveFileMaterializer.LiveSession liveFiles = liveFileMaterializer.openSession(appId);
+      sink.onDispose(liveFiles::close);
       // 累积完整的 AI 回复内容，用于保存到数据库（包括工具调用过程）
       final StringBuilder completeAiResponse = new StringBuilder();
 
-      // 封装一个统一的取消检测
+      // 取消句柄：/gen/cancel 与客户端断开（Flux 取消）都会触发，立即关闭模型 HTTP 流并跳过待执行的工具
+      final StreamingHandle streamingHandle = new StreamingHandle();
+      // 会话上下文挂到句柄上，工具循环发起的后续模型请求（在 HTTP 回调线程上）经句柄读取
+      streamingHandle.attach(generationContext);
+      // 已输出内容的估算 token 数，用于取消节省量指标
+      final AtomicLong streamedTokens = new AtomicLong(0);
+      GenerationSessionRegistry.bindHandle(appId, streamingHandle);
+      streamingHandle.onToolExecutionsSkipped(generationCancelMetricsCollector::recordSkippedTools);
+      streamingHandle.onCancel(() -> {
+        if (!cancelNotified.compareAndSet(false, true)) {
+          return;
+        }
+        log.info("生成已取消，appId={} reason={}", appId, streamingHandle.cancelReason());
+        generationCancelMetricsCollector.recordCancelled(streamingHandle.cancelReason(), streamedTokens.get());
+        try {
+          generationStatusService.markStopped(appId, contextForCallbacks.getAppId(), streamingHandle.cancelReason());
+        } catch (Exception ignore) {
+        }
+        AiResponseMessage cancelMsg = new AiResponseMessage("\n\n⏹️ 用户已取消，本次生成已停止。\n");
+        sink.next(cancelMsg);
+        sink.complete();
+      });
+      sink.onCancel(() -> streamingHandle.cancel(GenerationSessionRegistry.REASON_CLIENT_DISCONNECTED));
+      sink.onDispose(() -> GenerationSessionRegistry.unbindHandle(appId, streamingHandle));
+
+      // 兼容仅置位取消标记的场景
       Runnable cancelCheck = () -> {
-        if (GenerationSessionRegistry.isCancelled(appId) && cancelNotified.compareAndSet(false, true)) {
-          // 恢复上下文
-          MonitorContextHolder.setContext(contextForCallbacks);
-          if (contextUser != null) {
-            com.hachimi.mamboaiplatform.context.UserContextHolder.set(contextUser);
-          }
-          log.info("用户取消生成，appId={}", appId);
-          try {
-            generationStatusService.markStopped(appId, contextForCallbacks.getAppId(), "user_stopped");
-          } catch (Exception ignore) {
-          }
-          AiResponseMessage cancelMsg = new AiResponseMessage("\n\n⏹️ 用户已取消，本次生成已停止。\n");
-          sink.next(JSONUtil.toJsonStr(cancelMsg));
-          sink.complete();
+        if (GenerationSessionRegistry.isCancelled(appId)) {
+          streamingHandle.cancel(GenerationSessionRegistry.REASON_USER_STOPPED);
         }
       };
 
@@ -215,14 +216,10 @@ public class AiCodeGeneratorFacade {
             cancelCheck.run();
             if (cancelNotified.get())
               return; // 取消后不再发送
-            MonitorContextHolder.setContext(contextForCallbacks);
-            if (contextUser != null) {
-              com.hachimi.mamboaiplatform.context.UserContextHolder.set(contextUser);
-            }
+            streamedTokens.addAndGet(TokenEstimator.estimate(partialResponse));
             // 累积 AI 响应内容到完整回复中
             completeAiResponse.append(partialResponse);
-            AiResponseMessage aiResponseMessage = new AiResponseMessage(partialResponse);
-            sink.next(JSONUtil.toJsonStr(aiResponseMessage));
+            sink.next(new AiResponseMessage(partialResponse));
             log.debug("AI 部分响应: {}",
                 partialResponse.length() > 100 ? partialResponse.substring(0, 100) + "..." : partialResponse);
           })
@@ -230,51 +227,19 @@ public class AiCodeGeneratorFacade {
             cancelCheck.run();
             if (cancelNotified.get())
               return;
-            MonitorContextHolder.setContext(contextForCallbacks);
-            if (contextUser != null) {
-              com.hachimi.mamboaiplatform.context.UserContextHolder.set(contextUser);
-            }
-            String fragment = toolExecutionRequest.arguments();
-            if (fragment != null) {
-              String key = index + "|" + toolExecutionRequest.name();
-              partialToolArgs.computeIfAbsent(key, k -> new StringBuilder()).append(fragment);
-              // 仅做轻量日志，避免误判流式分片非 JSON
-              if (fragment.length() > 0) {
-                log.debug("工具[{}] 分片参数追加 index={} fragmentLen={} head='{}'", toolExecutionRequest.name(), index,
-                    fragment.length(), fragment.substring(0, Math.min(30, fragment.length())).replaceAll("\n", "\\n"));
-              }
-            }
-            ToolRequestMessage toolRequestMessage = new ToolRequestMessage(toolExecutionRequest);
-            sink.next(JSONUtil.toJsonStr(toolRequestMessage));
+            streamedTokens.addAndGet(TokenEstimator.estimate(toolExecutionRequest.arguments()));
+            sink.next(new ToolRequestMessage(toolExecutionRequest));
+            liveFiles.onPartialToolArguments(index, toolExecutionRequest).forEach(sink::next);
           })
           .onToolExecuted((ToolExecution toolExecution) -> {
             cancelCheck.run();
             if (cancelNotified.get())
               return;
-            MonitorContextHolder.setContext(contextForCallbacks);
-            if (contextUser != null) {
-              com.hachimi.mamboaiplatform.context.UserContextHolder.set(contextUser);
-            }
             int currentCount = toolCallCount.incrementAndGet();
-            // 尝试获取累积的完整参数（如有）
-            String accumulatedArgs = null;
-            try {
-              String key = toolExecution.request().name();
-              StringBuilder sb = partialToolArgs.get(key);
-              if (sb != null)
-                accumulatedArgs = sb.toString();
-            } catch (Exception ignore) {
-            }
-            if (accumulatedArgs != null) {
-              log.info("工具执行完成 #{}: {} (accArgsLen={}) -> {}", currentCount, toolExecution.request().name(),
-                  accumulatedArgs.length(),
-                  toolExecution.result().length() > 100 ? toolExecution.result().substring(0, 100) + "..."
-                      : toolExecution.result());
-            } else {
-              log.info("工具执行完成 #{}: {} -> {}", currentCount, toolExecution.request().name(),
-                  toolExecution.result().length() > 100 ? toolExecution.result().substring(0, 100) + "..."
-                      : toolExecution.result());
-            }
+            log.info("工具执行完成 #{}: {} (argsLen={}) -> {}", currentCount, toolExecution.request().name(),
+                toolExecution.request().arguments() == null ? 0 : toolExecution.request().arguments().length(),
+                toolExecution.result().length() > 100 ? toolExecution.result().substring(0, 100) + "..."
+                    : toolExecution.result());
             // 使用与JsonMessageStreamHandler相同的工具信息格式化逻辑
             String toolName = toolExecution.request().name();
             String toolArgs = toolExecution.request().arguments();
@@ -293,32 +258,19 @@ public class AiCodeGeneratorFacade {
               completeAiResponse.append("\n\n[工具调用] ").append(toolName).append("\n\n");
             }
             
-            ToolExecutedMessage toolExecutedMessage = new ToolExecutedMessage(toolExecution);
-            sink.next(JSONUtil.toJsonStr(toolExecutedMessage));
+            sink.next(new ToolExecutedMessage(toolExecution));
+            FileClosedMessage fileClosedMessage = liveFiles.onToolExecuted(toolExecution);
+            if (fileClosedMessage != null) {
+              sink.next(fileClosedMessage);
+            }
           })
           .onCompleteResponse((ChatResponse response) -> {
             // 如果已经取消，直接忽略完成回调（取消逻辑里已 complete）
-            if (cancelNotified.get() || GenerationSessionRegistry.isCancelled(appId)) {
-              if (cancelNotified.compareAndSet(false, true)) {
-                // 还未来得及触发取消消息（极端时序），补发一次
-                MonitorContextHolder.setContext(contextForCallbacks);
-                if (contextUser != null) {
-                  com.hachimi.mamboaiplatform.context.UserContextHolder.set(contextUser);
-                }
-                try {
-                  generationStatusService.markStopped(appId, contextForCallbacks.getAppId(), "user_stopped");
-                } catch (Exception ignore) {
-                }
-                AiResponseMessage cancelMsg = new AiResponseMessage("\n\n⏹️ 用户已取消，本次生成已停止。\n");
-                sink.next(JSONUtil.toJsonStr(cancelMsg));
-                sink.complete();
-              }
+            cancelCheck.run();
+            if (cancelNotified.get()) {
               return;
             }
-            MonitorContextHolder.setContext(contextForCallbacks);
-            if (contextUser != null) {
-              com.hachimi.mamboaiplatform.context.UserContextHolder.set(contextUser);
-            }
+            generationCancelMetricsCollector.recordCompleted(streamedTokens.get());
             log.info("AI 响应完成，总工具调用次数: {}", toolCallCount.get());
             
             // 直接保存完整的AI回复到数据库，不依赖前端流完成状态
@@ -350,19 +302,14 @@ public class AiCodeGeneratorFacade {
               } catch (Exception ignore) {
               }
             }
-            AiResponseMessage buildResultMessage = new AiResponseMessage(buildMsg);
-            sink.next(JSONUtil.toJsonStr(buildResultMessage));
+            sink.next(new AiResponseMessage(buildMsg));
             sink.complete();
           })
           .onError((Throwable error) -> {
-            if (cancelNotified.get() || GenerationSessionRegistry.isCancelled(appId)) {
+            if (cancelNotified.get() || streamingHandle.isCancelled()) {
               // 取消后若底层仍抛错，忽略（已向前端发过取消消息）
               return;
             }
-            MonitorContextHolder.setContext(contextForCallbacks);
-            if (contextUser != null) {
-              com.hachimi.mamboaiplatform.context.UserContextHolder.set(contextUser);
-            }
             String errMsg = error.getMessage();
             if (errMsg != null && errMsg.contains("function.arguments") && errMsg.contains("invalid_parameter_error")) {
               log.error("TokenStream 处理错误 (函数参数格式问题)，工具调用次数: {} detail={}", toolCallCount.get(), errMsg);
@@ -375,35 +322,69 @@ public class AiCodeGeneratorFacade {
             }
             sink.error(error);
           })
+          .withStreamingHandle(streamingHandle)
           .start();
     });
   }
 
   /**
    * 通用流式代码处理方法
+   * 边接收边解析代码块并写入目标文件，每个代码块结束即下发文件完成消息，无需等待整段响应
    *
    * @param codeStream  代码流
    * @param codeGenType 代码生成类型
    * @param appId       应用ID
-   * @return 流式响应
+   * @return 流式响应（文本片段包装为 AiResponseMessage，另含 FileClosedMessage）
    */
-  private Flux<String> processCodeStream(Flux<String> codeStream, CodeGenTypeEnum codeGenType, Long appId) {
-    StringBuilder codeBuilder = new StringBuilder();
-    return codeStream.doOnNext(chunk -> {
-      // 实时收集代码片段
-      codeBuilder.append(chunk);
-    }).doOnComplete(() -> {
-      // 流式返回完成后保存代码
+  private Flux<StreamMessage> processCodeStream(Flux<String> codeStream, CodeGenTypeEnum codeGenType, Long appId) {
+    StreamingCodeFileWriter fileWriter = new StreamingCodeFileWriter(codeGenType, appId);
+    StreamingCodeBlockParser blockParser = new StreamingCodeBlockParser(codeGenType, fileWriter);
+    StreamingHandle streamingHandle = new StreamingHandle();
+    AtomicLong streamedTokens = new AtomicLong(0);
+    streamingHandle.onCancel(() -> {
+      generationCancelMetricsCollector.recordCancelled(streamingHandle.cancelReason(), streamedTokens.get());
       try {
-        String completeCode = codeBuilder.toString();
-        // 使用执行器解析代码
-        Object parsedResult = CodeParserExecutor.executeParser(completeCode, codeGenType);
-        // 使用执行器保存代码
-        File savedDir = CodeFileSaverExecutor.executeSaver(parsedResult, codeGenType, appId);
-        log.info("保存成功，路径为：" + savedDir.getAbsolutePath());
+        generationStatusService.markStopped(appId, GenerationSessionRegistry.getSession(appId),
+            streamingHandle.cancelReason());
+      } catch (Exception ignore) {
+      }
+    });
+    // 订阅时把取消句柄绑定到当前线程，AiServiceTokenStream.start() 会取用它；会话上下文随句柄传给模型监听器
+    Flux<String> cancellableStream = Flux.deferContextual(contextView -> {
+          streamingHandle.attach(GenerationContext.resolve(contextView, appId));
+          return Flux.<String>from(
+              subscriber -> StreamingHandle.runWith(streamingHandle, () -> codeStream.subscribe(subscriber)));
+        })
+        .takeUntilOther(Mono.<Boolean>create(signal -> streamingHandle.onCancel(() -> signal.success(true))))
+        .doOnSubscribe(subscription -> GenerationSessionRegistry.bindHandle(appId, streamingHandle))
+        .doOnCancel(() -> streamingHandle.cancel(GenerationSessionRegistry.REASON_CLIENT_DISCONNECTED))
+        .doFinally(signalType -> GenerationSessionRegistry.unbindHandle(appId, streamingHandle));
+    return cancellableStream.concatMapIterable(chunk -> {
+      streamedTokens.addAndGet(TokenEstimator.estimate(chunk));
+      // 实时解析代码片段，代码块结束时文件已落盘
+      blockParser.feed(chunk);
+      List<StreamMessage> messages = new ArrayList<>();
+      messages.add(new AiResponseMessage(chunk));
+      messages.addAll(fileWriter.drainClosedFiles());
+      return messages;
+    }).concatWith(Flux.defer(() -> {
+      if (streamingHandle.isCancelled()) {
+        // 已取消的生成内容不完整，丢弃未写完的文件，已落盘的文件回滚到生成前的版本
+        fileWriter.abort();
+        return Flux.<StreamMessage>just(new AiResponseMessage("\n\n⏹️ 用户已取消，本次生成已停止。\n"));
+      }
+      generationCancelMetricsCollector.recordCompleted(streamedTokens.get());
+      try {
+        // 提交未闭合的代码块，HTML 无代码块时整段兜底
+        blockParser.finish();
+        fileWriter.commit();
+        log.info("保存成功，路径为：" + fileWriter.getBaseDir().getAbsolutePath());
       } catch (Exception e) {
         log.error("保存失败3: {}", e.getMessage());
+        fileWriter.abort();
       }
-    });
+      return Flux.<StreamMessage>fromIterable(fileWriter.drainClosedFiles());
+    })).doOnError(error -> fileWriter.abort())
+        .doOnCancel(fileWriter::abort);
   }
 }
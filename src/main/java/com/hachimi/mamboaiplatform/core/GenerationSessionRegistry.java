@@ -1,14 +1,21 @@
 package com.hachimi.mamboaiplatform.core;
 
+import dev.langchain4j.model.chat.response.StreamingHandle;
+
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * 记录 appId -> cancelFlag / sessionId，用于实现用户主动取消。
+ * 记录 appId -> cancelFlag / sessionId / 取消句柄，用于实现用户主动取消。
+ * 取消时除了置位标记，还会触发绑定的 StreamingHandle，立即关闭模型 HTTP 流并跳过待执行的工具。
  */
 public class GenerationSessionRegistry {
+  public static final String REASON_USER_STOPPED = "user_stopped";
+  public static final String REASON_CLIENT_DISCONNECTED = "client_disconnected";
+
   private static final Map<Long, String> CURRENT_SESSION = new ConcurrentHashMap<>();
   private static final Map<Long, Boolean> CANCEL_FLAGS = new ConcurrentHashMap<>();
+  private static final Map<Long, StreamingHandle> STREAMING_HANDLES = new ConcurrentHashMap<>();
 
   public static void setSession(Long appId, String sessionId) {
     CURRENT_SESSION.put(appId, sessionId);
@@ -22,10 +29,27 @@ public class GenerationSessionRegistry {
   public static void clearSession(Long appId) {
     CURRENT_SESSION.remove(appId);
     CANCEL_FLAGS.remove(appId);
+    STREAMING_HANDLES.remove(appId);
+  }
+
+  public static void bindHandle(Long appId, StreamingHandle handle) {
+    STREAMING_HANDLES.put(appId, handle);
+  }
+
+  public static void unbindHandle(Long appId, StreamingHandle handle) {
+    STREAMING_HANDLES.remove(appId, handle);
   }
 
   public static void cancel(Long appId) {
+    cancel(appId, REASON_USER_STOPPED);
+  }
+
+  public static void cancel(Long appId, String reason) {
     CANCEL_FLAGS.put(appId, true);
+    StreamingHandle handle = STREAMING_HANDLES.get(appId);
+    if (handle != null) {
+      handle.cancel(reason);
+    }
   }
 
   public static boolean isCancelled(Long appId) {
@@ -0,0 +1,202 @@
+package com.hachimi.mamboaiplatform.core.admission;
+
+import com.hachimi.mamboaiplatform.ai.model.message.QueuePositionMessage;
+import com.hachimi.mamboaiplatform.ai.model.message.StreamMessage;
+import com.hachimi.mamboaiplatform.config.GenerationAdmissionConfig;
+import com.hachimi.mamboaiplatform.config.ReasoningStreamingChatModelConfig;
+import com.hachimi.mamboaiplatform.config.StreamingChatModelConfig;
+import com.hachimi.mamboaiplatform.exception.BusinessException;
+import com.hachimi.mamboaiplatform.exception.ErrorCode;
+import com.hachimi.mamboaiplatform.model.entity.User;
+import com.hachimi.mamboaiplatform.model.enums.CodeGenTypeEnum;
+import com.hachimi.mamboaiplatform.service.UserService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 生成准入控制器
+ * 位于代码生成之前：按模型限制并发，超出的请求排队（VIP 通道 + 用户间公平排队 + 单用户并发上限），
+ * 排队期间通过 QueuePositionMessage 推送排队位置，获得许可后才真正开始生成，生成结束归还许可。
+ */
+@Slf4j
+@Component
+public class GenerationAdmissionController {
+
+    @Resource
+    private GenerationAdmissionConfig generationAdmissionConfig;
+
+    @Resource
+    private StreamingChatModelConfig streamingChatModelConfig;
+
+    @Resource
+    private ReasoningStreamingChatModelConfig reasoningStreamingChatModelConfig;
+
+    @Resource
+    private UserService userService;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private GenerationScheduler scheduler;
+
+    private final Set<String> meteredModels = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        scheduler = new GenerationScheduler(generationAdmissionConfig);
+    }
+
+    /**
+     * 申请准入并在获得许可后执行生成
+     *
+     * @param loginUser   登录用户
+     * @param codeGenType 生成类型（决定使用的模型）
+     * @param generation  生成流的提供者，获得许可后才调用
+     * @return 排队位置消息 + 生成流
+     */
+    public Flux<StreamMessage> admit(User loginUser, CodeGenTypeEnum codeGenType, Supplier<Flux<StreamMessage>> generation) {
+        if (!generationAdmissionConfig.isEnabled()) {
+            return Flux.defer(generation);
+        }
+        String model = modelNameOf(codeGenType);
+        registerMeters(model);
+        return Flux.defer(() -> {
+            boolean vip = userService.isVip(loginUser);
+            Sinks.Many<StreamMessage> waitingSink = Sinks.many().unicast().onBackpressureBuffer();
+            GenerationScheduler.Changes changes;
+            try {
+                changes = scheduler.enqueue(model, loginUser.getId(), vip, waitingSink);
+            } catch (BusinessException e) {
+                rejectedCounter(model, "queue_full").increment();
+                return Flux.error(e);
+            }
+            GenerationScheduler.Ticket ticket = changes.getTicket();
+            notify(changes);
+            boolean grantedImmediately = ticket.getState() == GenerationScheduler.TicketState.GRANTED;
+            if (!grantedImmediately) {
+                log.info("生成请求排队 userId={} model={} vip={} position={}", loginUser.getId(), model, vip,
+                        ticket.getPosition());
+            }
+            Disposable timeoutTask = grantedImmediately ? null : Schedulers.parallel().schedule(
+                    () -> expire(ticket), generationAdmissionConfig.getQueueTimeoutSeconds(), TimeUnit.SECONDS);
+            Flux<StreamMessage> generationFlux = Flux.defer(generation);
+            if (!grantedImmediately) {
+                // 许可由其他请求结束时的线程放行，生成的启动工作（构建服务、加载历史等）移出该线程
+                generationFlux = generationFlux.subscribeOn(Schedulers.boundedElastic());
+            }
+            return waitingSink.asFlux()
+                    .concatWith(generationFlux)
+                    .doFinally(signalType -> {
+                        if (timeoutTask != null) {
+                            timeoutTask.dispose();
+                        }
+                        notify(scheduler.release(ticket));
+                    });
+        });
+    }
+
+    /**
+     * 生成类型对应的模型是否已满负荷（有请求排队或并发已满），预热等可选工作据此让路
+     */
+    public boolean isSaturated(CodeGenTypeEnum codeGenType) {
+        if (!generationAdmissionConfig.isEnabled()) {
+            return false;
+        }
+        String model = modelNameOf(codeGenType);
+        return scheduler.queuedCount(model) > 0
+                || scheduler.runningCount(model) >= generationAdmissionConfig.concurrencyOf(model);
+    }
+
+    /**
+     * 生成类型对应的模型名：VUE 工程使用推理模型，其余使用普通流式模型
+     */
+    private String modelNameOf(CodeGenTypeEnum codeGenType) {
+        return codeGenType == CodeGenTypeEnum.VUE_PROJECT
+                ? reasoningStreamingChatModelConfig.getModelName()
+                : streamingChatModelConfig.getModelName();
+    }
+
+    private void expire(GenerationScheduler.Ticket ticket) {
+        GenerationScheduler.Changes changes = scheduler.expire(ticket);
+        if (changes == null) {
+            return;
+        }
+        rejectedCounter(ticket.getModel(), "timeout").increment();
+        log.info("生成请求排队超时 userId={} model={}", ticket.getUserId(), ticket.getModel());
+        emit(ticket, sink -> sink.tryEmitError(
+                new BusinessException(ErrorCode.TOO_MANY_REQUESTS_ERROR, "排队超时，请稍后再试")));
+        notify(changes);
+    }
+
+    /**
+     * 在调度锁外通知：放行的请求结束排队阶段，位置变化的请求推送新位置
+     */
+    private void notify(GenerationScheduler.Changes changes) {
+        for (GenerationScheduler.Ticket ticket : changes.getPositionChanged()) {
+            int position = ticket.getPosition();
+            if (position > 0) {
+                emit(ticket, sink -> sink.tryEmitNext(new QueuePositionMessage(position, ticket.getQueued())));
+            }
+        }
+        for (GenerationScheduler.Ticket ticket : changes.getGranted()) {
+            Timer.builder("ai_generation_admission_wait_seconds")
+                    .description("生成请求排队等待时间")
+                    .tag("model", ticket.getModel())
+                    .tag("lane", ticket.isVip() ? "vip" : "standard")
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - ticket.getEnqueuedAtNanos(), TimeUnit.NANOSECONDS);
+            emit(ticket, Sinks.Many::tryEmitComplete);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void emit(GenerationScheduler.Ticket ticket,
+                      Consumer<Sinks.Many<StreamMessage>> action) {
+        // 同一请求可能被多个线程同时通知，单播 sink 需串行发射
+        synchronized (ticket) {
+            action.accept((Sinks.Many<StreamMessage>) ticket.getAttachment());
+        }
+    }
+
+    private Counter rejectedCounter(String model, String reason) {
+        return Counter.builder("ai_generation_admission_rejected_total")
+                .description("生成请求被准入拒绝的次数")
+                .tag("model", model)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    private void registerMeters(String model) {
+        if (!meteredModels.add(model)) {
+            return;
+        }
+        Gauge.builder("ai_generation_admission_queued", () -> scheduler.queuedCount(model))
+                .description("排队中的生成请求数")
+                .tag("model", model)
+                .register(meterRegistry);
+        Gauge.builder("ai_generation_admission_running", () -> scheduler.runningCount(model))
+                .description("进行中的生成请求数")
+                .tag("model", model)
+                .register(meterRegistry);
+        Gauge.builder("ai_generation_admission_limit", () -> generationAdmissionConfig.concurrencyOf(model))
+                .description("模型并发上限")
+                .tag("model", model)
+                .register(meterRegistry);
+    }
+}
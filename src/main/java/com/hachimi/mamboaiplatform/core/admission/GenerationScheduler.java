@@ -0,0 +1,327 @@
+package com.hachimi.mamboaiplatform.core.admission;
+
+import com.hachimi.mamboaiplatform.config.GenerationAdmissionConfig;
+import com.hachimi.mamboaiplatform.exception.BusinessException;
+import com.hachimi.mamboaiplatform.exception.ErrorCode;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 生成调度器（纯状态机，线程安全）
+ * 1. 每个模型一个并发上限，超出的请求排队；
+ * 2. 队列分 VIP 与普通两个通道，VIP 通道优先，但连续放行 vipBurst 个后让普通通道放行一个；
+ * 3. 通道内按用户做加权公平排队（Start-time Fair Queuing）：同一用户的多个请求依次推后，
+ *    不会因为某个用户连续提交而挤占其他用户；
+ * 4. 单个用户跨模型的并发数受 maxConcurrentPerUser 限制，达到上限的用户的请求暂不放行。
+ * 所有方法返回本次操作引起的放行与排队位置变化，由调用方在锁外通知。
+ */
+public class GenerationScheduler {
+
+    private static final Comparator<Ticket> SERVICE_ORDER =
+            Comparator.comparingDouble(Ticket::getFinishTag).thenComparingLong(Ticket::getSeq);
+
+    private final GenerationAdmissionConfig config;
+
+    private final Map<String, ModelQueue> models = new HashMap<>();
+
+    private final Map<Long, Integer> runningPerUser = new HashMap<>();
+
+    private long seq;
+
+    public GenerationScheduler(GenerationAdmissionConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * 提交一个生成请求
+     *
+     * @param model      模型名
+     * @param userId     用户 ID
+     * @param vip        是否走 VIP 通道
+     * @param attachment 调用方附加对象（用于通知）
+     * @return 本次操作引起的变化，其中可能包含该请求本身的放行
+     */
+    public synchronized Changes enqueue(String model, Long userId, boolean vip, Object attachment) {
+        ModelQueue queue = models.computeIfAbsent(model, key -> new ModelQueue(config.concurrencyOf(key)));
+        if (queue.waitingCount() >= config.getMaxQueueLength()) {
+            throw new BusinessException(ErrorCode.TOO_MANY_REQUESTS_ERROR, "当前生成排队人数过多，请稍后再试");
+        }
+        Lane lane = vip ? queue.vipLane : queue.standardLane;
+        double weight = vip ? Math.max(1, config.getVipWeight()) : 1;
+        double startTag = Math.max(lane.virtualTime, lane.lastFinishTags.getOrDefault(userId, 0D));
+        double finishTag = startTag + 1 / weight;
+        lane.lastFinishTags.put(userId, finishTag);
+        Ticket ticket = new Ticket(model, userId, vip, ++seq, startTag, finishTag, attachment);
+        lane.waiting.add(ticket);
+        Changes changes = new Changes(ticket);
+        dispatchAll(changes);
+        return changes;
+    }
+
+    /**
+     * 释放请求：排队中的移出队列，已放行的归还并发额度；重复调用无副作用
+     */
+    public synchronized Changes release(Ticket ticket) {
+        Changes changes = new Changes(ticket);
+        ModelQueue queue = models.get(ticket.model);
+        if (queue == null || ticket.state == TicketState.RELEASED) {
+            return changes;
+        }
+        if (ticket.state == TicketState.WAITING) {
+            (ticket.vip ? queue.vipLane : queue.standardLane).waiting.remove(ticket);
+        } else {
+            queue.running--;
+            runningPerUser.computeIfPresent(ticket.userId, (key, count) -> count > 1 ? count - 1 : null);
+        }
+        ticket.state = TicketState.RELEASED;
+        dispatchAll(changes);
+        return changes;
+    }
+
+    /**
+     * 排队超时：仅当请求仍在排队时移出
+     *
+     * @return 请求仍在排队并已移出时返回变化，否则返回 null
+     */
+    public synchronized Changes expire(Ticket ticket) {
+        if (ticket.state != TicketState.WAITING) {
+            return null;
+        }
+        return release(ticket);
+    }
+
+    public synchronized int queuedCount(String model) {
+        ModelQueue queue = models.get(model);
+        return queue == null ? 0 : queue.waitingCount();
+    }
+
+    public synchronized int runningCount(String model) {
+        ModelQueue queue = models.get(model);
+        return queue == null ? 0 : queue.running;
+    }
+
+    private void dispatchAll(Changes changes) {
+        // 用户并发额度跨模型共享，任一变化都可能让其他模型的请求变为可放行
+        for (ModelQueue queue : models.values()) {
+            while (queue.running < queue.limit) {
+                Ticket next = pickNext(queue);
+                if (next == null) {
+                    break;
+                }
+                grant(queue, next);
+                changes.granted.add(next);
+            }
+            updatePositions(queue, changes);
+        }
+    }
+
+    private Ticket pickNext(ModelQueue queue) {
+        Ticket vipTicket = bestEligible(queue.vipLane);
+        Ticket standardTicket = bestEligible(queue.standardLane);
+        if (vipTicket != null && (standardTicket == null || queue.vipStreak < config.getVipBurst())) {
+            queue.vipStreak = standardTicket == null ? 0 : queue.vipStreak + 1;
+            return vipTicket;
+        }
+        queue.vipStreak = 0;
+        return standardTicket;
+    }
+
+    private Ticket bestEligible(Lane lane) {
+        Ticket best = null;
+        for (Ticket ticket : lane.waiting) {
+            if (runningPerUser.getOrDefault(ticket.userId, 0) >= config.getMaxConcurrentPerUser()) {
+                continue;
+            }
+            if (best == null || SERVICE_ORDER.compare(ticket, best) < 0) {
+                best = ticket;
+            }
+        }
+        return best;
+    }
+
+    private void grant(ModelQueue queue, Ticket ticket) {
+        Lane lane = ticket.vip ? queue.vipLane : queue.standardLane;
+        lane.waiting.remove(ticket);
+        lane.virtualTime = Math.max(lane.virtualTime, ticket.startTag);
+        // 已落后于虚拟时间的用户不再需要记录
+        double virtualTime = lane.virtualTime;
+        lane.lastFinishTags.values().removeIf(finishTag -> finishTag <= virtualTime);
+        queue.running++;
+        runningPerUser.merge(ticket.userId, 1, Integer::sum);
+        ticket.state = TicketState.GRANTED;
+        ticket.position = 0;
+    }
+
+    /**
+     * 估算排队位置：VIP 通道在前，通道内按公平排队顺序
+     */
+    private void updatePositions(ModelQueue queue, Changes changes) {
+        List<Ticket> ordered = new ArrayList<>(queue.vipLane.waiting);
+        ordered.sort(SERVICE_ORDER);
+        List<Ticket> standard = new ArrayList<>(queue.standardLane.waiting);
+        standard.sort(SERVICE_ORDER);
+        ordered.addAll(standard);
+        for (int i = 0; i < ordered.size(); i++) {
+            Ticket ticket = ordered.get(i);
+            ticket.queued = ordered.size();
+            if (ticket.position != i + 1) {
+                ticket.position = i + 1;
+                changes.positionChanged.add(ticket);
+            }
+        }
+    }
+
+    public enum TicketState {
+        WAITING, GRANTED, RELEASED
+    }
+
+    /**
+     * 一个生成请求
+     */
+    public static final class Ticket {
+
+        private final String model;
+
+        private final Long userId;
+
+        private final boolean vip;
+
+        private final long seq;
+
+        private final double startTag;
+
+        private final double finishTag;
+
+        private final Object attachment;
+
+        private final long enqueuedAtNanos = System.nanoTime();
+
+        private volatile TicketState state = TicketState.WAITING;
+
+        private volatile int position;
+
+        private volatile int queued;
+
+        private Ticket(String model, Long userId, boolean vip, long seq, double startTag, double finishTag,
+                       Object attachment) {
+            this.model = model;
+            this.userId = userId;
+            this.vip = vip;
+            this.seq = seq;
+            this.startTag = startTag;
+            this.finishTag = finishTag;
+            this.attachment = attachment;
+        }
+
+        public String getModel() {
+            return model;
+        }
+
+        public Long getUserId() {
+            return userId;
+        }
+
+        public boolean isVip() {
+            return vip;
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        public double getFinishTag() {
+            return finishTag;
+        }
+
+        public Object getAttachment() {
+            return attachment;
+        }
+
+        public long getEnqueuedAtNanos() {
+            return enqueuedAtNanos;
+        }
+
+        public TicketState getState() {
+            return state;
+        }
+
+        /**
+         * 排队位置，从 1 开始；已放行为 0
+         */
+        public int getPosition() {
+            return position;
+        }
+
+        public int getQueued() {
+            return queued;
+        }
+    }
+
+    /**
+     * 一次调度操作引起的变化
+     */
+    public static final class Changes {
+
+        private final Ticket ticket;
+
+        private final List<Ticket> granted = new ArrayList<>();
+
+        private final List<Ticket> positionChanged = new ArrayList<>();
+
+        private Changes(Ticket ticket) {
+            this.ticket = ticket;
+        }
+
+        /**
+         * 触发本次操作的请求
+         */
+        public Ticket getTicket() {
+            return ticket;
+        }
+
+        public List<Ticket> getGranted() {
+            return granted;
+        }
+
+        public List<Ticket> getPositionChanged() {
+            return positionChanged;
+        }
+    }
+
+    private static final class Lane {
+
+        private final List<Ticket> waiting = new ArrayList<>();
+
+        private final Map<Long, Double> lastFinishTags = new HashMap<>();
+
+        private double virtualTime;
+    }
+
+    private static final class ModelQueue {
+
+        private final int limit;
+
+        private final Lane vipLane = new Lane();
+
+        private final Lane standardLane = new Lane();
+
+        private int running;
+
+        /**
+         * 普通通道有请求等待时，VIP 通道连续放行的次数
+         */
+        private int vipStreak;
+
+        private ModelQueue(int limit) {
+            this.limit = limit;
+        }
+
+        private int waitingCount() {
+            return vipLane.waiting.size() + standardLane.waiting.size();
+        }
+    }
+}
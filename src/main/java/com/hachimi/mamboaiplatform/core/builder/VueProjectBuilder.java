@@ -1,6 +1,7 @@
 package com.hachimi.mamboaiplatform.core.builder;
 
 import cn.hutool.core.util.RuntimeUtil;
+import com.hachimi.mamboaiplatform.context.GenerationContext;
 import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -26,13 +27,13 @@ public class VueProjectBuilder {
    */
   public void buildProjectAsync(String projectPath) {
     Thread.ofVirtual().name("vue-builder-" + System.currentTimeMillis())
-        .start(() -> {
+        .start(GenerationContext.propagate(() -> {
           try {
             buildVueProject(projectPath);
           } catch (Exception e) {
             log.error("异步构建 Vue 项目时发生异常: {}", e.getMessage(), e);
           }
-        });
+        }));
   }
 
   /**
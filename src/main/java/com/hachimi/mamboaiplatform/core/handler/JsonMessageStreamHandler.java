@@ -43,7 +43,7 @@ public class JsonMessageStreamHandler {
 
     /**
      * 处理 TokenStream（VUE_PROJECT）
-     * 解析 JSON 消息并重组为完整的响应格式
+     * 按消息类型直接分派（上游已是类型化对象，无需再反序列化），重组为前端展示文本
      *
      * @param originFlux         原始流
      * @param chatHistoryService 聊天历史服务
@@ -51,7 +51,7 @@ public class JsonMessageStreamHandler {
      * @param loginUser          登录用户
      * @return 处理后的流
      */
-    public Flux<String> handle(Flux<String> originFlux,
+    public Flux<StreamMessage> handle(Flux<StreamMessage> originFlux,
                                ChatHistoryService chatHistoryService,
                                long appId, User loginUser) {
         // 收集数据用于生成后端记忆格式
@@ -59,11 +59,18 @@ public class JsonMessageStreamHandler {
         // 用于跟踪已经见过的工具ID，判断是否是第一次调用
         Set<String> seenToolIds = new HashSet<>();
         return originFlux
-                .map(chunk -> {
-                    // 解析每个 JSON 消息块
-                    return handleJsonMessageChunk(chunk, chatHistoryStringBuilder, seenToolIds);
+                .<StreamMessage>handle((message, sink) -> {
+                    // 文件预览与完成消息原样下发（以 SSE 命名事件输出，不计入对话历史）
+                    if (message instanceof FilePreviewMessage || message instanceof FileClosedMessage) {
+                        sink.next(message);
+                        return;
+                    }
+                    String text = handleStreamMessage(message, chatHistoryStringBuilder, seenToolIds);
+                    // 过滤空字串
+                    if (StrUtil.isNotEmpty(text)) {
+                        sink.next(new AiResponseMessage(text));
+                    }
                 })
-                .filter(StrUtil::isNotEmpty) // 过滤空字串
                 .doOnComplete(() -> {
                     // 流式响应完成后，添加 AI 消息到对话历史
                     String aiResponse = chatHistoryStringBuilder.toString();
@@ -78,22 +85,17 @@ public class JsonMessageStreamHandler {
     }
 
     /**
-     * 解析并收集 TokenStream 数据
+     * 收集 TokenStream 数据并转换为展示文本
      */
-    private String handleJsonMessageChunk(String chunk, StringBuilder chatHistoryStringBuilder, Set<String> seenToolIds) {
-        // 解析 JSON
-        StreamMessage streamMessage = JSONUtil.toBean(chunk, StreamMessage.class);
-        StreamMessageTypeEnum typeEnum = StreamMessageTypeEnum.getEnumByValue(streamMessage.getType());
-        switch (typeEnum) {
-            case AI_RESPONSE -> {
-                AiResponseMessage aiMessage = JSONUtil.toBean(chunk, AiResponseMessage.class);
+    private String handleStreamMessage(StreamMessage streamMessage, StringBuilder chatHistoryStringBuilder, Set<String> seenToolIds) {
+        switch (streamMessage) {
+            case AiResponseMessage aiMessage -> {
                 String data = aiMessage.getData();
                 // 直接拼接响应
                 chatHistoryStringBuilder.append(data);
                 return data;
             }
-            case TOOL_REQUEST -> {
-                ToolRequestMessage toolRequestMessage = JSONUtil.toBean(chunk, ToolRequestMessage.class);
+            case ToolRequestMessage toolRequestMessage -> {
                 String toolId = toolRequestMessage.getId();
                 String name = toolRequestMessage.getName();
                 // 检查是否是第一次看到这个工具 ID
@@ -107,8 +109,7 @@ public class JsonMessageStreamHandler {
                     return "";
                 }
             }
-            case TOOL_EXECUTED -> {
-                ToolExecutedMessage toolExecutedMessage = JSONUtil.toBean(chunk, ToolExecutedMessage.class);
+            case ToolExecutedMessage toolExecutedMessage -> {
                 JSONObject jsonObject = JSONUtil.parseObj(toolExecutedMessage.getArguments());
                 String name = toolExecutedMessage.getName();
                 BaseTool tool = toolManager.getTool(name);
@@ -118,7 +119,7 @@ public class JsonMessageStreamHandler {
                 return output;
             }
             default -> {
-                log.error("不支持的消息类型: {}", typeEnum);
+                log.error("不支持的消息类型: {}", streamMessage.getType());
                 return "";
             }
         }
@@ -1,6 +1,8 @@
 package com.hachimi.mamboaiplatform.core.handler;
 
 
+import com.hachimi.mamboaiplatform.ai.model.message.AiResponseMessage;
+import com.hachimi.mamboaiplatform.ai.model.message.StreamMessage;
 import com.hachimi.mamboaiplatform.model.entity.User;
 import com.hachimi.mamboaiplatform.model.enums.ChatHistoryMessageTypeEnum;
 import com.hachimi.mamboaiplatform.service.ChatHistoryService;
@@ -26,15 +28,16 @@ public class SimpleTextStreamHandler {
      * @param loginUser          登录用户
      * @return 处理后的流
      */
-    public Flux<String> handle(Flux<String> originFlux,
+    public Flux<StreamMessage> handle(Flux<StreamMessage> originFlux,
                                ChatHistoryService chatHistoryService,
                                long appId, User loginUser) {
         StringBuilder aiResponseBuilder = new StringBuilder();
         return originFlux
-                .map(chunk -> {
+                .doOnNext(message -> {
                     // 收集AI响应内容
-                    aiResponseBuilder.append(chunk);
-                    return chunk;
+                    if (message instanceof AiResponseMessage aiResponseMessage) {
+                        aiResponseBuilder.append(aiResponseMessage.getData());
+                    }
                 })
                 .doOnComplete(() -> {
                     // 流式响应完成后，添加AI消息到对话历史
@@ -1,5 +1,6 @@
 package com.hachimi.mamboaiplatform.core.handler;
 
+import com.hachimi.mamboaiplatform.ai.model.message.StreamMessage;
 import com.hachimi.mamboaiplatform.exception.BusinessException;
 import com.hachimi.mamboaiplatform.exception.ErrorCode;
 import com.hachimi.mamboaiplatform.model.entity.User;
@@ -23,12 +24,12 @@ public class StreamHandlerExecutor {
     /**
      * 执行代码流处理
      *
-     * @param originFlux     代码内容流
+     * @param originFlux     类型化消息流
      * @param codeGenTypeEnum 代码生成类型
-     * @return 解析结果（HtmlCodeResult 或 MultiFileCodeResult）
+     * @return 面向前端展示的消息流（序列化统一在 SSE 出口完成）
      */
 
-    public Flux<String> doExecutor(Flux<String> originFlux, CodeGenTypeEnum codeGenTypeEnum,
+    public Flux<StreamMessage> doExecutor(Flux<StreamMessage> originFlux, CodeGenTypeEnum codeGenTypeEnum,
                                     ChatHistoryService chatHistoryService,
                                     long appId, User loginUser) {
         return switch (codeGenTypeEnum) {
@@ -0,0 +1,372 @@
+package com.hachimi.mamboaiplatform.core.handler;
+
+import com.hachimi.mamboaiplatform.ai.model.message.AiResponseMessage;
+import com.hachimi.mamboaiplatform.ai.model.message.StreamMessage;
+import com.hachimi.mamboaiplatform.config.StreamCoalesceConfig;
+import com.hachimi.mamboaiplatform.core.stream.ReplayEvent;
+import com.hachimi.mamboaiplatform.monitor.SseStreamMetricsCollector;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流式消息合并器（自适应微批）
+ * 把连续的文本片段合并成较大的帧：
+ * 1. 首个片段立即输出，保证首字延迟；
+ * 2. 之后按时间窗口或字节阈值输出；
+ * 3. 下游（客户端 socket）没有需求时不输出，继续累积并放大窗口；消费及时时窗口逐步回落。
+ * 非文本消息不参与合并，输出前先冲刷已累积的文本，保证顺序。
+ * 只按下游需求输出，暂存的帧数和文本字节数都有上限，超限时以溢出错误结束该连接。
+ * 生成流经回放日志以无界需求多播，合并必须放在每个连接上（{@link #coalesceFrames}），
+ * 才能感知该连接自己的写出速度。
+ */
+@Slf4j
+@Component
+public class StreamMessageCoalescer {
+
+    private final StreamCoalesceConfig config;
+
+    private final SseStreamMetricsCollector metricsCollector;
+
+    public StreamMessageCoalescer(StreamCoalesceConfig config, SseStreamMetricsCollector metricsCollector) {
+        this.config = config;
+        this.metricsCollector = metricsCollector;
+    }
+
+    /**
+     * 合并消息流
+     *
+     * @param source 原始消息流
+     * @return 合并后的消息流
+     */
+    public Flux<StreamMessage> coalesce(Flux<StreamMessage> source) {
+        return coalesce(source, MESSAGE_CODEC);
+    }
+
+    /**
+     * 合并单个连接的 SSE 帧流：连续的展示帧合并为一帧，合并帧沿用最后一个原始帧的序号，
+     * 客户端凭它作为 Last-Event-ID 续传时不会重复也不会遗漏
+     *
+     * @param source 连接的回放事件流
+     * @return 合并后的事件流
+     */
+    public Flux<ReplayEvent> coalesceFrames(Flux<ReplayEvent> source) {
+        return coalesce(source, FRAME_CODEC);
+    }
+
+    private <T> Flux<T> coalesce(Flux<T> source, FrameCodec<T> codec) {
+        if (!config.isEnabled()) {
+            // 计数器按订阅分配，并发的多个流互不干扰
+            return Flux.defer(() -> {
+                        long startNanos = System.nanoTime();
+                        long[] frames = new long[1];
+                        return source.doOnNext(item -> {
+                                    String text = codec.textOf(item);
+                                    metricsCollector.recordSourceChunk();
+                                    metricsCollector.recordFrame(text == null ? 0 : utf8Length(text));
+                                    frames[0]++;
+                                })
+                                .doOnComplete(() -> metricsCollector.recordStream(frames[0],
+                                        Duration.ofNanos(System.nanoTime() - startNanos)));
+                    })
+                    .onBackpressureBuffer(config.getMaxBufferedFrames());
+        }
+        // 会话只在下游有需求时调用 sink.next，FluxSink 自身不再缓冲
+        return Flux.create(sink -> new CoalescingSession<>(sink, codec).start(source), FluxSink.OverflowStrategy.ERROR);
+    }
+
+    /**
+     * 帧的文本提取与合并方式
+     */
+    private interface FrameCodec<T> {
+
+        /**
+         * 可合并的文本，不参与合并的帧返回 null
+         */
+        String textOf(T item);
+
+        /**
+         * 用合并后的文本构建一帧
+         *
+         * @param text 合并后的文本
+         * @param last 参与合并的最后一帧
+         */
+        T merge(String text, T last);
+    }
+
+    private static final FrameCodec<StreamMessage> MESSAGE_CODEC = new FrameCodec<>() {
+        @Override
+        public String textOf(StreamMessage message) {
+            return message instanceof AiResponseMessage aiResponseMessage ? aiResponseMessage.getData() : null;
+        }
+
+        @Override
+        public StreamMessage merge(String text, StreamMessage last) {
+            return new AiResponseMessage(text);
+        }
+    };
+
+    private static final String DISPLAY_FRAME_PREFIX = "{\"d\":\"";
+
+    private static final String DISPLAY_FRAME_SUFFIX = "\"}";
+
+    /**
+     * 展示帧 {"d":"..."} 的转义是逐字符的，转义后的内容直接拼接即是合并文本的转义，无需解码再编码
+     */
+    private static final FrameCodec<ReplayEvent> FRAME_CODEC = new FrameCodec<>() {
+        @Override
+        public String textOf(ReplayEvent event) {
+            String data = event.getData();
+            if (event.getEvent() != null || data == null || !data.startsWith(DISPLAY_FRAME_PREFIX)
+                    || !data.endsWith(DISPLAY_FRAME_SUFFIX)
+                    || data.length() < DISPLAY_FRAME_PREFIX.length() + DISPLAY_FRAME_SUFFIX.length()) {
+                return null;
+            }
+            return data.substring(DISPLAY_FRAME_PREFIX.length(), data.length() - DISPLAY_FRAME_SUFFIX.length());
+        }
+
+        @Override
+        public ReplayEvent merge(String text, ReplayEvent last) {
+            return new ReplayEvent(last.getSessionId(), last.getSeq(), null,
+                    DISPLAY_FRAME_PREFIX + text + DISPLAY_FRAME_SUFFIX);
+        }
+    };
+
+    /**
+     * 计算 UTF-8 编码字节数（不分配数组）
+     */
+    static int utf8Length(String text) {
+        int bytes = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 单个订阅的合并状态，所有状态变更都在 this 锁内完成
+     */
+    private final class CoalescingSession<T> {
+
+        private final FluxSink<T> sink;
+
+        private final FrameCodec<T> codec;
+
+        private final StringBuilder pending = new StringBuilder();
+
+        /**
+         * 已成帧、等待下游需求的消息
+         */
+        private final ArrayDeque<T> outbox = new ArrayDeque<>();
+
+        /**
+         * 暂存文本中最后一个原始帧
+         */
+        private T pendingLast;
+
+        private final long startNanos = System.nanoTime();
+
+        private int pendingBytes;
+
+        private long windowMs = config.getMinWindowMs();
+
+        private boolean firstFlushed;
+
+        private boolean upstreamDone;
+
+        private boolean terminated;
+
+        private Throwable upstreamError;
+
+        private long frames;
+
+        private Disposable flushTask;
+
+        private Disposable upstream;
+
+        private CoalescingSession(FluxSink<T> sink, FrameCodec<T> codec) {
+            this.sink = sink;
+            this.codec = codec;
+        }
+
+        private void start(Flux<T> source) {
+            sink.onRequest(n -> onDemand());
+            sink.onDispose(this::dispose);
+            upstream = source
+                    .contextWrite(sink.contextView())
+                    .subscribe(this::onNext, this::onError, this::onComplete);
+            if (sink.isCancelled()) {
+                dispose();
+            }
+        }
+
+        private synchronized void onNext(T item) {
+            if (terminated) {
+                return;
+            }
+            metricsCollector.recordSourceChunk();
+            String data = codec.textOf(item);
+            if (data == null) {
+                // 非文本消息：先冲刷文本再原样输出
+                flush();
+                emit(item, 0);
+                return;
+            }
+            pending.append(data);
+            pendingLast = item;
+            pendingBytes += utf8Length(data);
+            if (pendingBytes > config.getMaxPendingBytes() && !hasDemand()) {
+                overflow("暂存文本超过 " + config.getMaxPendingBytes() + " 字节");
+            } else if (!firstFlushed && config.isFlushFirstImmediately()) {
+                flush();
+            } else if (pendingBytes >= config.getMaxBytes() && hasDemand()) {
+                flush();
+            } else {
+                scheduleFlush();
+            }
+        }
+
+        private synchronized void onError(Throwable error) {
+            upstreamError = error;
+            onComplete();
+        }
+
+        private synchronized void onComplete() {
+            if (terminated) {
+                return;
+            }
+            upstreamDone = true;
+            flush();
+            drain();
+        }
+
+        /**
+         * 下游产生新需求：先输出已成帧的消息；若窗口已到期但因客户端缓慢而暂存了文本，此时补发
+         */
+        private synchronized void onDemand() {
+            drain();
+            if (flushTask == null && pending.length() > 0 && !upstreamDone && !terminated) {
+                flush();
+            }
+        }
+
+        private synchronized void onWindowElapsed() {
+            flushTask = null;
+            if (pending.length() == 0 || upstreamDone) {
+                return;
+            }
+            if (hasDemand()) {
+                flush();
+                // 客户端跟得上，窗口逐步回落
+                windowMs = Math.max(config.getMinWindowMs(), windowMs / 2);
+            } else {
+                // 客户端 socket 缓慢，放大窗口继续累积，等待下游需求
+                windowMs = Math.min(config.getMaxWindowMs(), windowMs * 2);
+                log.debug("SSE 下游无需求，合并窗口放大至 {}ms，暂存 {} 字节", windowMs, pendingBytes);
+            }
+        }
+
+        private void scheduleFlush() {
+            if (flushTask == null) {
+                flushTask = Schedulers.parallel().schedule(this::onWindowElapsed, windowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private boolean hasDemand() {
+            return outbox.isEmpty() && sink.requestedFromDownstream() > 0;
+        }
+
+        private void flush() {
+            if (flushTask != null) {
+                flushTask.dispose();
+                flushTask = null;
+            }
+            if (pending.length() == 0) {
+                return;
+            }
+            int bytes = pendingBytes;
+            String text = pending.toString();
+            T last = pendingLast;
+            pending.setLength(0);
+            pendingBytes = 0;
+            pendingLast = null;
+            firstFlushed = true;
+            emit(codec.merge(text, last), bytes);
+        }
+
+        private void emit(T message, int bytes) {
+            if (terminated) {
+                return;
+            }
+            frames++;
+            metricsCollector.recordFrame(bytes);
+            outbox.offerLast(message);
+            if (outbox.size() > config.getMaxBufferedFrames()) {
+                overflow("暂存帧数超过 " + config.getMaxBufferedFrames());
+                return;
+            }
+            drain();
+        }
+
+        /**
+         * 按下游需求输出已成帧的消息，上游结束且全部输出后再传递终止信号
+         */
+        private void drain() {
+            while (!outbox.isEmpty() && sink.requestedFromDownstream() > 0) {
+                sink.next(outbox.pollFirst());
+            }
+            if (outbox.isEmpty() && upstreamDone && !terminated) {
+                terminated = true;
+                metricsCollector.recordStream(frames, Duration.ofNanos(System.nanoTime() - startNanos));
+                if (upstreamError != null) {
+                    sink.error(upstreamError);
+                } else {
+                    sink.complete();
+                }
+            }
+        }
+
+        /**
+         * 客户端长期不消费，暂存超过上限：释放暂存内容并以溢出错误结束该连接
+         */
+        private void overflow(String reason) {
+            log.warn("SSE 下游消费过慢，{}，结束该连接", reason);
+            terminated = true;
+            outbox.clear();
+            pending.setLength(0);
+            pendingBytes = 0;
+            pendingLast = null;
+            dispose();
+            sink.error(Exceptions.failWithOverflow("SSE 下游消费过慢，" + reason));
+        }
+
+        private synchronized void dispose() {
+            if (flushTask != null) {
+                flushTask.dispose();
+                flushTask = null;
+            }
+            if (upstream != null) {
+                upstream.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.hachimi.mamboaiplatform.core.handler;
+
+import cn.hutool.json.JSONUtil;
+import com.hachimi.mamboaiplatform.ai.model.message.AiResponseMessage;
+import com.hachimi.mamboaiplatform.ai.model.message.FileClosedMessage;
+import com.hachimi.mamboaiplatform.ai.model.message.FilePreviewMessage;
+import com.hachimi.mamboaiplatform.ai.model.message.QueuePositionMessage;
+import com.hachimi.mamboaiplatform.ai.model.message.StreamMessage;
+import com.hachimi.mamboaiplatform.core.stream.GenerationReplayLog;
+import com.hachimi.mamboaiplatform.core.stream.ReplayEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * 流式消息 JSON 写出器
+ * 整条链路传递类型化的 StreamMessage，仅在写 SSE 帧时序列化一次。
+ * 展示帧格式保持为 {"d": "..."}，与前端约定一致。
+ * 每个线程复用一个 StringBuilder，避免逐 token 创建 Map 和反射序列化的开销。
+ */
+@Slf4j
+@Component
+public class StreamMessageJsonWriter {
+
+    /**
+     * 线程内缓冲区超过该容量时不再保留，防止偶发大帧长期占用内存
+     */
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * 将消息写为 SSE 帧：展示消息为默认事件，文件完成、文件预览、排队位置消息为 file-closed、file-preview、queue-position 命名事件
+     * （命名事件不会触发前端的 onmessage，旧前端可直接忽略）
+     *
+     * @param message 流式消息
+     * @return 仅 event、data 有效的帧，序号由回放日志分配
+     */
+    public ReplayEvent writeFrame(StreamMessage message) {
+        if (message instanceof FileClosedMessage fileClosedMessage) {
+            StringBuilder sb = acquire();
+            sb.append("{\"file\":");
+            appendQuoted(sb, fileClosedMessage.getFileName());
+            sb.append(",\"size\":").append(fileClosedMessage.getSize()).append('}');
+            return new ReplayEvent(null, 0, GenerationReplayLog.FILE_CLOSED_EVENT, release(sb));
+        }
+        if (message instanceof FilePreviewMessage filePreviewMessage) {
+            StringBuilder sb = acquire();
+            sb.append("{\"file\":");
+            appendQuoted(sb, filePreviewMessage.getFileName());
+            sb.append(",\"d\":");
+            appendQuoted(sb, filePreviewMessage.getDelta());
+            sb.append('}');
+            return new ReplayEvent(null, 0, GenerationReplayLog.FILE_PREVIEW_EVENT, release(sb));
+        }
+        if (message instanceof QueuePositionMessage queuePositionMessage) {
+            String data = "{\"position\":" + queuePositionMessage.getPosition()
+                    + ",\"queued\":" + queuePositionMessage.getQueued() + "}";
+            return new ReplayEvent(null, 0, GenerationReplayLog.QUEUE_POSITION_EVENT, data);
+        }
+        return new ReplayEvent(null, 0, null, write(message));
+    }
+
+    /**
+     * 将消息写为 SSE data 字段内容
+     *
+     * @param message 流式消息
+     * @return JSON 字符串
+     */
+    public String write(StreamMessage message) {
+        if (message instanceof AiResponseMessage aiResponseMessage) {
+            return writeDisplayFrame(aiResponseMessage.getData());
+        }
+        // 非展示类消息正常不会到达 SSE 出口，兜底走通用序列化
+        log.debug("非展示类消息到达 SSE 出口，type={}", message.getType());
+        return JSONUtil.toJsonStr(message);
+    }
+
+    /**
+     * 写出展示帧 {"d": text}
+     *
+     * @param text 展示文本
+     * @return JSON 字符串
+     */
+    public String writeDisplayFrame(String text) {
+        StringBuilder sb = acquire();
+        sb.append("{\"d\":");
+        if (text == null) {
+            sb.append("null");
+        } else {
+            appendQuoted(sb, text);
+        }
+        sb.append('}');
+        return release(sb);
+    }
+
+    private StringBuilder acquire() {
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        return sb;
+    }
+
+    private String release(StringBuilder sb) {
+        String result = sb.toString();
+        if (sb.capacity() > MAX_RETAINED_CAPACITY) {
+            BUFFER.remove();
+        }
+        return result;
+    }
+
+    /**
+     * 按 JSON 规范转义并写出带引号的字符串
+     */
+    static void appendQuoted(StringBuilder sb, String text) {
+        sb.append('"');
+        int length = text.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            String escaped = switch (c) {
+                case '"' -> "\\\"";
+                case '\\' -> "\\\\";
+                case '\n' -> "\\n";
+                case '\r' -> "\\r";
+                case '\t' -> "\\t";
+                case '\b' -> "\\b";
+                case '\f' -> "\\f";
+                default -> null;
+            };
+            if (escaped == null && c >= 0x20 && c != '\u2028' && c != '\u2029') {
+                continue;
+            }
+            // 先批量写出前面无需转义的片段
+            sb.append(text, start, i);
+            if (escaped != null) {
+                sb.append(escaped);
+            } else {
+                sb.append("\\u")
+                        .append(HEX_DIGITS[(c >> 12) & 0xF])
+                        .append(HEX_DIGITS[(c >> 8) & 0xF])
+                        .append(HEX_DIGITS[(c >> 4) & 0xF])
+                        .append(HEX_DIGITS[c & 0xF]);
+            }
+            start = i + 1;
+        }
+        sb.append(text, start, length);
+        sb.append('"');
+    }
+}
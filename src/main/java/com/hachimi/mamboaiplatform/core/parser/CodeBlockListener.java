@@ -0,0 +1,30 @@
+package com.hachimi.mamboaiplatform.core.parser;
+
+/**
+ * 流式代码块监听器
+ * 由 {@link StreamingCodeBlockParser} 在识别到代码块的开始、内容和结束时回调
+ */
+public interface CodeBlockListener {
+
+    /**
+     * 代码块开始
+     *
+     * @param fileName 目标文件名（如 index.html）
+     */
+    void onBlockOpen(String fileName);
+
+    /**
+     * 代码块内容片段（已去除首尾空白）
+     *
+     * @param fileName 目标文件名
+     * @param content  内容片段（仅在回调期间有效，需立即消费）
+     */
+    void onBlockContent(String fileName, CharSequence content);
+
+    /**
+     * 代码块结束
+     *
+     * @param fileName 目标文件名
+     */
+    void onBlockClose(String fileName);
+}
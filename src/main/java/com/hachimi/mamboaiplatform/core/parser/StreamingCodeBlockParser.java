@@ -0,0 +1,249 @@
+package com.hachimi.mamboaiplatform.core.parser;
+
+import com.hachimi.mamboaiplatform.exception.BusinessException;
+import com.hachimi.mamboaiplatform.exception.ErrorCode;
+import com.hachimi.mamboaiplatform.model.enums.CodeGenTypeEnum;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 流式代码块解析器（推模式状态机）
+ * 随 token 到达逐字符识别 ```html / ```css / ```js 代码块，把块内容直接推给监听器，不缓存完整响应。
+ * 与 {@link HtmlCodeParser}、{@link MultiFileCodeParser} 的语义保持一致：
+ * 1. 每种语言只取第一个代码块，内容去除首尾空白；
+ * 2. HTML 模式下没有找到代码块或 html 代码块为空时，把整个响应作为 index.html（html 代码块出现内容前缓存原文）；
+ * 3. 输出被截断导致代码块未闭合时，按已收到的内容提交。
+ * 非线程安全，调用方需保证 feed / finish 串行调用。
+ */
+public class StreamingCodeBlockParser {
+
+    public static final String HTML_FILE_NAME = "index.html";
+
+    public static final String CSS_FILE_NAME = "style.css";
+
+    public static final String JS_FILE_NAME = "script.js";
+
+    /**
+     * 围栏信息串（语言标识）的最大长度，超出部分忽略
+     */
+    private static final int MAX_INFO_LENGTH = 64;
+
+    private enum State {
+        /**
+         * 代码块之外
+         */
+        TEXT,
+        /**
+         * 已读到开始围栏，正在读取语言标识
+         */
+        FENCE_INFO,
+        /**
+         * 目标代码块内
+         */
+        BLOCK,
+        /**
+         * 无关代码块内（跳过内容）
+         */
+        SKIP_BLOCK
+    }
+
+    private final CodeGenTypeEnum codeGenType;
+
+    private final CodeBlockListener listener;
+
+    /**
+     * 已经开始过的文件，每种语言只取第一个代码块
+     */
+    private final Set<String> openedFiles = new HashSet<>();
+
+    private final StringBuilder info = new StringBuilder();
+
+    /**
+     * 本次 feed 中待推送的块内容
+     */
+    private final StringBuilder pendingContent = new StringBuilder();
+
+    /**
+     * 暂存的空白字符，遇到非空白字符才写出，块结束时丢弃（即 trim 尾部）
+     */
+    private final StringBuilder trailingWhitespace = new StringBuilder();
+
+    /**
+     * HTML 模式兜底用的原文，html 代码块出现非空白内容后置空
+     */
+    private StringBuilder fallbackText;
+
+    private State state = State.TEXT;
+
+    /**
+     * 连续反引号计数
+     */
+    private int backticks;
+
+    private String currentFile;
+
+    /**
+     * 当前块是否已出现非空白字符（即 trim 头部）
+     */
+    private boolean blockStarted;
+
+    private boolean finished;
+
+    public StreamingCodeBlockParser(CodeGenTypeEnum codeGenType, CodeBlockListener listener) {
+        if (codeGenType != CodeGenTypeEnum.HTML && codeGenType != CodeGenTypeEnum.MULTI_FILE) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
+        }
+        this.codeGenType = codeGenType;
+        this.listener = listener;
+        this.fallbackText = codeGenType == CodeGenTypeEnum.HTML ? new StringBuilder() : null;
+    }
+
+    /**
+     * 输入一段响应片段
+     *
+     * @param chunk 响应片段
+     */
+    public void feed(String chunk) {
+        if (chunk == null || finished) {
+            return;
+        }
+        if (fallbackText != null) {
+            fallbackText.append(chunk);
+        }
+        for (int i = 0; i < chunk.length(); i++) {
+            accept(chunk.charAt(i));
+        }
+        flushContent();
+    }
+
+    /**
+     * 响应结束：提交未闭合的代码块，HTML 模式下必要时走整段兜底
+     */
+    public void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (state == State.BLOCK) {
+            flushBackticks();
+            closeBlock();
+        }
+        if (fallbackText != null) {
+            String htmlCode = fallbackText.toString().trim();
+            fallbackText = null;
+            listener.onBlockOpen(HTML_FILE_NAME);
+            listener.onBlockContent(HTML_FILE_NAME, htmlCode);
+            listener.onBlockClose(HTML_FILE_NAME);
+        }
+    }
+
+    private void accept(char c) {
+        switch (state) {
+            case TEXT -> {
+                if (c != '`') {
+                    backticks = 0;
+                } else if (++backticks == 3) {
+                    backticks = 0;
+                    info.setLength(0);
+                    state = State.FENCE_INFO;
+                }
+            }
+            case FENCE_INFO -> {
+                if (c == '\n') {
+                    openBlock(info.toString().trim().toLowerCase(Locale.ROOT));
+                } else if (info.length() < MAX_INFO_LENGTH) {
+                    info.append(c);
+                }
+            }
+            case BLOCK, SKIP_BLOCK -> {
+                if (c == '`') {
+                    if (++backticks == 3) {
+                        backticks = 0;
+                        closeBlock();
+                    }
+                    return;
+                }
+                flushBackticks();
+                appendContent(c);
+            }
+        }
+    }
+
+    private void openBlock(String language) {
+        String fileName = resolveFileName(language);
+        if (fileName == null || !openedFiles.add(fileName)) {
+            state = State.SKIP_BLOCK;
+            return;
+        }
+        state = State.BLOCK;
+        currentFile = fileName;
+        blockStarted = false;
+        trailingWhitespace.setLength(0);
+        listener.onBlockOpen(fileName);
+    }
+
+    private void closeBlock() {
+        if (state == State.BLOCK) {
+            flushContent();
+            listener.onBlockClose(currentFile);
+            currentFile = null;
+        }
+        state = State.TEXT;
+    }
+
+    /**
+     * 不足三个的反引号属于块内容
+     */
+    private void flushBackticks() {
+        for (; backticks > 0; backticks--) {
+            appendContent('`');
+        }
+    }
+
+    private void appendContent(char c) {
+        if (state != State.BLOCK) {
+            return;
+        }
+        // 与 String.trim() 的空白判定一致
+        if (c <= ' ') {
+            if (blockStarted) {
+                trailingWhitespace.append(c);
+            }
+            return;
+        }
+        if (!blockStarted && HTML_FILE_NAME.equals(currentFile)) {
+            // html 代码块有内容，不再需要整段兜底
+            fallbackText = null;
+        }
+        blockStarted = true;
+        if (!trailingWhitespace.isEmpty()) {
+            pendingContent.append(trailingWhitespace);
+            trailingWhitespace.setLength(0);
+        }
+        pendingContent.append(c);
+    }
+
+    private void flushContent() {
+        if (pendingContent.isEmpty() || currentFile == null) {
+            return;
+        }
+        listener.onBlockContent(currentFile, pendingContent);
+        pendingContent.setLength(0);
+    }
+
+    private String resolveFileName(String language) {
+        if ("html".equals(language)) {
+            return HTML_FILE_NAME;
+        }
+        if (codeGenType != CodeGenTypeEnum.MULTI_FILE) {
+            return null;
+        }
+        return switch (language) {
+            case "css" -> CSS_FILE_NAME;
+            case "js", "javascript" -> JS_FILE_NAME;
+            default -> null;
+        };
+    }
+}
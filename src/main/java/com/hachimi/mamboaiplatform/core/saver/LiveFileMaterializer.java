@@ -0,0 +1,358 @@
+package com.hachimi.mamboaiplatform.core.saver;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.hachimi.mamboaiplatform.ai.model.message.FileClosedMessage;
+import com.hachimi.mamboaiplatform.ai.model.message.FilePreviewMessage;
+import com.hachimi.mamboaiplatform.ai.model.message.StreamMessage;
+import com.hachimi.mamboaiplatform.ai.tools.FileWriteTool;
+import com.hachimi.mamboaiplatform.core.stream.JsonStringFieldDecoder;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.service.tool.ToolExecution;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import static com.hachimi.mamboaiplatform.constant.AppConstant.CODE_OUTPUT_ROOT_DIR;
+
+/**
+ * writeFile 参数实时落盘
+ * 模型流式输出 writeFile 工具参数时，增量解码 relativeFilePath 与 content，
+ * 内容边到达边写入暂存文件并推送预览；工具真正执行时若参数与暂存内容一致（长度 + CRC32），
+ * 直接原子重命名暂存文件，不再整体写一遍。
+ * 暂存目录为 tmp/code_output/.staging/vue_project_{appId}，与目标目录同一文件系统。
+ */
+@Slf4j
+@Component
+public class LiveFileMaterializer {
+
+    private static final String WRITE_FILE_TOOL_NAME = "writeFile";
+
+    private static final String PATH_FIELD = "relativeFilePath";
+
+    private static final String CONTENT_FIELD = "content";
+
+    /**
+     * 预览增量累积到该字符数再推送，避免每个 token 一帧
+     */
+    private static final int PREVIEW_FLUSH_CHARS = 128;
+
+    private static final String STAGING_SUFFIX = ".part";
+
+    /**
+     * appId:relativeFilePath -> 已完整写入、等待工具执行的暂存文件
+     */
+    private final Map<String, StagedFile> stagedFiles = new ConcurrentHashMap<>();
+
+    /**
+     * 为一次流式生成打开会话，生成结束时必须调用 {@link LiveSession#close()}
+     */
+    public LiveSession openSession(Long appId) {
+        return new LiveSession(appId);
+    }
+
+    /**
+     * 工具执行时提交暂存文件
+     *
+     * @param appId            应用 ID
+     * @param relativeFilePath 工具参数中的文件路径
+     * @param target           目标路径（父目录需已存在）
+     * @param content          工具参数中的完整内容
+     * @return 是否已通过重命名完成写入；false 时调用方应按原方式写入
+     */
+    public boolean commit(Long appId, String relativeFilePath, Path target, String content) {
+        String key = key(appId, relativeFilePath);
+        StagedFile stagedFile = stagedFiles.get(key);
+        if (stagedFile == null) {
+            return false;
+        }
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes);
+        if (stagedFile.size != bytes.length || stagedFile.crc != crc32.getValue()) {
+            log.warn("暂存文件与工具参数不一致，回退为直接写入: {}", relativeFilePath);
+            return false;
+        }
+        if (!stagedFiles.remove(key, stagedFile)) {
+            return false;
+        }
+        try {
+            try {
+                Files.move(stagedFile.path, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(stagedFile.path, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException e) {
+            log.warn("暂存文件重命名失败，回退为直接写入: {}", target, e);
+            FileUtil.del(stagedFile.path);
+            return false;
+        }
+    }
+
+    private static String key(Long appId, String relativeFilePath) {
+        return appId + ":" + relativeFilePath;
+    }
+
+    private record StagedFile(Path path, long size, long crc) {
+    }
+
+    /**
+     * 单次生成内的实时落盘会话，由 TokenStream 回调线程串行调用
+     */
+    public final class LiveSession {
+
+        private final Long appId;
+
+        private final Path stagingDir;
+
+        /**
+         * 工具调用 ID -> 解码状态
+         */
+        private final Map<String, ToolCallState> toolCalls = new HashMap<>();
+
+        /**
+         * 本会话登记过的暂存文件，结束时清理未被提交的
+         */
+        private final Map<String, StagedFile> registered = new HashMap<>();
+
+        /**
+         * 当前回调中产生的待推送消息
+         */
+        private List<StreamMessage> output = new ArrayList<>();
+
+        private LiveSession(Long appId) {
+            this.appId = appId;
+            this.stagingDir = Paths.get(CODE_OUTPUT_ROOT_DIR, ".staging", "vue_project_" + appId);
+        }
+
+        /**
+         * 处理一段工具参数分片
+         *
+         * @return 需要推送的预览消息
+         */
+        public synchronized List<StreamMessage> onPartialToolArguments(int index, ToolExecutionRequest partial) {
+            if (!WRITE_FILE_TOOL_NAME.equals(partial.name()) || partial.arguments() == null) {
+                return List.of();
+            }
+            String callId = partial.id() != null ? partial.id() : String.valueOf(index);
+            toolCalls.computeIfAbsent(callId, ToolCallState::new).decoder.feed(partial.arguments());
+            return drainOutput();
+        }
+
+        /**
+         * 工具执行完成后，为成功写入的文件生成完成消息
+         */
+        public synchronized FileClosedMessage onToolExecuted(ToolExecution toolExecution) {
+            ToolExecutionRequest request = toolExecution.request();
+            if (!WRITE_FILE_TOOL_NAME.equals(request.name())) {
+                return null;
+            }
+            ToolCallState state = request.id() == null ? null : toolCalls.remove(request.id());
+            if (state != null) {
+                state.discardIfUnfinished();
+            }
+            if (toolExecution.result() == null || !toolExecution.result().startsWith("文件写入成功")) {
+                return null;
+            }
+            try {
+                JSONObject arguments = JSONUtil.parseObj(request.arguments());
+                String relativeFilePath = arguments.getStr(PATH_FIELD);
+                Path target = FileWriteTool.resolvePath(relativeFilePath, appId);
+                if (!Files.isRegularFile(target)) {
+                    return null;
+                }
+                return new FileClosedMessage(relativeFilePath, Files.size(target));
+            } catch (Exception e) {
+                log.debug("生成文件完成消息失败: {}", e.getMessage());
+                return null;
+            }
+        }
+
+        /**
+         * 生成结束：删除未写完或未被提交的暂存文件
+         */
+        public synchronized void close() {
+            toolCalls.values().forEach(ToolCallState::discardIfUnfinished);
+            toolCalls.clear();
+            registered.forEach((key, stagedFile) -> {
+                if (stagedFiles.remove(key, stagedFile)) {
+                    FileUtil.del(stagedFile.path);
+                }
+            });
+            registered.clear();
+        }
+
+        private List<StreamMessage> drainOutput() {
+            if (output.isEmpty()) {
+                return List.of();
+            }
+            List<StreamMessage> drained = output;
+            output = new ArrayList<>();
+            return drained;
+        }
+
+        private void register(String relativeFilePath, StagedFile stagedFile) {
+            String key = key(appId, relativeFilePath);
+            StagedFile previous = stagedFiles.put(key, stagedFile);
+            if (previous != null) {
+                // 同一文件在本次生成中被再次写入，以最后一次为准
+                FileUtil.del(previous.path);
+            }
+            registered.put(key, stagedFile);
+        }
+
+        /**
+         * 单个 writeFile 调用的解码状态
+         */
+        private final class ToolCallState implements JsonStringFieldDecoder.Listener {
+
+            private final String callId;
+
+            private final JsonStringFieldDecoder decoder = new JsonStringFieldDecoder(this);
+
+            private final StringBuilder pathBuilder = new StringBuilder();
+
+            private final StringBuilder previewPending = new StringBuilder();
+
+            private final CRC32 crc32 = new CRC32();
+
+            private String relativeFilePath;
+
+            private Path stagingPath;
+
+            private Writer writer;
+
+            private boolean contentDone;
+
+            private ToolCallState(String callId) {
+                this.callId = callId;
+            }
+
+            @Override
+            public void onFieldStart(String name) {
+                if (CONTENT_FIELD.equals(name) && writer == null) {
+                    openStaging();
+                }
+            }
+
+            @Override
+            public void onFieldChars(String name, CharSequence chars) {
+                if (PATH_FIELD.equals(name)) {
+                    pathBuilder.append(chars);
+                } else if (CONTENT_FIELD.equals(name)) {
+                    if (writer != null) {
+                        try {
+                            writer.append(chars);
+                        } catch (IOException e) {
+                            log.warn("写入暂存文件失败: {}", stagingPath, e);
+                            discard();
+                        }
+                    }
+                    previewPending.append(chars);
+                    if (previewPending.length() >= PREVIEW_FLUSH_CHARS) {
+                        flushPreview();
+                    }
+                }
+            }
+
+            @Override
+            public void onFieldEnd(String name) {
+                if (PATH_FIELD.equals(name)) {
+                    relativeFilePath = pathBuilder.toString();
+                    flushPreview();
+                } else if (CONTENT_FIELD.equals(name)) {
+                    contentDone = true;
+                    flushPreview();
+                    closeStaging();
+                }
+                tryRegister();
+            }
+
+            private void openStaging() {
+                try {
+                    Files.createDirectories(stagingDir);
+                    stagingPath = stagingDir.resolve(callId.replaceAll("[^A-Za-z0-9_-]", "_") + STAGING_SUFFIX);
+                    writer = new OutputStreamWriter(new CheckedOutputStream(
+                            new BufferedOutputStream(Files.newOutputStream(stagingPath)), crc32), StandardCharsets.UTF_8);
+                } catch (IOException e) {
+                    log.warn("创建暂存文件失败: {}", stagingPath, e);
+                    discard();
+                }
+            }
+
+            private void closeStaging() {
+                if (writer == null) {
+                    return;
+                }
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    log.warn("关闭暂存文件失败: {}", stagingPath, e);
+                    discard();
+                }
+            }
+
+            /**
+             * 路径未知时先累积预览内容，路径解码完成后一并推送
+             */
+            private void flushPreview() {
+                if (relativeFilePath == null || previewPending.isEmpty()) {
+                    return;
+                }
+                output.add(new FilePreviewMessage(relativeFilePath, previewPending.toString()));
+                previewPending.setLength(0);
+            }
+
+            private void tryRegister() {
+                if (!contentDone || relativeFilePath == null || stagingPath == null || writer == null) {
+                    return;
+                }
+                try {
+                    register(relativeFilePath, new StagedFile(stagingPath, Files.size(stagingPath), crc32.getValue()));
+                    // 所有权已转交给登记表
+                    writer = null;
+                    stagingPath = null;
+                } catch (IOException e) {
+                    log.warn("登记暂存文件失败: {}", stagingPath, e);
+                    discard();
+                }
+            }
+
+            private void discardIfUnfinished() {
+                if (stagingPath != null) {
+                    discard();
+                }
+            }
+
+            private void discard() {
+                IoUtil.close(writer);
+                if (stagingPath != null) {
+                    FileUtil.del(stagingPath);
+                }
+                // 置空后本次调用不再写入暂存文件，仅保留预览
+                writer = null;
+                stagingPath = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.hachimi.mamboaiplatform.core.saver;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.core.util.StrUtil;
+import com.hachimi.mamboaiplatform.ai.model.message.FileClosedMessage;
+import com.hachimi.mamboaiplatform.core.parser.CodeBlockListener;
+import com.hachimi.mamboaiplatform.exception.BusinessException;
+import com.hachimi.mamboaiplatform.exception.ErrorCode;
+import com.hachimi.mamboaiplatform.model.enums.CodeGenTypeEnum;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.hachimi.mamboaiplatform.constant.AppConstant.CODE_OUTPUT_ROOT_DIR;
+
+/**
+ * 流式代码文件写入器
+ * 代码块内容边到达边写入暂存文件（*.part），块结束时原子重命名为目标文件，
+ * 预览读到的始终是完整文件；目录规则与 {@link CodeFileSaverTemplate} 一致。
+ * 本次生成覆盖的原文件先备份到输出目录之外的临时目录，取消或出错时回滚到生成前的状态，
+ * 不会留下新旧文件混杂的站点；生成完成后调用 {@link #commit()} 丢弃备份。
+ *
+ * @author Marisalice
+ */
+@Slf4j
+public class StreamingCodeFileWriter implements CodeBlockListener {
+
+    private static final String STAGING_SUFFIX = ".part";
+
+    private final File baseDir;
+
+    /**
+     * 文件名 -> 正在写入的暂存文件
+     */
+    private final Map<String, StagingFile> stagingFiles = new HashMap<>();
+
+    /**
+     * 已落盘、尚未下发的文件完成消息
+     */
+    private final List<FileClosedMessage> closedFiles = new ArrayList<>();
+
+    /**
+     * 本次生成已落盘的文件名 -> 原文件备份（原来不存在时为 null），用于回滚
+     */
+    private final Map<String, Path> committedFiles = new LinkedHashMap<>();
+
+    /**
+     * 原文件备份目录，首次需要备份时创建
+     */
+    private Path backupDir;
+
+    public StreamingCodeFileWriter(CodeGenTypeEnum codeGenType, Long appId) {
+        if (appId == null) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
+        }
+        String uniqueDirName = StrUtil.format("{}_{}", codeGenType.getValue(), appId);
+        this.baseDir = new File(CODE_OUTPUT_ROOT_DIR, uniqueDirName);
+    }
+
+    StreamingCodeFileWriter(File baseDir) {
+        this.baseDir = baseDir;
+    }
+
+    @Override
+    public synchronized void onBlockOpen(String fileName) {
+        discard(stagingFiles.remove(fileName));
+        FileUtil.mkdir(baseDir);
+        Path stagingPath = baseDir.toPath().resolve(fileName + STAGING_SUFFIX);
+        try {
+            Writer writer = Files.newBufferedWriter(stagingPath, StandardCharsets.UTF_8);
+            stagingFiles.put(fileName, new StagingFile(stagingPath, writer));
+        } catch (IOException e) {
+            log.error("创建暂存文件失败: {}", stagingPath, e);
+        }
+    }
+
+    @Override
+    public synchronized void onBlockContent(String fileName, CharSequence content) {
+        StagingFile stagingFile = stagingFiles.get(fileName);
+        if (stagingFile == null) {
+            return;
+        }
+        try {
+            stagingFile.writer.append(content);
+            stagingFile.written += content.length();
+        } catch (IOException e) {
+            log.error("写入暂存文件失败: {}", stagingFile.path, e);
+            discard(stagingFiles.remove(fileName));
+        }
+    }
+
+    @Override
+    public synchronized void onBlockClose(String fileName) {
+        StagingFile stagingFile = stagingFiles.remove(fileName);
+        if (stagingFile == null) {
+            return;
+        }
+        if (stagingFile.written == 0) {
+            // 与 writeToFile 一致，空内容不覆盖已有文件
+            discard(stagingFile);
+            return;
+        }
+        Path target = baseDir.toPath().resolve(fileName);
+        try {
+            stagingFile.writer.close();
+            backup(fileName, target);
+            moveAtomically(stagingFile.path, target);
+            closedFiles.add(new FileClosedMessage(fileName, Files.size(target)));
+            log.info("文件写入完成: {}", target);
+        } catch (IOException e) {
+            log.error("保存文件失败: {}", target, e);
+            discard(stagingFile);
+        }
+    }
+
+    /**
+     * 取出自上次调用以来落盘的文件
+     */
+    public synchronized List<FileClosedMessage> drainClosedFiles() {
+        if (closedFiles.isEmpty()) {
+            return List.of();
+        }
+        List<FileClosedMessage> drained = new ArrayList<>(closedFiles);
+        closedFiles.clear();
+        return drained;
+    }
+
+    /**
+     * 放弃本次生成（取消或出错时调用）：删除未完成的暂存文件，已落盘的文件回滚到生成前的内容
+     */
+    public synchronized void abort() {
+        stagingFiles.values().forEach(this::discard);
+        stagingFiles.clear();
+        committedFiles.forEach((fileName, backup) -> {
+            Path target = baseDir.toPath().resolve(fileName);
+            try {
+                if (backup == null) {
+                    Files.deleteIfExists(target);
+                } else {
+                    moveAtomically(backup, target);
+                }
+            } catch (IOException e) {
+                log.error("回滚文件失败: {}", target, e);
+            }
+        });
+        if (!committedFiles.isEmpty()) {
+            log.info("生成未完成，已回滚 {} 个文件: {}", committedFiles.size(), baseDir);
+        }
+        committedFiles.clear();
+        deleteBackupDir();
+    }
+
+    /**
+     * 生成完成，保留本次写入的文件并丢弃备份
+     */
+    public synchronized void commit() {
+        committedFiles.clear();
+        deleteBackupDir();
+    }
+
+    public File getBaseDir() {
+        return baseDir;
+    }
+
+    /**
+     * 目标文件首次被本次生成覆盖前，复制一份原内容；复制而不是移动，避免预览在替换前短暂读不到文件
+     */
+    private void backup(String fileName, Path target) throws IOException {
+        if (committedFiles.containsKey(fileName)) {
+            return;
+        }
+        Path backup = null;
+        if (Files.exists(target)) {
+            if (backupDir == null) {
+                backupDir = Files.createTempDirectory("code-gen-backup-");
+            }
+            backup = backupDir.resolve(fileName);
+            Files.copy(target, backup, StandardCopyOption.REPLACE_EXISTING);
+        }
+        committedFiles.put(fileName, backup);
+    }
+
+    private void deleteBackupDir() {
+        if (backupDir != null) {
+            FileUtil.del(backupDir);
+            backupDir = null;
+        }
+    }
+
+    private void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void discard(StagingFile stagingFile) {
+        if (stagingFile == null) {
+            return;
+        }
+        IoUtil.close(stagingFile.writer);
+        FileUtil.del(stagingFile.path);
+    }
+
+    private static final class StagingFile {
+
+        private final Path path;
+
+        private final Writer writer;
+
+        private long written;
+
+        private StagingFile(Path path, Writer writer) {
+            this.path = path;
+            this.writer = writer;
+        }
+    }
+}
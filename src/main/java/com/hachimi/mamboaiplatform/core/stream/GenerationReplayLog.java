@@ -0,0 +1,480 @@
+package com.hachimi.mamboaiplatform.core.stream;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.hachimi.mamboaiplatform.config.GenerationReplayConfig;
+import com.hachimi.mamboaiplatform.core.GenerationSessionRegistry;
+import com.hachimi.mamboaiplatform.exception.BusinessException;
+import com.hachimi.mamboaiplatform.exception.ErrorCode;
+import com.hachimi.mamboaiplatform.exception.ThrowUtils;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * 生成流回放日志
+ * 每个生成会话的 SSE 事件带有单调递增的序号，同时写入：
+ * 1. 本节点内存环形缓冲（Sinks replay limit），同节点重连直接回放并接上实时尾部；
+ * 2. Redis Stream，其他节点重连时从 Redis 回放并轮询尾部。
+ *    写入 Redis 不在上游回调线程上进行：事件先入队，由 boundedElastic 线程按批流水线写入，
+ *    Redis 延迟不会拖慢实时订阅者（实时订阅者始终从内存缓冲读取）。
+ * 生成本身与 HTTP 连接解耦，浏览器断线不会中断生成，重连也不会再次调用模型。
+ * 同时作为按 appId 的单飞（single-flight）注册表：同一应用同一时刻只有一个上游生成，
+ * 重复提交、多标签页、管理员旁观都挂到同一个多播流上（迟到者先回放再接实时尾部），
+ * 最后一个订阅者离开时：若它已收到事件（可携带 Last-Event-ID 续传），超过宽限期仍无人重连才取消上游生成；
+ * 若它尚未收到任何事件，没有续传的可能，立即取消上游，不再为无人接收的 token 付费。
+ */
+@Slf4j
+@Component
+public class GenerationReplayLog {
+
+    public static final String DONE_EVENT = "done";
+
+    public static final String ERROR_EVENT = "business-error";
+
+    /**
+     * 文件写入完成事件
+     */
+    public static final String FILE_CLOSED_EVENT = "file-closed";
+
+    /**
+     * 文件内容预览事件
+     */
+    public static final String FILE_PREVIEW_EVENT = "file-preview";
+
+    /**
+     * 排队位置事件
+     */
+    public static final String QUEUE_POSITION_EVENT = "queue-position";
+
+    private static final String REPLAY_STREAM_KEY_PREFIX = "app:generation:replay:";
+
+    /**
+     * 每追加多少条事件裁剪一次 Redis Stream
+     */
+    private static final int TRIM_INTERVAL = 256;
+
+    /**
+     * 每批流水线写入 Redis 的最大事件数
+     */
+    private static final int REDIS_BATCH_SIZE = 128;
+
+    @Resource
+    private GenerationReplayConfig generationReplayConfig;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * appId -> 最近一次生成会话
+     */
+    private final Map<Long, ReplaySession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * 加入进行中的生成，或在没有进行中的生成时启动一次新生成（单飞）
+     *
+     * @param appId     应用ID
+     * @param message   本次请求的用户消息，只有与进行中的生成相同时才会加入共享流
+     * @param starter   启动上游生成，返回已序列化的 SSE 帧流（仅 event、data 有效）；仅在需要新建会话时调用
+     * @param joinGuard 加入已有生成前的校验（如访问权限），校验失败直接抛出异常
+     * @return 带序号的事件流（以 done 事件结尾）
+     */
+    public Flux<ReplayEvent> joinOrPublish(Long appId, String message, Supplier<Flux<ReplayEvent>> starter,
+                                           Runnable joinGuard) {
+        // compute 只负责占位，保证同一 appId 并发请求只有一个成为创建者；上游在锁外启动，不阻塞同桶的其他应用
+        ReplaySession created = new ReplaySession(appId, message, generationReplayConfig.getRingCapacity());
+        ReplaySession session = sessions.compute(appId,
+                (key, existing) -> existing != null && !existing.done ? existing : created);
+        if (session != created) {
+            joinGuard.run();
+            ThrowUtils.throwIf(!StrUtil.equals(session.message, message), ErrorCode.OPERATION_ERROR,
+                    "该应用已有进行中的生成，请等待完成或取消后再提交新的需求");
+            log.info("应用 {} 已有进行中的生成 {}，加入共享流", appId, session.sessionId);
+            return replayFrom(session, 0);
+        }
+        Flux<ReplayEvent> frames;
+        try {
+            frames = starter.get();
+        } catch (RuntimeException e) {
+            // 启动失败（校验不通过、排队被拒等）时释放占位，已加入的订阅者收到同样的异常
+            session.abort(e);
+            throw e;
+        }
+        session.start(StrUtil.blankToDefault(GenerationSessionRegistry.getSession(appId),
+                String.valueOf(System.currentTimeMillis())), frames);
+        return session.subscribe(session.sink.asFlux(), false);
+    }
+
+    /**
+     * 按 Last-Event-ID 续传
+     *
+     * @param appId       应用ID
+     * @param lastEventId 客户端最后收到的事件ID
+     * @return 缺失事件 + 实时尾部；无法续传时仅返回 done 事件，避免浏览器自动重连触发重新生成
+     */
+    public Flux<ReplayEvent> resume(Long appId, String lastEventId) {
+        int sep = lastEventId.lastIndexOf('-');
+        long lastSeq = sep > 0 ? parseSeq(lastEventId.substring(sep + 1)) : -1;
+        if (lastSeq < 0) {
+            log.warn("无法解析 Last-Event-ID: {}", lastEventId);
+            return Flux.just(terminalDone());
+        }
+        String sessionId = lastEventId.substring(0, sep);
+        ReplaySession session = sessions.get(appId);
+        if (session != null && sessionId.equals(session.sessionId)) {
+            log.info("从本节点会话续传 appId={} session={} afterSeq={}", appId, sessionId, lastSeq);
+            return replayFrom(session, lastSeq);
+        }
+        if (generationReplayConfig.isRedisEnabled() && Boolean.TRUE.equals(stringRedisTemplate.hasKey(streamKey(appId, sessionId)))) {
+            log.info("从 Redis Stream 续传 appId={} session={} afterSeq={}", appId, sessionId, lastSeq);
+            return tailFromRedis(appId, sessionId, lastSeq);
+        }
+        log.info("会话已不可续传 appId={} lastEventId={}", appId, lastEventId);
+        return Flux.just(terminalDone());
+    }
+
+    /**
+     * 从本节点会话回放序号大于 afterSeq 的事件并接上实时尾部
+     */
+    private Flux<ReplayEvent> replayFrom(ReplaySession session, long afterSeq) {
+        if (afterSeq + 1 >= session.oldestSeq() || !generationReplayConfig.isRedisEnabled()) {
+            // 内存环形缓冲仍覆盖缺失区间
+            return session.subscribe(session.sink.asFlux().filter(event -> event.getSeq() > afterSeq), afterSeq > 0);
+        }
+        // 缺失区间超出环形缓冲，先从 Redis 补齐再接实时尾部
+        AtomicLong replayed = new AtomicLong(afterSeq);
+        return session.subscribe(readFromRedis(session.appId, session.sessionId, afterSeq, null)
+                .doOnNext(event -> replayed.set(event.getSeq()))
+                .concatWith(Flux.defer(() -> session.sink.asFlux().filter(event -> event.getSeq() > replayed.get()))),
+                true);
+    }
+
+    /**
+     * 跨节点续传：先读已有事件，再轮询直到 done 事件（业务错误之后还有 done，与本节点订阅者看到的序列一致）
+     */
+    private Flux<ReplayEvent> tailFromRedis(Long appId, String sessionId, long lastSeq) {
+        AtomicLong cursorSeq = new AtomicLong(lastSeq);
+        AtomicReference<RecordId> cursorId = new AtomicReference<>();
+        Duration pollInterval = Duration.ofMillis(generationReplayConfig.getTailPollMs());
+        return Flux.interval(Duration.ZERO, pollInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> readFromRedis(appId, sessionId, cursorSeq.get(), cursorId), 1)
+                .doOnNext(event -> cursorSeq.set(event.getSeq()))
+                .takeUntil(ReplayEvent::isTerminal)
+                .timeout(Duration.ofSeconds(generationReplayConfig.getTailIdleTimeoutSeconds()))
+                .onErrorResume(error -> {
+                    log.warn("跨节点续传结束 appId={} session={} reason={}", appId, sessionId, error.getMessage());
+                    return Flux.just(terminalDone());
+                });
+    }
+
+    /**
+     * 读取 Redis Stream 中序号大于 afterSeq 的事件
+     *
+     * @param cursorId 记录读取位置，非空时仅读该 ID 之后的记录
+     */
+    private Flux<ReplayEvent> readFromRedis(Long appId, String sessionId, long afterSeq, AtomicReference<RecordId> cursorId) {
+        return Flux.defer(() -> {
+            RecordId fromId = cursorId == null ? null : cursorId.get();
+            Range<String> range = fromId == null
+                    ? Range.unbounded()
+                    : Range.of(Range.Bound.exclusive(fromId.getValue()), Range.Bound.unbounded());
+            List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream()
+                    .range(streamKey(appId, sessionId), range);
+            if (records == null || records.isEmpty()) {
+                return Flux.empty();
+            }
+            List<ReplayEvent> events = new ArrayList<>(records.size());
+            for (MapRecord<String, Object, Object> record : records) {
+                Map<Object, Object> value = record.getValue();
+                long seq = parseSeq(String.valueOf(value.get("seq")));
+                if (seq > afterSeq) {
+                    Object event = value.get("event");
+                    events.add(new ReplayEvent(sessionId, seq, event == null ? null : event.toString(),
+                            String.valueOf(value.get("data"))));
+                }
+            }
+            if (cursorId != null) {
+                cursorId.set(records.get(records.size() - 1).getId());
+            }
+            return Flux.fromIterable(events);
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * 一次流水线写入一批事件：XADD 每条事件，批内含首个或终止事件时续期，跨过裁剪间隔时裁剪一次
+     */
+    private void appendToRedis(Long appId, String sessionId, List<ReplayEvent> batch) {
+        String key = streamKey(appId, sessionId);
+        boolean expire = false;
+        boolean trim = false;
+        for (ReplayEvent event : batch) {
+            expire |= event.getSeq() == 1 || event.isTerminal();
+            trim |= event.getSeq() % TRIM_INTERVAL == 0;
+        }
+        boolean needExpire = expire;
+        boolean needTrim = trim;
+        try {
+            stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, String> redis = (RedisOperations<String, String>) operations;
+                    for (ReplayEvent event : batch) {
+                        Map<String, String> fields = new HashMap<>(4);
+                        fields.put("seq", String.valueOf(event.getSeq()));
+                        if (event.getEvent() != null) {
+                            fields.put("event", event.getEvent());
+                        }
+                        fields.put("data", event.getData());
+                        redis.opsForStream().add(StreamRecords.string(fields).withStreamKey(key));
+                    }
+                    if (needExpire) {
+                        redis.expire(key, generationReplayConfig.getRedisTtlMinutes(), TimeUnit.MINUTES);
+                    }
+                    if (needTrim) {
+                        redis.opsForStream().trim(key, generationReplayConfig.getRedisMaxLen(), true);
+                    }
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            // 回放日志失败不影响主流程
+            log.warn("写入回放日志失败 key={} seq={}..{} error={}", key, batch.get(0).getSeq(),
+                    batch.get(batch.size() - 1).getSeq(), e.getMessage());
+        }
+    }
+
+    private String buildErrorData(Throwable error) {
+        int code = error instanceof BusinessException businessException
+                ? businessException.getCode() : ErrorCode.SYSTEM_ERROR.getCode();
+        String message = StrUtil.blankToDefault(error.getMessage(), ErrorCode.SYSTEM_ERROR.getMessage());
+        return JSONUtil.toJsonStr(Map.of("error", true, "code", code, "message", message));
+    }
+
+    private static ReplayEvent terminalDone() {
+        return new ReplayEvent(null, 0, DONE_EVENT, "{}");
+    }
+
+    private static long parseSeq(String text) {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String streamKey(Long appId, String sessionId) {
+        return REPLAY_STREAM_KEY_PREFIX + appId + ":" + sessionId;
+    }
+
+    /**
+     * 单次生成会话的回放与多播状态，事件追加与结束互斥执行（上游回调与空闲回收可能在不同线程）
+     */
+    private final class ReplaySession {
+
+        private final Long appId;
+
+        /**
+         * 发起本次生成的用户消息
+         */
+        private final String message;
+
+        private final int capacity;
+
+        private final Sinks.Many<ReplayEvent> sink;
+
+        private final AtomicInteger subscribers = new AtomicInteger();
+
+        /**
+         * 上游启动后才确定，启动前加入的订阅者只订阅内存流，不依赖该值
+         */
+        private volatile String sessionId;
+
+        private volatile Disposable upstream;
+
+        private long seq;
+
+        private volatile long lastSeq;
+
+        private volatile boolean done;
+
+        /**
+         * 待写入 Redis 的事件，由单个写入任务按序取出
+         */
+        private final ConcurrentLinkedQueue<ReplayEvent> redisQueue = new ConcurrentLinkedQueue<>();
+
+        private final AtomicBoolean redisWriting = new AtomicBoolean();
+
+        private ReplaySession(Long appId, String message, int capacity) {
+            this.appId = appId;
+            this.message = message;
+            this.capacity = capacity;
+            this.sink = Sinks.many().replay().limit(capacity);
+        }
+
+        private void start(String sessionId, Flux<ReplayEvent> frames) {
+            this.sessionId = sessionId;
+            upstream = frames.subscribe(
+                    frame -> append(frame.getEvent(), frame.getData()),
+                    error -> {
+                        append(ERROR_EVENT, buildErrorData(error));
+                        append(DONE_EVENT, "{}");
+                        finish();
+                    },
+                    () -> {
+                        append(DONE_EVENT, "{}");
+                        finish();
+                    });
+        }
+
+        /**
+         * 为一个连接包装事件流，统计订阅者数量
+         * 上游按无界需求写入回放缓冲，连接的写出速度由其后的合并器（StreamMessageCoalescer#coalesceFrames）约束；
+         * 这里兜底限制直接订阅的连接：每个连接最多积压 maxConnectionBufferedEvents 条事件，超出后以溢出错误断开，
+         * 客户端凭 Last-Event-ID 重连续传，不会因一个阻塞的 socket 无限占用内存。
+         *
+         * @param resumable 连接是否已持有可续传的事件 ID（续传请求），否则收到首个事件后才可续传
+         */
+        private Flux<ReplayEvent> subscribe(Flux<ReplayEvent> events, boolean resumable) {
+            AtomicBoolean delivered = new AtomicBoolean(resumable);
+            return events
+                    .onBackpressureBuffer(generationReplayConfig.getMaxConnectionBufferedEvents(),
+                            event -> log.warn("应用 {} 的连接积压超过 {} 条事件，断开等待续传 seq={}", appId,
+                                    generationReplayConfig.getMaxConnectionBufferedEvents(), event.getSeq()))
+                    .doOnSubscribe(subscription -> subscribers.incrementAndGet())
+                    .doOnNext(event -> delivered.lazySet(true))
+                    .doFinally(signalType -> onSubscriberLeft(delivered.get()));
+        }
+
+        /**
+         * @param resumable 离开的连接能否携带 Last-Event-ID 续传；不能续传时不等待宽限期，立即取消上游
+         */
+        private void onSubscriberLeft(boolean resumable) {
+            if (subscribers.decrementAndGet() > 0 || done) {
+                return;
+            }
+            // 可续传的连接留出断线重连宽限期，期满仍无订阅者才取消上游
+            long delaySeconds = resumable ? generationReplayConfig.getIdleTeardownSeconds() : 0;
+            Schedulers.parallel().schedule(() -> {
+                if (subscribers.get() == 0 && !done) {
+                    log.info("应用 {} 的生成会话 {} 已无订阅者（可续传: {}），取消上游生成", appId, sessionId, resumable);
+                    GenerationSessionRegistry.cancel(appId, GenerationSessionRegistry.REASON_CLIENT_DISCONNECTED);
+                    if (upstream != null) {
+                        upstream.dispose();
+                    }
+                    teardown();
+                }
+            }, delaySeconds, TimeUnit.SECONDS);
+        }
+
+        /**
+         * 空闲回收：与正常结束一样先写入 done，跨节点续传才能在 Redis 中看到终止事件
+         */
+        private synchronized void teardown() {
+            if (done) {
+                return;
+            }
+            append(DONE_EVENT, "{}");
+            finish();
+        }
+
+        /**
+         * 上游启动失败，释放占位
+         */
+        private synchronized void abort(Throwable error) {
+            done = true;
+            sink.tryEmitError(error);
+            sessions.remove(appId, this);
+        }
+
+        private synchronized void append(String event, String data) {
+            if (done) {
+                // 已回收的会话忽略上游迟到的回调
+                return;
+            }
+            ReplayEvent replayEvent = new ReplayEvent(sessionId, ++seq, event, data);
+            lastSeq = replayEvent.getSeq();
+            sink.tryEmitNext(replayEvent);
+            if (generationReplayConfig.isRedisEnabled()) {
+                redisQueue.offer(replayEvent);
+                scheduleRedisWrite();
+            }
+        }
+
+        /**
+         * 没有写入任务在运行时启动一个，保证同一会话的事件按序写入
+         */
+        private void scheduleRedisWrite() {
+            if (redisWriting.compareAndSet(false, true)) {
+                Schedulers.boundedElastic().schedule(this::writeToRedis);
+            }
+        }
+
+        private void writeToRedis() {
+            try {
+                List<ReplayEvent> batch = new ArrayList<>(REDIS_BATCH_SIZE);
+                ReplayEvent event;
+                while ((event = redisQueue.poll()) != null) {
+                    batch.add(event);
+                    if (batch.size() == REDIS_BATCH_SIZE) {
+                        appendToRedis(appId, sessionId, batch);
+                        batch = new ArrayList<>(REDIS_BATCH_SIZE);
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    appendToRedis(appId, sessionId, batch);
+                }
+            } finally {
+                redisWriting.set(false);
+            }
+            // 释放标记与入队之间可能有新事件到达
+            if (!redisQueue.isEmpty()) {
+                scheduleRedisWrite();
+            }
+        }
+
+        private synchronized void finish() {
+            if (done) {
+                return;
+            }
+            done = true;
+            sink.tryEmitComplete();
+            // 保留一段时间供结束前后断线的客户端续传，之后释放
+            Schedulers.parallel().schedule(() -> sessions.remove(appId, this),
+                    generationReplayConfig.getRetainSecondsAfterDone(), TimeUnit.SECONDS);
+        }
+
+        /**
+         * 环形缓冲中最早仍保留的序号
+         */
+        private long oldestSeq() {
+            return Math.max(1, lastSeq - capacity + 1);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.hachimi.mamboaiplatform.core.stream;
+
+/**
+ * 增量 JSON 字符串字段解码器
+ * 面向流式工具调用参数：按分片输入一个 JSON 对象，顶层字符串字段的值边解码边回调，
+ * 不需要等待参数完整，也不缓存完整参数。非字符串字段（数字、布尔、嵌套对象等）直接跳过。
+ * 分片可以在任意位置切开（包括转义序列和 \\uXXXX 中间）。非线程安全。
+ */
+public class JsonStringFieldDecoder {
+
+    /**
+     * 字段回调
+     */
+    public interface Listener {
+
+        /**
+         * 字符串字段开始
+         */
+        void onFieldStart(String name);
+
+        /**
+         * 字符串字段的一段已解码内容（仅在回调期间有效）
+         */
+        void onFieldChars(String name, CharSequence chars);
+
+        /**
+         * 字符串字段结束
+         */
+        void onFieldEnd(String name);
+    }
+
+    private enum State {
+        BEFORE_OBJECT, EXPECT_KEY, IN_KEY, EXPECT_COLON, EXPECT_VALUE, IN_STRING_VALUE, IN_OTHER_VALUE, DONE, FAILED
+    }
+
+    private final Listener listener;
+
+    private final StringBuilder key = new StringBuilder();
+
+    private final StringBuilder pending = new StringBuilder();
+
+    private State state = State.BEFORE_OBJECT;
+
+    private String currentKey;
+
+    private boolean escape;
+
+    /**
+     * 已读取的 \\u 十六进制位数，-1 表示不在 unicode 转义中
+     */
+    private int unicodeDigits = -1;
+
+    private int unicodeValue;
+
+    /**
+     * 跳过非字符串值时的嵌套深度与字符串状态
+     */
+    private int otherDepth;
+
+    private boolean otherInString;
+
+    private boolean otherEscape;
+
+    public JsonStringFieldDecoder(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 输入一段参数分片
+     */
+    public void feed(CharSequence fragment) {
+        if (fragment == null) {
+            return;
+        }
+        for (int i = 0; i < fragment.length() && state != State.FAILED && state != State.DONE; i++) {
+            accept(fragment.charAt(i));
+        }
+        if (state == State.IN_STRING_VALUE) {
+            flush(false);
+        }
+    }
+
+    /**
+     * 顶层对象是否已完整读取
+     */
+    public boolean isDone() {
+        return state == State.DONE;
+    }
+
+    /**
+     * 是否遇到无法解析的输入（之后的分片将被忽略）
+     */
+    public boolean isFailed() {
+        return state == State.FAILED;
+    }
+
+    private void accept(char c) {
+        switch (state) {
+            case BEFORE_OBJECT -> {
+                if (c == '{') {
+                    state = State.EXPECT_KEY;
+                } else if (!Character.isWhitespace(c)) {
+                    state = State.FAILED;
+                }
+            }
+            case EXPECT_KEY -> {
+                if (c == '"') {
+                    key.setLength(0);
+                    state = State.IN_KEY;
+                } else if (c == '}') {
+                    state = State.DONE;
+                } else if (c != ',' && !Character.isWhitespace(c)) {
+                    state = State.FAILED;
+                }
+            }
+            case IN_KEY -> {
+                if (readStringChar(c, key)) {
+                    currentKey = key.toString();
+                    state = State.EXPECT_COLON;
+                }
+            }
+            case EXPECT_COLON -> {
+                if (c == ':') {
+                    state = State.EXPECT_VALUE;
+                } else if (!Character.isWhitespace(c)) {
+                    state = State.FAILED;
+                }
+            }
+            case EXPECT_VALUE -> {
+                if (Character.isWhitespace(c)) {
+                    return;
+                }
+                if (c == '"') {
+                    state = State.IN_STRING_VALUE;
+                    listener.onFieldStart(currentKey);
+                } else {
+                    state = State.IN_OTHER_VALUE;
+                    otherDepth = 0;
+                    otherInString = false;
+                    otherEscape = false;
+                    skipOtherValue(c);
+                }
+            }
+            case IN_STRING_VALUE -> {
+                if (readStringChar(c, pending)) {
+                    flush(true);
+                    listener.onFieldEnd(currentKey);
+                    state = State.EXPECT_KEY;
+                }
+            }
+            case IN_OTHER_VALUE -> skipOtherValue(c);
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * 读取字符串中的一个字符，返回是否遇到结束引号
+     */
+    private boolean readStringChar(char c, StringBuilder out) {
+        if (unicodeDigits >= 0) {
+            int digit = Character.digit(c, 16);
+            if (digit < 0) {
+                state = State.FAILED;
+                return false;
+            }
+            unicodeValue = unicodeValue * 16 + digit;
+            if (++unicodeDigits == 4) {
+                out.append((char) unicodeValue);
+                unicodeDigits = -1;
+            }
+            return false;
+        }
+        if (escape) {
+            escape = false;
+            switch (c) {
+                case 'n' -> out.append('\n');
+                case 't' -> out.append('\t');
+                case 'r' -> out.append('\r');
+                case 'b' -> out.append('\b');
+                case 'f' -> out.append('\f');
+                case 'u' -> {
+                    unicodeDigits = 0;
+                    unicodeValue = 0;
+                }
+                default -> out.append(c);
+            }
+            return false;
+        }
+        if (c == '\\') {
+            escape = true;
+            return false;
+        }
+        if (c == '"') {
+            return true;
+        }
+        out.append(c);
+        return false;
+    }
+
+    private void skipOtherValue(char c) {
+        if (otherInString) {
+            if (otherEscape) {
+                otherEscape = false;
+            } else if (c == '\\') {
+                otherEscape = true;
+            } else if (c == '"') {
+                otherInString = false;
+            }
+            return;
+        }
+        switch (c) {
+            case '"' -> otherInString = true;
+            case '{', '[' -> otherDepth++;
+            case '}', ']' -> {
+                if (otherDepth == 0) {
+                    // 顶层对象结束
+                    state = State.DONE;
+                } else {
+                    otherDepth--;
+                }
+            }
+            case ',' -> {
+                if (otherDepth == 0) {
+                    state = State.EXPECT_KEY;
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * 推送已解码内容；非最终推送时保留末尾的高代理项，避免把一个字符拆到两次回调
+     */
+    private void flush(boolean last) {
+        int end = pending.length();
+        if (!last && end > 0 && Character.isHighSurrogate(pending.charAt(end - 1))) {
+            end--;
+        }
+        if (end == 0) {
+            return;
+        }
+        listener.onFieldChars(currentKey, pending.subSequence(0, end));
+        pending.delete(0, end);
+    }
+}
@@ -0,0 +1,48 @@
+package com.hachimi.mamboaiplatform.core.stream;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 回放日志中的一条 SSE 事件（data 为已序列化的帧内容）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplayEvent {
+
+    /**
+     * 生成会话 ID
+     */
+    private String sessionId;
+
+    /**
+     * 会话内单调递增序号，从 1 开始
+     */
+    private long seq;
+
+    /**
+     * SSE 事件名，普通消息为 null
+     */
+    private String event;
+
+    /**
+     * SSE data
+     */
+    private String data;
+
+    /**
+     * SSE 事件 ID，格式为 sessionId-seq
+     */
+    public String getEventId() {
+        return sessionId + "-" + seq;
+    }
+
+    /**
+     * 是否为终止事件：每个会话都以 done 结束，出错时 business-error 之后仍会追加 done
+     */
+    public boolean isTerminal() {
+        return GenerationReplayLog.DONE_EVENT.equals(event);
+    }
+}
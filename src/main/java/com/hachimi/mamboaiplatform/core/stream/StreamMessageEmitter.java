@@ -0,0 +1,28 @@
+package com.hachimi.mamboaiplatform.core.stream;
+
+import com.hachimi.mamboaiplatform.ai.model.message.StreamMessage;
+
+/**
+ * 流式消息发射器（TokenStream 回调侧使用）
+ */
+public interface StreamMessageEmitter {
+
+    /**
+     * 发送一条消息，队列超限时按配置的策略合并或阻塞，工具事件从不丢弃
+     */
+    void next(StreamMessage message);
+
+    void complete();
+
+    void error(Throwable error);
+
+    /**
+     * 下游取消（客户端断开）时回调
+     */
+    void onCancel(Runnable callback);
+
+    /**
+     * 流终止（完成、出错或取消）时回调
+     */
+    void onDispose(Runnable callback);
+}
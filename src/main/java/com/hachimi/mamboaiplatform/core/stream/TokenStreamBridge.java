@@ -0,0 +1,325 @@
+package com.hachimi.mamboaiplatform.core.stream;
+
+import com.hachimi.mamboaiplatform.ai.model.message.AiResponseMessage;
+import com.hachimi.mamboaiplatform.ai.model.message.FilePreviewMessage;
+import com.hachimi.mamboaiplatform.ai.model.message.StreamMessage;
+import com.hachimi.mamboaiplatform.ai.model.message.ToolExecutedMessage;
+import com.hachimi.mamboaiplatform.ai.model.message.ToolRequestMessage;
+import com.hachimi.mamboaiplatform.config.StreamBridgeConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 有界、感知背压的 TokenStream -> Flux 桥接
+ * 每个会话一个有界队列，只按下游需求出队；超限时：
+ * 1. COALESCE：文本片段合并到队尾文本，同一工具的参数片段合并到队尾请求，工具事件从不丢弃；
+ * 2. BLOCK：先阻塞生产者（模型响应读取线程）等待队列腾出空间，超时后按 COALESCE 处理。
+ * 指标不带会话或应用标签：全局排队总量 gauge，以及会话结束时记录的单会话排队峰值分布。
+ * 经回放日志输出时，回放日志按无界需求消费，队列上限与 ERROR 溢出策略不会触发（队列随到随出）；
+ * 此时每个连接的积压上限由其后的 StreamMessageCoalescer#coalesceFrames 约束，这里的上限只对直接订阅的消费者生效。
+ */
+@Component
+public class TokenStreamBridge {
+
+    @Resource
+    private StreamBridgeConfig streamBridgeConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final AtomicLong totalQueuedBytes = new AtomicLong();
+
+    private Counter coalescedCounter;
+
+    private Counter overLimitCounter;
+
+    private Counter blockedCounter;
+
+    private DistributionSummary peakQueuedBytesSummary;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("ai_stream_bridge_queued_bytes_total", totalQueuedBytes, AtomicLong::get)
+                .description("所有会话桥接队列中排队的字节数（估算）")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        coalescedCounter = overflowCounter("coalesced");
+        overLimitCounter = overflowCounter("enqueued_over_limit");
+        blockedCounter = overflowCounter("blocked");
+        peakQueuedBytesSummary = DistributionSummary.builder("ai_stream_bridge_session_peak_queued_bytes")
+                .description("单会话桥接队列排队字节数峰值（估算）")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    private Counter overflowCounter(String action) {
+        return Counter.builder("ai_stream_bridge_overflow_total")
+                .description("桥接队列超限处理次数")
+                .tag("action", action)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 创建桥接流
+     *
+     * @param producer 在订阅时执行，注册 TokenStream 回调并启动
+     * @return 按下游需求输出的消息流
+     */
+    public Flux<StreamMessage> bridge(Consumer<StreamMessageEmitter> producer) {
+        // 发射器只在有下游需求时出队，sink 自身不再缓冲；超出需求的发射视为错误而不是悄悄积压
+        return Flux.create(sink -> new BoundedEmitter(sink).start(producer), FluxSink.OverflowStrategy.ERROR);
+    }
+
+    /**
+     * 估算消息占用的堆内存字节数（字符串按 UTF-16 计）
+     */
+    static long estimateBytes(StreamMessage message) {
+        long chars = switch (message) {
+            case AiResponseMessage m -> length(m.getData());
+            case ToolRequestMessage m -> length(m.getId()) + length(m.getName()) + length(m.getArguments());
+            case ToolExecutedMessage m -> length(m.getId()) + length(m.getName()) + length(m.getArguments())
+                    + length(m.getResult());
+            case FilePreviewMessage m -> length(m.getFileName()) + length(m.getDelta());
+            default -> 0;
+        };
+        return chars * 2;
+    }
+
+    private static int length(String text) {
+        return text == null ? 0 : text.length();
+    }
+
+    private final class BoundedEmitter implements StreamMessageEmitter {
+
+        private final FluxSink<StreamMessage> sink;
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final Condition notFull = lock.newCondition();
+
+        private final ArrayDeque<StreamMessage> queue = new ArrayDeque<>();
+
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private final AtomicLong queuedBytes = new AtomicLong();
+
+        private final AtomicLong peakQueuedBytes = new AtomicLong();
+
+        private final List<Runnable> cancelCallbacks = new CopyOnWriteArrayList<>();
+
+        private final List<Runnable> disposeCallbacks = new CopyOnWriteArrayList<>();
+
+        private boolean done;
+
+        private boolean terminated;
+
+        private Throwable error;
+
+        private volatile boolean cancelled;
+
+        private BoundedEmitter(FluxSink<StreamMessage> sink) {
+            this.sink = sink;
+        }
+
+        private void start(Consumer<StreamMessageEmitter> producer) {
+            sink.onRequest(n -> drain());
+            sink.onCancel(() -> {
+                cancelled = true;
+                wakeProducer();
+                cancelCallbacks.forEach(Runnable::run);
+            });
+            sink.onDispose(this::release);
+            producer.accept(this);
+        }
+
+        @Override
+        public void next(StreamMessage message) {
+            if (cancelled) {
+                return;
+            }
+            long size = estimateBytes(message);
+            lock.lock();
+            try {
+                if (done) {
+                    return;
+                }
+                if (streamBridgeConfig.getOverflowPolicy() == StreamBridgeConfig.OverflowPolicy.BLOCK && isFull()) {
+                    blockedCounter.increment();
+                    awaitNotFull();
+                }
+                if (isFull() && tryMerge(message, size)) {
+                    coalescedCounter.increment();
+                } else {
+                    if (isFull()) {
+                        // 无法合并的工具事件超限也要入队，保证不丢
+                        overLimitCounter.increment();
+                    }
+                    queue.offerLast(message);
+                    addBytes(size);
+                }
+            } finally {
+                lock.unlock();
+            }
+            drain();
+        }
+
+        @Override
+        public void complete() {
+            terminate(null);
+        }
+
+        @Override
+        public void error(Throwable error) {
+            terminate(error);
+        }
+
+        @Override
+        public void onCancel(Runnable callback) {
+            cancelCallbacks.add(callback);
+        }
+
+        @Override
+        public void onDispose(Runnable callback) {
+            disposeCallbacks.add(callback);
+        }
+
+        private void terminate(Throwable error) {
+            lock.lock();
+            try {
+                if (done) {
+                    return;
+                }
+                done = true;
+                this.error = error;
+            } finally {
+                lock.unlock();
+            }
+            drain();
+        }
+
+        private boolean isFull() {
+            return queue.size() >= streamBridgeConfig.getMaxQueuedMessages()
+                    || queuedBytes.get() >= streamBridgeConfig.getMaxQueuedBytes();
+        }
+
+        private void awaitNotFull() {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(streamBridgeConfig.getBlockTimeoutMs());
+            try {
+                while (isFull() && !cancelled && nanos > 0) {
+                    nanos = notFull.awaitNanos(nanos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * 合并到队尾：文本与文本合并，同一工具调用的参数片段合并
+         */
+        private boolean tryMerge(StreamMessage message, long size) {
+            StreamMessage tail = queue.peekLast();
+            if (tail instanceof AiResponseMessage tailText && message instanceof AiResponseMessage text) {
+                tailText.setData(tailText.getData() + text.getData());
+                addBytes(size);
+                return true;
+            }
+            if (tail instanceof ToolRequestMessage tailRequest && message instanceof ToolRequestMessage request
+                    && Objects.equals(tailRequest.getId(), request.getId())) {
+                tailRequest.setArguments(Objects.toString(tailRequest.getArguments(), "")
+                        + Objects.toString(request.getArguments(), ""));
+                addBytes(size);
+                return true;
+            }
+            return false;
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                while (!cancelled) {
+                    StreamMessage message = null;
+                    boolean finish = false;
+                    Throwable failure = null;
+                    lock.lock();
+                    try {
+                        if (queue.isEmpty()) {
+                            if (done && !terminated) {
+                                terminated = true;
+                                finish = true;
+                                failure = error;
+                            }
+                        } else if (sink.requestedFromDownstream() > 0) {
+                            message = queue.pollFirst();
+                            addBytes(-estimateBytes(message));
+                            notFull.signalAll();
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                    if (message != null) {
+                        sink.next(message);
+                    } else {
+                        if (finish) {
+                            if (failure != null) {
+                                sink.error(failure);
+                            } else {
+                                sink.complete();
+                            }
+                        }
+                        break;
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void addBytes(long delta) {
+            peakQueuedBytes.accumulateAndGet(queuedBytes.addAndGet(delta), Math::max);
+            totalQueuedBytes.addAndGet(delta);
+        }
+
+        private void wakeProducer() {
+            lock.lock();
+            try {
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void release() {
+            lock.lock();
+            try {
+                totalQueuedBytes.addAndGet(-queuedBytes.getAndSet(0));
+                queue.clear();
+                done = true;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            peakQueuedBytesSummary.record(peakQueuedBytes.get());
+            disposeCallbacks.forEach(Runnable::run);
+        }
+    }
+}
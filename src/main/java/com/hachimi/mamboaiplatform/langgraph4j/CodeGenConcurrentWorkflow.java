@@ -1,23 +1,25 @@
 package com.hachimi.mamboaiplatform.langgraph4j;
 
-import cn.hutool.core.thread.ExecutorBuilder;
-import cn.hutool.core.thread.ThreadFactoryBuilder;
+import cn.hutool.core.util.IdUtil;
 import com.hachimi.mamboaiplatform.exception.BusinessException;
 import com.hachimi.mamboaiplatform.exception.ErrorCode;
-import com.hachimi.mamboaiplatform.langgraph4j.model.QualityResult;
+import com.hachimi.mamboaiplatform.langgraph4j.executor.ParallelNodeExecutors;
 import com.hachimi.mamboaiplatform.langgraph4j.node.*;
 import com.hachimi.mamboaiplatform.langgraph4j.node.concurrent.*;
 import com.hachimi.mamboaiplatform.langgraph4j.state.WorkflowContext;
-import com.hachimi.mamboaiplatform.model.enums.CodeGenTypeEnum;
+import com.hachimi.mamboaiplatform.langgraph4j.trace.CriticalPathReport;
+import com.hachimi.mamboaiplatform.langgraph4j.trace.WorkflowTrace;
+import com.hachimi.mamboaiplatform.utils.SpringContextUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.bsc.langgraph4j.*;
 import org.bsc.langgraph4j.prebuilt.MessagesState;
 import org.bsc.langgraph4j.prebuilt.MessagesStateGraph;
 
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
+import static com.hachimi.mamboaiplatform.langgraph4j.trace.WorkflowTrace.traced;
 import static org.bsc.langgraph4j.StateGraph.END;
 import static org.bsc.langgraph4j.StateGraph.START;
 import static org.bsc.langgraph4j.action.AsyncEdgeAction.edge_async;
@@ -28,37 +30,68 @@ import static org.bsc.langgraph4j.action.AsyncEdgeAction.edge_async;
 @Slf4j
 public class CodeGenConcurrentWorkflow {
 
+    /**
+     * 节点依赖（与图的边保持一致），用于计算关键路径；收集节点还要等待异步的图片规划
+     */
+    private static final Map<String, Set<String>> DEPENDENCIES = Map.ofEntries(
+            Map.entry(ImagePlanNode.PLANNING_SPAN, Set.of("image_plan")),
+            Map.entry("router", Set.of("image_plan")),
+            Map.entry("content_image_collector", Set.of("image_plan", ImagePlanNode.PLANNING_SPAN)),
+            Map.entry("illustration_collector", Set.of("image_plan", ImagePlanNode.PLANNING_SPAN)),
+            Map.entry("diagram_collector", Set.of("image_plan", ImagePlanNode.PLANNING_SPAN)),
+            Map.entry("logo_collector", Set.of("image_plan", ImagePlanNode.PLANNING_SPAN)),
+            Map.entry("image_aggregator", Set.of("router", "content_image_collector", "illustration_collector",
+                    "diagram_collector", "logo_collector")),
+            Map.entry("prompt_enhancer", Set.of("image_aggregator")),
+            Map.entry("code_generator", Set.of("prompt_enhancer", "code_quality_check")),
+            Map.entry("code_quality_check", Set.of("code_generator", "code_repair")),
+            Map.entry("code_repair", Set.of("code_quality_check")),
+            Map.entry("project_builder", Set.of("code_quality_check"))
+    );
+
+    private final WorkflowGraphRegistry workflowGraphRegistry;
+
+    /**
+     * 使用注册表中编译好的工作流，各次执行共享同一个图（图只在注册表中编译一次）
+     */
+    public CodeGenConcurrentWorkflow(WorkflowGraphRegistry workflowGraphRegistry) {
+        this.workflowGraphRegistry = workflowGraphRegistry;
+    }
+
     /**
      * 创建并发工作流
      */
-    public CompiledGraph<MessagesState<String>> createWorkflow() {
+    public static CompiledGraph<MessagesState<String>> createWorkflow() {
         try {
             return new MessagesStateGraph<String>()
-                    // 添加节点
-                    .addNode("image_plan", ImagePlanNode.create())
-                    .addNode("prompt_enhancer", PromptEnhancerNode.create())
-                    .addNode("router", RouterNode.create())
-                    .addNode("code_generator", CodeGeneratorNode.create())
-                    .addNode("code_quality_check", CodeQualityCheckNode.create())
-                    .addNode("project_builder", ProjectBuilderNode.create())
+                    // 添加节点，执行耗时记录到轨迹中
+                    .addNode("image_plan", traced("image_plan", ImagePlanNode.create()))
+                    .addNode("prompt_enhancer", traced("prompt_enhancer", PromptEnhancerNode.create()))
+                    .addNode("router", traced("router", RouterNode.create()))
+                    .addNode("code_generator", traced("code_generator", CodeGeneratorNode.create()))
+                    .addNode("code_quality_check", traced("code_quality_check", CodeQualityCheckNode.create()))
+                    .addNode("code_repair", traced("code_repair", CodeRepairNode.create()))
+                    .addNode("project_builder", traced("project_builder", ProjectBuilderNode.create()))
 
                     // 添加并发图片收集节点
-                    .addNode("content_image_collector", ContentImageCollectorNode.create())
-                    .addNode("illustration_collector", IllustrationCollectorNode.create())
-                    .addNode("diagram_collector", DiagramCollectorNode.create())
-                    .addNode("logo_collector", LogoCollectorNode.create())
-                    .addNode("image_aggregator", ImageAggregatorNode.create())
+                    .addNode("content_image_collector", traced("content_image_collector", ContentImageCollectorNode.create()))
+                    .addNode("illustration_collector", traced("illustration_collector", IllustrationCollectorNode.create()))
+                    .addNode("diagram_collector", traced("diagram_collector", DiagramCollectorNode.create()))
+                    .addNode("logo_collector", traced("logo_collector", LogoCollectorNode.create()))
+                    .addNode("image_aggregator", traced("image_aggregator", ImageAggregatorNode.create()))
 
                     // 添加边
                     .addEdge(START, "image_plan")
 
-                    // 并发分支：从计划节点分发到各个收集节点
+                    // 并发分支：计划节点启动规划后立即分发，路由只依赖原始提示词，与规划、各收集节点同时执行
+                    .addEdge("image_plan", "router")
                     .addEdge("image_plan", "content_image_collector")
                     .addEdge("image_plan", "illustration_collector")
                     .addEdge("image_plan", "diagram_collector")
                     .addEdge("image_plan", "logo_collector")
 
-                    // 汇聚：所有收集节点都汇聚到聚合器
+                    // 汇聚：路由和所有收集节点都汇聚到聚合器
+                    .addEdge("router", "image_aggregator")
                     .addEdge("content_image_collector", "image_aggregator")
                     .addEdge("illustration_collector", "image_aggregator")
                     .addEdge("diagram_collector", "image_aggregator")
@@ -66,18 +99,19 @@ public class CodeGenConcurrentWorkflow {
 
                     // 继续串行流程
                     .addEdge("image_aggregator", "prompt_enhancer")
-                    .addEdge("prompt_enhancer", "router")
-                    .addEdge("router", "code_generator")
+                    .addEdge("prompt_enhancer", "code_generator")
                     .addEdge("code_generator", "code_quality_check")
 
                     // 质检条件边
                     .addConditionalEdges("code_quality_check",
-                            edge_async(this::routeAfterQualityCheck),
+                            edge_async(state -> QualityCheckRouter.route(WorkflowContext.getContext(state))),
                             Map.of(
-                                    "build", "project_builder",
-                                    "skip_build", END,
-                                    "fail", "code_generator"
+                                    QualityCheckRouter.BUILD, "project_builder",
+                                    QualityCheckRouter.SKIP_BUILD, END,
+                                    QualityCheckRouter.REPAIR, "code_repair",
+                                    QualityCheckRouter.REGENERATE, "code_generator"
                             ))
+                    .addEdge("code_repair", "code_quality_check")
                     .addEdge("project_builder", END)
                     .compile();
         } catch (GraphStateException e) {
@@ -89,25 +123,21 @@ public class CodeGenConcurrentWorkflow {
      * 执行并发工作流
      */
     public WorkflowContext executeWorkflow(String originalPrompt) {
-        CompiledGraph<MessagesState<String>> workflow = createWorkflow();
+        CompiledGraph<MessagesState<String>> workflow = compiledWorkflow();
         WorkflowContext initialContext = WorkflowContext.builder()
                 .originalPrompt(originalPrompt)
                 .currentStep("初始化")
+                .trace(new WorkflowTrace())
                 .build();
-        GraphRepresentation graph = workflow.getGraph(GraphRepresentation.Type.MERMAID);
-        log.info("并发工作流图:\n{}", graph.content());
         log.info("开始执行并发代码生成工作流");
         WorkflowContext finalContext = null;
         int stepCounter = 1;
-        // 配置并发执行
-        ExecutorService pool = ExecutorBuilder.create()
-                .setCorePoolSize(10)
-                .setMaxPoolSize(20)
-                .setWorkQueue(new LinkedBlockingQueue<>(100))
-                .setThreadFactory(ThreadFactoryBuilder.create().setNamePrefix("Parallel-Image-Collect").build())
-                .build();
+        // 配置并发执行：并行分支使用共享的虚拟线程执行器，按工作流限制并发
+        Executor parallelExecutor = SpringContextUtil.getBean(ParallelNodeExecutors.class)
+                .forWorkflow(WorkflowGraphRegistry.CODE_GEN_CONCURRENT);
         RunnableConfig runnableConfig = RunnableConfig.builder()
-                .addParallelNodeExecutor("image_plan", pool)
+                .threadId(IdUtil.fastSimpleUUID())
+                .addParallelNodeExecutor("image_plan", parallelExecutor)
                 .build();
         for (NodeOutput<MessagesState<String>> step : workflow.stream(
                 Map.of(WorkflowContext.WORKFLOW_CONTEXT_KEY, initialContext),
@@ -121,26 +151,14 @@ public class CodeGenConcurrentWorkflow {
             stepCounter++;
         }
         log.info("并发代码生成工作流执行完成！");
+        WorkflowContext reportContext = finalContext != null ? finalContext : initialContext;
+        CriticalPathReport report = reportContext.getTrace().criticalPath(DEPENDENCIES);
+        reportContext.setCriticalPath(report);
+        log.info("并发代码生成工作流关键路径: {}", report.format());
         return finalContext;
     }
 
-    /**
-     * 路由函数：根据质检结果决定下一步
-     */
-    private String routeAfterQualityCheck(MessagesState<String> state) {
-        WorkflowContext context = WorkflowContext.getContext(state);
-        QualityResult qualityResult = context.getQualityResult();
-
-        if (qualityResult == null || !qualityResult.getIsValid()) {
-            log.error("代码质检失败，需要重新生成代码");
-            return "fail";
-        }
-        log.info("代码质检通过，继续后续流程");
-        CodeGenTypeEnum generationType = context.getGenerationType();
-        if (generationType == CodeGenTypeEnum.VUE_PROJECT) {
-            return "build";
-        } else {
-            return "skip_build";
-        }
+    private CompiledGraph<MessagesState<String>> compiledWorkflow() {
+        return workflowGraphRegistry.get(WorkflowGraphRegistry.CODE_GEN_CONCURRENT);
     }
-} 
\ No newline at end of file
+}
@@ -1,12 +1,13 @@
 package com.hachimi.mamboaiplatform.langgraph4j;
 
+import cn.hutool.core.util.IdUtil;
 import com.hachimi.mamboaiplatform.exception.BusinessException;
 import com.hachimi.mamboaiplatform.exception.ErrorCode;
-import com.hachimi.mamboaiplatform.langgraph4j.model.QualityResult;
+import com.hachimi.mamboaiplatform.langgraph4j.executor.ParallelNodeExecutors;
 import com.hachimi.mamboaiplatform.langgraph4j.node.*;
 import com.hachimi.mamboaiplatform.langgraph4j.node.concurrent.*;
 import com.hachimi.mamboaiplatform.langgraph4j.state.WorkflowContext;
-import com.hachimi.mamboaiplatform.model.enums.CodeGenTypeEnum;
+import com.hachimi.mamboaiplatform.utils.SpringContextUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.bsc.langgraph4j.*;
 import org.bsc.langgraph4j.prebuilt.MessagesState;
@@ -21,10 +22,19 @@ import static org.bsc.langgraph4j.action.AsyncEdgeAction.edge_async;
 @Slf4j
 public class CodeGenSubgraphWorkflow {
 
+    private final WorkflowGraphRegistry workflowGraphRegistry;
+
+    /**
+     * 使用注册表中编译好的工作流，各次执行共享同一个图（图只在注册表中编译一次）
+     */
+    public CodeGenSubgraphWorkflow(WorkflowGraphRegistry workflowGraphRegistry) {
+        this.workflowGraphRegistry = workflowGraphRegistry;
+    }
+
     /**
      * 创建内容图片收集子图
      */
-    private StateGraph<MessagesState<String>> createContentImageSubgraph() {
+    private static StateGraph<MessagesState<String>> createContentImageSubgraph() {
         try {
             return new MessagesStateGraph<String>()
                     .addNode("content_collect", ContentImageCollectorNode.create())
@@ -38,7 +48,7 @@ public class CodeGenSubgraphWorkflow {
     /**
      * 创建插画收集子图
      */
-    private StateGraph<MessagesState<String>> createIllustrationSubgraph() {
+    private static StateGraph<MessagesState<String>> createIllustrationSubgraph() {
         try {
             return new MessagesStateGraph<String>()
                     .addNode("illustration_collect", IllustrationCollectorNode.create())
@@ -52,7 +62,7 @@ public class CodeGenSubgraphWorkflow {
     /**
      * 创建架构图生成子图
      */
-    private StateGraph<MessagesState<String>> createDiagramSubgraph() {
+    private static StateGraph<MessagesState<String>> createDiagramSubgraph() {
         try {
             return new MessagesStateGraph<String>()
                     .addNode("diagram_generate", DiagramCollectorNode.create())
@@ -66,7 +76,7 @@ public class CodeGenSubgraphWorkflow {
     /**
      * 创建Logo生成子图
      */
-    private StateGraph<MessagesState<String>> createLogoSubgraph() {
+    private static StateGraph<MessagesState<String>> createLogoSubgraph() {
         try {
             return new MessagesStateGraph<String>()
                     .addNode("logo_generate", LogoCollectorNode.create())
@@ -80,7 +90,7 @@ public class CodeGenSubgraphWorkflow {
     /**
      * 创建子图工作流
      */
-    public CompiledGraph<MessagesState<String>> createWorkflow() {
+    public static CompiledGraph<MessagesState<String>> createWorkflow() {
         try {
             // 获取各个未编译的子图（跟父图完全共享状态）
             StateGraph<MessagesState<String>> contentImageSubgraph = createContentImageSubgraph();
@@ -95,6 +105,7 @@ public class CodeGenSubgraphWorkflow {
                     .addNode("router", RouterNode.create())
                     .addNode("code_generator", CodeGeneratorNode.create())
                     .addNode("code_quality_check", CodeQualityCheckNode.create())
+                    .addNode("code_repair", CodeRepairNode.create())
                     .addNode("project_builder", ProjectBuilderNode.create())
                     
                     // 添加编译后的子图作为节点
@@ -129,12 +140,14 @@ public class CodeGenSubgraphWorkflow {
 
                     // 质检条件边
                     .addConditionalEdges("code_quality_check",
-                            edge_async(this::routeAfterQualityCheck),
+                            edge_async(state -> QualityCheckRouter.route(WorkflowContext.getContext(state))),
                             Map.of(
-                                    "build", "project_builder",
-                                    "skip_build", END,
-                                    "fail", "code_generator"
+                                    QualityCheckRouter.BUILD, "project_builder",
+                                    QualityCheckRouter.SKIP_BUILD, END,
+                                    QualityCheckRouter.REPAIR, "code_repair",
+                                    QualityCheckRouter.REGENERATE, "code_generator"
                             ))
+                    .addEdge("code_repair", "code_quality_check")
                     .addEdge("project_builder", END)
 
                     .compile();
@@ -143,46 +156,33 @@ public class CodeGenSubgraphWorkflow {
         }
     }
 
-    /**
-     * 路由函数：根据质检结果决定下一步
-     */
-    private String routeAfterQualityCheck(MessagesState<String> state) {
-        WorkflowContext context = WorkflowContext.getContext(state);
-        QualityResult qualityResult = context.getQualityResult();
-
-        if (qualityResult == null || !qualityResult.getIsValid()) {
-            log.error("代码质检失败，需要重新生成代码");
-            return "fail";
-        }
-
-        log.info("代码质检通过，继续后续流程");
-        CodeGenTypeEnum generationType = context.getGenerationType();
-        if (generationType == CodeGenTypeEnum.VUE_PROJECT) {
-            return "build";
-        } else {
-            return "skip_build";
-        }
+    private CompiledGraph<MessagesState<String>> compiledWorkflow() {
+        return workflowGraphRegistry.get(WorkflowGraphRegistry.CODE_GEN_SUBGRAPH);
     }
 
     /**
      * 执行子图工作流
      */
     public WorkflowContext executeWorkflow(String originalPrompt) {
-        CompiledGraph<MessagesState<String>> workflow = createWorkflow();
+        CompiledGraph<MessagesState<String>> workflow = compiledWorkflow();
 
         WorkflowContext initialContext = WorkflowContext.builder()
                 .originalPrompt(originalPrompt)
                 .currentStep("初始化")
                 .build();
 
-        GraphRepresentation graph = workflow.getGraph(GraphRepresentation.Type.MERMAID);
-        log.info("子图工作流图:\n{}", graph.content());
         log.info("开始执行子图代码生成工作流");
 
+        // 并行子图分支使用共享的虚拟线程执行器，按工作流限制并发
+        RunnableConfig runnableConfig = RunnableConfig.builder()
+                .threadId(IdUtil.fastSimpleUUID())
+                .addParallelNodeExecutor("image_plan", SpringContextUtil.getBean(ParallelNodeExecutors.class)
+                        .forWorkflow(WorkflowGraphRegistry.CODE_GEN_SUBGRAPH))
+                .build();
         WorkflowContext finalContext = null;
         int stepCounter = 1;
         for (NodeOutput<MessagesState<String>> step : workflow.stream(
-                Map.of(WorkflowContext.WORKFLOW_CONTEXT_KEY, initialContext))) {
+                Map.of(WorkflowContext.WORKFLOW_CONTEXT_KEY, initialContext), runnableConfig)) {
             log.info("--- 第 {} 步完成 ---", stepCounter);
             WorkflowContext currentContext = WorkflowContext.getContext(step.state());
             if (currentContext != null) {
@@ -1,17 +1,27 @@
 package com.hachimi.mamboaiplatform.langgraph4j;
 
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONUtil;
+import com.hachimi.mamboaiplatform.context.GenerationContext;
 import com.hachimi.mamboaiplatform.exception.BusinessException;
 import com.hachimi.mamboaiplatform.exception.ErrorCode;
-import com.hachimi.mamboaiplatform.langgraph4j.model.QualityResult;
+import com.hachimi.mamboaiplatform.exception.ThrowUtils;
+import com.hachimi.mamboaiplatform.langgraph4j.checkpoint.WorkflowCheckpoint;
+import com.hachimi.mamboaiplatform.langgraph4j.checkpoint.WorkflowCheckpointStore;
+import com.hachimi.mamboaiplatform.langgraph4j.executor.ParallelNodeExecutors;
 import com.hachimi.mamboaiplatform.langgraph4j.node.*;
+import com.hachimi.mamboaiplatform.langgraph4j.node.concurrent.ImagePlanNode;
 import com.hachimi.mamboaiplatform.langgraph4j.state.WorkflowContext;
-import com.hachimi.mamboaiplatform.model.enums.CodeGenTypeEnum;
+import com.hachimi.mamboaiplatform.langgraph4j.trace.CriticalPathReport;
+import com.hachimi.mamboaiplatform.langgraph4j.trace.WorkflowTrace;
+import com.hachimi.mamboaiplatform.utils.SpringContextUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.bsc.langgraph4j.CompiledGraph;
-import org.bsc.langgraph4j.GraphRepresentation;
 import org.bsc.langgraph4j.GraphStateException;
 import org.bsc.langgraph4j.NodeOutput;
+import org.bsc.langgraph4j.RunnableConfig;
+import org.bsc.langgraph4j.action.AsyncNodeAction;
 import org.bsc.langgraph4j.prebuilt.MessagesState;
 import org.bsc.langgraph4j.prebuilt.MessagesStateGraph;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
@@ -19,7 +29,12 @@ import reactor.core.publisher.Flux;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
+import static com.hachimi.mamboaiplatform.langgraph4j.checkpoint.WorkflowCheckpointStore.checkpointed;
+import static com.hachimi.mamboaiplatform.langgraph4j.trace.WorkflowTrace.traced;
 import static org.bsc.langgraph4j.StateGraph.END;
 import static org.bsc.langgraph4j.StateGraph.START;
 import static org.bsc.langgraph4j.action.AsyncEdgeAction.edge_async;
@@ -30,34 +45,73 @@ import static org.bsc.langgraph4j.action.AsyncEdgeAction.edge_async;
 @Slf4j
 public class CodeGenWorkflow {
 
+    /**
+     * 节点依赖（与图的边保持一致），用于计算关键路径；收集节点还要等待异步的图片规划
+     */
+    private static final Map<String, Set<String>> DEPENDENCIES = Map.of(
+            ImagePlanNode.PLANNING_SPAN, Set.of("image_plan"),
+            "image_collector", Set.of("image_plan", ImagePlanNode.PLANNING_SPAN),
+            "router", Set.of("image_plan"),
+            "prompt_enhancer", Set.of("image_collector", "router"),
+            "code_generator", Set.of("prompt_enhancer", "code_quality_check"),
+            "code_quality_check", Set.of("code_generator", "code_repair"),
+            "code_repair", Set.of("code_quality_check"),
+            "project_builder", Set.of("code_quality_check")
+    );
+
+    private final WorkflowGraphRegistry workflowGraphRegistry;
+
+    /**
+     * 使用注册表中编译好的工作流，各次执行共享同一个图（图只在注册表中编译一次）
+     */
+    public CodeGenWorkflow(WorkflowGraphRegistry workflowGraphRegistry) {
+        this.workflowGraphRegistry = workflowGraphRegistry;
+    }
+
     /**
      * 创建完整的工作流
      */
-    public CompiledGraph<MessagesState<String>> createWorkflow() {
+    public static CompiledGraph<MessagesState<String>> createWorkflow() {
         try {
             return new MessagesStateGraph<String>()
-                    // 添加节点 - 使用完整实现的节点
-                    .addNode("image_collector", ImageCollectorNode.create())
-                    .addNode("prompt_enhancer", PromptEnhancerNode.create())
-                    .addNode("router", RouterNode.create())
-                    .addNode("code_generator", CodeGeneratorNode.create())
-                    .addNode("code_quality_check", CodeQualityCheckNode.create())
-                    .addNode("project_builder", ProjectBuilderNode.create())
+                    // 添加节点 - 使用完整实现的节点，执行耗时记录到轨迹中，汇合之后的节点完成后保存检查点
+                    .addNode("image_plan", traced("image_plan", ImagePlanNode.create()))
+                    .addNode("image_collector", traced("image_collector", ImageCollectorNode.create()))
+                    .addNode("prompt_enhancer", checkpointedNode("prompt_enhancer", PromptEnhancerNode.create()))
+                    .addNode("router", traced("router", RouterNode.create()))
+                    .addNode("code_generator", checkpointedNode("code_generator", CodeGeneratorNode.create()))
+                    .addNode("code_quality_check", checkpointedNode("code_quality_check", CodeQualityCheckNode.create()))
+                    .addNode("code_repair", checkpointedNode("code_repair", CodeRepairNode.create()))
+                    .addNode("project_builder", checkpointedNode("project_builder", ProjectBuilderNode.create()))
 
-                    // 添加边
-                    .addEdge(START, "image_collector")
+                    // 添加边：路由只依赖原始提示词，与图片规划、收集并行，在提示词增强前汇合
+                    // 入口：新执行从图片规划开始，从检查点恢复时直接进入上次未完成的节点
+                    .addConditionalEdges(START,
+                            edge_async(CodeGenWorkflow::routeEntry),
+                            Map.of(
+                                    "image_plan", "image_plan",
+                                    "code_generator", "code_generator",
+                                    "code_quality_check", "code_quality_check",
+                                    "code_repair", "code_repair",
+                                    "project_builder", "project_builder"
+                            ))
+                    .addEdge("image_plan", "image_collector")
+                    .addEdge("image_plan", "router")
                     .addEdge("image_collector", "prompt_enhancer")
-                    .addEdge("prompt_enhancer", "router")
-                    .addEdge("router", "code_generator")
+                    .addEdge("router", "prompt_enhancer")
+                    .addEdge("prompt_enhancer", "code_generator")
                     .addEdge("code_generator", "code_quality_check")
                     // 新增质检条件边：根据质检结果决定下一步
                     .addConditionalEdges("code_quality_check",
-                            edge_async(this::routeAfterQualityCheck),
+                            edge_async(state -> QualityCheckRouter.route(WorkflowContext.getContext(state))),
                             Map.of(
-                                    "build", "project_builder",   // 质检通过且需要构建
-                                    "skip_build", END,            // 质检通过但跳过构建
-                                    "fail", "code_generator"      // 质检失败，重新生成
+                                    QualityCheckRouter.BUILD, "project_builder",    // 质检通过且需要构建
+                                    QualityCheckRouter.SKIP_BUILD, END,             // 质检通过但跳过构建
+                                    QualityCheckRouter.REPAIR, "code_repair",       // 质检失败，定向修复问题文件
+                                    QualityCheckRouter.REGENERATE, "code_generator" // 质检失败，重新生成
                             ))
+                    // 修复后只复查改动过的文件
+                    .addEdge("code_repair", "code_quality_check")
                     .addEdge("project_builder", END)
 
                     // 编译工作流
@@ -71,22 +125,75 @@ public class CodeGenWorkflow {
      * 执行工作流
      */
     public WorkflowContext executeWorkflow(String originalPrompt) {
-        CompiledGraph<MessagesState<String>> workflow = createWorkflow();
+        return executeWorkflow(originalPrompt, null);
+    }
 
+    /**
+     * 执行工作流，失败时异常信息带上执行ID，调用方可据此从检查点恢复
+     *
+     * @param originalPrompt 原始提示词
+     * @param userId         发起执行的用户ID，只有该用户可以恢复
+     * @return 最终上下文
+     */
+    public WorkflowContext executeWorkflow(String originalPrompt, Long userId) {
         // 初始化 WorkflowContext
-        WorkflowContext initialContext = WorkflowContext.builder()
-                .originalPrompt(originalPrompt)
-                .currentStep("初始化")
-                .build();
+        WorkflowContext initialContext = newContext(originalPrompt, userId);
+        String runId = initialContext.getRunId();
+        log.info("开始执行代码生成工作流 runId={}", runId);
+        try {
+            return runWorkflow(initialContext);
+        } catch (Exception e) {
+            log.error("工作流执行失败 runId={}: {}", runId, e.getMessage(), e);
+            int code = e instanceof BusinessException businessException
+                    ? businessException.getCode() : ErrorCode.OPERATION_ERROR.getCode();
+            throw new BusinessException(code, "工作流执行失败（runId=" + runId + "，可通过 /workflow/resume 从检查点恢复）: "
+                    + e.getMessage());
+        }
+    }
 
-        GraphRepresentation graph = workflow.getGraph(GraphRepresentation.Type.MERMAID);
-        log.info("工作流图:\n{}", graph.content());
-        log.info("开始执行代码生成工作流");
+    /**
+     * 从最近的检查点恢复执行，已完成的节点（包括图片收集）不再重复执行
+     * 同一执行同时只允许一个恢复请求，且只有发起执行的用户可以恢复
+     *
+     * @param runId  执行ID
+     * @param userId 当前用户ID
+     * @return 最终上下文
+     */
+    public WorkflowContext resumeWorkflow(String runId, Long userId) {
+        WorkflowCheckpointStore checkpointStore = SpringContextUtil.getBean(WorkflowCheckpointStore.class);
+        // 先加锁再读取：并发的恢复请求可能刚刚完成并删除了检查点
+        String lockToken = checkpointStore.lockResume(runId);
+        try {
+            WorkflowCheckpoint checkpoint = checkpointStore.load(runId);
+            ThrowUtils.throwIf(userId == null || !Objects.equals(checkpoint.getUserId(), userId),
+                    ErrorCode.NO_AUTH_ERROR, "无权恢复该执行");
+            ThrowUtils.throwIf(!WorkflowGraphRegistry.CODE_GEN.equals(checkpoint.getWorkflow()),
+                    ErrorCode.PARAMS_ERROR, "检查点不属于代码生成工作流");
+            WorkflowContext context = checkpoint.getContext();
+            String resumeFrom = resumeTarget(checkpoint.getLastNode(), context);
+            if (END.equals(resumeFrom)) {
+                log.info("执行 {} 在检查点处已完成，直接返回结果", runId);
+                return context;
+            }
+            log.info("从检查点恢复代码生成工作流 runId={}，上次完成节点 {}，从 {} 继续",
+                    runId, checkpoint.getLastNode(), resumeFrom);
+            context.setResumeFrom(resumeFrom);
+            context.setTrace(new WorkflowTrace());
+            return runWorkflow(context);
+        } finally {
+            checkpointStore.unlockResume(runId, lockToken);
+        }
+    }
 
+    /**
+     * 执行工作流直到结束
+     */
+    private WorkflowContext runWorkflow(WorkflowContext initialContext) {
+        CompiledGraph<MessagesState<String>> workflow = compiledWorkflow();
         WorkflowContext finalContext = null;
         int stepCounter = 1;
         for (NodeOutput<MessagesState<String>> step : workflow.stream(
-                Map.of(WorkflowContext.WORKFLOW_CONTEXT_KEY, initialContext))) {
+                Map.of(WorkflowContext.WORKFLOW_CONTEXT_KEY, initialContext), newRunConfig(initialContext.getRunId()))) {
             log.info("--- 第 {} 步完成 ---", stepCounter);
             // 显示当前状态
             WorkflowContext currentContext = WorkflowContext.getContext(step.state());
@@ -97,31 +204,30 @@ public class CodeGenWorkflow {
             stepCounter++;
         }
         log.info("代码生成工作流执行完成！");
+        finishRun(finalContext != null ? finalContext : initialContext);
         return finalContext;
     }
 
     /**
      * 执行工作流（Flux 流式输出版本）
      */
-    public Flux<String> executeWorkflowWithFlux(String originalPrompt) {
+    public Flux<String> executeWorkflowWithFlux(String originalPrompt, Long userId) {
         return Flux.create(sink -> {
-            Thread.startVirtualThread(() -> {
+            AtomicReference<String> runId = new AtomicReference<>();
+            Thread.startVirtualThread(GenerationContext.propagate(() -> {
                 try {
-                    CompiledGraph<MessagesState<String>> workflow = createWorkflow();
-                    WorkflowContext initialContext = WorkflowContext.builder()
-                            .originalPrompt(originalPrompt)
-                            .currentStep("初始化")
-                            .build();
+                    CompiledGraph<MessagesState<String>> workflow = compiledWorkflow();
+                    WorkflowContext initialContext = newContext(originalPrompt, userId);
+                    runId.set(initialContext.getRunId());
                     sink.next(formatSseEvent("workflow_start", Map.of(
                             "message", "开始执行代码生成工作流",
-                            "originalPrompt", originalPrompt
+                            "originalPrompt", originalPrompt,
+                            "runId", initialContext.getRunId()
                     )));
-                    GraphRepresentation graph = workflow.getGraph(GraphRepresentation.Type.MERMAID);
-                    log.info("工作流图:\n{}", graph.content());
 
                     int stepCounter = 1;
                     for (NodeOutput<MessagesState<String>> step : workflow.stream(
-                            Map.of(WorkflowContext.WORKFLOW_CONTEXT_KEY, initialContext))) {
+                            Map.of(WorkflowContext.WORKFLOW_CONTEXT_KEY, initialContext), newRunConfig(initialContext.getRunId()))) {
                         log.info("--- 第 {} 步完成 ---", stepCounter);
                         WorkflowContext currentContext = WorkflowContext.getContext(step.state());
                         if (currentContext != null) {
@@ -133,8 +239,10 @@ public class CodeGenWorkflow {
                         }
                         stepCounter++;
                     }
+                    CriticalPathReport criticalPath = finishRun(initialContext);
                     sink.next(formatSseEvent("workflow_completed", Map.of(
-                            "message", "代码生成工作流执行完成！"
+                            "message", "代码生成工作流执行完成！",
+                            "criticalPath", criticalPath.format()
                     )));
                     log.info("代码生成工作流执行完成！");
                     sink.complete();
@@ -142,14 +250,54 @@ public class CodeGenWorkflow {
                     log.error("工作流执行失败: {}", e.getMessage(), e);
                     sink.next(formatSseEvent("workflow_error", Map.of(
                             "error", e.getMessage(),
-                            "message", "工作流执行失败"
+                            "message", "工作流执行失败",
+                            "runId", StrUtil.nullToEmpty(runId.get())
                     )));
                     sink.error(e);
                 }
-            });
+            }));
         });
     }
 
+    private CompiledGraph<MessagesState<String>> compiledWorkflow() {
+        return workflowGraphRegistry.get(WorkflowGraphRegistry.CODE_GEN);
+    }
+
+    /**
+     * 新执行的初始上下文
+     */
+    private WorkflowContext newContext(String originalPrompt, Long userId) {
+        return WorkflowContext.builder()
+                .runId(IdUtil.fastSimpleUUID())
+                .userId(userId)
+                .originalPrompt(originalPrompt)
+                .currentStep("初始化")
+                .trace(new WorkflowTrace())
+                .build();
+    }
+
+    /**
+     * 每次执行独立的运行配置，并行分支使用共享的虚拟线程执行器
+     */
+    private RunnableConfig newRunConfig(String runId) {
+        return RunnableConfig.builder()
+                .threadId(runId)
+                .addParallelNodeExecutor("image_plan", SpringContextUtil.getBean(ParallelNodeExecutors.class)
+                        .forWorkflow(WorkflowGraphRegistry.CODE_GEN))
+                .build();
+    }
+
+    /**
+     * 执行成功结束：删除检查点，计算本次执行的关键路径，记录到上下文并输出日志
+     */
+    private CriticalPathReport finishRun(WorkflowContext context) {
+        SpringContextUtil.getBean(WorkflowCheckpointStore.class).delete(context.getRunId());
+        CriticalPathReport report = context.getTrace().criticalPath(DEPENDENCIES);
+        context.setCriticalPath(report);
+        log.info("代码生成工作流关键路径: {}", report.format());
+        return report;
+    }
+
     /**
      * 格式化 SSE 事件的辅助方法
      */
@@ -166,25 +314,23 @@ public class CodeGenWorkflow {
     /**
      * 执行工作流（SSE 流式输出版本）
      */
-    public SseEmitter executeWorkflowWithSse(String originalPrompt) {
+    public SseEmitter executeWorkflowWithSse(String originalPrompt, Long userId) {
         SseEmitter emitter = new SseEmitter(30 * 60 * 1000L);
-        Thread.startVirtualThread(() -> {
+        AtomicReference<String> runId = new AtomicReference<>();
+        Thread.startVirtualThread(GenerationContext.propagate(() -> {
             try {
-                CompiledGraph<MessagesState<String>> workflow = createWorkflow();
-                WorkflowContext initialContext = WorkflowContext.builder()
-                        .originalPrompt(originalPrompt)
-                        .currentStep("初始化")
-                        .build();
+                CompiledGraph<MessagesState<String>> workflow = compiledWorkflow();
+                WorkflowContext initialContext = newContext(originalPrompt, userId);
+                runId.set(initialContext.getRunId());
                 sendSseEvent(emitter, "workflow_start", Map.of(
                         "message", "开始执行代码生成工作流",
-                        "originalPrompt", originalPrompt
+                        "originalPrompt", originalPrompt,
+                        "runId", initialContext.getRunId()
                 ));
-                GraphRepresentation graph = workflow.getGraph(GraphRepresentation.Type.MERMAID);
-                log.info("工作流图:\n{}", graph.content());
 
                 int stepCounter = 1;
                 for (NodeOutput<MessagesState<String>> step : workflow.stream(
-                        Map.of(WorkflowContext.WORKFLOW_CONTEXT_KEY, initialContext))) {
+                        Map.of(WorkflowContext.WORKFLOW_CONTEXT_KEY, initialContext), newRunConfig(initialContext.getRunId()))) {
                     log.info("--- 第 {} 步完成 ---", stepCounter);
                     WorkflowContext currentContext = WorkflowContext.getContext(step.state());
                     if (currentContext != null) {
@@ -196,8 +342,10 @@ public class CodeGenWorkflow {
                     }
                     stepCounter++;
                 }
+                CriticalPathReport criticalPath = finishRun(initialContext);
                 sendSseEvent(emitter, "workflow_completed", Map.of(
-                        "message", "代码生成工作流执行完成！"
+                        "message", "代码生成工作流执行完成！",
+                        "criticalPath", criticalPath.format()
                 ));
                 log.info("代码生成工作流执行完成！");
                 emitter.complete();
@@ -205,11 +353,12 @@ public class CodeGenWorkflow {
                 log.error("工作流执行失败: {}", e.getMessage(), e);
                 sendSseEvent(emitter, "workflow_error", Map.of(
                         "error", e.getMessage(),
-                        "message", "工作流执行失败"
+                        "message", "工作流执行失败",
+                        "runId", StrUtil.nullToEmpty(runId.get())
                 ));
                 emitter.completeWithError(e);
             }
-        });
+        }));
         return emitter;
     }
 
@@ -227,38 +376,41 @@ public class CodeGenWorkflow {
     }
 
     /**
-     * 根据质检结果决定下一步
-     *
-     * @param state
-     * @return
+     * 入口路由：从检查点恢复时进入上次未完成的节点
      */
-    private String routeAfterQualityCheck(MessagesState<String> state) {
+    private static String routeEntry(MessagesState<String> state) {
         WorkflowContext context = WorkflowContext.getContext(state);
-        QualityResult qualityResult = context.getQualityResult();
-        // 如果质检失败，重新生成代码
-        if (qualityResult == null || !qualityResult.getIsValid()) {
-            log.error("代码质检失败，需要重新生成代码");
-            return "fail";
+        String resumeFrom = context.getResumeFrom();
+        if (resumeFrom == null) {
+            return "image_plan";
         }
-        // 质检通过，使用原有的构建路由逻辑
-        log.info("代码质检通过，继续后续流程");
-        return routeBuildOrSkip(state);
+        context.setResumeFrom(null);
+        return resumeFrom;
     }
 
     /**
-     * 根据代码生成类型决定是否需要构建
-     *
-     * @param state
-     * @return
+     * 根据检查点中最近完成的节点确定恢复后执行的节点，END 表示执行已完成
      */
-    private String routeBuildOrSkip(MessagesState<String> state) {
-        WorkflowContext context = WorkflowContext.getContext(state);
-        CodeGenTypeEnum generationType = context.getGenerationType();
-        // HTML 和 MULTI_FILE 类型不需要构建，直接结束
-        if (generationType == CodeGenTypeEnum.HTML || generationType == CodeGenTypeEnum.MULTI_FILE) {
-            return "skip_build";
-        }
-        // VUE_PROJECT 需要构建
-        return "build";
+    private String resumeTarget(String lastNode, WorkflowContext context) {
+        return switch (lastNode) {
+            case "prompt_enhancer" -> "code_generator";
+            case "code_generator" -> "code_quality_check";
+            case "code_quality_check" -> switch (QualityCheckRouter.route(context)) {
+                case QualityCheckRouter.BUILD -> "project_builder";
+                case QualityCheckRouter.REPAIR -> "code_repair";
+                case QualityCheckRouter.REGENERATE -> "code_generator";
+                default -> END;
+            };
+            case "code_repair" -> "code_quality_check";
+            default -> END;
+        };
+    }
+
+    /**
+     * 并行分支之外的节点：记录耗时，完成后保存检查点
+     */
+    private static AsyncNodeAction<MessagesState<String>> checkpointedNode(String node,
+                                                                           AsyncNodeAction<MessagesState<String>> action) {
+        return checkpointed(WorkflowGraphRegistry.CODE_GEN, node, traced(node, action));
     }
 }
\ No newline at end of file
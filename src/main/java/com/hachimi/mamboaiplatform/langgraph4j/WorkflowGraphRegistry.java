@@ -0,0 +1,115 @@
+package com.hachimi.mamboaiplatform.langgraph4j;
+
+import com.hachimi.mamboaiplatform.exception.BusinessException;
+import com.hachimi.mamboaiplatform.exception.ErrorCode;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.bsc.langgraph4j.CompiledGraph;
+import org.bsc.langgraph4j.GraphRepresentation;
+import org.bsc.langgraph4j.prebuilt.MessagesState;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 工作流图注册表
+ * 工作流图的结构是固定的，节点在执行时才从容器获取依赖，编译好的图不持有运行状态，可以被多次执行共享。
+ * 启动时编译并校验所有工作流（langgraph4j 编译时会校验入口、边引用的节点、条件边映射），
+ * 图有问题时应用直接启动失败，而不是等到第一个请求；Mermaid 图也只渲染一次。
+ * 每次执行使用独立的 RunnableConfig（threadId 区分运行）。
+ */
+@Slf4j
+@Component
+public class WorkflowGraphRegistry {
+
+    /**
+     * 串行代码生成工作流
+     */
+    public static final String CODE_GEN = "code_gen";
+
+    /**
+     * 并发图片收集的代码生成工作流
+     */
+    public static final String CODE_GEN_CONCURRENT = "code_gen_concurrent";
+
+    /**
+     * 子图方式的代码生成工作流
+     */
+    public static final String CODE_GEN_SUBGRAPH = "code_gen_subgraph";
+
+    /**
+     * 编译好的工作流
+     *
+     * @param name          工作流名
+     * @param graph         编译好的图
+     * @param mermaid       Mermaid 图
+     * @param compileMillis 编译耗时（毫秒）
+     */
+    public record CompiledWorkflow(String name, CompiledGraph<MessagesState<String>> graph, String mermaid,
+                                   long compileMillis) {
+    }
+
+    private final Map<String, CompiledWorkflow> workflows = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        register(CODE_GEN, CodeGenWorkflow::createWorkflow);
+        register(CODE_GEN_CONCURRENT, CodeGenConcurrentWorkflow::createWorkflow);
+        register(CODE_GEN_SUBGRAPH, CodeGenSubgraphWorkflow::createWorkflow);
+    }
+
+    /**
+     * 编译、校验并注册工作流
+     *
+     * @param name    工作流名
+     * @param factory 创建并编译工作流
+     * @return 编译好的工作流
+     */
+    public CompiledWorkflow register(String name, Supplier<CompiledGraph<MessagesState<String>>> factory) {
+        long start = System.nanoTime();
+        CompiledGraph<MessagesState<String>> graph;
+        String mermaid;
+        try {
+            graph = factory.get();
+            mermaid = graph.getGraph(GraphRepresentation.Type.MERMAID).content();
+        } catch (Exception e) {
+            log.error("工作流 {} 编译校验失败: {}", name, e.getMessage(), e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "工作流 " + name + " 编译校验失败");
+        }
+        long compileMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        CompiledWorkflow compiled = new CompiledWorkflow(name, graph, mermaid, compileMillis);
+        workflows.put(name, compiled);
+        log.info("工作流 {} 编译完成，耗时 {}ms，工作流图:\n{}", name, compileMillis, mermaid);
+        return compiled;
+    }
+
+    /**
+     * 获取编译好的工作流图
+     */
+    public CompiledGraph<MessagesState<String>> get(String name) {
+        return getCompiled(name).graph();
+    }
+
+    /**
+     * 获取工作流的 Mermaid 图
+     */
+    public String getMermaid(String name) {
+        return getCompiled(name).mermaid();
+    }
+
+    public Set<String> names() {
+        return workflows.keySet();
+    }
+
+    private CompiledWorkflow getCompiled(String name) {
+        CompiledWorkflow compiled = workflows.get(name);
+        if (compiled == null) {
+            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "工作流不存在: " + name);
+        }
+        return compiled;
+    }
+}
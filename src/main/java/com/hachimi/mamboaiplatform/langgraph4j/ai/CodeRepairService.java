@@ -0,0 +1,17 @@
+package com.hachimi.mamboaiplatform.langgraph4j.ai;
+
+import com.hachimi.mamboaiplatform.langgraph4j.model.CodeRepairResult;
+import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.service.UserMessage;
+
+/**
+ * 代码修复服务
+ */
+public interface CodeRepairService {
+
+    /**
+     * 针对质检发现的问题，只对问题文件给出定向修改
+     */
+    @SystemMessage(fromResource = "prompt/code-repair-system-prompt.txt")
+    CodeRepairResult repairCode(@UserMessage String repairPrompt);
+}
@@ -0,0 +1,29 @@
+package com.hachimi.mamboaiplatform.langgraph4j.ai;
+
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.service.AiServices;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 代码修复服务工厂
+ */
+@Slf4j
+@Configuration
+public class CodeRepairServiceFactory {
+
+    @Resource(name = "openAiChatModel")
+    private ChatModel chatModel;
+
+    /**
+     * 创建代码修复 AI 服务
+     */
+    @Bean
+    public CodeRepairService createCodeRepairService() {
+        return AiServices.builder(CodeRepairService.class)
+                .chatModel(chatModel)
+                .build();
+    }
+}
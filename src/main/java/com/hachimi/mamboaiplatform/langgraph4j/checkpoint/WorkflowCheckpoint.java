@@ -0,0 +1,47 @@
+package com.hachimi.mamboaiplatform.langgraph4j.checkpoint;
+
+import com.hachimi.mamboaiplatform.langgraph4j.state.WorkflowContext;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 工作流检查点：某次执行最近一个成功完成的节点及其之后的上下文
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkflowCheckpoint {
+
+    /**
+     * 执行ID
+     */
+    private String runId;
+
+    /**
+     * 发起执行的用户ID，只有该用户可以恢复
+     */
+    private Long userId;
+
+    /**
+     * 工作流名
+     */
+    private String workflow;
+
+    /**
+     * 最近成功完成的节点
+     */
+    private String lastNode;
+
+    /**
+     * 节点完成后的上下文
+     */
+    private WorkflowContext context;
+
+    /**
+     * 保存时间（毫秒时间戳）
+     */
+    private long updateTime;
+}
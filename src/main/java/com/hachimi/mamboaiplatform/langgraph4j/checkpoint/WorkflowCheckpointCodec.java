@@ -0,0 +1,39 @@
+package com.hachimi.mamboaiplatform.langgraph4j.checkpoint;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hachimi.mamboaiplatform.exception.BusinessException;
+import com.hachimi.mamboaiplatform.exception.ErrorCode;
+
+/**
+ * 检查点编解码
+ * 使用紧凑 JSON（省略 null 字段）而不是 Java 序列化：体积小、不绑定类的 serialVersionUID，
+ * 字段增减后旧检查点仍能读取（忽略未知字段）。轨迹、异步计划等运行期字段不参与序列化。
+ */
+public final class WorkflowCheckpointCodec {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private WorkflowCheckpointCodec() {
+    }
+
+    public static String encode(WorkflowCheckpoint checkpoint) {
+        try {
+            return OBJECT_MAPPER.writeValueAsString(checkpoint);
+        } catch (JsonProcessingException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "检查点序列化失败");
+        }
+    }
+
+    public static WorkflowCheckpoint decode(String json) {
+        try {
+            return OBJECT_MAPPER.readValue(json, WorkflowCheckpoint.class);
+        } catch (JsonProcessingException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "检查点反序列化失败");
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.hachimi.mamboaiplatform.langgraph4j.checkpoint;
+
+import com.hachimi.mamboaiplatform.config.WorkflowCheckpointConfig;
+import com.hachimi.mamboaiplatform.exception.BusinessException;
+import com.hachimi.mamboaiplatform.exception.ErrorCode;
+import com.hachimi.mamboaiplatform.langgraph4j.state.WorkflowContext;
+import com.hachimi.mamboaiplatform.utils.SpringContextUtil;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.bsc.langgraph4j.action.AsyncNodeAction;
+import org.bsc.langgraph4j.prebuilt.MessagesState;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 工作流检查点存储（Redis）
+ * 节点成功完成后保存上下文，后续节点（代码生成、项目构建）失败时可以从最近的检查点继续，
+ * 不必重新执行图片搜索、Logo 生成等付费调用。检查点带过期时间，另有索引记录保存时间，
+ * 由定时任务清理过期条目；执行成功结束后立即删除。
+ */
+@Slf4j
+@Component
+public class WorkflowCheckpointStore {
+
+    private static final String CHECKPOINT_KEY_PREFIX = "workflow:checkpoint:";
+
+    /**
+     * 检查点索引（ZSet，runId -> 保存时间）
+     */
+    private static final String INDEX_KEY = "workflow:checkpoint:index";
+
+    /**
+     * 只释放自己持有的恢复锁（锁可能已到期并被其他请求取得）
+     */
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+              return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    @Resource
+    private WorkflowCheckpointConfig workflowCheckpointConfig;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 包装节点，节点成功完成后保存检查点（上下文未携带执行ID时不保存）
+     * 只用于并行分支之外的节点：并行分支还在修改共享上下文，在汇合节点保存即可覆盖整个并行区域
+     *
+     * @param workflow 工作流名
+     * @param node     节点名
+     * @param action   节点
+     * @return 保存检查点的节点
+     */
+    public static AsyncNodeAction<MessagesState<String>> checkpointed(String workflow, String node,
+                                                                      AsyncNodeAction<MessagesState<String>> action) {
+        return state -> action.apply(state).thenApply(result -> {
+            WorkflowContext context = (WorkflowContext) result.get(WorkflowContext.WORKFLOW_CONTEXT_KEY);
+            if (context != null && context.getRunId() != null) {
+                SpringContextUtil.getBean(WorkflowCheckpointStore.class).save(workflow, node, context);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * 保存检查点，失败只记录日志，不影响工作流执行
+     */
+    public void save(String workflow, String node, WorkflowContext context) {
+        if (!workflowCheckpointConfig.isEnabled()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        WorkflowCheckpoint checkpoint = WorkflowCheckpoint.builder()
+                .runId(context.getRunId())
+                .userId(context.getUserId())
+                .workflow(workflow)
+                .lastNode(node)
+                .context(context)
+                .updateTime(now)
+                .build();
+        try {
+            String json = WorkflowCheckpointCodec.encode(checkpoint);
+            stringRedisTemplate.opsForValue().set(checkpointKey(context.getRunId()), json,
+                    Duration.ofHours(workflowCheckpointConfig.getTtlHours()));
+            stringRedisTemplate.opsForZSet().add(INDEX_KEY, context.getRunId(), now);
+            log.debug("保存工作流检查点 runId={} node={} size={}", context.getRunId(), node, json.length());
+        } catch (Exception e) {
+            log.warn("保存工作流检查点失败 runId={} node={}: {}", context.getRunId(), node, e.getMessage());
+        }
+    }
+
+    /**
+     * 读取执行的最近检查点
+     *
+     * @param runId 执行ID
+     * @return 检查点
+     */
+    public WorkflowCheckpoint load(String runId) {
+        String json = stringRedisTemplate.opsForValue().get(checkpointKey(runId));
+        if (json == null) {
+            throw new BusinessException(ErrorCode.NOT_FOUND_ERROR, "没有可恢复的检查点，执行已完成、已过期或未到达可恢复的节点");
+        }
+        return WorkflowCheckpointCodec.decode(json);
+    }
+
+    /**
+     * 取得执行的恢复锁（SET NX），同一执行同时只允许一个恢复请求，避免重复的模型调用和并发写同一输出目录
+     *
+     * @param runId 执行ID
+     * @return 锁令牌，释放时使用
+     */
+    public String lockResume(String runId) {
+        String token = UUID.randomUUID().toString();
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(resumeLockKey(runId), token,
+                Duration.ofMinutes(workflowCheckpointConfig.getResumeLockMinutes()));
+        if (!Boolean.TRUE.equals(locked)) {
+            throw new BusinessException(ErrorCode.OPERATION_ERROR, "该执行正在恢复中，请等待完成后再试");
+        }
+        return token;
+    }
+
+    /**
+     * 释放恢复锁，失败时锁到期自动释放
+     */
+    public void unlockResume(String runId, String token) {
+        try {
+            stringRedisTemplate.execute(UNLOCK_SCRIPT, List.of(resumeLockKey(runId)), token);
+        } catch (Exception e) {
+            log.warn("释放工作流恢复锁失败 runId={}: {}", runId, e.getMessage());
+        }
+    }
+
+    /**
+     * 执行成功结束后删除检查点
+     */
+    public void delete(String runId) {
+        try {
+            stringRedisTemplate.delete(checkpointKey(runId));
+            stringRedisTemplate.opsForZSet().remove(INDEX_KEY, runId);
+        } catch (Exception e) {
+            log.warn("删除工作流检查点失败 runId={}: {}", runId, e.getMessage());
+        }
+    }
+
+    /**
+     * 清理超过保留时间的检查点
+     *
+     * @return 清理的检查点数
+     */
+    public int cleanupExpired() {
+        long expireBefore = System.currentTimeMillis() - Duration.ofHours(workflowCheckpointConfig.getTtlHours()).toMillis();
+        Set<String> expired = stringRedisTemplate.opsForZSet().rangeByScore(INDEX_KEY, 0, expireBefore);
+        if (expired == null || expired.isEmpty()) {
+            return 0;
+        }
+        // 检查点本身通常已随 TTL 过期，这里兜底删除并清理索引
+        stringRedisTemplate.delete(expired.stream().map(WorkflowCheckpointStore::checkpointKey).toList());
+        stringRedisTemplate.opsForZSet().removeRangeByScore(INDEX_KEY, 0, expireBefore);
+        return expired.size();
+    }
+
+    private static String checkpointKey(String runId) {
+        return CHECKPOINT_KEY_PREFIX + runId;
+    }
+
+    private static String resumeLockKey(String runId) {
+        return CHECKPOINT_KEY_PREFIX + runId + ":lock";
+    }
+}
@@ -0,0 +1,203 @@
+package com.hachimi.mamboaiplatform.langgraph4j.executor;
+
+import com.hachimi.mamboaiplatform.config.WorkflowExecutorConfig;
+import com.hachimi.mamboaiplatform.context.GenerationContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 工作流并行节点执行器
+ * 所有工作流的并行分支共享一个虚拟线程执行器（分支大多在等待模型和图片接口，不占用平台线程），
+ * 每个工作流一个信号量限制跨运行同时执行的分支数，等待的分支数有上限，超出时在提交时拒绝
+ * （分支的 future 随之失败，不会出现永远不执行的分支）。应用关闭时等待进行中的分支结束。
+ */
+@Slf4j
+@Component
+public class ParallelNodeExecutors {
+
+    @Resource
+    private WorkflowExecutorConfig workflowExecutorConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private ExecutorService virtualThreads;
+
+    private final ConcurrentMap<String, WorkflowExecutor> executors = new ConcurrentHashMap<>();
+
+    private volatile boolean shuttingDown;
+
+    public ParallelNodeExecutors() {
+    }
+
+    ParallelNodeExecutors(WorkflowExecutorConfig workflowExecutorConfig, MeterRegistry meterRegistry) {
+        this.workflowExecutorConfig = workflowExecutorConfig;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        virtualThreads = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("workflow-parallel-", 0).factory());
+    }
+
+    /**
+     * 获取工作流的并行节点执行器（跨运行共享），用于 RunnableConfig.addParallelNodeExecutor
+     *
+     * @param workflow 工作流名
+     * @return 执行器
+     */
+    public Executor forWorkflow(String workflow) {
+        return executors.computeIfAbsent(workflow, this::createExecutor);
+    }
+
+    /**
+     * 在共享执行器上执行节点发起的后台任务（如图片规划），随应用关闭一起等待结束
+     * 不占用并行分支的并发许可：分支会等待这类任务的结果，占用许可可能与等待它的分支互相阻塞
+     *
+     * @param task 任务
+     * @throws RejectedExecutionException 执行器正在关闭
+     */
+    public void executeBackground(Runnable task) {
+        if (shuttingDown) {
+            throw new RejectedExecutionException("工作流执行器正在关闭");
+        }
+        virtualThreads.execute(GenerationContext.propagate(task));
+    }
+
+    private WorkflowExecutor createExecutor(String workflow) {
+        int concurrency = workflowExecutorConfig.concurrencyOf(workflow);
+        Counter rejected = Counter.builder("workflow_parallel_rejected_total")
+                .description("被拒绝的工作流并行分支数")
+                .tag("workflow", workflow)
+                .register(meterRegistry);
+        WorkflowExecutor executor = new WorkflowExecutor(workflow, concurrency, workflowExecutorConfig.getMaxQueued(),
+                rejected);
+        Gauge.builder("workflow_parallel_active", executor, WorkflowExecutor::getActive)
+                .description("执行中的工作流并行分支数")
+                .tag("workflow", workflow)
+                .register(meterRegistry);
+        Gauge.builder("workflow_parallel_queued", executor, WorkflowExecutor::getQueued)
+                .description("等待执行的工作流并行分支数")
+                .tag("workflow", workflow)
+                .register(meterRegistry);
+        Gauge.builder("workflow_parallel_limit", executor, WorkflowExecutor::getLimit)
+                .description("工作流并行分支数上限")
+                .tag("workflow", workflow)
+                .register(meterRegistry);
+        log.info("创建工作流并行节点执行器 workflow={} maxConcurrency={}", workflow, concurrency);
+        return executor;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shuttingDown = true;
+        virtualThreads.shutdown();
+        try {
+            if (!virtualThreads.awaitTermination(workflowExecutorConfig.getShutdownTimeoutSeconds(), TimeUnit.SECONDS)) {
+                log.warn("工作流并行分支未在 {} 秒内结束，强制中断", workflowExecutorConfig.getShutdownTimeoutSeconds());
+                virtualThreads.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            virtualThreads.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 单个工作流的并行节点执行器
+     */
+    final class WorkflowExecutor implements Executor {
+
+        private final String workflow;
+
+        private final int limit;
+
+        private final int maxQueued;
+
+        private final Semaphore permits;
+
+        private final AtomicInteger active = new AtomicInteger();
+
+        private final AtomicInteger queued = new AtomicInteger();
+
+        private final Counter rejected;
+
+        WorkflowExecutor(String workflow, int limit, int maxQueued, Counter rejected) {
+            this.workflow = workflow;
+            this.limit = limit;
+            this.maxQueued = maxQueued;
+            this.permits = new Semaphore(limit, true);
+            this.rejected = rejected;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            if (shuttingDown) {
+                rejected.increment();
+                throw new RejectedExecutionException("工作流执行器正在关闭");
+            }
+            if (queued.incrementAndGet() > maxQueued) {
+                queued.decrementAndGet();
+                rejected.increment();
+                throw new RejectedExecutionException("工作流 " + workflow + " 等待执行的并行分支过多");
+            }
+            try {
+                // 分支在提交方（工作流运行线程）的生成上下文中执行
+                virtualThreads.execute(GenerationContext.propagate(() -> run(task)));
+            } catch (RejectedExecutionException e) {
+                queued.decrementAndGet();
+                rejected.increment();
+                throw e;
+            }
+        }
+
+        private void run(Runnable task) {
+            boolean acquired = false;
+            try {
+                permits.acquire();
+                acquired = true;
+            } catch (InterruptedException e) {
+                // 强制关闭时仍执行任务以完成其 future，任务会因中断标志尽快失败
+                Thread.currentThread().interrupt();
+            }
+            queued.decrementAndGet();
+            active.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                active.decrementAndGet();
+                if (acquired) {
+                    permits.release();
+                }
+            }
+        }
+
+        int getActive() {
+            return active.get();
+        }
+
+        int getQueued() {
+            return queued.get();
+        }
+
+        int getLimit() {
+            return limit;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.hachimi.mamboaiplatform.langgraph4j.model;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 代码修复结果：针对问题文件的定向修改
+ */
+@Data
+public class CodeRepairResult implements Serializable {
+
+    /**
+     * 修改列表，按顺序应用
+     */
+    private List<FileEdit> edits;
+
+    /**
+     * 单处修改：把文件中唯一出现的旧内容替换为新内容；旧内容为空表示新建文件
+     *
+     * @param filePath   文件相对路径
+     * @param oldContent 要替换的旧内容（从文件中原样复制）
+     * @param newContent 替换后的新内容
+     */
+    public record FileEdit(String filePath, String oldContent, String newContent) implements Serializable {}
+}
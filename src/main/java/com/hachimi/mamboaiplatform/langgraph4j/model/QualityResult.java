@@ -35,4 +35,9 @@ public class QualityResult implements Serializable {
      * 改进建议
      */
     private List<String> suggestions;
+
+    /**
+     * 存在问题的文件（相对生成目录的路径），用于定向修复
+     */
+    private List<String> failedFiles;
 }
\ No newline at end of file
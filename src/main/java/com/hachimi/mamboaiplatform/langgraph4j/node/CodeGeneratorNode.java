@@ -1,5 +1,6 @@
 package com.hachimi.mamboaiplatform.langgraph4j.node;
 
+import com.hachimi.mamboaiplatform.ai.model.message.StreamMessage;
 import com.hachimi.mamboaiplatform.constant.AppConstant;
 import com.hachimi.mamboaiplatform.core.AiCodeGeneratorFacade;
 import com.hachimi.mamboaiplatform.langgraph4j.model.QualityResult;
@@ -27,6 +28,11 @@ public class CodeGeneratorNode {
             log.info("执行节点: 代码生成");
             // 构造用户消息（包含原始提示词和可能的错误修复信息）
             String userMessage = buildUserMessage(context);
+            if (context.getQualityResult() != null) {
+                // 质检未通过后的整体重新生成，计入修复轮数
+                context.setRepairRounds(context.getRepairRounds() + 1);
+                log.info("质检未通过，整体重新生成代码，第 {} 轮修复", context.getRepairRounds());
+            }
             CodeGenTypeEnum generationType = context.getGenerationType();
             // 获取 AI 代码生成外观服务
             AiCodeGeneratorFacade codeGeneratorFacade = SpringContextUtil.getBean(AiCodeGeneratorFacade.class);
@@ -34,7 +40,7 @@ public class CodeGeneratorNode {
             // 先使用固定的 appId (后续再整合到业务中)
             Long appId = (System.currentTimeMillis() / 1000) % 1000000 + 114514L;
             // 调用流式代码生成
-            Flux<String> codeStream = codeGeneratorFacade.generateCodeAndSaveStream(userMessage, generationType, appId);
+            Flux<StreamMessage> codeStream = codeGeneratorFacade.generateCodeAndSaveStream(userMessage, generationType, appId);
             // 同步等待流式输出完成
             codeStream.blockLast(Duration.ofMinutes(10)); // 最多等待 10 分钟
             // 根据类型设置生成目录
@@ -44,6 +50,7 @@ public class CodeGeneratorNode {
             // 更新状态
             context.setCurrentStep("代码生成");
             context.setGeneratedCodeDir(generatedCodeDir);
+            context.setRecheckFiles(null);
             return WorkflowContext.saveContext(context);
         });
     }
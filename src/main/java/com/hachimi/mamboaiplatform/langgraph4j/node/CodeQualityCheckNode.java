@@ -1,9 +1,16 @@
 package com.hachimi.mamboaiplatform.langgraph4j.node;
 
+import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.hachimi.mamboaiplatform.config.WorkflowQualityConfig;
 import com.hachimi.mamboaiplatform.langgraph4j.ai.CodeQualityCheckService;
 import com.hachimi.mamboaiplatform.langgraph4j.model.QualityResult;
+import com.hachimi.mamboaiplatform.langgraph4j.quality.QualityCheckChunker;
+import com.hachimi.mamboaiplatform.langgraph4j.quality.StaticCodeValidator;
+import com.hachimi.mamboaiplatform.langgraph4j.quality.StaticCodeValidator.StaticValidationResult;
+import com.hachimi.mamboaiplatform.langgraph4j.repair.CodePatchEngine;
 import com.hachimi.mamboaiplatform.langgraph4j.state.WorkflowContext;
 import com.hachimi.mamboaiplatform.utils.SpringContextUtil;
 import lombok.extern.slf4j.Slf4j;
@@ -11,13 +18,23 @@ import org.bsc.langgraph4j.action.AsyncNodeAction;
 import org.bsc.langgraph4j.prebuilt.MessagesState;
 
 import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.bsc.langgraph4j.action.AsyncNodeAction.node_async;
 
 /**
  * 代码质量检查节点
+ * 先在本地做静态预检，明显的结构错误直接判定不通过；预检通过后只把内容有变化、尚未通过检查的文件
+ * 按 token 上限分组交给模型质检。
  */
 @Slf4j
 public class CodeQualityCheckNode {
@@ -27,22 +44,27 @@ public class CodeQualityCheckNode {
             WorkflowContext context = WorkflowContext.getContext(state);
             log.info("执行节点: 代码质量检查");
             String generatedCodeDir = context.getGeneratedCodeDir();
+            List<String> recheckFiles = context.getRecheckFiles();
             QualityResult qualityResult;
             try {
-                // 1. 读取并拼接代码文件内容
-                String codeContent = readAndConcatenateCodeFiles(generatedCodeDir);
-                if (StrUtil.isBlank(codeContent)) {
-                    log.warn("未找到可检查的代码文件");
-                    qualityResult = QualityResult.builder()
-                            .isValid(false)
-                            .errors(List.of("未找到可检查的代码文件"))
-                            .suggestions(List.of("请确保代码生成成功"))
-                            .build();
+                if (recheckFiles != null && recheckFiles.isEmpty()) {
+                    log.info("上一轮修复没有改动任何文件，沿用上次质检结果");
+                    qualityResult = context.getQualityResult();
                 } else {
-                    // 2. 调用 AI 进行代码质量检查
-                    CodeQualityCheckService qualityCheckService = SpringContextUtil.getBean(CodeQualityCheckService.class);
-                    qualityResult = qualityCheckService.checkCodeQuality(codeContent);
-                    log.info("代码质量检查完成 - 是否通过: {}", qualityResult.getIsValid());
+                    // 1. 读取代码文件内容
+                    Map<String, String> codeFiles = readCodeFiles(generatedCodeDir);
+                    if (codeFiles.isEmpty()) {
+                        log.warn("未找到可检查的代码文件");
+                        qualityResult = QualityResult.builder()
+                                .isValid(false)
+                                .errors(List.of("未找到可检查的代码文件"))
+                                .suggestions(List.of("请确保代码生成成功"))
+                                .build();
+                    } else {
+                        // 2. 本地预检 + 模型质检
+                        qualityResult = checkCodeFiles(context, codeFiles, recheckFiles);
+                        log.info("代码质量检查完成 - 是否通过: {}", qualityResult.getIsValid());
+                    }
                 }
             } catch (Exception e) {
                 log.error("代码质量检查异常: {}", e.getMessage(), e);
@@ -51,12 +73,100 @@ public class CodeQualityCheckNode {
                         .build();
             }
             // 3. 更新状态
+            context.setRecheckFiles(null);
             context.setCurrentStep("代码质量检查");
             context.setQualityResult(qualityResult);
             return WorkflowContext.saveContext(context);
         });
     }
 
+    /**
+     * 检查代码文件
+     *
+     * @param codeFiles    相对路径 -> 文件内容
+     * @param recheckFiles 定向修复后需要复查的文件，null 表示全部文件
+     */
+    private static QualityResult checkCodeFiles(WorkflowContext context, Map<String, String> codeFiles,
+                                                List<String> recheckFiles) {
+        WorkflowQualityConfig qualityConfig = SpringContextUtil.getBean(WorkflowQualityConfig.class);
+        Path root = Paths.get(context.getGeneratedCodeDir()).toAbsolutePath().normalize();
+        // 本地预检发现错误时直接判定不通过，问题文件交给定向修复
+        if (qualityConfig.isStaticValidationEnabled()) {
+            StaticValidationResult staticResult = StaticCodeValidator.validate(root.toString(), codeFiles);
+            if (!staticResult.passed()) {
+                log.warn("本地静态预检未通过，跳过模型质检 - 问题文件: {}", staticResult.failedFiles());
+                return QualityResult.builder()
+                        .isValid(false)
+                        .errors(staticResult.errors())
+                        .suggestions(List.of("按错误提示修复标签配对、本地引用路径或配置文件格式"))
+                        .failedFiles(staticResult.failedFiles())
+                        .build();
+            }
+        }
+        // 只把内容有变化、尚未通过检查的文件交给模型
+        Map<String, String> passedDigests = context.getPassedFileDigests() != null
+                ? new HashMap<>(context.getPassedFileDigests())
+                : new HashMap<>();
+        Map<String, String> digests = new HashMap<>();
+        codeFiles.forEach((relativePath, content) -> digests.put(relativePath, DigestUtil.sha256Hex(content)));
+        List<String> pendingFiles = codeFiles.keySet().stream()
+                .filter(relativePath -> recheckFiles == null || recheckFiles.contains(relativePath))
+                .filter(relativePath -> !qualityConfig.isStaticValidationEnabled()
+                        || !StaticCodeValidator.isFullyValidated(relativePath))
+                .filter(relativePath -> !digests.get(relativePath)
+                        .equals(passedDigests.get(root.resolve(relativePath).toString())))
+                .toList();
+        if (pendingFiles.isEmpty()) {
+            log.info("本地预检通过，没有需要模型复查的改动文件");
+            return QualityResult.builder()
+                    .isValid(true)
+                    .errors(List.of())
+                    .suggestions(List.of())
+                    .failedFiles(List.of())
+                    .build();
+        }
+        // 按 token 上限分组，逐组调用模型质检并合并结果
+        List<List<String>> chunks = QualityCheckChunker.chunk(pendingFiles, codeFiles, qualityConfig.getMaxChunkTokens());
+        log.info("模型质检 {} 个文件（共 {} 个），分 {} 组", pendingFiles.size(), codeFiles.size(), chunks.size());
+        CodeQualityCheckService qualityCheckService = SpringContextUtil.getBean(CodeQualityCheckService.class);
+        boolean partial = chunks.size() > 1 || pendingFiles.size() < codeFiles.size();
+        boolean valid = true;
+        List<String> errors = new ArrayList<>();
+        List<String> suggestions = new ArrayList<>();
+        Set<String> failedFiles = new LinkedHashSet<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            List<String> chunk = chunks.get(i);
+            String codeContent = partial
+                    ? buildChunkContent(codeFiles, chunk, i + 1, chunks.size())
+                    : buildFullContent(codeFiles);
+            QualityResult chunkResult = qualityCheckService.checkCodeQuality(codeContent);
+            boolean chunkValid = chunkResult != null && Boolean.TRUE.equals(chunkResult.getIsValid());
+            List<String> chunkFailedFiles = chunkResult != null && chunkResult.getFailedFiles() != null
+                    ? chunkResult.getFailedFiles().stream().map(CodePatchEngine::normalizePath).toList()
+                    : List.of();
+            if (chunkResult != null) {
+                errors.addAll(CollUtil.emptyIfNull(chunkResult.getErrors()));
+                suggestions.addAll(CollUtil.emptyIfNull(chunkResult.getSuggestions()));
+            }
+            failedFiles.addAll(chunkFailedFiles);
+            valid &= chunkValid;
+            // 整组通过，或未通过但指明了问题文件时，组内其他文件记为已通过
+            if (chunkValid || !chunkFailedFiles.isEmpty()) {
+                chunk.stream()
+                        .filter(relativePath -> !chunkFailedFiles.contains(relativePath))
+                        .forEach(relativePath -> passedDigests.put(root.resolve(relativePath).toString(),
+                                digests.get(relativePath)));
+            }
+        }
+        context.setPassedFileDigests(passedDigests);
+        return QualityResult.builder()
+                .isValid(valid)
+                .errors(errors)
+                .suggestions(suggestions)
+                .failedFiles(new ArrayList<>(failedFiles))
+                .build();
+    }
+
     /**
      * 需要检查的文件扩展名
      */
@@ -65,19 +175,20 @@ public class CodeQualityCheckNode {
     );
 
     /**
-     * 读取并拼接代码目录下的所有代码文件
+     * 读取代码目录下的所有代码文件
+     *
+     * @return 相对路径（统一使用 /）-> 文件内容
      */
-    private static String readAndConcatenateCodeFiles(String codeDir) {
+    private static Map<String, String> readCodeFiles(String codeDir) {
+        Map<String, String> codeFiles = new LinkedHashMap<>();
         if (StrUtil.isBlank(codeDir)) {
-            return "";
+            return codeFiles;
         }
         File directory = new File(codeDir);
         if (!directory.exists() || !directory.isDirectory()) {
             log.error("代码目录不存在或不是目录: {}", codeDir);
-            return "";
+            return codeFiles;
         }
-        StringBuilder codeContent = new StringBuilder();
-        codeContent.append("# 项目文件结构和代码内容\n\n");
         // 使用 Hutool 的 walkFiles 方法遍历所有文件
         FileUtil.walkFiles(directory, file -> {
             // 过滤条件：跳过隐藏文件、特定目录下的文件、非代码文件
@@ -85,15 +196,43 @@ public class CodeQualityCheckNode {
                 return;
             }
             if (isCodeFile(file)) {
-                String relativePath = FileUtil.subPath(directory.getAbsolutePath(), file.getAbsolutePath());
-                codeContent.append("## 文件: ").append(relativePath).append("\n\n");
-                String fileContent = FileUtil.readUtf8String(file);
-                codeContent.append(fileContent).append("\n\n");
+                String relativePath = FileUtil.subPath(directory.getAbsolutePath(), file.getAbsolutePath())
+                        .replace('\\', '/');
+                codeFiles.put(relativePath, FileUtil.readUtf8String(file));
             }
         });
+        return codeFiles;
+    }
+
+    /**
+     * 拼接全部代码文件内容
+     */
+    private static String buildFullContent(Map<String, String> codeFiles) {
+        StringBuilder codeContent = new StringBuilder();
+        codeContent.append("# 项目文件结构和代码内容\n\n");
+        codeFiles.forEach((relativePath, content) -> appendFile(codeContent, relativePath, content));
         return codeContent.toString();
     }
 
+    /**
+     * 拼接一组待检查文件的内容，附上完整的文件列表，避免模型把未列出的文件误报为缺失
+     */
+    private static String buildChunkContent(Map<String, String> codeFiles, List<String> chunk, int index, int total) {
+        StringBuilder codeContent = new StringBuilder();
+        codeContent.append("# 项目文件结构和代码内容（第 ").append(index).append("/").append(total).append(" 组）\n\n");
+        codeContent.append("项目包含以下文件：\n");
+        codeFiles.keySet().forEach(relativePath -> codeContent.append("- ").append(relativePath).append("\n"));
+        codeContent.append("\n以下只列出本组需要检查的文件，其他文件已通过检查或在其他组中检查，")
+                .append("不要因为其他文件未列出而报告缺失。\n\n");
+        chunk.forEach(relativePath -> appendFile(codeContent, relativePath, codeFiles.get(relativePath)));
+        return codeContent.toString();
+    }
+
+    private static void appendFile(StringBuilder codeContent, String relativePath, String content) {
+        codeContent.append("## 文件: ").append(relativePath).append("\n\n");
+        codeContent.append(content).append("\n\n");
+    }
+
     /**
      * 判断是否应该跳过此文件
      */
@@ -117,4 +256,4 @@ public class CodeQualityCheckNode {
         String fileName = file.getName().toLowerCase();
         return CODE_EXTENSIONS.stream().anyMatch(fileName::endsWith);
     }
-}
\ No newline at end of file
+}
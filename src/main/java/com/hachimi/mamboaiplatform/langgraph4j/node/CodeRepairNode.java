@@ -0,0 +1,103 @@
+package com.hachimi.mamboaiplatform.langgraph4j.node;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.io.FileUtil;
+import com.hachimi.mamboaiplatform.config.WorkflowRepairConfig;
+import com.hachimi.mamboaiplatform.langgraph4j.ai.CodeRepairService;
+import com.hachimi.mamboaiplatform.langgraph4j.model.CodeRepairResult;
+import com.hachimi.mamboaiplatform.langgraph4j.model.QualityResult;
+import com.hachimi.mamboaiplatform.langgraph4j.repair.CodePatchEngine;
+import com.hachimi.mamboaiplatform.langgraph4j.state.WorkflowContext;
+import com.hachimi.mamboaiplatform.utils.SpringContextUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.bsc.langgraph4j.action.AsyncNodeAction;
+import org.bsc.langgraph4j.prebuilt.MessagesState;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.bsc.langgraph4j.action.AsyncNodeAction.node_async;
+
+/**
+ * 代码定向修复节点
+ * 只把质检指出的问题文件交给模型，模型返回“旧内容 -> 新内容”的修改，由补丁引擎应用到生成目录，
+ * 输出量只有修改片段而不是整个网站。修复后只复查改动的文件和仍存在问题的文件。
+ */
+@Slf4j
+public class CodeRepairNode {
+
+    public static AsyncNodeAction<MessagesState<String>> create() {
+        return node_async(state -> {
+            WorkflowContext context = WorkflowContext.getContext(state);
+            int round = context.getRepairRounds() + 1;
+            log.info("执行节点: 代码定向修复，第 {} 轮", round);
+            String codeDir = context.getGeneratedCodeDir();
+            QualityResult qualityResult = context.getQualityResult();
+            List<String> recheckFiles = new ArrayList<>();
+            try {
+                Path root = Paths.get(codeDir).toAbsolutePath().normalize();
+                List<String> failedFiles = qualityResult.getFailedFiles().stream()
+                        .map(CodePatchEngine::normalizePath)
+                        .filter(relativePath -> CodePatchEngine.resolve(root, relativePath) != null)
+                        .distinct()
+                        .toList();
+                String repairPrompt = buildRepairPrompt(root, qualityResult, failedFiles);
+                CodeRepairService repairService = SpringContextUtil.getBean(CodeRepairService.class);
+                CodeRepairResult repairResult = repairService.repairCode(repairPrompt);
+                CodePatchEngine.PatchResult patchResult = CodePatchEngine.apply(codeDir,
+                        repairResult != null ? repairResult.getEdits() : null);
+                log.info("代码修复完成，修改文件: {}，拒绝修改 {} 处", patchResult.changedFiles(), patchResult.rejected().size());
+                if (!patchResult.changedFiles().isEmpty()) {
+                    Set<String> files = new LinkedHashSet<>(patchResult.changedFiles());
+                    files.addAll(failedFiles);
+                    recheckFiles.addAll(files);
+                }
+            } catch (Exception e) {
+                log.error("代码修复失败: {}", e.getMessage(), e);
+            }
+            // 没有改动任何文件时复查列表为空，质检沿用上次结果
+            context.setRepairRounds(round);
+            context.setRecheckFiles(recheckFiles);
+            context.setCurrentStep("代码修复");
+            return WorkflowContext.saveContext(context);
+        });
+    }
+
+    /**
+     * 构造修复提示词：质检问题 + 问题文件的完整内容
+     */
+    private static String buildRepairPrompt(Path root, QualityResult qualityResult, List<String> failedFiles) {
+        int maxFileChars = SpringContextUtil.getBean(WorkflowRepairConfig.class).getMaxFileChars();
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("## 代码质量检查发现的问题\n");
+        if (CollUtil.isNotEmpty(qualityResult.getErrors())) {
+            qualityResult.getErrors().forEach(error -> prompt.append("- ").append(error).append("\n"));
+        }
+        if (CollUtil.isNotEmpty(qualityResult.getSuggestions())) {
+            prompt.append("\n## 修复建议\n");
+            qualityResult.getSuggestions().forEach(suggestion -> prompt.append("- ").append(suggestion).append("\n"));
+        }
+        prompt.append("\n## 需要修复的文件\n");
+        int totalChars = 0;
+        for (String relativePath : failedFiles) {
+            File file = root.resolve(relativePath).toFile();
+            if (!file.isFile()) {
+                prompt.append("\n### 文件: ").append(relativePath).append("（不存在，如确实需要请新建）\n");
+                continue;
+            }
+            String content = FileUtil.readUtf8String(file);
+            if (totalChars + content.length() > maxFileChars) {
+                log.warn("问题文件 {} 超出单轮修复内容上限，本轮跳过", relativePath);
+                continue;
+            }
+            totalChars += content.length();
+            prompt.append("\n### 文件: ").append(relativePath).append("\n```\n").append(content).append("\n```\n");
+        }
+        return prompt.toString();
+    }
+}
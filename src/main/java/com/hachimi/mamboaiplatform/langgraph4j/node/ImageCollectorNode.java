@@ -1,5 +1,6 @@
 package com.hachimi.mamboaiplatform.langgraph4j.node;
 
+import cn.hutool.core.collection.CollUtil;
 import com.hachimi.mamboaiplatform.langgraph4j.ai.ImageCollectionPlanService;
 import com.hachimi.mamboaiplatform.langgraph4j.model.ImageCollectionPlan;
 import com.hachimi.mamboaiplatform.langgraph4j.model.ImageResource;
@@ -32,15 +33,26 @@ public class ImageCollectorNode {
             List<ImageResource> collectedImages = new ArrayList<>();
 
             try {
-                // 第一步：获取图片收集计划
-                ImageCollectionPlanService planService = SpringContextUtil.getBean(ImageCollectionPlanService.class);
-                ImageCollectionPlan plan = planService.planImageCollection(originalPrompt);
+                // 第一步：获取图片收集计划（前面的规划节点已异步启动规划时等待其结果，独立使用时自行规划）
+                ImageCollectionPlan plan;
+                if (context.getImageCollectionPlanFuture() != null) {
+                    plan = context.awaitImageCollectionPlan();
+                } else {
+                    ImageCollectionPlanService planService = SpringContextUtil.getBean(ImageCollectionPlanService.class);
+                    plan = planService.planImageCollection(originalPrompt);
+                }
+                if (plan == null) {
+                    log.info("没有图片收集计划，跳过图片收集");
+                    context.setCurrentStep("图片收集");
+                    context.setImageList(collectedImages);
+                    return WorkflowContext.saveContext(context);
+                }
                 log.info("获取到图片收集计划，开始并发执行");
 
                 // 第二步：并发执行各种图片收集任务
                 List<CompletableFuture<List<ImageResource>>> futures = new ArrayList<>();
                 // 并发执行内容图片搜索
-                if (plan.getContentImageTasks() != null) {
+                if (CollUtil.isNotEmpty(plan.getContentImageTasks())) {
                     ImageSearchTool imageSearchTool = SpringContextUtil.getBean(ImageSearchTool.class);
                     for (ImageCollectionPlan.ImageSearchTask task : plan.getContentImageTasks()) {
                         futures.add(CompletableFuture.supplyAsync(() ->
@@ -48,7 +60,7 @@ public class ImageCollectorNode {
                     }
                 }
                 // 并发执行插画图片搜索
-                if (plan.getIllustrationTasks() != null) {
+                if (CollUtil.isNotEmpty(plan.getIllustrationTasks())) {
                     UndrawIllustrationTool illustrationTool = SpringContextUtil.getBean(UndrawIllustrationTool.class);
                     for (ImageCollectionPlan.IllustrationTask task : plan.getIllustrationTasks()) {
                         futures.add(CompletableFuture.supplyAsync(() ->
@@ -56,7 +68,7 @@ public class ImageCollectorNode {
                     }
                 }
                 // 并发执行架构图生成
-                if (plan.getDiagramTasks() != null) {
+                if (CollUtil.isNotEmpty(plan.getDiagramTasks())) {
                     MermaidDiagramTool diagramTool = SpringContextUtil.getBean(MermaidDiagramTool.class);
                     for (ImageCollectionPlan.DiagramTask task : plan.getDiagramTasks()) {
                         futures.add(CompletableFuture.supplyAsync(() ->
@@ -64,7 +76,7 @@ public class ImageCollectorNode {
                     }
                 }
                 // 并发执行Logo生成
-                if (plan.getLogoTasks() != null) {
+                if (CollUtil.isNotEmpty(plan.getLogoTasks())) {
                     LogoGeneratorTool logoTool = SpringContextUtil.getBean(LogoGeneratorTool.class);
                     for (ImageCollectionPlan.LogoTask task : plan.getLogoTasks()) {
                         futures.add(CompletableFuture.supplyAsync(() ->
@@ -3,8 +3,8 @@ package com.hachimi.mamboaiplatform.langgraph4j.node;
 import com.hachimi.mamboaiplatform.core.builder.VueProjectBuilder;
 import com.hachimi.mamboaiplatform.exception.BusinessException;
 import com.hachimi.mamboaiplatform.exception.ErrorCode;
+import com.hachimi.mamboaiplatform.exception.ThrowUtils;
 import com.hachimi.mamboaiplatform.langgraph4j.state.WorkflowContext;
-import com.hachimi.mamboaiplatform.model.enums.CodeGenTypeEnum;
 import com.hachimi.mamboaiplatform.utils.SpringContextUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.bsc.langgraph4j.action.AsyncNodeAction;
@@ -27,24 +27,20 @@ public class ProjectBuilderNode {
 
             // 获取必要的参数
             String generatedCodeDir = context.getGeneratedCodeDir();
-            CodeGenTypeEnum generationType = context.getGenerationType();
-            String buildResultDir;
             // 一定是 Vue 项目类型：使用 VueProjectBuilder 进行构建
+            VueProjectBuilder vueBuilder = SpringContextUtil.getBean(VueProjectBuilder.class);
+            boolean buildSuccess;
             try {
-                VueProjectBuilder vueBuilder = SpringContextUtil.getBean(VueProjectBuilder.class);
                 // 执行 Vue 项目构建（npm install + npm run build）
-                boolean buildSuccess = vueBuilder.buildVueProject(generatedCodeDir);
-                if (buildSuccess) {
-                    // 构建成功，返回 dist 目录路径
-                    buildResultDir = generatedCodeDir + File.separator + "dist";
-                    log.info("Vue 项目构建成功，dist 目录: {}", buildResultDir);
-                } else {
-                    throw new BusinessException(ErrorCode.SYSTEM_ERROR, "Vue 项目构建失败");
-                }
+                buildSuccess = vueBuilder.buildVueProject(generatedCodeDir);
             } catch (Exception e) {
                 log.error("Vue 项目构建异常: {}", e.getMessage(), e);
-                buildResultDir = generatedCodeDir; // 异常时返回原路径
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "Vue 项目构建异常: " + e.getMessage());
             }
+            // 构建失败时执行以失败结束，保留质检之后的检查点，恢复时重新构建
+            ThrowUtils.throwIf(!buildSuccess, ErrorCode.SYSTEM_ERROR, "Vue 项目构建失败");
+            String buildResultDir = generatedCodeDir + File.separator + "dist";
+            log.info("Vue 项目构建成功，dist 目录: {}", buildResultDir);
             // 更新状态
             context.setCurrentStep("项目构建");
             context.setBuildResultDir(buildResultDir);
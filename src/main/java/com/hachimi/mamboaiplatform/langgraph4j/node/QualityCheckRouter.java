@@ -0,0 +1,77 @@
+package com.hachimi.mamboaiplatform.langgraph4j.node;
+
+import cn.hutool.core.collection.CollUtil;
+import com.hachimi.mamboaiplatform.config.WorkflowRepairConfig;
+import com.hachimi.mamboaiplatform.langgraph4j.model.QualityResult;
+import com.hachimi.mamboaiplatform.langgraph4j.state.WorkflowContext;
+import com.hachimi.mamboaiplatform.model.enums.CodeGenTypeEnum;
+import com.hachimi.mamboaiplatform.utils.SpringContextUtil;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 质检后的路由
+ * 质检通过时按生成类型决定是否构建；未通过时优先对问题文件做定向修复，无法定位问题文件时整体重新生成；
+ * 修复轮数达到上限后不再重试，带着质检问题继续后续流程，避免无限循环。
+ */
+@Slf4j
+public final class QualityCheckRouter {
+
+    /**
+     * 质检通过且需要构建
+     */
+    public static final String BUILD = "build";
+
+    /**
+     * 质检通过但跳过构建
+     */
+    public static final String SKIP_BUILD = "skip_build";
+
+    /**
+     * 定向修复问题文件
+     */
+    public static final String REPAIR = "repair";
+
+    /**
+     * 整体重新生成代码
+     */
+    public static final String REGENERATE = "fail";
+
+    private QualityCheckRouter() {
+    }
+
+    /**
+     * 根据质检结果决定下一步
+     */
+    public static String route(WorkflowContext context) {
+        QualityResult qualityResult = context.getQualityResult();
+        if (qualityResult != null && Boolean.TRUE.equals(qualityResult.getIsValid())) {
+            log.info("代码质检通过，继续后续流程");
+            return routeBuildOrSkip(context);
+        }
+        int maxRounds = SpringContextUtil.getBean(WorkflowRepairConfig.class).getMaxRounds();
+        if (context.getRepairRounds() >= maxRounds) {
+            log.error("代码质检仍未通过，已修复 {} 轮达到上限，不再重试", context.getRepairRounds());
+            context.setErrorMessage("代码质检未通过: " + (qualityResult != null ? qualityResult.getErrors() : "无质检结果"));
+            return routeBuildOrSkip(context);
+        }
+        if (qualityResult != null && CollUtil.isNotEmpty(qualityResult.getFailedFiles())) {
+            log.warn("代码质检失败，定向修复问题文件: {}", qualityResult.getFailedFiles());
+            return REPAIR;
+        }
+        log.error("代码质检失败且无法定位问题文件，需要重新生成代码");
+        return REGENERATE;
+    }
+
+    /**
+     * 根据代码生成类型决定是否需要构建
+     */
+    private static String routeBuildOrSkip(WorkflowContext context) {
+        CodeGenTypeEnum generationType = context.getGenerationType();
+        // HTML 和 MULTI_FILE 类型不需要构建，直接结束
+        if (generationType == CodeGenTypeEnum.HTML || generationType == CodeGenTypeEnum.MULTI_FILE) {
+            return SKIP_BUILD;
+        }
+        // VUE_PROJECT 需要构建
+        return BUILD;
+    }
+}
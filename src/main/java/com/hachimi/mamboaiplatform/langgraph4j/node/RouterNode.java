@@ -1,6 +1,6 @@
 package com.hachimi.mamboaiplatform.langgraph4j.node;
 
-import com.hachimi.mamboaiplatform.ai.AiCodeGenTypeRoutingService;
+import com.hachimi.mamboaiplatform.ai.routing.CodeGenTypeRouter;
 import com.hachimi.mamboaiplatform.langgraph4j.state.WorkflowContext;
 import com.hachimi.mamboaiplatform.model.enums.CodeGenTypeEnum;
 import com.hachimi.mamboaiplatform.utils.SpringContextUtil;
@@ -23,10 +23,10 @@ public class RouterNode {
 
             CodeGenTypeEnum generationType;
             try {
-                // 获取AI路由服务
-                AiCodeGenTypeRoutingService routingService = SpringContextUtil.getBean(AiCodeGenTypeRoutingService.class);
+                // 获取路由（缓存 + 本地分类，不确定时才询问模型）
+                CodeGenTypeRouter router = SpringContextUtil.getBean(CodeGenTypeRouter.class);
                 // 根据原始提示词进行智能路由
-                generationType = routingService.getCodeGenType(context.getOriginalPrompt());
+                generationType = router.route(context.getOriginalPrompt());
                 log.info("AI智能路由完成，选择类型: {} ({})", generationType.getValue(), generationType.getText());
             } catch (Exception e) {
                 log.error("AI智能路由失败，使用默认HTML类型: {}", e.getMessage());
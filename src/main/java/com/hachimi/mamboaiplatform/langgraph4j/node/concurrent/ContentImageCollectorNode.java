@@ -1,5 +1,6 @@
 package com.hachimi.mamboaiplatform.langgraph4j.node.concurrent;
 
+import cn.hutool.core.collection.CollUtil;
 import com.hachimi.mamboaiplatform.langgraph4j.model.ImageCollectionPlan;
 import com.hachimi.mamboaiplatform.langgraph4j.model.ImageResource;
 import com.hachimi.mamboaiplatform.langgraph4j.state.WorkflowContext;
@@ -22,8 +23,9 @@ public class ContentImageCollectorNode {
             WorkflowContext context = WorkflowContext.getContext(state);
             List<ImageResource> contentImages = new ArrayList<>();
             try {
-                ImageCollectionPlan plan = context.getImageCollectionPlan();
-                if (plan != null && plan.getContentImageTasks() != null) {
+                // 计划仍在生成时等待，计划未包含本类任务时直接跳过
+                ImageCollectionPlan plan = context.awaitImageCollectionPlan();
+                if (plan != null && CollUtil.isNotEmpty(plan.getContentImageTasks())) {
                     ImageSearchTool imageSearchTool = SpringContextUtil.getBean(ImageSearchTool.class);
                     log.info("开始并发收集内容图片，任务数: {}", plan.getContentImageTasks().size());
                     for (ImageCollectionPlan.ImageSearchTask task : plan.getContentImageTasks()) {
@@ -33,6 +35,8 @@ public class ContentImageCollectorNode {
                         }
                     }
                     log.info("内容图片收集完成，共收集到 {} 张图片", contentImages.size());
+                } else {
+                    log.info("图片收集计划未包含内容图片任务，跳过");
                 }
             } catch (Exception e) {
                 log.error("内容图片收集失败: {}", e.getMessage(), e);
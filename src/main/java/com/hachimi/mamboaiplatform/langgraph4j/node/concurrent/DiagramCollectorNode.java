@@ -1,5 +1,6 @@
 package com.hachimi.mamboaiplatform.langgraph4j.node.concurrent;
 
+import cn.hutool.core.collection.CollUtil;
 import com.hachimi.mamboaiplatform.langgraph4j.model.ImageCollectionPlan;
 import com.hachimi.mamboaiplatform.langgraph4j.model.ImageResource;
 import com.hachimi.mamboaiplatform.langgraph4j.state.WorkflowContext;
@@ -22,8 +23,9 @@ public class DiagramCollectorNode {
             WorkflowContext context = WorkflowContext.getContext(state);
             List<ImageResource> diagrams = new ArrayList<>();
             try {
-                ImageCollectionPlan plan = context.getImageCollectionPlan();
-                if (plan != null && plan.getDiagramTasks() != null) {
+                // 计划仍在生成时等待，计划未包含本类任务时直接跳过
+                ImageCollectionPlan plan = context.awaitImageCollectionPlan();
+                if (plan != null && CollUtil.isNotEmpty(plan.getDiagramTasks())) {
                     MermaidDiagramTool diagramTool = SpringContextUtil.getBean(MermaidDiagramTool.class);
                     log.info("开始并发生成架构图，任务数: {}", plan.getDiagramTasks().size());
                     for (ImageCollectionPlan.DiagramTask task : plan.getDiagramTasks()) {
@@ -34,6 +36,8 @@ public class DiagramCollectorNode {
                         }
                     }
                     log.info("架构图生成完成，共生成 {} 张图片", diagrams.size());
+                } else {
+                    log.info("图片收集计划未包含架构图任务，跳过");
                 }
             } catch (Exception e) {
                 log.error("架构图生成失败: {}", e.getMessage(), e);
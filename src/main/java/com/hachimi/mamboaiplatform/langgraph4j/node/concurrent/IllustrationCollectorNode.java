@@ -1,5 +1,6 @@
 package com.hachimi.mamboaiplatform.langgraph4j.node.concurrent;
 
+import cn.hutool.core.collection.CollUtil;
 import com.hachimi.mamboaiplatform.langgraph4j.model.ImageCollectionPlan;
 import com.hachimi.mamboaiplatform.langgraph4j.model.ImageResource;
 import com.hachimi.mamboaiplatform.langgraph4j.state.WorkflowContext;
@@ -22,8 +23,9 @@ public class IllustrationCollectorNode {
             WorkflowContext context = WorkflowContext.getContext(state);
             List<ImageResource> illustrations = new ArrayList<>();
             try {
-                ImageCollectionPlan plan = context.getImageCollectionPlan();
-                if (plan != null && plan.getIllustrationTasks() != null) {
+                // 计划仍在生成时等待，计划未包含本类任务时直接跳过
+                ImageCollectionPlan plan = context.awaitImageCollectionPlan();
+                if (plan != null && CollUtil.isNotEmpty(plan.getIllustrationTasks())) {
                     UndrawIllustrationTool illustrationTool = SpringContextUtil.getBean(UndrawIllustrationTool.class);
                     log.info("开始并发收集插画图片，任务数: {}", plan.getIllustrationTasks().size());
                     for (ImageCollectionPlan.IllustrationTask task : plan.getIllustrationTasks()) {
@@ -33,6 +35,8 @@ public class IllustrationCollectorNode {
                         }
                     }
                     log.info("插画图片收集完成，共收集到 {} 张图片", illustrations.size());
+                } else {
+                    log.info("图片收集计划未包含插画任务，跳过");
                 }
             } catch (Exception e) {
                 log.error("插画图片收集失败: {}", e.getMessage(), e);
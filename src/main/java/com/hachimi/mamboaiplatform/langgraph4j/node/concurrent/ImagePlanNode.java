@@ -1,37 +1,70 @@
 package com.hachimi.mamboaiplatform.langgraph4j.node.concurrent;
 
 import com.hachimi.mamboaiplatform.langgraph4j.ai.ImageCollectionPlanService;
+import com.hachimi.mamboaiplatform.langgraph4j.executor.ParallelNodeExecutors;
 import com.hachimi.mamboaiplatform.langgraph4j.model.ImageCollectionPlan;
 import com.hachimi.mamboaiplatform.langgraph4j.state.WorkflowContext;
+import com.hachimi.mamboaiplatform.langgraph4j.trace.WorkflowTrace;
 import com.hachimi.mamboaiplatform.utils.SpringContextUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.bsc.langgraph4j.action.AsyncNodeAction;
 import org.bsc.langgraph4j.prebuilt.MessagesState;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
 import static org.bsc.langgraph4j.action.AsyncNodeAction.node_async;
 
 /**
  * 图片规划节点
+ * 只启动规划不等待结果：规划提交到工作流共享执行器的后台任务中，节点立即返回并分发并行分支，
+ * 路由分支不依赖计划，与规划同时进行；收集分支通过 awaitImageCollectionPlan 等待计划。
+ * 规划不占用并行分支的并发许可，等待计划的收集分支不会和规划互相阻塞；应用关闭时与并行分支一起等待结束。
  */
 @Slf4j
 public class ImagePlanNode {
 
+    /**
+     * 异步规划在执行轨迹中的名称
+     */
+    public static final String PLANNING_SPAN = "image_planning";
+
     public static AsyncNodeAction<MessagesState<String>> create() {
         return node_async(state -> {
             WorkflowContext context = WorkflowContext.getContext(state);
             String originalPrompt = context.getOriginalPrompt();
+            WorkflowTrace trace = context.getTrace();
+            CompletableFuture<ImageCollectionPlan> planFuture = new CompletableFuture<>();
+            context.setImageCollectionPlanFuture(planFuture);
+            Runnable planning = () -> {
+                long start = System.nanoTime();
+                ImageCollectionPlan plan = null;
+                try {
+                    // 获取图片收集计划服务
+                    ImageCollectionPlanService planService = SpringContextUtil.getBean(ImageCollectionPlanService.class);
+                    plan = planService.planImageCollection(originalPrompt);
+                    log.info("生成图片收集计划完成");
+                    // 将计划存储到上下文中
+                    context.setImageCollectionPlan(plan);
+                } catch (Exception e) {
+                    log.error("图片计划生成失败: {}", e.getMessage(), e);
+                } finally {
+                    if (trace != null) {
+                        trace.record(PLANNING_SPAN, start, System.nanoTime());
+                    }
+                    planFuture.complete(plan);
+                }
+            };
             try {
-                // 获取图片收集计划服务
-                ImageCollectionPlanService planService = SpringContextUtil.getBean(ImageCollectionPlanService.class);
-                ImageCollectionPlan plan = planService.planImageCollection(originalPrompt);
-                log.info("生成图片收集计划，准备启动并发分支");
-                // 将计划存储到上下文中
-                context.setImageCollectionPlan(plan);
-                context.setCurrentStep("图片计划");
-            } catch (Exception e) {
-                log.error("图片计划生成失败: {}", e.getMessage(), e);
+                SpringContextUtil.getBean(ParallelNodeExecutors.class).executeBackground(planning);
+            } catch (RejectedExecutionException e) {
+                // 没有计划时收集分支按无计划处理，不能让它们一直等待
+                log.warn("图片计划未能提交: {}", e.getMessage());
+                planFuture.complete(null);
             }
+            log.info("开始生成图片收集计划，同时启动并行分支");
+            context.setCurrentStep("图片计划");
             return WorkflowContext.saveContext(context);
         });
     }
-} 
\ No newline at end of file
+}
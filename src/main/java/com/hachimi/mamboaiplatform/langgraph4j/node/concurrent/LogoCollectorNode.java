@@ -1,5 +1,6 @@
 package com.hachimi.mamboaiplatform.langgraph4j.node.concurrent;
 
+import cn.hutool.core.collection.CollUtil;
 import com.hachimi.mamboaiplatform.langgraph4j.model.ImageCollectionPlan;
 import com.hachimi.mamboaiplatform.langgraph4j.model.ImageResource;
 import com.hachimi.mamboaiplatform.langgraph4j.state.WorkflowContext;
@@ -22,8 +23,9 @@ public class LogoCollectorNode {
             WorkflowContext context = WorkflowContext.getContext(state);
             List<ImageResource> logos = new ArrayList<>();
             try {
-                ImageCollectionPlan plan = context.getImageCollectionPlan();
-                if (plan != null && plan.getLogoTasks() != null) {
+                // 计划仍在生成时等待，计划未包含本类任务时直接跳过
+                ImageCollectionPlan plan = context.awaitImageCollectionPlan();
+                if (plan != null && CollUtil.isNotEmpty(plan.getLogoTasks())) {
                     LogoGeneratorTool logoTool = SpringContextUtil.getBean(LogoGeneratorTool.class);
                     log.info("开始并发生成Logo，任务数: {}", plan.getLogoTasks().size());
                     for (ImageCollectionPlan.LogoTask task : plan.getLogoTasks()) {
@@ -33,6 +35,8 @@ public class LogoCollectorNode {
                         }
                     }
                     log.info("Logo生成完成，共生成 {} 张图片", logos.size());
+                } else {
+                    log.info("图片收集计划未包含Logo任务，跳过");
                 }
             } catch (Exception e) {
                 log.error("Logo生成失败: {}", e.getMessage(), e);
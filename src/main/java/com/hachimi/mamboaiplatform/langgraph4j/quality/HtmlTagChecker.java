@@ -0,0 +1,140 @@
+package com.hachimi.mamboaiplatform.langgraph4j.quality;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * HTML 标签配对检查
+ * 只做结构层面的检查：开始标签与结束标签是否配对、是否有未闭合或多余的结束标签。
+ * 空元素和允许省略结束标签的元素（p、li、td 等）不要求闭合；script、style 等原始文本元素的内容不参与解析。
+ */
+final class HtmlTagChecker {
+
+    /**
+     * 单个文件最多报告的问题数，避免一处错位引发大量连带错误
+     */
+    private static final int MAX_ERRORS = 3;
+
+    private static final Pattern TAG = Pattern.compile(
+            "<(/?)([a-zA-Z][\\w:.-]*)((?:\\s+[^\\s\"'>/=]+(?:\\s*=\\s*(?:\"[^\"]*\"|'[^']*'|[^\\s\"'>]+))?)*)\\s*(/?)>");
+
+    static final Pattern COMMENT = Pattern.compile("<!--.*?-->", Pattern.DOTALL);
+
+    private static final Set<String> VOID_ELEMENTS = Set.of(
+            "area", "base", "br", "col", "embed", "hr", "img", "input", "link", "meta", "param", "source", "track", "wbr"
+    );
+
+    private static final Set<String> OPTIONAL_END_ELEMENTS = Set.of(
+            "html", "head", "body", "p", "li", "dt", "dd", "tr", "td", "th", "thead", "tbody", "tfoot",
+            "option", "optgroup", "colgroup", "caption", "rt", "rp"
+    );
+
+    private static final Set<String> RAW_TEXT_ELEMENTS = Set.of("script", "style", "textarea", "title");
+
+    private HtmlTagChecker() {
+    }
+
+    /**
+     * 检查标签配对
+     *
+     * @param content 待检查的 HTML（或 Vue 模板）内容
+     * @return 问题描述（带行号），无问题时为空列表
+     */
+    static List<String> check(String content) {
+        String html = blank(content, COMMENT);
+        String lowerHtml = html.toLowerCase(Locale.ROOT);
+        List<String> errors = new ArrayList<>();
+        Deque<OpenTag> stack = new ArrayDeque<>();
+        Matcher matcher = TAG.matcher(html);
+        int position = 0;
+        while (errors.size() < MAX_ERRORS && matcher.find(position)) {
+            position = matcher.end();
+            String name = matcher.group(2).toLowerCase(Locale.ROOT);
+            boolean closing = !matcher.group(1).isEmpty();
+            boolean selfClosing = !matcher.group(4).isEmpty();
+            if (closing) {
+                close(html, stack, name, matcher.start(), errors);
+                continue;
+            }
+            if (selfClosing || VOID_ELEMENTS.contains(name)) {
+                continue;
+            }
+            if (RAW_TEXT_ELEMENTS.contains(name)) {
+                // 原始文本元素直接跳到对应的结束标签
+                int end = lowerHtml.indexOf("</" + name, position);
+                if (end < 0) {
+                    errors.add("第 " + lineOf(html, matcher.start()) + " 行的 <" + name + "> 没有结束标签");
+                    break;
+                }
+                position = end;
+            }
+            stack.push(new OpenTag(name, matcher.start()));
+        }
+        while (errors.size() < MAX_ERRORS && !stack.isEmpty()) {
+            OpenTag open = stack.pop();
+            if (!OPTIONAL_END_ELEMENTS.contains(open.name())) {
+                errors.add("第 " + lineOf(html, open.offset()) + " 行的 <" + open.name() + "> 没有结束标签");
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * 处理结束标签：允许省略结束标签的元素可以被外层结束标签隐式关闭，
+     * 中间未闭合的其他元素只报告最内层的一个，避免连带错误
+     */
+    private static void close(String html, Deque<OpenTag> stack, String name, int offset, List<String> errors) {
+        if (stack.stream().noneMatch(open -> open.name().equals(name))) {
+            if (!OPTIONAL_END_ELEMENTS.contains(name)) {
+                errors.add("第 " + lineOf(html, offset) + " 行存在多余的结束标签 </" + name + ">");
+            }
+            return;
+        }
+        boolean reported = false;
+        OpenTag open = stack.pop();
+        while (!open.name().equals(name)) {
+            if (!reported && !OPTIONAL_END_ELEMENTS.contains(open.name())) {
+                errors.add("第 " + lineOf(html, open.offset()) + " 行的 <" + open.name() + "> 没有结束标签（在第 "
+                        + lineOf(html, offset) + " 行的 </" + name + "> 之前）");
+                reported = true;
+            }
+            open = stack.pop();
+        }
+    }
+
+    /**
+     * 用空格替换匹配内容，保留换行以便行号不变
+     */
+    static String blank(String content, Pattern pattern) {
+        Matcher matcher = pattern.matcher(content);
+        StringBuilder result = new StringBuilder(content.length());
+        int last = 0;
+        while (matcher.find()) {
+            result.append(content, last, matcher.start());
+            for (int i = matcher.start(); i < matcher.end(); i++) {
+                result.append(content.charAt(i) == '\n' ? '\n' : ' ');
+            }
+            last = matcher.end();
+        }
+        return result.append(content, last, content.length()).toString();
+    }
+
+    static int lineOf(String content, int offset) {
+        int line = 1;
+        for (int i = 0; i < offset && i < content.length(); i++) {
+            if (content.charAt(i) == '\n') {
+                line++;
+            }
+        }
+        return line;
+    }
+
+    private record OpenTag(String name, int offset) {
+    }
+}
@@ -0,0 +1,159 @@
+package com.hachimi.mamboaiplatform.langgraph4j.quality;
+
+import cn.hutool.core.util.StrUtil;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 本地引用检查
+ * 检查 HTML、CSS、JS 和 Vue 文件之间的相对引用（src/href、url()/@import、import 语句）指向的文件是否存在。
+ * 外部链接、数据 URI、锚点、模板表达式、npm 包引用以及不带扩展名的页面路由（如 /about）不检查。
+ */
+final class LocalReferenceChecker {
+
+    /**
+     * HTML 属性引用，排除 Vue 的 :src、v-bind:src 绑定
+     */
+    private static final Pattern HTML_REFERENCE = Pattern.compile(
+            "(?<![:\\w.-])(?:src|href)\\s*=\\s*[\"']([^\"']+)[\"']", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern CSS_URL = Pattern.compile("url\\(\\s*[\"']?([^\"')]+?)[\"']?\\s*\\)");
+
+    /**
+     * CSS @import 只检查显式的相对路径，裸名称可能由构建工具解析为 npm 包
+     */
+    private static final Pattern CSS_IMPORT = Pattern.compile("@import\\s+[\"']((?:\\.{1,2}|@)?/[^\"']+)[\"']");
+
+    private static final Pattern JS_IMPORT = Pattern.compile(
+            "(?:\\bfrom\\s*|\\bimport\\s*\\(?\\s*)[\"']((?:\\.{1,2}|@)/[^\"']+)[\"']");
+
+    private static final Pattern JS_COMMENT = Pattern.compile("/\\*.*?\\*/|(?m)^\\s*//.*$", Pattern.DOTALL);
+
+    private static final List<String> SCRIPT_EXTENSIONS = List.of(
+            ".js", ".ts", ".vue", ".jsx", ".tsx", ".mjs", ".json", ".css"
+    );
+
+    private LocalReferenceChecker() {
+    }
+
+    /**
+     * 检查单个文件中的本地引用
+     *
+     * @param root         生成目录
+     * @param relativePath 文件相对路径
+     * @param content      文件内容
+     * @return 缺失的引用描述
+     */
+    static List<String> check(Path root, String relativePath, String content) {
+        String extension = extensionOf(relativePath);
+        Set<String> references = new LinkedHashSet<>();
+        List<String> scriptReferences = new ArrayList<>();
+        switch (extension) {
+            case ".html", ".htm" -> collect(HTML_REFERENCE, HtmlTagChecker.blank(content, HtmlTagChecker.COMMENT),
+                    references);
+            case ".css" -> {
+                collect(CSS_URL, content, references);
+                collect(CSS_IMPORT, content, references);
+            }
+            case ".js", ".ts", ".jsx", ".tsx", ".mjs" -> collect(JS_IMPORT, HtmlTagChecker.blank(content, JS_COMMENT),
+                    scriptReferences);
+            case ".vue" -> {
+                collect(HTML_REFERENCE, content, references);
+                collect(CSS_URL, content, references);
+                collect(JS_IMPORT, HtmlTagChecker.blank(content, JS_COMMENT), scriptReferences);
+            }
+            default -> {
+            }
+        }
+        Path base = root.resolve(relativePath).getParent();
+        List<String> errors = new ArrayList<>();
+        for (String reference : references) {
+            if (isLocalFile(reference) && resolve(root, base, reference, List.of()) == null) {
+                errors.add("引用的本地文件不存在: " + reference);
+            }
+        }
+        for (String reference : scriptReferences) {
+            if (resolve(root, base, reference, SCRIPT_EXTENSIONS) == null) {
+                errors.add("导入的模块不存在: " + reference);
+            }
+        }
+        return errors;
+    }
+
+    private static void collect(Pattern pattern, String content, Collection<String> references) {
+        Matcher matcher = pattern.matcher(content);
+        while (matcher.find()) {
+            references.add(matcher.group(1).trim());
+        }
+    }
+
+    /**
+     * 是否为需要检查的本地文件引用（最后一段带扩展名）
+     */
+    private static boolean isLocalFile(String reference) {
+        String lower = reference.toLowerCase(Locale.ROOT);
+        String path = StrUtil.subBefore(StrUtil.subBefore(reference, "?", false), "#", false);
+        return StrUtil.isNotBlank(path) && !extensionOf(path).isEmpty()
+                && !lower.startsWith("http:") && !lower.startsWith("https:") && !lower.startsWith("//")
+                && !lower.startsWith("data:") && !lower.startsWith("mailto:") && !lower.startsWith("tel:")
+                && !lower.startsWith("javascript:") && !lower.startsWith("#") && !lower.startsWith("~")
+                && !reference.contains("{{") && !reference.contains("${") && !reference.contains("<%");
+    }
+
+    /**
+     * 解析引用：相对当前文件；/ 开头相对生成目录或 public 目录；@/ 开头相对 src 目录。
+     * 脚本引用可以省略扩展名或指向带 index 文件的目录
+     *
+     * @return 存在的文件路径，不存在或越出生成目录时返回 null
+     */
+    private static Path resolve(Path root, Path base, String reference, List<String> extensions) {
+        String path = StrUtil.subBefore(StrUtil.subBefore(reference, "?", false), "#", false);
+        if (StrUtil.isBlank(path)) {
+            return root;
+        }
+        List<Path> candidates = new ArrayList<>();
+        if (path.startsWith("@/")) {
+            candidates.add(root.resolve("src").resolve(path.substring(2)));
+        } else if (path.startsWith("/")) {
+            candidates.add(root.resolve(path.substring(1)));
+            candidates.add(root.resolve("public").resolve(path.substring(1)));
+        } else {
+            candidates.add(base.resolve(path));
+        }
+        for (Path candidate : candidates) {
+            Path normalized = candidate.normalize();
+            if (!normalized.startsWith(root)) {
+                continue;
+            }
+            if (Files.isRegularFile(normalized) || (extensions.isEmpty() && Files.isDirectory(normalized))) {
+                return normalized;
+            }
+            for (String extension : extensions) {
+                Path withExtension = normalized.resolveSibling(normalized.getFileName() + extension);
+                if (Files.isRegularFile(withExtension)) {
+                    return withExtension;
+                }
+                Path index = normalized.resolve("index" + extension);
+                if (Files.isRegularFile(index)) {
+                    return index;
+                }
+            }
+        }
+        return null;
+    }
+
+    static String extensionOf(String relativePath) {
+        String name = relativePath.toLowerCase(Locale.ROOT);
+        int dot = name.lastIndexOf('.');
+        return dot < 0 || dot < name.lastIndexOf('/') ? "" : name.substring(dot);
+    }
+}
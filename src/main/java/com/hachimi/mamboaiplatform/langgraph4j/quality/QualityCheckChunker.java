@@ -0,0 +1,51 @@
+package com.hachimi.mamboaiplatform.langgraph4j.quality;
+
+import com.hachimi.mamboaiplatform.ai.memory.TokenEstimator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 质检分组
+ * 按估算的 token 数把待检查文件依次装入若干组，每组不超过上限，每组单独调用一次模型质检。
+ * 单个文件本身超过上限时独占一组，不做截断，避免截断后的代码被误判为语法错误。
+ */
+public final class QualityCheckChunker {
+
+    /**
+     * 每个文件标题（“## 文件: 路径”）和分隔空行的估算开销
+     */
+    static final int FILE_OVERHEAD_TOKENS = 16;
+
+    private QualityCheckChunker() {
+    }
+
+    /**
+     * 分组
+     *
+     * @param paths     待检查文件（按此顺序装组）
+     * @param contents  相对路径 -> 文件内容
+     * @param maxTokens 每组 token 上限
+     * @return 每组的文件列表
+     */
+    public static List<List<String>> chunk(List<String> paths, Map<String, String> contents, int maxTokens) {
+        List<List<String>> chunks = new ArrayList<>();
+        List<String> current = new ArrayList<>();
+        int currentTokens = 0;
+        for (String path : paths) {
+            int tokens = TokenEstimator.estimate(path) + TokenEstimator.estimate(contents.get(path)) + FILE_OVERHEAD_TOKENS;
+            if (!current.isEmpty() && currentTokens + tokens > maxTokens) {
+                chunks.add(current);
+                current = new ArrayList<>();
+                currentTokens = 0;
+            }
+            current.add(path);
+            currentTokens += tokens;
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current);
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,253 @@
+package com.hachimi.mamboaiplatform.langgraph4j.quality;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 本地静态预检
+ * 在调用模型质检之前，在进程内检查明显的结构问题：HTML 标签配对、HTML/CSS/JS 之间的本地引用、
+ * JSON 与 package.json 的合法性、Vue 单文件组件的块结构、CSS 花括号配对。
+ * 只报告确定的错误，拿不准的情况（JS 语法、业务逻辑等）留给模型质检。
+ */
+@Slf4j
+public final class StaticCodeValidator {
+
+    /**
+     * 预检结果
+     *
+     * @param errors      错误描述（以文件相对路径开头）
+     * @param failedFiles 存在错误的文件
+     */
+    public record StaticValidationResult(List<String> errors, List<String> failedFiles) {
+
+        public boolean passed() {
+            return errors.isEmpty();
+        }
+    }
+
+    /**
+     * package.json 按 npm 的要求严格解析
+     */
+    private static final ObjectMapper STRICT_JSON = new ObjectMapper();
+
+    /**
+     * tsconfig.json 等配置文件允许注释和尾随逗号
+     */
+    private static final ObjectMapper LENIENT_JSON = JsonMapper.builder()
+            .enable(JsonReadFeature.ALLOW_JAVA_COMMENTS, JsonReadFeature.ALLOW_TRAILING_COMMA)
+            .build();
+
+    private static final Pattern SFC_BLOCK = Pattern.compile("<(template|script|style)\\b([^>]*)>", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern SFC_TEMPLATE_TAG = Pattern.compile("<(/?)template\\b[^>]*>", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern SFC_SETUP = Pattern.compile("\\bsetup\\b");
+
+    private static final Pattern INTERPOLATION = Pattern.compile("\\{\\{.*?}}", Pattern.DOTALL);
+
+    private static final Pattern CSS_COMMENT_OR_STRING = Pattern.compile(
+            "/\\*.*?\\*/|\"(?:[^\"\\\\\\n]|\\\\.)*\"|'(?:[^'\\\\\\n]|\\\\.)*'", Pattern.DOTALL);
+
+    private StaticCodeValidator() {
+    }
+
+    /**
+     * 检查项目中的代码文件
+     *
+     * @param rootDir 生成目录
+     * @param files   相对路径 -> 文件内容
+     * @return 预检结果
+     */
+    public static StaticValidationResult validate(String rootDir, Map<String, String> files) {
+        Path root = Paths.get(rootDir).toAbsolutePath().normalize();
+        boolean vueProject = files.keySet().stream().anyMatch(path -> path.toLowerCase(Locale.ROOT).endsWith(".vue"));
+        List<String> errors = new ArrayList<>();
+        List<String> failedFiles = new ArrayList<>();
+        files.forEach((relativePath, content) -> {
+            List<String> fileErrors = new ArrayList<>();
+            try {
+                fileErrors.addAll(validateFile(relativePath, content, vueProject));
+                fileErrors.addAll(LocalReferenceChecker.check(root, relativePath, content));
+            } catch (RuntimeException e) {
+                // 预检自身出错时不阻断流程，交给模型质检
+                log.warn("静态预检 {} 时出错: {}", relativePath, e.getMessage());
+            }
+            if (!fileErrors.isEmpty()) {
+                failedFiles.add(relativePath);
+                fileErrors.forEach(error -> errors.add(relativePath + ": " + error));
+            }
+        });
+        return new StaticValidationResult(errors, failedFiles);
+    }
+
+    /**
+     * 是否完全由本地预检覆盖（预检通过后无需再交给模型）
+     */
+    public static boolean isFullyValidated(String relativePath) {
+        return ".json".equals(LocalReferenceChecker.extensionOf(relativePath));
+    }
+
+    private static List<String> validateFile(String relativePath, String content, boolean vueProject) {
+        return switch (LocalReferenceChecker.extensionOf(relativePath)) {
+            case ".html", ".htm" -> HtmlTagChecker.check(content);
+            case ".vue" -> validateVueFile(content);
+            case ".css" -> validateCssBraces(content);
+            case ".json" -> validateJson(relativePath, content, vueProject);
+            default -> List.of();
+        };
+    }
+
+    /**
+     * JSON 合法性；根目录的 package.json 还要检查依赖和脚本的结构，Vue 项目必须提供 build 脚本
+     */
+    private static List<String> validateJson(String relativePath, String content, boolean vueProject) {
+        boolean packageJson = "package.json".equals(relativePath);
+        JsonNode json;
+        try {
+            json = (packageJson ? STRICT_JSON : LENIENT_JSON).readTree(content);
+        } catch (JsonProcessingException e) {
+            JsonLocation location = e.getLocation();
+            String line = location != null && location.getLineNr() > 0 ? "第 " + location.getLineNr() + " 行" : "";
+            return List.of("JSON 格式错误" + line + ": " + e.getOriginalMessage());
+        }
+        if (json == null || json.isMissingNode()) {
+            return List.of("JSON 文件为空");
+        }
+        if (!packageJson) {
+            return List.of();
+        }
+        if (!json.isObject()) {
+            return List.of("package.json 必须是 JSON 对象");
+        }
+        List<String> errors = new ArrayList<>();
+        for (String field : List.of("scripts", "dependencies", "devDependencies")) {
+            JsonNode node = json.get(field);
+            if (node == null) {
+                continue;
+            }
+            if (!node.isObject()) {
+                errors.add("package.json 的 " + field + " 必须是对象");
+                continue;
+            }
+            node.fields().forEachRemaining(entry -> {
+                if (!entry.getValue().isTextual()) {
+                    errors.add("package.json 的 " + field + "." + entry.getKey() + " 必须是字符串");
+                }
+            });
+        }
+        if (vueProject && !json.path("scripts").path("build").isTextual()) {
+            errors.add("package.json 缺少 build 脚本，项目无法构建");
+        }
+        return errors;
+    }
+
+    /**
+     * Vue 单文件组件的块结构：最多一个 template、一个普通 script、一个 script setup，各块都要闭合，
+     * template 内的标签需要配对
+     */
+    private static List<String> validateVueFile(String content) {
+        List<String> errors = new ArrayList<>();
+        int templates = 0;
+        int scripts = 0;
+        int setupScripts = 0;
+        Matcher matcher = SFC_BLOCK.matcher(content);
+        int position = 0;
+        while (matcher.find(position)) {
+            String block = matcher.group(1).toLowerCase(Locale.ROOT);
+            int line = HtmlTagChecker.lineOf(content, matcher.start());
+            int end = "template".equals(block)
+                    ? findTemplateEnd(content, matcher.end())
+                    : content.toLowerCase(Locale.ROOT).indexOf("</" + block, matcher.end());
+            if (end < 0) {
+                errors.add("第 " + line + " 行的 <" + block + "> 块没有结束标签");
+                break;
+            }
+            switch (block) {
+                case "template" -> {
+                    templates++;
+                    // 插值表达式中的 < 不是标签，替换掉后检查模板标签配对（保持行号不变）
+                    String template = "\n".repeat(HtmlTagChecker.lineOf(content, matcher.end()) - 1)
+                            + content.substring(matcher.end(), end);
+                    HtmlTagChecker.check(HtmlTagChecker.blank(template, INTERPOLATION))
+                            .forEach(error -> errors.add("模板中" + error));
+                }
+                case "script" -> {
+                    if (SFC_SETUP.matcher(matcher.group(2)).find()) {
+                        setupScripts++;
+                    } else {
+                        scripts++;
+                    }
+                }
+                default -> {
+                }
+            }
+            int close = content.indexOf('>', end);
+            position = close < 0 ? content.length() : close + 1;
+        }
+        if (templates > 1) {
+            errors.add("存在 " + templates + " 个顶层 <template> 块");
+        }
+        if (scripts > 1) {
+            errors.add("存在 " + scripts + " 个 <script> 块");
+        }
+        if (setupScripts > 1) {
+            errors.add("存在 " + setupScripts + " 个 <script setup> 块");
+        }
+        if (errors.isEmpty() && templates == 0 && scripts == 0 && setupScripts == 0) {
+            errors.add("缺少 <template> 和 <script> 块");
+        }
+        return errors;
+    }
+
+    /**
+     * 查找与顶层 template 对应的结束标签位置（模板内可以嵌套 template）
+     */
+    private static int findTemplateEnd(String content, int from) {
+        Matcher matcher = SFC_TEMPLATE_TAG.matcher(content);
+        int depth = 1;
+        int position = from;
+        while (matcher.find(position)) {
+            position = matcher.end();
+            if (!matcher.group(1).isEmpty()) {
+                depth--;
+                if (depth == 0) {
+                    return matcher.start();
+                }
+            } else if (!matcher.group().endsWith("/>")) {
+                depth++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * CSS 花括号配对（忽略注释和字符串）
+     */
+    private static List<String> validateCssBraces(String content) {
+        String css = HtmlTagChecker.blank(content, CSS_COMMENT_OR_STRING);
+        int depth = 0;
+        for (int i = 0; i < css.length(); i++) {
+            char c = css.charAt(i);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}' && --depth < 0) {
+                return List.of("第 " + HtmlTagChecker.lineOf(css, i) + " 行存在多余的 }");
+            }
+        }
+        return depth > 0 ? List.of("有 " + depth + " 个 { 没有闭合") : List.of();
+    }
+}
@@ -0,0 +1,122 @@
+package com.hachimi.mamboaiplatform.langgraph4j.repair;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.StrUtil;
+import com.hachimi.mamboaiplatform.langgraph4j.model.CodeRepairResult.FileEdit;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 代码补丁引擎
+ * 在生成目录内应用“旧内容 -> 新内容”的定向修改。每处修改的旧内容必须在文件中恰好出现一次，
+ * 避免模型给出的片段过短时误改其他位置；路径不能越出生成目录。同一文件的多处修改在内存中依次应用，
+ * 全部处理完后每个文件只写一次，被拒绝的修改不影响同一文件的其他修改。
+ */
+@Slf4j
+public final class CodePatchEngine {
+
+    /**
+     * 应用结果
+     *
+     * @param changedFiles 内容发生变化的文件（相对路径）
+     * @param rejected     被拒绝的修改及原因
+     */
+    public record PatchResult(List<String> changedFiles, List<String> rejected) {
+    }
+
+    private CodePatchEngine() {
+    }
+
+    /**
+     * 应用修改
+     *
+     * @param rootDir 生成目录
+     * @param edits   修改列表
+     * @return 应用结果
+     */
+    public static PatchResult apply(String rootDir, List<FileEdit> edits) {
+        Path root = Paths.get(rootDir).toAbsolutePath().normalize();
+        // 相对路径 -> 修改后的内容（null 表示文件不存在）
+        Map<String, String> contents = new LinkedHashMap<>();
+        Map<String, String> originals = new LinkedHashMap<>();
+        List<String> rejected = new ArrayList<>();
+        for (FileEdit edit : edits == null ? List.<FileEdit>of() : edits) {
+            if (edit == null || StrUtil.isBlank(edit.filePath()) || edit.newContent() == null) {
+                rejected.add("修改缺少文件路径或新内容");
+                continue;
+            }
+            String relativePath = normalizePath(edit.filePath());
+            Path path = resolve(root, relativePath);
+            if (path == null) {
+                rejected.add(relativePath + "：路径越出生成目录");
+                continue;
+            }
+            if (!contents.containsKey(relativePath)) {
+                String original = Files.isRegularFile(path) ? FileUtil.readUtf8String(path.toFile()) : null;
+                contents.put(relativePath, original);
+                originals.put(relativePath, original);
+            }
+            String content = contents.get(relativePath);
+            if (StrUtil.isEmpty(edit.oldContent())) {
+                if (content != null) {
+                    rejected.add(relativePath + "：文件已存在，旧内容不能为空");
+                    continue;
+                }
+                contents.put(relativePath, edit.newContent());
+                continue;
+            }
+            if (content == null) {
+                rejected.add(relativePath + "：文件不存在");
+                continue;
+            }
+            int first = content.indexOf(edit.oldContent());
+            if (first < 0) {
+                rejected.add(relativePath + "：未找到要替换的内容");
+                continue;
+            }
+            if (content.indexOf(edit.oldContent(), first + 1) >= 0) {
+                rejected.add(relativePath + "：要替换的内容出现多次，无法确定修改位置");
+                continue;
+            }
+            contents.put(relativePath, content.substring(0, first) + edit.newContent()
+                    + content.substring(first + edit.oldContent().length()));
+        }
+        List<String> changedFiles = new ArrayList<>();
+        contents.forEach((relativePath, content) -> {
+            if (content != null && !content.equals(originals.get(relativePath))) {
+                FileUtil.writeUtf8String(content, root.resolve(relativePath).toFile());
+                changedFiles.add(relativePath);
+            }
+        });
+        rejected.forEach(reason -> log.warn("拒绝代码修改 - {}", reason));
+        return new PatchResult(changedFiles, rejected);
+    }
+
+    /**
+     * 解析生成目录内的文件路径
+     *
+     * @return 文件路径，越出生成目录时返回 null
+     */
+    public static Path resolve(Path root, String relativePath) {
+        Path path = root.resolve(relativePath).normalize();
+        return path.startsWith(root) && !path.equals(root) ? path : null;
+    }
+
+    /**
+     * 统一相对路径写法（分隔符、开头的 ./ 和 /），便于与质检给出的文件路径比较
+     */
+    public static String normalizePath(String relativePath) {
+        String path = StrUtil.trim(relativePath).replace('\\', '/');
+        while (path.startsWith("./") || path.startsWith("/")) {
+            path = path.startsWith("./") ? path.substring(2) : path.substring(1);
+        }
+        return path;
+    }
+}
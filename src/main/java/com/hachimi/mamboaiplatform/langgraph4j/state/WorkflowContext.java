@@ -1,19 +1,24 @@
 package com.hachimi.mamboaiplatform.langgraph4j.state;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.hachimi.mamboaiplatform.langgraph4j.model.ImageCollectionPlan;
 import com.hachimi.mamboaiplatform.langgraph4j.model.ImageResource;
 import com.hachimi.mamboaiplatform.langgraph4j.model.QualityResult;
+import com.hachimi.mamboaiplatform.langgraph4j.trace.CriticalPathReport;
+import com.hachimi.mamboaiplatform.langgraph4j.trace.WorkflowTrace;
 import com.hachimi.mamboaiplatform.model.enums.CodeGenTypeEnum;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import org.bsc.langgraph4j.prebuilt.MessagesState;
 
 import java.io.Serial;
 import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 工作流上下文 - 存储所有状态信息
@@ -29,6 +34,21 @@ public class WorkflowContext implements Serializable {
      */
     public static final String WORKFLOW_CONTEXT_KEY = "workflowContext";
 
+    /**
+     * 执行ID，用于保存检查点和从检查点恢复
+     */
+    private String runId;
+
+    /**
+     * 发起执行的用户ID，从检查点恢复时校验归属
+     */
+    private Long userId;
+
+    /**
+     * 从检查点恢复时的起始节点，入口路由读取后清空
+     */
+    private String resumeFrom;
+
     /**
      * 当前执行步骤
      */
@@ -74,6 +94,22 @@ public class WorkflowContext implements Serializable {
      */
     private QualityResult qualityResult;
 
+    /**
+     * 质检未通过后已进行的修复轮数（定向修改或整体重新生成）
+     */
+    private int repairRounds;
+
+    /**
+     * 上一轮修复后需要复查的文件（改动的文件和仍存在问题的文件）；
+     * null 表示检查全部文件，空列表表示上一轮没有改动任何文件
+     */
+    private List<String> recheckFiles;
+
+    /**
+     * 已通过质检的文件内容摘要（文件绝对路径 -> 摘要），内容未变的文件不再交给模型复查
+     */
+    private Map<String, String> passedFileDigests;
+
     /**
      * 错误信息
      */
@@ -84,6 +120,13 @@ public class WorkflowContext implements Serializable {
      */
     private ImageCollectionPlan imageCollectionPlan;
 
+    /**
+     * 异步生成中的图片收集计划，收集分支通过 awaitImageCollectionPlan 等待
+     */
+    @JsonIgnore
+    @ToString.Exclude
+    private transient CompletableFuture<ImageCollectionPlan> imageCollectionPlanFuture;
+
     /**
      * 并发图片收集的中间结果字段
      */
@@ -92,6 +135,18 @@ public class WorkflowContext implements Serializable {
     private List<ImageResource> diagrams;
     private List<ImageResource> logos;
 
+    /**
+     * 执行轨迹（各节点耗时）
+     */
+    @JsonIgnore
+    @ToString.Exclude
+    private transient WorkflowTrace trace;
+
+    /**
+     * 关键路径报告，执行结束后生成
+     */
+    private CriticalPathReport criticalPath;
+
     @Serial
     private static final long serialVersionUID = 1L;
 
@@ -104,6 +159,16 @@ public class WorkflowContext implements Serializable {
         return (WorkflowContext) state.data().get(WORKFLOW_CONTEXT_KEY);
     }
 
+    /**
+     * 获取图片收集计划，计划仍在异步生成时等待其完成；规划失败时返回 null
+     */
+    public ImageCollectionPlan awaitImageCollectionPlan() {
+        if (imageCollectionPlan == null && imageCollectionPlanFuture != null) {
+            return imageCollectionPlanFuture.join();
+        }
+        return imageCollectionPlan;
+    }
+
     /**
      * 将 WorkflowContext 保存到 MessagesState 中
      */
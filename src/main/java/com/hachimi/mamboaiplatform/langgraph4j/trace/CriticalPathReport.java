@@ -0,0 +1,36 @@
+package com.hachimi.mamboaiplatform.langgraph4j.trace;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 工作流单次执行的关键路径报告
+ *
+ * @param totalMillis 工作流总耗时（毫秒）
+ * @param path        关键路径，按执行顺序
+ * @param bottleneck  关键路径上自身耗时最长的节点，即决定总耗时的节点
+ */
+public record CriticalPathReport(long totalMillis, List<Step> path, String bottleneck) implements Serializable {
+
+    /**
+     * 关键路径上的一步
+     *
+     * @param node        节点名
+     * @param startMillis 开始时间（相对工作流开始）
+     * @param endMillis   结束时间（相对工作流开始）
+     * @param selfMillis  自身耗时（不含等待前驱的时间）
+     */
+    public record Step(String node, long startMillis, long endMillis, long selfMillis) implements Serializable {
+    }
+
+    /**
+     * 单行文本形式，用于日志和 SSE 事件
+     */
+    public String format() {
+        String steps = path.stream()
+                .map(step -> step.node() + " " + step.selfMillis() + "ms")
+                .collect(Collectors.joining(" -> "));
+        return "总耗时 " + totalMillis + "ms，瓶颈节点 " + bottleneck + "，关键路径: " + steps;
+    }
+}
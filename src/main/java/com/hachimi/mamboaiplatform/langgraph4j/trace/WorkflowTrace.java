@@ -0,0 +1,113 @@
+package com.hachimi.mamboaiplatform.langgraph4j.trace;
+
+import com.hachimi.mamboaiplatform.langgraph4j.state.WorkflowContext;
+import org.bsc.langgraph4j.action.AsyncNodeAction;
+import org.bsc.langgraph4j.prebuilt.MessagesState;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 工作流单次执行的轨迹
+ * 记录每个节点（以及节点内异步执行的步骤，如图片规划）的起止时间，执行结束后按节点依赖计算关键路径，
+ * 找出决定总耗时的节点链。并行分支在不同线程记录，线程安全。
+ */
+public class WorkflowTrace {
+
+    /**
+     * 节点的一次执行（同一节点在质检重试时会执行多次）
+     *
+     * @param node       节点名
+     * @param startNanos 开始时间（相对轨迹创建）
+     * @param endNanos   结束时间（相对轨迹创建）
+     */
+    public record NodeSpan(String node, long startNanos, long endNanos) {
+    }
+
+    private final long originNanos = System.nanoTime();
+
+    private final List<NodeSpan> spans = new CopyOnWriteArrayList<>();
+
+    /**
+     * 包装节点，执行时把耗时记录到上下文的轨迹中（上下文未携带轨迹时不记录）
+     *
+     * @param node   节点名
+     * @param action 节点
+     * @return 记录耗时的节点
+     */
+    public static AsyncNodeAction<MessagesState<String>> traced(String node, AsyncNodeAction<MessagesState<String>> action) {
+        return state -> {
+            WorkflowContext context = WorkflowContext.getContext(state);
+            WorkflowTrace trace = context != null ? context.getTrace() : null;
+            if (trace == null) {
+                return action.apply(state);
+            }
+            long start = System.nanoTime();
+            return action.apply(state).whenComplete((result, error) -> trace.record(node, start, System.nanoTime()));
+        };
+    }
+
+    /**
+     * 记录一次执行
+     *
+     * @param node       节点名
+     * @param startNanos 开始时的 System.nanoTime()
+     * @param endNanos   结束时的 System.nanoTime()
+     */
+    public void record(String node, long startNanos, long endNanos) {
+        spans.add(new NodeSpan(node, startNanos - originNanos, endNanos - originNanos));
+    }
+
+    public List<NodeSpan> getSpans() {
+        return List.copyOf(spans);
+    }
+
+    /**
+     * 计算关键路径：从最后结束的执行开始，逐个回溯到它所依赖的、最晚结束的前驱执行，
+     * 每一步的自身耗时 = 结束时间 - max(开始时间, 前驱结束时间)，即去掉等待前驱的部分
+     *
+     * @param dependencies 节点 -> 它所依赖（需等待）的节点，与工作流图的边保持一致
+     * @return 关键路径报告
+     */
+    public CriticalPathReport criticalPath(Map<String, Set<String>> dependencies) {
+        List<NodeSpan> recorded = getSpans();
+        if (recorded.isEmpty()) {
+            return new CriticalPathReport(0, List.of(), null);
+        }
+        NodeSpan current = recorded.stream().max(Comparator.comparingLong(NodeSpan::endNanos)).orElseThrow();
+        long totalNanos = current.endNanos();
+        List<CriticalPathReport.Step> path = new ArrayList<>();
+        Set<NodeSpan> visited = new HashSet<>();
+        while (current != null && visited.add(current)) {
+            NodeSpan step = current;
+            Set<String> upstream = dependencies.getOrDefault(step.node(), Set.of());
+            NodeSpan predecessor = recorded.stream()
+                    .filter(span -> span != step && !visited.contains(span))
+                    .filter(span -> upstream.contains(span.node()))
+                    .filter(span -> span.endNanos() <= step.endNanos() && span.startNanos() <= step.startNanos())
+                    .max(Comparator.comparingLong(NodeSpan::endNanos))
+                    .orElse(null);
+            long readyNanos = predecessor != null ? Math.max(step.startNanos(), predecessor.endNanos()) : step.startNanos();
+            path.add(new CriticalPathReport.Step(step.node(), toMillis(step.startNanos()), toMillis(step.endNanos()),
+                    toMillis(step.endNanos() - readyNanos)));
+            current = predecessor;
+        }
+        Collections.reverse(path);
+        String bottleneck = path.stream()
+                .max(Comparator.comparingLong(CriticalPathReport.Step::selfMillis))
+                .map(CriticalPathReport.Step::node)
+                .orElse(null);
+        return new CriticalPathReport(toMillis(totalNanos), path, bottleneck);
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
@@ -2,6 +2,7 @@ package com.hachimi.mamboaiplatform.monitor;
 
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.Resource;
@@ -28,6 +29,7 @@ public class AiModelMetricsCollector {
     private final ConcurrentMap<String, Counter> errorCountersCache = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, Counter> tokenCountersCache = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, Timer> responseTimersCache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, DistributionSummary> promptTokensCache = new ConcurrentHashMap<>();
 
     /**
      * 记录请求次数
@@ -96,4 +98,21 @@ public class AiModelMetricsCollector {
         );
         timer.record(duration);
     }
+
+    /**
+     * 记录发送给模型的提示词大小（本地估算的 token 数，含系统提示、对话记忆与本轮消息）
+     */
+    public void recordPromptTokens(String codeGenType, String modelName, int tokens) {
+        String key = String.format("%s_%s", codeGenType, modelName);
+        DistributionSummary summary = promptTokensCache.computeIfAbsent(key, k ->
+                DistributionSummary.builder("ai_prompt_tokens")
+                        .description("发送给模型的提示词 token 数（本地估算）")
+                        .baseUnit("tokens")
+                        .tag("code_gen_type", codeGenType)
+                        .tag("model_name", modelName)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry)
+        );
+        summary.record(tokens);
+    }
 }
@@ -1,5 +1,8 @@
 package com.hachimi.mamboaiplatform.monitor;
 
+import com.hachimi.mamboaiplatform.ai.memory.TokenEstimator;
+import com.hachimi.mamboaiplatform.context.GenerationContext;
+import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.model.chat.listener.ChatModelErrorContext;
 import dev.langchain4j.model.chat.listener.ChatModelListener;
 import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
@@ -30,8 +33,12 @@ public class AiModelMonitorListener implements ChatModelListener {
         // 记录请求开始时间
         requestContext.attributes().put(REQUEST_START_TIME_KEY, Instant.now());
 
-        // 从监控上下文中获取信息
-        MonitorContext context = MonitorContextHolder.getContext();
+        // 从监控上下文中获取信息（回调线程上的后续请求通过所属会话的 StreamingHandle 获取）
+        MonitorContext context = GenerationContext.currentMonitorContext();
+
+        // 记录提示词大小：只在请求真正发往模型时统计，记忆加载、预热等读取不计入
+        recordPromptTokens(requestContext, context);
+
         if (context == null) {
             log.warn("MonitorContext is null in onRequest, skipping metrics collection");
             return;
@@ -112,6 +119,19 @@ public class AiModelMonitorListener implements ChatModelListener {
                 Thread.currentThread().getName(), userId, appId);
     }
 
+    /**
+     * 记录提示词大小
+     */
+    private void recordPromptTokens(ChatModelRequestContext requestContext, MonitorContext context) {
+        int tokens = 0;
+        for (ChatMessage message : requestContext.chatRequest().messages()) {
+            tokens += TokenEstimator.estimate(message);
+        }
+        String codeGenType = context == null || context.getCodeGenType() == null ? "unknown" : context.getCodeGenType();
+        String modelName = String.valueOf(requestContext.chatRequest().modelName());
+        aiModelMetricsCollector.recordPromptTokens(codeGenType, modelName, tokens);
+    }
+
     /**
      * 记录响应时间
      */
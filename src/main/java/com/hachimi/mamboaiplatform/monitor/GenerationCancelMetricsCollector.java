@@ -0,0 +1,79 @@
+package com.hachimi.mamboaiplatform.monitor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 生成取消指标收集器
+ * 节省的 token 数为估算值：以近期完整生成的平均输出 token 数（EWMA）减去取消前已输出的 token 数。
+ * 两侧都按 TokenEstimator 对已输出内容估算：工具循环中每轮请求各有 usage，单次 ChatResponse 的 usage 只覆盖最后一轮。
+ */
+@Component
+@Slf4j
+public class GenerationCancelMetricsCollector {
+
+    /**
+     * EWMA 平滑系数
+     */
+    private static final double ALPHA = 0.2;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<String, Counter> cancelCountersCache = new ConcurrentHashMap<>();
+
+    /**
+     * 近期完整生成的平均输出 token 数，尚无样本时为 0
+     */
+    private volatile double averageCompletedTokens;
+
+    /**
+     * 记录一次完整生成的输出 token 数
+     */
+    public synchronized void recordCompleted(long outputTokens) {
+        averageCompletedTokens = averageCompletedTokens == 0
+                ? outputTokens
+                : ALPHA * outputTokens + (1 - ALPHA) * averageCompletedTokens;
+    }
+
+    /**
+     * 记录一次取消
+     *
+     * @param reason         取消原因（user_stopped / client_disconnected）
+     * @param streamedTokens 取消前已输出的 token 数（估算）
+     */
+    public void recordCancelled(String reason, long streamedTokens) {
+        String tagReason = reason == null ? "unknown" : reason;
+        cancelCountersCache.computeIfAbsent("cancel_" + tagReason, k ->
+                Counter.builder("ai_generation_cancel_total")
+                        .description("生成取消次数")
+                        .tag("reason", tagReason)
+                        .register(meterRegistry)
+        ).increment();
+        long saved = Math.max(0, Math.round(averageCompletedTokens) - streamedTokens);
+        cancelCountersCache.computeIfAbsent("saved_" + tagReason, k ->
+                Counter.builder("ai_generation_tokens_saved_total")
+                        .description("因取消而节省的输出 token 估算值")
+                        .tag("reason", tagReason)
+                        .register(meterRegistry)
+        ).increment(saved);
+        log.info("生成已取消 reason={} 已输出 token={} 估算节省 token={}", tagReason, streamedTokens, saved);
+    }
+
+    /**
+     * 记录因取消而跳过的工具调用
+     */
+    public void recordSkippedTools(int count) {
+        cancelCountersCache.computeIfAbsent("skipped_tools", k ->
+                Counter.builder("ai_generation_cancel_skipped_tools_total")
+                        .description("因取消而跳过的工具调用次数")
+                        .register(meterRegistry)
+        ).increment(count);
+    }
+}
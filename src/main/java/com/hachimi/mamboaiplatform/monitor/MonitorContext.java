@@ -18,6 +18,11 @@ public class MonitorContext implements Serializable {
 
     private String appId;
 
+    /**
+     * 代码生成类型，用于按类型统计提示词大小
+     */
+    private String codeGenType;
+
     @Serial
     private static final long serialVersionUID = 1L;
 }
@@ -0,0 +1,71 @@
+package com.hachimi.mamboaiplatform.monitor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * SSE 输出指标收集器
+ * 帧速率可通过 sse_frames_total 的 rate 得到，单流帧速率另行记录分布
+ */
+@Component
+@Slf4j
+public class SseStreamMetricsCollector {
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private Counter framesCounter;
+    private Counter chunksCounter;
+    private DistributionSummary frameBytesSummary;
+    private DistributionSummary streamFramesPerSecondSummary;
+
+    @PostConstruct
+    public void init() {
+        framesCounter = Counter.builder("sse_frames_total")
+                .description("SSE 输出帧总数")
+                .register(meterRegistry);
+        chunksCounter = Counter.builder("sse_source_chunks_total")
+                .description("合并前的模型输出片段总数")
+                .register(meterRegistry);
+        frameBytesSummary = DistributionSummary.builder("sse_frame_bytes")
+                .description("每个 SSE 帧的字节数")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        streamFramesPerSecondSummary = DistributionSummary.builder("sse_stream_frames_per_second")
+                .description("单次生成流的平均帧速率")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 记录合并前的原始片段
+     */
+    public void recordSourceChunk() {
+        chunksCounter.increment();
+    }
+
+    /**
+     * 记录一次帧输出
+     */
+    public void recordFrame(int bytes) {
+        framesCounter.increment();
+        frameBytesSummary.record(bytes);
+    }
+
+    /**
+     * 记录一次完整流的帧速率
+     */
+    public void recordStream(long frames, Duration duration) {
+        long millis = duration.toMillis();
+        if (frames <= 0 || millis <= 0) {
+            return;
+        }
+        streamFramesPerSecondSummary.record(frames * 1000.0 / millis);
+    }
+}
@@ -0,0 +1,34 @@
+package com.hachimi.mamboaiplatform.scheduler;
+
+import com.hachimi.mamboaiplatform.langgraph4j.checkpoint.WorkflowCheckpointStore;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 工作流检查点清理定时任务
+ * 清理超过保留时间的检查点及其索引
+ */
+@Slf4j
+@Component
+public class WorkflowCheckpointCleanupScheduler {
+
+    @Resource
+    private WorkflowCheckpointStore workflowCheckpointStore;
+
+    /**
+     * 每30分钟执行一次
+     */
+    @Scheduled(cron = "0 */30 * * * ?")
+    public void cleanupExpiredCheckpoints() {
+        try {
+            int removed = workflowCheckpointStore.cleanupExpired();
+            if (removed > 0) {
+                log.info("清理过期工作流检查点 {} 个", removed);
+            }
+        } catch (Exception e) {
+            log.error("工作流检查点清理任务执行失败", e);
+        }
+    }
+}
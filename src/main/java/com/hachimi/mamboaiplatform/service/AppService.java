@@ -1,5 +1,6 @@
 package com.hachimi.mamboaiplatform.service;
 
+import com.hachimi.mamboaiplatform.ai.model.message.StreamMessage;
 import com.hachimi.mamboaiplatform.model.dto.app.AppAddRequest;
 import com.hachimi.mamboaiplatform.model.dto.app.AppQueryRequest;
 import com.hachimi.mamboaiplatform.model.entity.App;
@@ -24,7 +25,7 @@ public interface AppService extends IService<App> {
 
     List<AppVO> getAppVOList(List<App> appList);
 
-    Flux<String> chatToGenCode(Long appId, String message, User loginUser);
+    Flux<StreamMessage> chatToGenCode(Long appId, String message, User loginUser);
 
     Long createApp(AppAddRequest appAddRequest, User loginUser);
 
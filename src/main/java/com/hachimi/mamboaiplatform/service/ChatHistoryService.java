@@ -6,7 +6,7 @@ import com.mybatisflex.core.paginate.Page;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.core.service.IService;
 import com.hachimi.mamboaiplatform.model.entity.ChatHistory;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.memory.ChatMemory;
 
 import java.time.LocalDateTime;
 
@@ -45,5 +45,14 @@ public interface ChatHistoryService extends IService<ChatHistory> {
                                                LocalDateTime lastCreateTime,
                                                User loginUser);
 
-    int loadChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount);
+    int loadChatHistoryToMemory(Long appId, ChatMemory chatMemory, int maxCount);
+
+    /**
+     * 按水位线补齐对话记忆：记忆缺失或落后太多时全量加载，否则只加载水位线之后的增量
+     * @param appId
+     * @param chatMemory
+     * @param maxCount
+     * @return 本次加载到记忆中的消息数
+     */
+    int hydrateChatMemory(Long appId, ChatMemory chatMemory, int maxCount);
 }
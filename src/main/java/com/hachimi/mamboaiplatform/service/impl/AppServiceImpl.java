@@ -5,10 +5,12 @@ import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.util.RandomUtil;
 import cn.hutool.core.util.StrUtil;
-import com.hachimi.mamboaiplatform.ai.AiCodeGenTypeRoutingService;
-import com.hachimi.mamboaiplatform.ai.AiCodeGenTypeRoutingServiceFactory;
+import com.hachimi.mamboaiplatform.ai.routing.CodeGenTypeRouter;
+import com.hachimi.mamboaiplatform.ai.model.message.StreamMessage;
 import com.hachimi.mamboaiplatform.constant.AppConstant;
+import com.hachimi.mamboaiplatform.context.GenerationContext;
 import com.hachimi.mamboaiplatform.core.AiCodeGeneratorFacade;
+import com.hachimi.mamboaiplatform.core.admission.GenerationAdmissionController;
 import com.hachimi.mamboaiplatform.core.builder.VueProjectBuilder;
 import com.hachimi.mamboaiplatform.core.handler.StreamHandlerExecutor;
 import com.hachimi.mamboaiplatform.exception.BusinessException;
@@ -24,7 +26,6 @@ import com.hachimi.mamboaiplatform.model.enums.CodeGenTypeEnum;
 import com.hachimi.mamboaiplatform.model.vo.AppVO;
 import com.hachimi.mamboaiplatform.model.vo.UserPublicVO;
 import com.hachimi.mamboaiplatform.monitor.MonitorContext;
-import com.hachimi.mamboaiplatform.monitor.MonitorContextHolder;
 import com.hachimi.mamboaiplatform.service.AppService;
 import com.hachimi.mamboaiplatform.service.GenerationStatusService;
 import com.hachimi.mamboaiplatform.service.ChatHistoryService;
@@ -70,6 +71,9 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
   @Resource
   private StreamHandlerExecutor streamHandlerExecutor;
 
+  @Resource
+  private GenerationAdmissionController generationAdmissionController;
+
   @Resource
   private GenerationStatusService generationStatusService;
 
@@ -80,7 +84,7 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
   private ScreenshotService screenshotService;
 
   @Resource
-  private AiCodeGenTypeRoutingServiceFactory aiCodeGenTypeRoutingServiceFactory;
+  private CodeGenTypeRouter codeGenTypeRouter;
 
   @Value("${code.deploy-host:http://localhost}")
   private String deployHost;
@@ -153,7 +157,7 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
   }
 
   @Override
-  public Flux<String> chatToGenCode(Long appId, String message, User loginUser) {
+  public Flux<StreamMessage> chatToGenCode(Long appId, String message, User loginUser) {
     // 1. 参数校验
     ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 不能为空");
     ThrowUtils.throwIf(StrUtil.isBlank(message), ErrorCode.PARAMS_ERROR, "用户消息不能为空");
@@ -174,29 +178,36 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
     if (codeGenTypeEnum == null) {
       throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型");
     }
-    // 6. 调用 AI 前，先将用户消息保存到数据库中
-    chatHistoryService.addChatMessage(appId, message, ChatHistoryMessageTypeEnum.USER.getValue(), loginUser.getId());
-    // 7.设置线程监控上下文，便于通过threadlocal来获取userid和appid
-    MonitorContextHolder.setContext(
+    // 6. 构建本次会话的上下文（监控 + 用户），随订阅 Context 传播，不写入请求线程
+    GenerationContext generationContext = GenerationContext.of(
         MonitorContext.builder()
             .userId(loginUser.getId().toString())
             .appId(appId.toString())
-            .build());
-    // 8. 标记生成状态 running（sessionId 暂用时间戳）
-    try {
-      String sessionId = String.valueOf(System.currentTimeMillis());
-      generationStatusService.markRunning(appId, sessionId);
-      com.hachimi.mamboaiplatform.core.GenerationSessionRegistry.setSession(appId, sessionId);
-    } catch (Exception e) {
-      log.warn("标记运行状态失败 appId={} error={}", appId, e.getMessage());
-    }
-    // 9. 调用 AI 生成代码，并返回结果流
-    Flux<String> stringFlux = aiCodeGeneratorFacade.generateCodeAndSaveStream(message, codeGenTypeEnum, appId);
-    // 10.收集响应内容并在完成过后记录到对话历史中 异步
-    return streamHandlerExecutor.doExecutor(stringFlux, codeGenTypeEnum, chatHistoryService, appId, loginUser)
-        .doFinally(signalType -> {
-          MonitorContextHolder.clearContext(); // 异步清除上下文
-        });
+            .codeGenType(codeGenTypeEnum.getValue())
+            .build(),
+        loginUser);
+    // 7. 登记会话 ID（sessionId 暂用时间戳），回放日志据此生成事件 ID
+    String sessionId = String.valueOf(System.currentTimeMillis());
+    com.hachimi.mamboaiplatform.core.GenerationSessionRegistry.setSession(appId, sessionId);
+    // 8. 经准入控制排队，获得许可后才保存用户消息、标记 running 并调用 AI 生成代码，完成后记录到对话历史中
+    // 排队被拒或超时时不会留下孤立的用户消息，也不会让应用一直停留在 running 状态
+    // 放行可能发生在其他线程，仅在组装与订阅期间绑定上下文，结束后还原该线程原有上下文
+    Flux<StreamMessage> generation = Flux.<StreamMessage>from(subscriber -> generationContext.run(
+        () -> Flux.defer(() -> {
+              chatHistoryService.addChatMessage(appId, message, ChatHistoryMessageTypeEnum.USER.getValue(),
+                  loginUser.getId());
+              try {
+                generationStatusService.markRunning(appId, sessionId);
+              } catch (Exception e) {
+                log.warn("标记运行状态失败 appId={} error={}", appId, e.getMessage());
+              }
+              return streamHandlerExecutor.doExecutor(
+                  aiCodeGeneratorFacade.generateCodeAndSaveStream(message, codeGenTypeEnum, appId),
+                  codeGenTypeEnum, chatHistoryService, appId, loginUser);
+            })
+            .subscribe(subscriber)))
+        .contextWrite(context -> context.put(GenerationContext.KEY, generationContext));
+    return generationAdmissionController.admit(loginUser, codeGenTypeEnum, () -> generation);
   }
 
   @Override
@@ -210,11 +221,8 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
     app.setUserId(loginUser.getId());
     // 应用名称暂时为 initPrompt 前 12 位
     app.setAppName(initPrompt.substring(0, Math.min(initPrompt.length(), 12)));
-    // 使用 AI 智能选择代码生成类型
-    // 多例模式来获取新的 AiCodeGenTypeRoutingService 实例 （每次创建新的aiservice）
-    AiCodeGenTypeRoutingService aiCodeGenTypeRoutingService = aiCodeGenTypeRoutingServiceFactory
-        .createAiCodeGenTypeRoutingService();
-    CodeGenTypeEnum selectedCodeGenType = aiCodeGenTypeRoutingService.getCodeGenType(initPrompt);
+    // 选择代码生成类型：命中缓存或本地分类足够确定时直接返回，否则询问路由模型
+    CodeGenTypeEnum selectedCodeGenType = codeGenTypeRouter.route(initPrompt);
     app.setCodeGenType(selectedCodeGenType.getValue());
     // 插入数据库
     boolean result = this.save(app);
@@ -319,7 +327,7 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
   @Override
   public void generateAppScreenshotAsync(Long appId, String appDeployUrl) {
     // 异步生成应用封面截图
-    Thread.startVirtualThread(() -> {
+    Thread.startVirtualThread(GenerationContext.propagate(() -> {
       try {
         // 生成应用封面截图
         String screenshotUrl = screenshotService.generateAndUploadScreenshot(appDeployUrl);
@@ -336,7 +344,7 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
       } catch (Exception e) {
         log.error("生成应用 {} 封面截图异常: {}", appId, e.getMessage(), e);
       }
-    });
+    }));
   }
 
   /**
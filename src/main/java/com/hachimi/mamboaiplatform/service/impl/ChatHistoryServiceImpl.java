@@ -2,6 +2,10 @@ package com.hachimi.mamboaiplatform.service.impl;
 
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.util.StrUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hachimi.mamboaiplatform.ai.memory.WriteBehindChatMemoryStore;
+import com.hachimi.mamboaiplatform.config.ChatMemoryStoreConfig;
 import com.hachimi.mamboaiplatform.constant.UserConstant;
 import com.hachimi.mamboaiplatform.exception.ErrorCode;
 import com.hachimi.mamboaiplatform.exception.ThrowUtils;
@@ -19,12 +23,13 @@ import com.hachimi.mamboaiplatform.mapper.ChatHistoryMapper;
 import com.hachimi.mamboaiplatform.service.ChatHistoryService;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.UserMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.memory.ChatMemory;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -44,6 +49,22 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
 
     @Resource
     private UserService userService;
+
+    @Resource
+    private WriteBehindChatMemoryStore writeBehindChatMemoryStore;
+
+    @Resource
+    private ChatMemoryStoreConfig chatMemoryStoreConfig;
+
+    /**
+     * 应用 -> 本节点已保存、尚未得到 AI 回复的用户消息 ID
+     * 这条消息会由 AI 服务自己写入记忆，补齐记忆时按 ID 精确排除；AI 回复保存后移除，过期兜底异常退出的生成
+     */
+    private final Cache<Long, Long> pendingUserMessageIds = Caffeine.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(Duration.ofMinutes(30))
+            .build();
+
     @Override
     public boolean addChatMessage(Long appId, String message, String messageType, Long userId) {
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用ID不能为空");
@@ -59,7 +80,19 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
                 .messageType(messageType)
                 .userId(userId)
                 .build();
-        return this.save(chatHistory);
+        boolean saved = this.save(chatHistory);
+        if (saved) {
+            if (messageTypeEnum == ChatHistoryMessageTypeEnum.USER) {
+                pendingUserMessageIds.put(appId, chatHistory.getId());
+            } else {
+                pendingUserMessageIds.invalidate(appId);
+            }
+        }
+        // 会话正在本节点运行时，这条消息会由 AI 服务自己写入记忆，直接推进水位线，避免下次补齐时重复加载
+        if (saved && chatMemoryStoreConfig.isEnabled() && writeBehindChatMemoryStore.isLive(appId)) {
+            writeBehindChatMemoryStore.advanceWatermark(appId, chatHistory.getId());
+        }
+        return saved;
     }
 
     /**
@@ -147,29 +180,24 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
     }
 
     @Override
-    public int loadChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount){
+    public int loadChatHistoryToMemory(Long appId, ChatMemory chatMemory, int maxCount){
         try {
             QueryWrapper queryWrapper = QueryWrapper.create()
                     .eq(ChatHistory::getAppId, appId) //直接获取chathistory类中的属性名
-                    .orderBy(ChatHistory::getCreateTime, true)
-                    .limit(1,maxCount); //
+                    .orderBy(ChatHistory::getId, false)
+                    .limit(maxCount + 1); // 多取一条，用于排除本轮刚保存的用户消息
             List<ChatHistory> historyList = this.list(queryWrapper);
             if (CollUtil.isEmpty(historyList)){
                 return 0; // 没有历史记录
             }
             // 顺序需要进行翻转，越早的消息是要在越上面的，但是这里查询是从最新的开始查询的，所以需要反转
-            historyList = historyList.reversed();
-            int loadedCount = 0;
+            historyList = excludePendingUserMessage(appId, historyList.reversed());
+            if (historyList.size() > maxCount) {
+                historyList = historyList.subList(historyList.size() - maxCount, historyList.size());
+            }
             // 清理历史缓存，防止重复加载
             chatMemory.clear();
-            for (ChatHistory chatHistory : historyList) {
-                if (ChatHistoryMessageTypeEnum.USER.getValue().equals(chatHistory.getMessageType())) {
-                    chatMemory.add(UserMessage.from(chatHistory.getMessage()));
-                } else if (ChatHistoryMessageTypeEnum.AI.getValue().equals(chatHistory.getMessageType())) {
-                    chatMemory.add(AiMessage.from(chatHistory.getMessage()));
-                }
-                loadedCount++;
-            }
+            int loadedCount = appendToMemory(appId, chatMemory, historyList);
             log.info("为应用ID={}加载对话历史记录，共{}条", appId, loadedCount);
             return loadedCount;
         } catch (Exception e) {
@@ -180,5 +208,69 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
 
     }
 
+    @Override
+    public int hydrateChatMemory(Long appId, ChatMemory chatMemory, int maxCount) {
+        if (!chatMemoryStoreConfig.isEnabled()) {
+            return loadChatHistoryToMemory(appId, chatMemory, maxCount);
+        }
+        try {
+            Long watermark = writeBehindChatMemoryStore.getWatermark(appId);
+            if (watermark == null || chatMemory.messages().isEmpty()) {
+                // 记忆缺失，全量加载
+                return loadChatHistoryToMemory(appId, chatMemory, maxCount);
+            }
+            // 只查询水位线之后的增量，多取一条用于判断是否落后太多
+            QueryWrapper queryWrapper = QueryWrapper.create()
+                    .eq(ChatHistory::getAppId, appId)
+                    .gt(ChatHistory::getId, watermark)
+                    .orderBy(ChatHistory::getId, true)
+                    .limit(maxCount + 1);
+            List<ChatHistory> deltaList = this.list(queryWrapper);
+            if (deltaList.size() > maxCount) {
+                log.info("应用ID={}的对话记忆落后超过{}条，改为全量加载", appId, maxCount);
+                return loadChatHistoryToMemory(appId, chatMemory, maxCount);
+            }
+            int loadedCount = appendToMemory(appId, chatMemory, excludePendingUserMessage(appId, deltaList));
+            log.info("应用ID={}的对话记忆已是热数据，水位线={}，补齐增量{}条", appId, watermark, loadedCount);
+            return loadedCount;
+        } catch (Exception e) {
+            log.error("为应用ID={}补齐对话记忆失败，原因={}", appId, e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * 本轮刚保存的用户消息会由 AI 服务自己写入记忆，加载时按 ID 排除
+     * 预热等没有进行中生成的场景不排除：末尾没有回复的用户消息（如生成失败）仍是真实的对话历史
+     */
+    private List<ChatHistory> excludePendingUserMessage(Long appId, List<ChatHistory> historyList) {
+        Long pendingId = pendingUserMessageIds.getIfPresent(appId);
+        if (pendingId == null || historyList.isEmpty()) {
+            return historyList;
+        }
+        return historyList.stream()
+                .filter(chatHistory -> !pendingId.equals(chatHistory.getId()))
+                .toList();
+    }
+
+    /**
+     * 按时间正序把对话历史追加到记忆中，并推进水位线
+     */
+    private int appendToMemory(Long appId, ChatMemory chatMemory, List<ChatHistory> historyList) {
+        int loadedCount = 0;
+        for (ChatHistory chatHistory : historyList) {
+            if (ChatHistoryMessageTypeEnum.USER.getValue().equals(chatHistory.getMessageType())) {
+                chatMemory.add(UserMessage.from(chatHistory.getMessage()));
+            } else if (ChatHistoryMessageTypeEnum.AI.getValue().equals(chatHistory.getMessageType())) {
+                chatMemory.add(AiMessage.from(chatHistory.getMessage()));
+            }
+            loadedCount++;
+        }
+        if (chatMemoryStoreConfig.isEnabled() && !historyList.isEmpty()) {
+            writeBehindChatMemoryStore.advanceWatermark(appId, historyList.getLast().getId());
+        }
+        return loadedCount;
+    }
+
 
 }
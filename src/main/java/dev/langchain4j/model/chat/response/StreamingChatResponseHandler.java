@@ -58,4 +58,14 @@ public interface StreamingChatResponseHandler {
      * @param error The error that occurred
      */
     void onError(Throwable error);
+
+    /**
+     * Returns the handle used to cancel this streaming chat, or null if cancellation is not supported.
+     * The model closes the HTTP stream and stops invoking this handler once the handle is cancelled.
+     *
+     * @return the streaming handle, or null
+     */
+    default StreamingHandle streamingHandle() {
+        return null;
+    }
 }
@@ -0,0 +1,164 @@
+package dev.langchain4j.model.chat.response;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * A handle that allows cancelling an in-flight streaming chat, including the HTTP stream
+ * and any tool executions that have not started yet.
+ * <p>
+ * The handle is created by the caller, passed to {@code TokenStream}, and propagated to the
+ * {@link dev.langchain4j.model.chat.StreamingChatModel} through
+ * {@link StreamingChatResponseHandler#streamingHandle()}.
+ * The HTTP layer picks it up via {@link #current()} while the request is being started.
+ */
+public class StreamingHandle {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StreamingHandle.class);
+
+    private static final ThreadLocal<StreamingHandle> CURRENT = new ThreadLocal<>();
+
+    private final List<Runnable> cancelCallbacks = new ArrayList<>();
+
+    private Runnable requestCancelCallback;
+
+    private volatile boolean cancelled;
+
+    private volatile String cancelReason;
+
+    private volatile IntConsumer skippedToolExecutionsListener;
+
+    private volatile Object attachment;
+
+    /**
+     * Cancels the streaming chat. Registered callbacks are invoked exactly once.
+     *
+     * @param reason the reason of the cancellation, used for logging and metrics
+     */
+    public void cancel(String reason) {
+        List<Runnable> callbacks;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelReason = reason;
+            cancelled = true;
+            callbacks = new ArrayList<>(cancelCallbacks);
+            cancelCallbacks.clear();
+            if (requestCancelCallback != null) {
+                callbacks.add(requestCancelCallback);
+                requestCancelCallback = null;
+            }
+        }
+        callbacks.forEach(StreamingHandle::runQuietly);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public String cancelReason() {
+        return cancelReason;
+    }
+
+    /**
+     * Registers a callback to be invoked on cancellation.
+     * If the handle is already cancelled, the callback is invoked immediately.
+     */
+    public void onCancel(Runnable callback) {
+        synchronized (this) {
+            if (!cancelled) {
+                cancelCallbacks.add(callback);
+                return;
+            }
+        }
+        runQuietly(callback);
+    }
+
+    /**
+     * Deregisters a callback registered with {@link #onCancel(Runnable)}, e.g. when the work it would cancel
+     * has already finished. A long-lived handle would otherwise keep every such callback (and what it captures)
+     * until the session ends.
+     */
+    public synchronized void removeCancelCallback(Runnable callback) {
+        cancelCallbacks.remove(callback);
+    }
+
+    /**
+     * Sets the callback that aborts the in-flight HTTP request, replacing the one of the previous request.
+     * A handle spans every request of a session (one per tool-call round), so only the latest request is tracked.
+     * If the handle is already cancelled, the callback is invoked immediately.
+     */
+    public void onCancelRequest(Runnable callback) {
+        synchronized (this) {
+            if (!cancelled) {
+                requestCancelCallback = callback;
+                return;
+            }
+        }
+        runQuietly(callback);
+    }
+
+    /**
+     * Registers a listener that is notified with the number of tool executions skipped because of cancellation.
+     */
+    public void onToolExecutionsSkipped(IntConsumer listener) {
+        this.skippedToolExecutionsListener = listener;
+    }
+
+    public void recordSkippedToolExecutions(int count) {
+        IntConsumer listener = skippedToolExecutionsListener;
+        if (listener != null && count > 0) {
+            listener.accept(count);
+        }
+    }
+
+    /**
+     * Attaches an opaque, caller-owned object (e.g. per-session context) to this handle.
+     * It is set once per session and travels with the handle to every follow-up request,
+     * so code running on HTTP callback threads can read it via {@link #current()} without thread-local writes.
+     */
+    public void attach(Object attachment) {
+        this.attachment = attachment;
+    }
+
+    public Object attachment() {
+        return attachment;
+    }
+
+    /**
+     * Returns the handle bound to the current thread while a streaming request is being started, or null.
+     */
+    public static StreamingHandle current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs the action with the given handle bound to the current thread.
+     */
+    public static void runWith(StreamingHandle handle, Runnable action) {
+        StreamingHandle previous = CURRENT.get();
+        CURRENT.set(handle);
+        try {
+            action.run();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    private static void runQuietly(Runnable callback) {
+        try {
+            callback.run();
+        } catch (Exception e) {
+            LOG.warn("Cancellation callback failed", e);
+        }
+    }
+}
@@ -13,6 +13,7 @@ import dev.langchain4j.model.chat.request.ChatRequestParameters;
 import dev.langchain4j.model.chat.request.DefaultChatRequestParameters;
 import dev.langchain4j.model.chat.response.ChatResponse;
 import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.chat.response.StreamingHandle;
 import dev.langchain4j.model.openai.internal.OpenAiClient;
 import dev.langchain4j.model.openai.internal.chat.*;
 import dev.langchain4j.model.openai.internal.shared.StreamOptions;
@@ -122,12 +123,24 @@ public class OpenAiStreamingChatModel implements StreamingChatModel {
         OpenAiStreamingResponseBuilder openAiResponseBuilder = new OpenAiStreamingResponseBuilder();
         ToolExecutionRequestBuilder toolBuilder = new ToolExecutionRequestBuilder();
 
-        client.chatCompletion(openAiRequest)
+        StreamingHandle streamingHandle = handler.streamingHandle();
+        if (streamingHandle != null && streamingHandle.isCancelled()) {
+            return;
+        }
+
+        // The handle is bound while the request is started so that the HTTP client can close the stream on cancel
+        StreamingHandle.runWith(streamingHandle, () -> client.chatCompletion(openAiRequest)
                 .onPartialResponse(partialResponse -> {
+                    if (isCancelled(streamingHandle)) {
+                        return;
+                    }
                     openAiResponseBuilder.append(partialResponse);
                     handle(partialResponse, toolBuilder, handler);
                 })
                 .onComplete(() -> {
+                    if (isCancelled(streamingHandle)) {
+                        return;
+                    }
                     if (toolBuilder.hasToolExecutionRequests()) {
                         try {
                             handler.onCompleteToolExecutionRequest(toolBuilder.index(), toolBuilder.build());
@@ -143,10 +156,18 @@ public class OpenAiStreamingChatModel implements StreamingChatModel {
                     }
                 })
                 .onError(throwable -> {
+                    if (isCancelled(streamingHandle)) {
+                        // Closing the stream on cancellation surfaces as an I/O error, which is expected
+                        return;
+                    }
                     RuntimeException mappedException = ExceptionMapper.DEFAULT.mapException(throwable);
                     withLoggingExceptions(() -> handler.onError(mappedException));
                 })
-                .execute();
+                .execute());
+    }
+
+    private static boolean isCancelled(StreamingHandle streamingHandle) {
+        return streamingHandle != null && streamingHandle.isCancelled();
     }
 
     private static void handle(ChatCompletionResponse partialResponse,
@@ -13,6 +13,7 @@ import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.model.chat.request.ChatRequest;
 import dev.langchain4j.model.chat.response.ChatResponse;
 import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.chat.response.StreamingHandle;
 import dev.langchain4j.model.output.TokenUsage;
 import dev.langchain4j.service.tool.ToolExecution;
 import dev.langchain4j.service.tool.ToolExecutor;
@@ -57,6 +58,7 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
     private final Map<String, ToolExecutor> toolExecutors;
     private final List<String> responseBuffer = new ArrayList<>();
     private final boolean hasOutputGuardrails;
+    private final StreamingHandle streamingHandle;
 
     AiServiceStreamingResponseHandler(
             ChatExecutor chatExecutor,
@@ -73,7 +75,8 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
             List<ToolSpecification> toolSpecifications,
             Map<String, ToolExecutor> toolExecutors,
             GuardrailRequestParams commonGuardrailParams,
-            Object methodKey) {
+            Object methodKey,
+            StreamingHandle streamingHandle) {
         this.chatExecutor = ensureNotNull(chatExecutor, "chatExecutor");
         this.context = ensureNotNull(context, "context");
         this.memoryId = ensureNotNull(memoryId, "memoryId");
@@ -93,10 +96,23 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
         this.toolSpecifications = copy(toolSpecifications);
         this.toolExecutors = copy(toolExecutors);
         this.hasOutputGuardrails = context.guardrailService().hasOutputGuardrails(methodKey);
+        this.streamingHandle = streamingHandle;
+    }
+
+    @Override
+    public StreamingHandle streamingHandle() {
+        return streamingHandle;
+    }
+
+    private boolean isCancelled() {
+        return streamingHandle != null && streamingHandle.isCancelled();
     }
 
     @Override
     public void onPartialResponse(String partialResponse) {
+        if (isCancelled()) {
+            return;
+        }
         // If we're using output guardrails, then buffer the partial response until the guardrails have completed
         if (hasOutputGuardrails) {
             responseBuffer.add(partialResponse);
@@ -107,17 +123,37 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
 
     @Override
     public void onPartialToolExecutionRequest(int index, ToolExecutionRequest partialToolExecutionRequest) {
+        if (isCancelled()) {
+            return;
+        }
         // If we're using output guardrails, then buffer the partial response until the guardrails have completed
         partialToolExecutionRequestHandler.accept(index, partialToolExecutionRequest);
     }
 
     @Override
     public void onCompleteResponse(ChatResponse completeResponse) {
+        if (isCancelled()) {
+            return;
+        }
         AiMessage aiMessage = completeResponse.aiMessage();
         addToMemory(aiMessage);
 
         if (aiMessage.hasToolExecutionRequests()) {
-            for (ToolExecutionRequest toolExecutionRequest : aiMessage.toolExecutionRequests()) {
+            List<ToolExecutionRequest> toolExecutionRequests = aiMessage.toolExecutionRequests();
+            for (int i = 0; i < toolExecutionRequests.size(); i++) {
+                if (isCancelled()) {
+                    // Skip the remaining tools and do not send the follow-up request
+                    int skipped = toolExecutionRequests.size() - i;
+                    LOG.info("Streaming cancelled, skipping {} pending tool execution(s)", skipped);
+                    // Keep the memory consistent: every tool call must be followed by a result
+                    for (int j = i; j < toolExecutionRequests.size(); j++) {
+                        addToMemory(ToolExecutionResultMessage.from(toolExecutionRequests.get(j),
+                                "Tool execution cancelled"));
+                    }
+                    streamingHandle.recordSkippedToolExecutions(skipped);
+                    return;
+                }
+                ToolExecutionRequest toolExecutionRequest = toolExecutionRequests.get(i);
                 String toolName = toolExecutionRequest.name();
                 ToolExecutor toolExecutor = toolExecutors.get(toolName);
                 String toolExecutionResult = toolExecutor.execute(toolExecutionRequest, memoryId);
@@ -134,6 +170,10 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
                 }
             }
 
+            if (isCancelled()) {
+                return;
+            }
+
             ChatRequest chatRequest = ChatRequest.builder()
                     .messages(messagesToSend(memoryId))
                     .toolSpecifications(toolSpecifications)
@@ -154,9 +194,11 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
                     toolSpecifications,
                     toolExecutors,
                     commonGuardrailParams,
-                    methodKey);
+                    methodKey,
+                    streamingHandle);
 
-            context.streamingChatModel.chat(chatRequest, handler);
+            // Bind the handle so that model listeners can resolve the session it belongs to
+            StreamingHandle.runWith(streamingHandle, () -> context.streamingChatModel.chat(chatRequest, handler));
         } else {
             if (completeResponseHandler != null) {
                 ChatResponse finalChatResponse = ChatResponse.builder()
@@ -217,6 +259,11 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
 
     @Override
     public void onError(Throwable error) {
+        if (isCancelled()) {
+            // Errors caused by closing the stream on cancellation are expected
+            LOG.debug("Ignored error after cancellation: {}", error.getMessage());
+            return;
+        }
         if (errorHandler != null) {
             try {
                 errorHandler.accept(error);
@@ -10,6 +10,7 @@ import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 import dev.langchain4j.model.chat.request.ChatRequest;
 import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingHandle;
 import dev.langchain4j.model.output.TokenUsage;
 import dev.langchain4j.rag.content.Content;
 import dev.langchain4j.service.tool.ToolExecution;
@@ -43,6 +44,7 @@ public class AiServiceTokenStream implements TokenStream {
     private Consumer<Throwable> errorHandler;
     private BiConsumer<Integer, ToolExecutionRequest> partialToolExecutionRequestHandler;
     private BiConsumer<Integer, ToolExecutionRequest> completeToolExecutionRequestHandler;
+    private StreamingHandle streamingHandle;
 
     private int onPartialResponseInvoked;
     private int onCompleteResponseInvoked;
@@ -123,10 +125,22 @@ public class AiServiceTokenStream implements TokenStream {
         return this;
     }
 
+    @Override
+    public TokenStream withStreamingHandle(StreamingHandle streamingHandle) {
+        this.streamingHandle = streamingHandle;
+        return this;
+    }
+
     @Override
     public void start() {
         validateConfiguration();
 
+        // Fall back to a handle bound by the caller (e.g. when started through a reactive adapter)
+        StreamingHandle handle = streamingHandle != null ? streamingHandle : StreamingHandle.current();
+        if (handle != null && handle.isCancelled()) {
+            return;
+        }
+
         ChatRequest chatRequest = ChatRequest.builder()
                 .messages(messages)
                 .toolSpecifications(toolSpecifications)
@@ -152,13 +166,14 @@ public class AiServiceTokenStream implements TokenStream {
                 toolSpecifications,
                 toolExecutors,
                 commonGuardrailParams,
-                methodKey);
+                methodKey,
+                handle);
 
         if (contentsHandler != null && retrievedContents != null) {
             contentsHandler.accept(retrievedContents);
         }
 
-        context.streamingChatModel.chat(chatRequest, handler);
+        StreamingHandle.runWith(handle, () -> context.streamingChatModel.chat(chatRequest, handler));
     }
 
     private void validateConfiguration() {
@@ -2,6 +2,7 @@ package dev.langchain4j.service;
 
 import dev.langchain4j.agent.tool.ToolExecutionRequest;
 import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingHandle;
 import dev.langchain4j.rag.RetrievalAugmentor;
 import dev.langchain4j.rag.content.Content;
 import dev.langchain4j.service.tool.ToolExecution;
@@ -74,6 +75,18 @@ public interface TokenStream {
      */
     TokenStream ignoreErrors();
 
+    /**
+     * Attaches a handle that can cancel the stream after {@link #start()}: the HTTP stream is closed,
+     * pending tool executions are skipped and no further callbacks are invoked.
+     * Implementations that do not support cancellation ignore the handle.
+     *
+     * @param streamingHandle the handle used to cancel the stream
+     * @return token stream instance used to configure or start stream processing
+     */
+    default TokenStream withStreamingHandle(StreamingHandle streamingHandle) {
+        return this;
+    }
+
     /**
      * Completes the current token stream building and starts processing.
      * <p>
@@ -23,13 +23,13 @@ class AiCodeGeneratorServiceTest {
 
     @Test
     void generateHtmlCode() {
-        HtmlCodeResult result = aiCodeGeneratorService.generateHtmlCode("帮我生成一个网页页面，最多20行");
+        HtmlCodeResult result = aiCodeGeneratorService.generateHtmlCode(1L, "帮我生成一个网页页面，最多20行");
         assertNotNull(result);
     }
 
     @Test
     void generateMultiFileCode() {
-        MultiFileCodeResult multiFileCode = aiCodeGeneratorService.generateMultiFileCode("做个程序员鱼皮的留言板");
+        MultiFileCodeResult multiFileCode = aiCodeGeneratorService.generateMultiFileCode(1L, "做个程序员鱼皮的留言板");
         assertNotNull(multiFileCode);
     }
 
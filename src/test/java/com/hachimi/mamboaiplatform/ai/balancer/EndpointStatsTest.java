@@ -0,0 +1,78 @@
+package com.hachimi.mamboaiplatform.ai.balancer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+class EndpointStatsTest {
+
+    private static final long OPEN_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    @Test
+    void circuitOpensAfterConsecutiveFailuresAndProbesOnce() {
+        EndpointStats stats = new EndpointStats("a", 0.2, 3, OPEN_NANOS);
+        long now = 0;
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertTrue(stats.tryAcquire(now));
+            stats.recordFailure(now);
+        }
+        Assertions.assertEquals(EndpointStats.CircuitState.OPEN, stats.getState());
+        Assertions.assertFalse(stats.tryAcquire(now + OPEN_NANOS - 1));
+
+        // 打开期满后只放行一个探测请求
+        Assertions.assertTrue(stats.tryAcquire(now + OPEN_NANOS));
+        Assertions.assertEquals(EndpointStats.CircuitState.HALF_OPEN, stats.getState());
+        Assertions.assertFalse(stats.tryAcquire(now + OPEN_NANOS));
+
+        // 探测失败立即重新打开
+        stats.recordFailure(now + OPEN_NANOS);
+        Assertions.assertEquals(EndpointStats.CircuitState.OPEN, stats.getState());
+
+        // 探测成功后关闭
+        Assertions.assertTrue(stats.tryAcquire(now + 2 * OPEN_NANOS));
+        stats.recordFirstToken(100);
+        Assertions.assertEquals(EndpointStats.CircuitState.CLOSED, stats.getState());
+        Assertions.assertTrue(stats.tryAcquire(now + 2 * OPEN_NANOS));
+    }
+
+    @Test
+    void abandonedProbeReleasesTheSlot() {
+        EndpointStats stats = new EndpointStats("a", 0.2, 1, OPEN_NANOS);
+        stats.recordFailure(0);
+        Assertions.assertTrue(stats.tryAcquire(OPEN_NANOS));
+        Assertions.assertFalse(stats.tryAcquire(OPEN_NANOS));
+        stats.recordAbandoned();
+        Assertions.assertTrue(stats.tryAcquire(OPEN_NANOS));
+    }
+
+    @Test
+    void scorePrefersFastHealthyEndpointsAndExploresUnknownOnes() {
+        EndpointStats fast = new EndpointStats("fast", 0.5, 5, OPEN_NANOS);
+        EndpointStats slow = new EndpointStats("slow", 0.5, 5, OPEN_NANOS);
+        EndpointStats flaky = new EndpointStats("flaky", 0.5, 5, OPEN_NANOS);
+        EndpointStats unknown = new EndpointStats("unknown", 0.5, 5, OPEN_NANOS);
+        fast.recordFirstToken(200);
+        slow.recordFirstToken(2000);
+        flaky.recordFirstToken(200);
+        flaky.recordFailure(0);
+        Assertions.assertEquals(0, unknown.score(4));
+        Assertions.assertTrue(fast.score(4) < flaky.score(4));
+        Assertions.assertTrue(flaky.score(4) < slow.score(4));
+    }
+
+    @Test
+    void latencyQuantileNeedsEnoughSamples() {
+        EndpointStats stats = new EndpointStats("a", 0.2, 5, OPEN_NANOS);
+        for (int i = 1; i <= 100; i++) {
+            stats.recordLatency(i * 10L);
+        }
+        Assertions.assertEquals(-1, stats.latencyQuantileMs(0.95, 101));
+        Assertions.assertEquals(950, stats.latencyQuantileMs(0.95, 20));
+        // 窗口只保留最近 128 个样本
+        for (int i = 0; i < 128; i++) {
+            stats.recordLatency(5);
+        }
+        Assertions.assertEquals(5, stats.latencyQuantileMs(0.95, 20));
+    }
+}
@@ -0,0 +1,277 @@
+package com.hachimi.mamboaiplatform.ai.balancer;
+
+import com.hachimi.mamboaiplatform.ai.http.SharedHttpTransport;
+import com.hachimi.mamboaiplatform.config.AiHttpTransportConfig;
+import com.hachimi.mamboaiplatform.config.ModelLoadBalancingConfig;
+import com.sun.net.httpserver.HttpServer;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelErrorContext;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
+import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.chat.response.StreamingHandle;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 使用本地桩服务（OpenAI 兼容 SSE）验证对冲与故障切换
+ */
+class LoadBalancedStreamingChatModelTest {
+
+    private final List<StubServer> servers = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        servers.forEach(StubServer::stop);
+    }
+
+    @Test
+    void hedgeWinsWhenPrimaryIsSlowAndLoserIsCancelled() throws Exception {
+        StubServer slow = start(3000, 200);
+        StubServer fast = start(0, 200);
+        StreamingModelBalancer balancer = new StreamingModelBalancer(config(), new SimpleMeterRegistry());
+        CountingListener listener = new CountingListener();
+        StreamingChatModel model = balancer.balance("stub", models(slow, fast), List.of(listener));
+
+        long start = System.nanoTime();
+        ChatResponse response = chat(model).get(10, TimeUnit.SECONDS);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Assertions.assertEquals("hello world", response.aiMessage().text());
+        Assertions.assertTrue(elapsedMs < 2000, "对冲请求应先于慢端点返回，实际耗时 " + elapsedMs);
+        Assertions.assertEquals(1, slow.requests.get());
+        Assertions.assertEquals(1, fast.requests.get());
+        // 落败请求的 HTTP 流被关闭，桩服务写入时感知到断开
+        Assertions.assertTrue(slow.disconnected.await(5, TimeUnit.SECONDS));
+        // 对冲请求不重复计入监控
+        Assertions.assertEquals(1, listener.requests.get());
+        Assertions.assertEquals(1, listener.responses.get());
+        Assertions.assertEquals(0, listener.errors.get());
+    }
+
+    @Test
+    void failsOverBeforeFirstEvent() throws Exception {
+        StubServer broken = start(0, 500);
+        StubServer healthy = start(0, 200);
+        ModelLoadBalancingConfig config = config();
+        config.setHedgeEnabled(false);
+        StreamingModelBalancer balancer = new StreamingModelBalancer(config, new SimpleMeterRegistry());
+        StreamingChatModel model = balancer.balance("stub", models(broken, healthy), List.of());
+
+        ChatResponse response = chat(model).get(10, TimeUnit.SECONDS);
+
+        Assertions.assertEquals("hello world", response.aiMessage().text());
+        Assertions.assertEquals(1, broken.requests.get());
+        Assertions.assertEquals(1, healthy.requests.get());
+    }
+
+    @Test
+    void errorIsForwardedWhenAllEndpointsFail() throws Exception {
+        StubServer first = start(0, 500);
+        StubServer second = start(0, 500);
+        ModelLoadBalancingConfig config = config();
+        config.setHedgeEnabled(false);
+        StreamingModelBalancer balancer = new StreamingModelBalancer(config, new SimpleMeterRegistry());
+        CountingListener listener = new CountingListener();
+        StreamingChatModel model = balancer.balance("stub", models(first, second), List.of(listener));
+
+        CompletableFuture<ChatResponse> future = chat(model);
+        Assertions.assertThrows(Exception.class, () -> future.get(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, first.requests.get());
+        Assertions.assertEquals(1, second.requests.get());
+        // 故障切换的两次请求只记录一次调用与一次失败
+        Assertions.assertEquals(1, listener.requests.get());
+        Assertions.assertEquals(1, listener.errors.get());
+    }
+
+    private static ModelLoadBalancingConfig config() {
+        ModelLoadBalancingConfig config = new ModelLoadBalancingConfig();
+        config.setEnabled(true);
+        config.setHedgeEnabled(true);
+        config.setHedgeInitialDelayMs(300);
+        config.setHedgeMinDelayMs(100);
+        return config;
+    }
+
+    /**
+     * 与生产配置相同，通过共享传输（可取消的 HTTP 客户端）构建模型，落败请求取消时才会真正关闭连接
+     */
+    private static Map<String, StreamingChatModel> models(StubServer... stubs) {
+        AiHttpTransportConfig transportConfig = new AiHttpTransportConfig();
+        transportConfig.setHttp2(false);
+        SharedHttpTransport transport = new SharedHttpTransport();
+        ReflectionTestUtils.setField(transport, "aiHttpTransportConfig", transportConfig);
+        ReflectionTestUtils.setField(transport, "meterRegistry", new SimpleMeterRegistry());
+        Map<String, StreamingChatModel> models = new LinkedHashMap<>();
+        for (StubServer stub : stubs) {
+            models.put(stub.name(), OpenAiStreamingChatModel.builder()
+                    .baseUrl(stub.baseUrl())
+                    .httpClientBuilder(transport.builder(stub.baseUrl()))
+                    .apiKey("test")
+                    .modelName("stub")
+                    .timeout(Duration.ofSeconds(10))
+                    .build());
+        }
+        return models;
+    }
+
+    private static CompletableFuture<ChatResponse> chat(StreamingChatModel model) {
+        CompletableFuture<ChatResponse> future = new CompletableFuture<>();
+        StreamingHandle handle = new StreamingHandle();
+        ChatRequest request = ChatRequest.builder().messages(UserMessage.from("hi")).build();
+        model.chat(request, new StreamingChatResponseHandler() {
+            @Override
+            public void onPartialResponse(String partialResponse) {
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                future.complete(completeResponse);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                future.completeExceptionally(error);
+            }
+
+            @Override
+            public StreamingHandle streamingHandle() {
+                return handle;
+            }
+        });
+        return future;
+    }
+
+    private StubServer start(long firstTokenDelayMs, int status) throws IOException {
+        StubServer server = new StubServer(firstTokenDelayMs, status);
+        servers.add(server);
+        return server;
+    }
+
+    /**
+     * 统计通知次数的监听器
+     */
+    private static final class CountingListener implements ChatModelListener {
+
+        private final AtomicInteger requests = new AtomicInteger();
+
+        private final AtomicInteger responses = new AtomicInteger();
+
+        private final AtomicInteger errors = new AtomicInteger();
+
+        @Override
+        public void onRequest(ChatModelRequestContext requestContext) {
+            requests.incrementAndGet();
+        }
+
+        @Override
+        public void onResponse(ChatModelResponseContext responseContext) {
+            responses.incrementAndGet();
+        }
+
+        @Override
+        public void onError(ChatModelErrorContext errorContext) {
+            errors.incrementAndGet();
+        }
+    }
+
+    /**
+     * 最小的 OpenAI 兼容流式接口
+     */
+    private static final class StubServer {
+
+        private final HttpServer server;
+
+        private final AtomicInteger requests = new AtomicInteger();
+
+        private final CountDownLatch disconnected = new CountDownLatch(1);
+
+        StubServer(long firstTokenDelayMs, int status) throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.createContext("/chat/completions", exchange -> {
+                requests.incrementAndGet();
+                exchange.getRequestBody().readAllBytes();
+                if (status != 200) {
+                    byte[] body = "{\"error\":{\"message\":\"stub failure\"}}".getBytes(StandardCharsets.UTF_8);
+                    exchange.sendResponseHeaders(status, body.length);
+                    exchange.getResponseBody().write(body);
+                    exchange.close();
+                    return;
+                }
+                exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    sleep(firstTokenDelayMs);
+                    for (String token : List.of("hello", " world")) {
+                        write(out, chunk("{\"content\":\"" + token + "\"}", null));
+                    }
+                    write(out, chunk("{}", "\"stop\""));
+                    write(out, "[DONE]");
+                    // 流在连接关闭时才算完成；慢端点多写一会儿，让被取消的一方在写入时感知断开
+                    for (int i = 0; firstTokenDelayMs > 0 && i < 50; i++) {
+                        sleep(20);
+                        out.write(": keep-alive\n\n".getBytes(StandardCharsets.UTF_8));
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    disconnected.countDown();
+                }
+            });
+            server.start();
+        }
+
+        String name() {
+            return "127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        String baseUrl() {
+            return "http://" + name();
+        }
+
+        void stop() {
+            server.stop(0);
+        }
+
+        private static String chunk(String delta, String finishReason) {
+            return "{\"id\":\"stub\",\"object\":\"chat.completion.chunk\",\"created\":0,\"model\":\"stub\","
+                    + "\"choices\":[{\"index\":0,\"delta\":" + delta + ",\"finish_reason\":" + finishReason + "}]}";
+        }
+
+        private static void write(OutputStream out, String data) throws IOException {
+            out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+
+        private static void sleep(long millis) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
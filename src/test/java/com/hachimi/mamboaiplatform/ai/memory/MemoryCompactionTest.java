@@ -0,0 +1,71 @@
+package com.hachimi.mamboaiplatform.ai.memory;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class MemoryCompactionTest {
+
+    @Test
+    void estimatesCjkPerCharacterAndAsciiPerFourCharacters() {
+        Assertions.assertEquals(4, TokenEstimator.estimate("你好世界"));
+        Assertions.assertEquals(2, TokenEstimator.estimate("abcdefgh"));
+        Assertions.assertEquals(0, TokenEstimator.estimate(""));
+    }
+
+    @Test
+    void compactsOlderTurnsAtTurnBoundary() {
+        List<ChatMessage> messages = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            messages.add(UserMessage.from("需求" + i));
+            messages.add(AiMessage.from("```html\n" + "<div></div>\n".repeat(200) + "```"));
+        }
+        MemoryCompaction.Plan plan = MemoryCompaction.plan(messages, 600, 400);
+        Assertions.assertNotNull(plan);
+        // 切分点落在用户消息之前，且至少保留最后一轮
+        int cut = plan.getCompacted().size();
+        Assertions.assertEquals(0, cut % 2);
+        Assertions.assertTrue(cut <= 6);
+        String summary = plan.getSummary().singleText();
+        Assertions.assertTrue(summary.startsWith(MemoryCompaction.SUMMARY_PREFIX));
+        Assertions.assertTrue(summary.contains("用户：需求0"));
+        Assertions.assertTrue(summary.contains("[代码 200 行]"));
+        Assertions.assertFalse(summary.contains("<div>"));
+    }
+
+    @Test
+    void keepsToolResultsWithTheirRequest() {
+        ToolExecutionRequest request = ToolExecutionRequest.builder().id("1").name("writeFile").arguments("{}").build();
+        List<ChatMessage> messages = List.of(
+                UserMessage.from("做一个页面"),
+                AiMessage.from(List.of(request)),
+                ToolExecutionResultMessage.from(request, "x".repeat(4000)),
+                AiMessage.from("完成"),
+                UserMessage.from("改一下颜色"),
+                AiMessage.from("好的"));
+        MemoryCompaction.Plan plan = MemoryCompaction.plan(messages, 100, 200);
+        Assertions.assertNotNull(plan);
+        Assertions.assertEquals(4, plan.getCompacted().size());
+        Assertions.assertTrue(plan.getSummary().singleText().contains("AI 调用工具：writeFile"));
+    }
+
+    @Test
+    void mergesPreviousSummaryAndSkipsWhenNothingToCompact() {
+        UserMessage previous = UserMessage.from(MemoryCompaction.SUMMARY_PREFIX + "用户：最早的需求");
+        List<ChatMessage> messages = List.of(previous, UserMessage.from("新需求"), AiMessage.from("好的"));
+        Assertions.assertNull(MemoryCompaction.plan(messages, 1, 200));
+        List<ChatMessage> longer = List.of(previous, UserMessage.from("第二个需求"), AiMessage.from("好的"),
+                UserMessage.from("第三个需求"), AiMessage.from("好的"));
+        MemoryCompaction.Plan plan = MemoryCompaction.plan(longer, 1, 200);
+        Assertions.assertNotNull(plan);
+        Assertions.assertTrue(plan.getSummary().singleText().contains("用户：最早的需求"));
+        Assertions.assertTrue(plan.getSummary().singleText().contains("用户：第二个需求"));
+    }
+}
@@ -0,0 +1,49 @@
+package com.hachimi.mamboaiplatform.ai.memory;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class MemoryDeltaTest {
+
+    @Test
+    void appendOnly() {
+        MemoryDelta delta = MemoryDelta.between(List.of("a", "b"), List.of("a", "b", "c", "d"));
+        Assertions.assertEquals(0, delta.getTrimHead());
+        Assertions.assertEquals(List.of("c", "d"), delta.getAppended());
+    }
+
+    @Test
+    void windowEvictionTrimsHead() {
+        MemoryDelta delta = MemoryDelta.between(List.of("a", "b", "c"), List.of("b", "c", "d"));
+        Assertions.assertEquals(1, delta.getTrimHead());
+        Assertions.assertEquals(List.of("d"), delta.getAppended());
+    }
+
+    @Test
+    void unchanged() {
+        Assertions.assertTrue(MemoryDelta.between(List.of("a", "b"), List.of("a", "b")).isEmpty());
+    }
+
+    @Test
+    void unrelatedContentIsRewritten() {
+        MemoryDelta delta = MemoryDelta.between(List.of("a", "b"), List.of("x", "y"));
+        Assertions.assertEquals(2, delta.getTrimHead());
+        Assertions.assertEquals(List.of("x", "y"), delta.getAppended());
+    }
+
+    @Test
+    void clearedMemory() {
+        MemoryDelta delta = MemoryDelta.between(List.of("a", "b"), List.of());
+        Assertions.assertEquals(2, delta.getTrimHead());
+        Assertions.assertTrue(delta.getAppended().isEmpty());
+    }
+
+    @Test
+    void repeatedMessagesUseSmallestTrim() {
+        MemoryDelta delta = MemoryDelta.between(List.of("a", "a"), List.of("a", "a", "a"));
+        Assertions.assertEquals(0, delta.getTrimHead());
+        Assertions.assertEquals(List.of("a"), delta.getAppended());
+    }
+}
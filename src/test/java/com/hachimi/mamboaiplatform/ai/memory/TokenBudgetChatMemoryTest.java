@@ -0,0 +1,128 @@
+package com.hachimi.mamboaiplatform.ai.memory;
+
+import com.hachimi.mamboaiplatform.model.enums.CodeGenTypeEnum;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+class TokenBudgetChatMemoryTest {
+
+    private static final ToolExecutionRequest REQUEST_1 =
+            ToolExecutionRequest.builder().id("1").name("writeFile").arguments("{}").build();
+
+    private static final ToolExecutionRequest REQUEST_2 =
+            ToolExecutionRequest.builder().id("2").name("writeFile").arguments("{}").build();
+
+    private final ChatMemoryCompactor compactor = Mockito.mock(ChatMemoryCompactor.class);
+
+    @Test
+    void neverOrphansToolResultsWithoutUserTurn() {
+        TokenBudgetChatMemory memory = memory(new InMemoryChatMemoryStore(), 50, 100);
+        memory.add(SystemMessage.from("系统提示"));
+        memory.add(AiMessage.from(List.of(REQUEST_1, REQUEST_2)));
+        memory.add(ToolExecutionResultMessage.from(REQUEST_1, "x".repeat(400)));
+        memory.add(ToolExecutionResultMessage.from(REQUEST_2, "y".repeat(400)));
+
+        // 没有完整轮次可淘汰时宁可超出预算，也不留下没有工具调用的工具结果
+        List<ChatMessage> messages = memory.messages();
+        Assertions.assertEquals(4, messages.size());
+        Assertions.assertInstanceOf(AiMessage.class, messages.get(1));
+    }
+
+    @Test
+    void evictsWholeCompletedTurnsAndKeepsInFlightTurn() {
+        TokenBudgetChatMemory memory = memory(new InMemoryChatMemoryStore(), 300, 100);
+        memory.add(SystemMessage.from("系统提示"));
+        memory.add(UserMessage.from("做一个博客"));
+        memory.add(AiMessage.from(List.of(REQUEST_1)));
+        memory.add(ToolExecutionResultMessage.from(REQUEST_1, "a".repeat(400)));
+        memory.add(AiMessage.from("完成"));
+        UserMessage current = UserMessage.from("改成深色主题");
+        memory.add(current);
+        memory.add(AiMessage.from(List.of(REQUEST_2)));
+        memory.add(ToolExecutionResultMessage.from(REQUEST_2, "b".repeat(1600)));
+
+        // 上一轮整轮淘汰；进行中的轮次本身超出预算，用户指令仍然保留
+        List<ChatMessage> messages = memory.messages();
+        Assertions.assertEquals(4, messages.size());
+        Assertions.assertInstanceOf(SystemMessage.class, messages.get(0));
+        Assertions.assertSame(current, messages.get(1));
+        Assertions.assertInstanceOf(AiMessage.class, messages.get(2));
+        Assertions.assertInstanceOf(ToolExecutionResultMessage.class, messages.get(3));
+        Mockito.verify(compactor).recordEvicted(CodeGenTypeEnum.VUE_PROJECT, 4);
+    }
+
+    @Test
+    void messageLimitEvictsAtTurnBoundary() {
+        TokenBudgetChatMemory memory = memory(new InMemoryChatMemoryStore(), 100000, 4);
+        for (int i = 0; i < 3; i++) {
+            memory.add(UserMessage.from("需求" + i));
+            memory.add(AiMessage.from(List.of(REQUEST_1)));
+            memory.add(ToolExecutionResultMessage.from(REQUEST_1, "ok"));
+        }
+
+        List<ChatMessage> messages = memory.messages();
+        Assertions.assertEquals(3, messages.size());
+        Assertions.assertEquals("需求2", ((UserMessage) messages.get(0)).singleText());
+    }
+
+    @Test
+    void mutableStoreIsUpdatedInPlace() {
+        RecordingStore store = new RecordingStore();
+        TokenBudgetChatMemory memory = memory(store, 100000, 100);
+        memory.add(UserMessage.from("做一个博客"));
+        memory.add(AiMessage.from("好的"));
+
+        Assertions.assertEquals(0, store.updates);
+        Assertions.assertEquals(2, memory.messages().size());
+    }
+
+    private TokenBudgetChatMemory memory(ChatMemoryStore store, int budgetTokens, int maxMessages) {
+        return new TokenBudgetChatMemory(1L, store, CodeGenTypeEnum.VUE_PROJECT, budgetTokens, 10, maxMessages,
+                compactor);
+    }
+
+    /**
+     * 记录整表替换次数的原地修改存储
+     */
+    private static final class RecordingStore implements MutableChatMemoryStore {
+
+        private final ConcurrentHashMap<Object, List<ChatMessage>> lists = new ConcurrentHashMap<>();
+
+        private int updates;
+
+        @Override
+        public List<ChatMessage> getMessages(Object memoryId) {
+            return new ArrayList<>(lists.getOrDefault(memoryId, List.of()));
+        }
+
+        @Override
+        public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+            updates++;
+            lists.put(memoryId, new ArrayList<>(messages));
+        }
+
+        @Override
+        public void deleteMessages(Object memoryId) {
+            lists.remove(memoryId);
+        }
+
+        @Override
+        public <R> R mutateMessages(Object memoryId, Function<List<ChatMessage>, R> mutator) {
+            return mutator.apply(lists.computeIfAbsent(memoryId, key -> new ArrayList<>()));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.hachimi.mamboaiplatform.ai.routing;
+
+import com.hachimi.mamboaiplatform.model.enums.CodeGenTypeEnum;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class CodeGenTypeClassifierTest {
+
+    private static final double MIN_PROBABILITY = 0.9;
+
+    private static final int MIN_MATCHED_FEATURES = 3;
+
+    @Test
+    void seedKeywordsRouteObviousPromptsWithoutHistory() {
+        CodeGenTypeClassifier classifier = CodeGenTypeClassifier.train(List.of());
+
+        CodeGenTypeClassifier.Prediction vue = classifier.predict("帮我做一个Vue后台管理系统，带登录注册和用户管理");
+        Assertions.assertEquals(CodeGenTypeEnum.VUE_PROJECT, vue.type());
+        Assertions.assertTrue(vue.isConfident(MIN_PROBABILITY, MIN_MATCHED_FEATURES));
+
+        CodeGenTypeClassifier.Prediction html = classifier.predict("做一个个人简历单页");
+        Assertions.assertEquals(CodeGenTypeEnum.HTML, html.type());
+        Assertions.assertTrue(html.isConfident(MIN_PROBABILITY, MIN_MATCHED_FEATURES));
+
+        CodeGenTypeClassifier.Prediction multiFile = classifier.predict("做一个企业官网，分离 CSS 和 JS 文件");
+        Assertions.assertEquals(CodeGenTypeEnum.MULTI_FILE, multiFile.type());
+        Assertions.assertTrue(multiFile.isConfident(MIN_PROBABILITY, MIN_MATCHED_FEATURES));
+    }
+
+    @Test
+    void unrelatedOrShortPromptsAreNotConfident() {
+        CodeGenTypeClassifier classifier = CodeGenTypeClassifier.train(List.of());
+        Assertions.assertFalse(classifier.predict("今天天气怎么样").isConfident(MIN_PROBABILITY, MIN_MATCHED_FEATURES));
+        Assertions.assertFalse(classifier.predict("做一个网页").isConfident(MIN_PROBABILITY, MIN_MATCHED_FEATURES));
+    }
+
+    @Test
+    void historySamplesTeachNewVocabulary() {
+        List<CodeGenTypeClassifier.Sample> samples = List.of(
+                new CodeGenTypeClassifier.Sample("做一个宠物领养平台，支持发布和审核", CodeGenTypeEnum.VUE_PROJECT),
+                new CodeGenTypeClassifier.Sample("宠物领养平台，带审核流程和消息通知", CodeGenTypeEnum.VUE_PROJECT),
+                new CodeGenTypeClassifier.Sample("生日祝福卡片", CodeGenTypeEnum.HTML),
+                new CodeGenTypeClassifier.Sample("生日祝福卡片，粉色背景", CodeGenTypeEnum.HTML));
+        CodeGenTypeClassifier classifier = CodeGenTypeClassifier.train(samples);
+        Assertions.assertEquals(4, classifier.getSampleCount());
+
+        CodeGenTypeClassifier.Prediction prediction = classifier.predict("宠物领养平台");
+        Assertions.assertEquals(CodeGenTypeEnum.VUE_PROJECT, prediction.type());
+        Assertions.assertTrue(prediction.isConfident(MIN_PROBABILITY, MIN_MATCHED_FEATURES));
+        Assertions.assertEquals(CodeGenTypeEnum.HTML, classifier.predict("给妈妈的生日祝福卡片").type());
+    }
+
+    @Test
+    void normalizeFoldsWidthCaseAndWhitespace() {
+        Assertions.assertEquals(CodeGenTypeClassifier.normalize("做一个 VUE  项目"),
+                CodeGenTypeClassifier.normalize("  做一个 ｖｕｅ 项目 "));
+    }
+}
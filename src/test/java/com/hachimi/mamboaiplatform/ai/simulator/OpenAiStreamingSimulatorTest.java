@@ -0,0 +1,213 @@
+package com.hachimi.mamboaiplatform.ai.simulator;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.hachimi.mamboaiplatform.config.OpenAiSimulatorConfig;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ResponseFormat;
+import dev.langchain4j.model.chat.request.ResponseFormatType;
+import dev.langchain4j.model.chat.request.json.JsonArraySchema;
+import dev.langchain4j.model.chat.request.json.JsonObjectSchema;
+import dev.langchain4j.model.chat.request.json.JsonSchema;
+import dev.langchain4j.model.chat.request.json.JsonStringSchema;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.openai.OpenAiChatModel;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+class OpenAiStreamingSimulatorTest {
+
+    private OpenAiStreamingSimulator simulator;
+
+    @AfterEach
+    void tearDown() {
+        if (simulator != null) {
+            simulator.stop();
+        }
+    }
+
+    @Test
+    void streamsTextWithConfiguredPacing() throws Exception {
+        OpenAiSimulatorConfig config = config();
+        config.setResponseText("```html\n<p>hello</p>\n```");
+        config.setFirstTokenDelayMs(200);
+        StreamingChatModel model = start(config);
+
+        long start = System.nanoTime();
+        ChatResponse response = chat(model, List.of(UserMessage.from("做一个页面")), List.of())
+                .get(10, TimeUnit.SECONDS);
+
+        Assertions.assertEquals("```html\n<p>hello</p>\n```", response.aiMessage().text());
+        Assertions.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 200);
+        Assertions.assertNotNull(response.tokenUsage());
+    }
+
+    @Test
+    void followsToolScriptOneCallPerRound() throws Exception {
+        OpenAiSimulatorConfig config = config();
+        config.setToolScript(List.of(
+                new OpenAiSimulatorConfig.ToolCallStep("writeFile",
+                        "{\"relativeFilePath\":\"src/App.vue\",\"content\":\"<template/>\"}"),
+                new OpenAiSimulatorConfig.ToolCallStep("exit", "{}")));
+        StreamingChatModel model = start(config);
+        List<ToolSpecification> tools = List.of(
+                ToolSpecification.builder().name("writeFile").build(),
+                ToolSpecification.builder().name("exit").build());
+        List<ChatMessage> messages = new ArrayList<>(List.of(UserMessage.from("做一个 Vue 工程")));
+
+        for (String expected : List.of("writeFile", "exit")) {
+            AiMessage aiMessage = chat(model, messages, tools).get(10, TimeUnit.SECONDS).aiMessage();
+            Assertions.assertTrue(aiMessage.hasToolExecutionRequests());
+            ToolExecutionRequest toolCall = aiMessage.toolExecutionRequests().get(0);
+            Assertions.assertEquals(expected, toolCall.name());
+            messages.add(aiMessage);
+            messages.add(ToolExecutionResultMessage.from(toolCall, "ok"));
+        }
+        Assertions.assertEquals("{\"relativeFilePath\":\"src/App.vue\",\"content\":\"<template/>\"}",
+                ((AiMessage) messages.get(1)).toolExecutionRequests().get(0).arguments());
+
+        AiMessage last = chat(model, messages, tools).get(10, TimeUnit.SECONDS).aiMessage();
+        Assertions.assertFalse(last.hasToolExecutionRequests());
+        Assertions.assertNotNull(last.text());
+    }
+
+    @Test
+    void injectsErrors() throws Exception {
+        OpenAiSimulatorConfig config = config();
+        config.setErrorRate(1);
+        config.setErrorStatus(429);
+        StreamingChatModel model = start(config);
+
+        CompletableFuture<ChatResponse> future = chat(model, List.of(UserMessage.from("hi")), List.of());
+        Assertions.assertThrows(Exception.class, () -> future.get(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, simulator.getRequestCount());
+    }
+
+    @Test
+    void midStreamFailureSurfacesAsError() throws Exception {
+        OpenAiSimulatorConfig config = config();
+        config.setMidStreamFailureRate(1);
+        StreamingChatModel model = start(config);
+
+        CompletableFuture<ChatResponse> future = chat(model, List.of(UserMessage.from("hi")), List.of());
+        Assertions.assertThrows(Exception.class, () -> future.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void completionFollowsResponseFormatSchema() throws Exception {
+        ChatModel model = startBlocking(config());
+        JsonSchema schema = JsonSchema.builder()
+                .name("QualityResult")
+                .rootElement(JsonObjectSchema.builder()
+                        .addBooleanProperty("isValid")
+                        .addProperty("errors", JsonArraySchema.builder().items(new JsonStringSchema()).build())
+                        .required("isValid", "errors")
+                        .build())
+                .build();
+        ChatRequest request = ChatRequest.builder()
+                .messages(UserMessage.from("检查代码"))
+                .responseFormat(ResponseFormat.builder().type(ResponseFormatType.JSON).jsonSchema(schema).build())
+                .build();
+
+        JSONObject result = JSONUtil.parseObj(model.chat(request).aiMessage().text());
+
+        Assertions.assertTrue(result.getBool("isValid"));
+        Assertions.assertTrue(result.getJSONArray("errors").isEmpty());
+    }
+
+    @Test
+    void completionUsesScriptedReplies() throws Exception {
+        OpenAiSimulatorConfig config = config();
+        config.setCompletionScript(List.of(new OpenAiSimulatorConfig.CompletionReply("代码修复专家",
+                "{\"edits\":[{\"filePath\":\"src/App.vue\",\"oldContent\":\"a\",\"newContent\":\"b\"}]}")));
+        ChatModel model = startBlocking(config);
+
+        // 配置的脚本优先，其余结构化输出服务使用内置回复，路由仍返回固定内容
+        String repair = model.chat(ChatRequest.builder()
+                .messages(SystemMessage.from("你是一个专业的前端代码修复专家。"), UserMessage.from("修复"))
+                .build()).aiMessage().text();
+        String quality = model.chat(ChatRequest.builder()
+                .messages(SystemMessage.from("你是一个专业的代码质量检查专家。"), UserMessage.from("检查"))
+                .build()).aiMessage().text();
+        String routing = model.chat(ChatRequest.builder().messages(UserMessage.from("做一个页面")).build())
+                .aiMessage().text();
+
+        Assertions.assertEquals("src/App.vue",
+                JSONUtil.parseObj(repair).getJSONArray("edits").getJSONObject(0).getStr("filePath"));
+        Assertions.assertTrue(JSONUtil.parseObj(quality).getBool("isValid"));
+        Assertions.assertEquals("HTML", routing);
+    }
+
+    private static OpenAiSimulatorConfig config() {
+        OpenAiSimulatorConfig config = new OpenAiSimulatorConfig();
+        config.setPort(0);
+        config.setFirstTokenDelayMs(0);
+        config.setTokensPerSecond(0);
+        return config;
+    }
+
+    private StreamingChatModel start(OpenAiSimulatorConfig config) throws Exception {
+        simulator = new OpenAiStreamingSimulator(config);
+        simulator.start();
+        return OpenAiStreamingChatModel.builder()
+                .baseUrl(simulator.getBaseUrl())
+                .apiKey("simulator")
+                .modelName("simulator")
+                .timeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    private ChatModel startBlocking(OpenAiSimulatorConfig config) throws Exception {
+        simulator = new OpenAiStreamingSimulator(config);
+        simulator.start();
+        return OpenAiChatModel.builder()
+                .baseUrl(simulator.getBaseUrl())
+                .apiKey("simulator")
+                .modelName("simulator")
+                .timeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    private static CompletableFuture<ChatResponse> chat(StreamingChatModel model, List<ChatMessage> messages,
+                                                        List<ToolSpecification> tools) {
+        CompletableFuture<ChatResponse> future = new CompletableFuture<>();
+        ChatRequest.Builder request = ChatRequest.builder().messages(messages);
+        if (!tools.isEmpty()) {
+            request.toolSpecifications(tools);
+        }
+        model.chat(request.build(), new StreamingChatResponseHandler() {
+            @Override
+            public void onPartialResponse(String partialResponse) {
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                future.complete(completeResponse);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                future.completeExceptionally(error);
+            }
+        });
+        return future;
+    }
+}
@@ -1,5 +1,6 @@
 package com.hachimi.mamboaiplatform.core;
 
+import com.hachimi.mamboaiplatform.ai.model.message.StreamMessage;
 import com.hachimi.mamboaiplatform.model.enums.CodeGenTypeEnum;
 import jakarta.annotation.Resource;
 import org.junit.jupiter.api.Assertions;
@@ -25,26 +26,24 @@ class AiCodeGeneratorFacadeTest {
 
     @Test
     void generateAndSaveCodeStream() {
-        Flux<String> codeStream = aiCodeGeneratorFacade.generateCodeAndSaveStream("帮我生成一个任务记录网站，使用不超过30行代码完成", CodeGenTypeEnum.MULTI_FILE,2L);
+        Flux<StreamMessage> codeStream = aiCodeGeneratorFacade.generateCodeAndSaveStream("帮我生成一个任务记录网站，使用不超过30行代码完成", CodeGenTypeEnum.MULTI_FILE,2L);
         // 阻塞等待所有数据收集完成
-        List<String> result = codeStream.collectList().block();
+        List<StreamMessage> result = codeStream.collectList().block();
         // 验证结果
         Assertions.assertNotNull(result);
-        String completeContent = String.join("", result);
-        Assertions.assertNotNull(completeContent);
+        Assertions.assertFalse(result.isEmpty());
     }
 
     @Test
     void generateVueProjectCodeStream() {
-        Flux<String> codeStream = aiCodeGeneratorFacade.generateCodeAndSaveStream(
+        Flux<StreamMessage> codeStream = aiCodeGeneratorFacade.generateCodeAndSaveStream(
                 "简单的任务记录网站，总代码量不超过 200 行",
                 CodeGenTypeEnum.VUE_PROJECT, 1919810L);
         // 阻塞等待所有数据收集完成
-        List<String> result = codeStream.collectList().block();
+        List<StreamMessage> result = codeStream.collectList().block();
         // 验证结果
         Assertions.assertNotNull(result);
-        String completeContent = String.join("", result);
-        Assertions.assertNotNull(completeContent);
+        Assertions.assertFalse(result.isEmpty());
     }
 
 
@@ -0,0 +1,79 @@
+package com.hachimi.mamboaiplatform.core.admission;
+
+import com.hachimi.mamboaiplatform.config.GenerationAdmissionConfig;
+import com.hachimi.mamboaiplatform.exception.BusinessException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class GenerationSchedulerTest {
+
+    private static final String MODEL = "test-model";
+
+    private GenerationScheduler newScheduler(int concurrency, int perUser) {
+        GenerationAdmissionConfig config = new GenerationAdmissionConfig();
+        config.setDefaultModelConcurrency(concurrency);
+        config.setMaxConcurrentPerUser(perUser);
+        config.setMaxQueueLength(10);
+        config.setVipBurst(2);
+        return new GenerationScheduler(config);
+    }
+
+    @Test
+    void usersAreServedFairly() {
+        GenerationScheduler scheduler = newScheduler(1, 5);
+        GenerationScheduler.Ticket a1 = scheduler.enqueue(MODEL, 1L, false, null).getTicket();
+        GenerationScheduler.Ticket a2 = scheduler.enqueue(MODEL, 1L, false, null).getTicket();
+        GenerationScheduler.Ticket a3 = scheduler.enqueue(MODEL, 1L, false, null).getTicket();
+        GenerationScheduler.Ticket b1 = scheduler.enqueue(MODEL, 2L, false, null).getTicket();
+        Assertions.assertEquals(GenerationScheduler.TicketState.GRANTED, a1.getState());
+        // 用户 2 后到，但用户 1 已占用过一次，用户 2 排在用户 1 的后续请求之前
+        Assertions.assertEquals(List.of(b1), scheduler.release(a1).getGranted());
+        Assertions.assertEquals(List.of(a2), scheduler.release(b1).getGranted());
+        Assertions.assertEquals(List.of(a3), scheduler.release(a2).getGranted());
+    }
+
+    @Test
+    void vipLaneHasPriorityWithoutStarvingStandardLane() {
+        GenerationScheduler scheduler = newScheduler(1, 5);
+        GenerationScheduler.Ticket running = scheduler.enqueue(MODEL, 1L, false, null).getTicket();
+        GenerationScheduler.Ticket standard = scheduler.enqueue(MODEL, 2L, false, null).getTicket();
+        GenerationScheduler.Ticket vip1 = scheduler.enqueue(MODEL, 3L, true, null).getTicket();
+        GenerationScheduler.Ticket vip2 = scheduler.enqueue(MODEL, 4L, true, null).getTicket();
+        GenerationScheduler.Ticket vip3 = scheduler.enqueue(MODEL, 5L, true, null).getTicket();
+        Assertions.assertEquals(1, vip1.getPosition());
+        Assertions.assertEquals(4, standard.getPosition());
+        Assertions.assertEquals(List.of(vip1), scheduler.release(running).getGranted());
+        Assertions.assertEquals(List.of(vip2), scheduler.release(vip1).getGranted());
+        // 连续放行 vipBurst 个 VIP 请求后轮到普通通道
+        Assertions.assertEquals(List.of(standard), scheduler.release(vip2).getGranted());
+        Assertions.assertEquals(List.of(vip3), scheduler.release(standard).getGranted());
+    }
+
+    @Test
+    void perUserCapHoldsBackOnlyThatUser() {
+        GenerationScheduler scheduler = newScheduler(3, 1);
+        GenerationScheduler.Ticket a1 = scheduler.enqueue(MODEL, 1L, false, null).getTicket();
+        GenerationScheduler.Ticket a2 = scheduler.enqueue(MODEL, 1L, false, null).getTicket();
+        GenerationScheduler.Ticket b1 = scheduler.enqueue(MODEL, 2L, false, null).getTicket();
+        Assertions.assertEquals(GenerationScheduler.TicketState.GRANTED, a1.getState());
+        Assertions.assertEquals(GenerationScheduler.TicketState.WAITING, a2.getState());
+        Assertions.assertEquals(GenerationScheduler.TicketState.GRANTED, b1.getState());
+        Assertions.assertEquals(List.of(a2), scheduler.release(a1).getGranted());
+    }
+
+    @Test
+    void releasingWaitingTicketRemovesItAndRejectsWhenFull() {
+        GenerationScheduler scheduler = newScheduler(1, 5);
+        scheduler.enqueue(MODEL, 1L, false, null);
+        GenerationScheduler.Ticket waiting = scheduler.enqueue(MODEL, 2L, false, null).getTicket();
+        Assertions.assertNotNull(scheduler.expire(waiting));
+        Assertions.assertEquals(0, scheduler.queuedCount(MODEL));
+        Assertions.assertNull(scheduler.expire(waiting));
+        for (int i = 0; i < 10; i++) {
+            scheduler.enqueue(MODEL, 10L + i, false, null);
+        }
+        Assertions.assertThrows(BusinessException.class, () -> scheduler.enqueue(MODEL, 99L, false, null));
+    }
+}
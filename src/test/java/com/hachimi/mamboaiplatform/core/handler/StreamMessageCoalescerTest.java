@@ -0,0 +1,193 @@
+package com.hachimi.mamboaiplatform.core.handler;
+
+import com.hachimi.mamboaiplatform.ai.model.message.AiResponseMessage;
+import com.hachimi.mamboaiplatform.ai.model.message.StreamMessage;
+import com.hachimi.mamboaiplatform.config.GenerationReplayConfig;
+import com.hachimi.mamboaiplatform.config.StreamCoalesceConfig;
+import com.hachimi.mamboaiplatform.core.GenerationSessionRegistry;
+import com.hachimi.mamboaiplatform.core.stream.GenerationReplayLog;
+import com.hachimi.mamboaiplatform.core.stream.ReplayEvent;
+import com.hachimi.mamboaiplatform.monitor.SseStreamMetricsCollector;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Exceptions;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import org.reactivestreams.Subscription;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+class StreamMessageCoalescerTest {
+
+    @Test
+    void slowSubscriberHitsFrameCap() throws Exception {
+        StreamCoalesceConfig config = new StreamCoalesceConfig();
+        config.setMaxBufferedFrames(8);
+        StreamMessageCoalescer coalescer = new StreamMessageCoalescer(config, metricsCollector());
+        // 非文本消息不合并，每条成帧；订阅者只请求 1 条后不再消费
+        Flux<StreamMessage> source = Flux.range(0, 100).map(i -> new StreamMessage("tool_executed"));
+
+        SlowSubscriber<StreamMessage> subscriber = new SlowSubscriber<>();
+        coalescer.coalesce(source).subscribe(subscriber);
+
+        Assertions.assertTrue(subscriber.terminated.await(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(Exceptions.isOverflow(subscriber.error.get()), String.valueOf(subscriber.error.get()));
+        Assertions.assertEquals(1, subscriber.received.size());
+    }
+
+    @Test
+    void slowSubscriberHitsPendingTextCap() throws Exception {
+        StreamCoalesceConfig config = new StreamCoalesceConfig();
+        config.setMaxPendingBytes(1024);
+        StreamMessageCoalescer coalescer = new StreamMessageCoalescer(config, metricsCollector());
+        Flux<StreamMessage> source = Flux.range(0, 100).map(i -> new AiResponseMessage("x".repeat(100)));
+
+        SlowSubscriber<StreamMessage> subscriber = new SlowSubscriber<>();
+        coalescer.coalesce(source).subscribe(subscriber);
+
+        Assertions.assertTrue(subscriber.terminated.await(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(Exceptions.isOverflow(subscriber.error.get()), String.valueOf(subscriber.error.get()));
+    }
+
+    @Test
+    void disabledPathBoundsBufferPerSubscription() throws Exception {
+        StreamCoalesceConfig config = new StreamCoalesceConfig();
+        config.setEnabled(false);
+        config.setMaxBufferedFrames(8);
+        StreamMessageCoalescer coalescer = new StreamMessageCoalescer(config, metricsCollector());
+        Flux<StreamMessage> coalesced = coalescer.coalesce(Flux.range(0, 100).map(i -> new AiResponseMessage("x")));
+
+        SlowSubscriber<StreamMessage> subscriber = new SlowSubscriber<>();
+        coalesced.subscribe(subscriber);
+        List<StreamMessage> all = coalesced.collectList().block(Duration.ofSeconds(5));
+
+        Assertions.assertTrue(subscriber.terminated.await(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(Exceptions.isOverflow(subscriber.error.get()));
+        Assertions.assertEquals(100, all.size());
+    }
+
+    @Test
+    void fastSubscriberReceivesEverythingInOrder() {
+        StreamMessageCoalescer coalescer = new StreamMessageCoalescer(new StreamCoalesceConfig(), metricsCollector());
+        Flux<StreamMessage> source = Flux.just(new AiResponseMessage("a"), new AiResponseMessage("b"),
+                new StreamMessage("tool_executed"), new AiResponseMessage("c"));
+
+        List<StreamMessage> frames = coalescer.coalesce(source).collectList().block(Duration.ofSeconds(5));
+
+        StringBuilder text = new StringBuilder();
+        frames.stream().filter(AiResponseMessage.class::isInstance)
+                .forEach(message -> text.append(((AiResponseMessage) message).getData()));
+        Assertions.assertEquals("abc", text.toString());
+        Assertions.assertEquals("tool_executed", frames.get(frames.size() - 2).getType());
+    }
+
+    @Test
+    void slowConnectionAfterReplayLogReceivesMergedFramesWithLastSeq() throws Exception {
+        StreamMessageCoalescer coalescer = new StreamMessageCoalescer(new StreamCoalesceConfig(), metricsCollector());
+        StreamMessageJsonWriter writer = new StreamMessageJsonWriter();
+        CountDownLatch generated = new CountDownLatch(1);
+        Flux<ReplayEvent> frames = Flux.range(0, 50)
+                .delayElements(Duration.ofMillis(1))
+                .map(i -> writer.writeFrame(new AiResponseMessage("x")))
+                .doOnComplete(generated::countDown);
+        GenerationSessionRegistry.setSession(11L, "s11");
+
+        // 回放日志以无界需求消费上游，连接只请求一帧后阻塞，文本应暂存在该连接的合并器中
+        SlowSubscriber<ReplayEvent> subscriber = new SlowSubscriber<>();
+        coalescer.coalesceFrames(replayLog().joinOrPublish(11L, "做一个博客", () -> frames, () -> {
+        })).subscribe(subscriber);
+        Assertions.assertTrue(generated.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, subscriber.received.size());
+        subscriber.request(Long.MAX_VALUE);
+        Assertions.assertTrue(subscriber.terminated.await(5, TimeUnit.SECONDS));
+        GenerationSessionRegistry.clearSession(11L);
+
+        Assertions.assertNull(subscriber.error.get());
+        List<ReplayEvent> received = subscriber.received;
+        ReplayEvent done = received.get(received.size() - 1);
+        Assertions.assertEquals(GenerationReplayLog.DONE_EVENT, done.getEvent());
+        Assertions.assertEquals("s11-51", done.getEventId());
+        // 合并帧沿用最后一个原始帧的序号，Last-Event-ID 续传不会重复或遗漏
+        ReplayEvent lastText = received.get(received.size() - 2);
+        Assertions.assertEquals(50, lastText.getSeq());
+        Assertions.assertTrue(received.size() < 10, "frames=" + received.size());
+        String text = received.stream().filter(event -> event.getEvent() == null)
+                .map(event -> event.getData().substring(6, event.getData().length() - 2))
+                .reduce("", String::concat);
+        Assertions.assertEquals("x".repeat(50), text);
+    }
+
+    @Test
+    void slowConnectionAfterReplayLogHitsFrameCap() throws Exception {
+        StreamCoalesceConfig config = new StreamCoalesceConfig();
+        config.setMaxBufferedFrames(8);
+        StreamMessageCoalescer coalescer = new StreamMessageCoalescer(config, metricsCollector());
+        // 事件帧不参与合并，每条都占用连接的暂存
+        Flux<ReplayEvent> frames = Flux.range(0, 100)
+                .delayElements(Duration.ofMillis(1))
+                .map(i -> new ReplayEvent(null, 0, GenerationReplayLog.FILE_CLOSED_EVENT, "{\"i\":" + i + "}"));
+
+        SlowSubscriber<ReplayEvent> subscriber = new SlowSubscriber<>();
+        coalescer.coalesceFrames(replayLog().joinOrPublish(12L, "做一个博客", () -> frames, () -> {
+        })).subscribe(subscriber);
+
+        Assertions.assertTrue(subscriber.terminated.await(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(Exceptions.isOverflow(subscriber.error.get()), String.valueOf(subscriber.error.get()));
+        Assertions.assertEquals(1, subscriber.received.size());
+    }
+
+    private static GenerationReplayLog replayLog() {
+        GenerationReplayConfig config = new GenerationReplayConfig();
+        config.setRedisEnabled(false);
+        GenerationReplayLog replayLog = new GenerationReplayLog();
+        ReflectionTestUtils.setField(replayLog, "generationReplayConfig", config);
+        return replayLog;
+    }
+
+    private static SseStreamMetricsCollector metricsCollector() {
+        SseStreamMetricsCollector collector = new SseStreamMetricsCollector();
+        ReflectionTestUtils.setField(collector, "meterRegistry", new SimpleMeterRegistry());
+        collector.init();
+        return collector;
+    }
+
+    /**
+     * 只请求一条消息后不再消费，模拟客户端 socket 阻塞
+     */
+    private static final class SlowSubscriber<T> extends BaseSubscriber<T> {
+
+        private final List<T> received = new CopyOnWriteArrayList<>();
+
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        private final CountDownLatch terminated = new CountDownLatch(1);
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            subscription.request(1);
+        }
+
+        @Override
+        protected void hookOnNext(T value) {
+            received.add(value);
+        }
+
+        @Override
+        protected void hookOnError(Throwable throwable) {
+            error.set(throwable);
+            terminated.countDown();
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            terminated.countDown();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.hachimi.mamboaiplatform.core.handler;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.hachimi.mamboaiplatform.ai.model.message.AiResponseMessage;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class StreamMessageJsonWriterTest {
+
+    private final StreamMessageJsonWriter writer = new StreamMessageJsonWriter();
+
+    @Test
+    void writeDisplayFrameRoundTrip() {
+        String text = "  前导空格\n\"引号\" \\ 反斜杠\t制表\u0001控制 ";
+        String json = writer.write(new AiResponseMessage(text));
+        JSONObject parsed = JSONUtil.parseObj(json);
+        Assertions.assertEquals(text, parsed.getStr("d"));
+    }
+
+    @Test
+    void writeDisplayFrameMatchesLegacyFormat() {
+        Assertions.assertEquals("{\"d\":\"hello\"}", writer.writeDisplayFrame("hello"));
+        Assertions.assertEquals("{\"d\":\"\"}", writer.writeDisplayFrame(""));
+    }
+}
@@ -0,0 +1,116 @@
+package com.hachimi.mamboaiplatform.core.parser;
+
+import com.hachimi.mamboaiplatform.ai.model.MultiFileCodeResult;
+import com.hachimi.mamboaiplatform.model.enums.CodeGenTypeEnum;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+class StreamingCodeBlockParserTest {
+
+    private static final String MULTI_FILE_RESPONSE = """
+            先说明一下：
+            ```html
+            <!DOCTYPE html>
+            <html><body><code>`a` ``b``</code></body></html>
+            ```
+            ```json
+            {"ignored": true}
+            ```
+            ```css
+            h1 { color: blue; }
+            ```
+            ```javascript
+            console.log('hi');
+            ```
+            ```js
+            console.log('second block ignored');
+            ```
+            结束
+            """;
+
+    @Test
+    void multiFileMatchesRegexParserForAnyChunking() {
+        MultiFileCodeResult expected = new MultiFileCodeParser().parseCode(MULTI_FILE_RESPONSE);
+        for (int chunkSize : new int[]{1, 2, 3, 7, MULTI_FILE_RESPONSE.length()}) {
+            RecordingListener listener = new RecordingListener();
+            StreamingCodeBlockParser parser = new StreamingCodeBlockParser(CodeGenTypeEnum.MULTI_FILE, listener);
+            for (int i = 0; i < MULTI_FILE_RESPONSE.length(); i += chunkSize) {
+                parser.feed(MULTI_FILE_RESPONSE.substring(i, Math.min(i + chunkSize, MULTI_FILE_RESPONSE.length())));
+            }
+            parser.finish();
+            Assertions.assertEquals(expected.getHtmlCode(), listener.files.get("index.html"));
+            Assertions.assertEquals(expected.getCssCode(), listener.files.get("style.css"));
+            Assertions.assertEquals(expected.getJsCode(), listener.files.get("script.js"));
+            Assertions.assertEquals(List.of("index.html", "style.css", "script.js"), listener.closed);
+        }
+    }
+
+    @Test
+    void blockClosedBeforeResponseEnds() {
+        RecordingListener listener = new RecordingListener();
+        StreamingCodeBlockParser parser = new StreamingCodeBlockParser(CodeGenTypeEnum.MULTI_FILE, listener);
+        parser.feed("```css\nbody{}\n``");
+        Assertions.assertTrue(listener.closed.isEmpty());
+        parser.feed("`\n还有后续描述");
+        Assertions.assertEquals(List.of("style.css"), listener.closed);
+        Assertions.assertEquals("body{}", listener.files.get("style.css"));
+    }
+
+    @Test
+    void htmlWithoutFenceFallsBackToWholeResponse() {
+        RecordingListener listener = new RecordingListener();
+        StreamingCodeBlockParser parser = new StreamingCodeBlockParser(CodeGenTypeEnum.HTML, listener);
+        parser.feed("  <html><body>hi</body>");
+        parser.feed("</html>\n");
+        parser.finish();
+        Assertions.assertEquals("<html><body>hi</body></html>", listener.files.get("index.html"));
+    }
+
+    @Test
+    void emptyHtmlFenceFallsBackToWholeResponse() {
+        String response = "说明\n```html\n  \n```\n<p>hi</p>\n";
+        RecordingListener listener = new RecordingListener();
+        StreamingCodeBlockParser parser = new StreamingCodeBlockParser(CodeGenTypeEnum.HTML, listener);
+        parser.feed(response);
+        parser.finish();
+        Assertions.assertEquals(new HtmlCodeParser().parseCode(response).getHtmlCode(), listener.files.get("index.html"));
+        Assertions.assertEquals(response.trim(), listener.files.get("index.html"));
+    }
+
+    @Test
+    void unterminatedBlockIsCommittedOnFinish() {
+        RecordingListener listener = new RecordingListener();
+        StreamingCodeBlockParser parser = new StreamingCodeBlockParser(CodeGenTypeEnum.HTML, listener);
+        parser.feed("```html\n<p>truncated</p>\n`");
+        parser.finish();
+        Assertions.assertEquals("<p>truncated</p>\n`", listener.files.get("index.html"));
+        Assertions.assertEquals(List.of("index.html"), listener.closed);
+    }
+
+    private static class RecordingListener implements CodeBlockListener {
+
+        private final Map<String, String> files = new LinkedHashMap<>();
+
+        private final List<String> closed = new ArrayList<>();
+
+        @Override
+        public void onBlockOpen(String fileName) {
+            files.put(fileName, "");
+        }
+
+        @Override
+        public void onBlockContent(String fileName, CharSequence content) {
+            files.merge(fileName, content.toString(), String::concat);
+        }
+
+        @Override
+        public void onBlockClose(String fileName) {
+            closed.add(fileName);
+        }
+    }
+}
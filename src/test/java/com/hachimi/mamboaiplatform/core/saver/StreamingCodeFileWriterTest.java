@@ -0,0 +1,52 @@
+package com.hachimi.mamboaiplatform.core.saver;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+class StreamingCodeFileWriterTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void abortRestoresFilesWrittenBeforeCancel() throws IOException {
+        Files.writeString(root.resolve("index.html"), "<p>old</p>", StandardCharsets.UTF_8);
+        StreamingCodeFileWriter writer = new StreamingCodeFileWriter(root.toFile());
+
+        write(writer, "index.html", "<p>new</p>");
+        write(writer, "style.css", "p { color: red; }");
+        writer.onBlockOpen("script.js");
+        writer.onBlockContent("script.js", "console.log(");
+        writer.abort();
+
+        Assertions.assertEquals("<p>old</p>", Files.readString(root.resolve("index.html"), StandardCharsets.UTF_8));
+        Assertions.assertFalse(Files.exists(root.resolve("style.css")));
+        Assertions.assertFalse(Files.exists(root.resolve("script.js")));
+        Assertions.assertFalse(Files.exists(root.resolve("script.js.part")));
+    }
+
+    @Test
+    void commitKeepsNewFiles() throws IOException {
+        Files.writeString(root.resolve("index.html"), "<p>old</p>", StandardCharsets.UTF_8);
+        StreamingCodeFileWriter writer = new StreamingCodeFileWriter(root.toFile());
+
+        write(writer, "index.html", "<p>new</p>");
+        writer.commit();
+        writer.abort();
+
+        Assertions.assertEquals("<p>new</p>", Files.readString(root.resolve("index.html"), StandardCharsets.UTF_8));
+        Assertions.assertEquals(1, writer.drainClosedFiles().size());
+    }
+
+    private static void write(StreamingCodeFileWriter writer, String fileName, String content) {
+        writer.onBlockOpen(fileName);
+        writer.onBlockContent(fileName, content);
+        writer.onBlockClose(fileName);
+    }
+}
@@ -0,0 +1,257 @@
+package com.hachimi.mamboaiplatform.core.stream;
+
+import com.hachimi.mamboaiplatform.config.GenerationReplayConfig;
+import com.hachimi.mamboaiplatform.core.GenerationSessionRegistry;
+import com.hachimi.mamboaiplatform.exception.BusinessException;
+import com.hachimi.mamboaiplatform.exception.ErrorCode;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.Record;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.reactivestreams.Subscription;
+import reactor.core.Disposable;
+import reactor.core.Exceptions;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+
+class GenerationReplayLogTest {
+
+    private static final String STREAM_KEY = "app:generation:replay:1:s1";
+
+    private final StringRedisTemplate stringRedisTemplate = Mockito.mock(StringRedisTemplate.class);
+
+    @SuppressWarnings("unchecked")
+    private final StreamOperations<String, Object, Object> streamOperations = Mockito.mock(StreamOperations.class);
+
+    private final GenerationReplayConfig config = new GenerationReplayConfig();
+
+    private GenerationReplayLog replayLog;
+
+    @BeforeEach
+    void setUp() {
+        config.setTailPollMs(10);
+        config.setTailIdleTimeoutSeconds(5);
+        replayLog = new GenerationReplayLog();
+        ReflectionTestUtils.setField(replayLog, "generationReplayConfig", config);
+        ReflectionTestUtils.setField(replayLog, "stringRedisTemplate", stringRedisTemplate);
+        Mockito.when(stringRedisTemplate.hasKey(STREAM_KEY)).thenReturn(true);
+        Mockito.when(stringRedisTemplate.<Object, Object>opsForStream()).thenReturn(streamOperations);
+        // 流水线回调直接在模板上执行
+        Mockito.when(stringRedisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> {
+            invocation.<SessionCallback<?>>getArgument(0).execute(stringRedisTemplate);
+            return List.of();
+        });
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void crossNodeResumeDeliversErrorFollowedByDone() {
+        Mockito.when(streamOperations.range(anyString(), any(Range.class)))
+                .thenReturn(List.of(
+                        record("1-0", 1, null, "{\"d\":\"a\"}"),
+                        record("2-0", 2, GenerationReplayLog.ERROR_EVENT, "{\"error\":true}")))
+                .thenReturn(List.of())
+                .thenReturn(List.of(record("3-0", 3, GenerationReplayLog.DONE_EVENT, "{}")))
+                .thenReturn(List.of());
+
+        List<ReplayEvent> events = replayLog.resume(1L, "s1-0").collectList().block(Duration.ofSeconds(5));
+
+        Assertions.assertNotNull(events);
+        Assertions.assertEquals(List.of(1L, 2L, 3L), events.stream().map(ReplayEvent::getSeq).toList());
+        Assertions.assertEquals(GenerationReplayLog.ERROR_EVENT, events.get(1).getEvent());
+        Assertions.assertEquals(GenerationReplayLog.DONE_EVENT, events.get(2).getEvent());
+        Assertions.assertEquals("s1-3", events.get(2).getEventId());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void crossNodeResumeSkipsEventsAlreadyReceived() {
+        Mockito.when(streamOperations.range(anyString(), any(Range.class)))
+                .thenReturn(List.of(
+                        record("1-0", 1, null, "{\"d\":\"a\"}"),
+                        record("2-0", 2, null, "{\"d\":\"b\"}"),
+                        record("3-0", 3, GenerationReplayLog.DONE_EVENT, "{}")));
+
+        List<ReplayEvent> events = replayLog.resume(1L, "s1-1").collectList().block(Duration.ofSeconds(5));
+
+        Assertions.assertNotNull(events);
+        Assertions.assertEquals(List.of(2L, 3L), events.stream().map(ReplayEvent::getSeq).toList());
+    }
+
+    @Test
+    void joinWithDifferentPromptIsRejected() {
+        AtomicInteger starts = new AtomicInteger();
+        Supplier<Flux<ReplayEvent>> starter = () -> {
+            starts.incrementAndGet();
+            return Flux.never();
+        };
+
+        replayLog.joinOrPublish(2L, "做一个博客", starter, () -> {
+        });
+        Flux<ReplayEvent> joined = replayLog.joinOrPublish(2L, "做一个博客", starter, () -> {
+        });
+        BusinessException exception = Assertions.assertThrows(BusinessException.class,
+                () -> replayLog.joinOrPublish(2L, "做一个商城", starter, () -> {
+                }));
+
+        Assertions.assertNotNull(joined);
+        Assertions.assertEquals(1, starts.get());
+        Assertions.assertEquals(ErrorCode.OPERATION_ERROR.getCode(), exception.getCode());
+    }
+
+    @Test
+    void failedStartReleasesTheSlot() {
+        Assertions.assertThrows(BusinessException.class, () -> replayLog.joinOrPublish(3L, "做一个博客", () -> {
+            throw new BusinessException(ErrorCode.NO_AUTH_ERROR);
+        }, () -> {
+        }));
+
+        AtomicInteger starts = new AtomicInteger();
+        replayLog.joinOrPublish(3L, "做一个博客", () -> {
+            starts.incrementAndGet();
+            return Flux.never();
+        }, () -> {
+        });
+
+        Assertions.assertEquals(1, starts.get());
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void idleTeardownAppendsDoneToRedis() {
+        config.setIdleTeardownSeconds(0);
+        GenerationSessionRegistry.setSession(4L, "s4");
+
+        replayLog.joinOrPublish(4L, "做一个博客", Flux::never, () -> {
+        }).subscribe().dispose();
+
+        ArgumentCaptor<Record<String, ?>> captor = ArgumentCaptor.forClass((Class) Record.class);
+        Mockito.verify(streamOperations, Mockito.timeout(2000)).add(captor.capture());
+        MapRecord<?, ?, ?> appended = (MapRecord<?, ?, ?>) captor.getValue();
+        Assertions.assertEquals("app:generation:replay:4:s4", appended.getStream());
+        Assertions.assertEquals(GenerationReplayLog.DONE_EVENT, appended.getValue().get("event"));
+        GenerationSessionRegistry.clearSession(4L);
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void slowRedisDoesNotDelayLiveSubscribers() throws Exception {
+        GenerationSessionRegistry.setSession(8L, "s8");
+        CountDownLatch redisBlocked = new CountDownLatch(1);
+        Mockito.when(streamOperations.add(any(Record.class))).thenAnswer(invocation -> {
+            redisBlocked.await(5, TimeUnit.SECONDS);
+            return null;
+        });
+        Flux<ReplayEvent> frames = Flux.range(0, 10).map(i -> new ReplayEvent(null, 0, null, "{\"d\":" + i + "}"));
+
+        List<ReplayEvent> events = replayLog.joinOrPublish(8L, "做一个博客", () -> frames, () -> {
+        }).collectList().block(Duration.ofSeconds(1));
+        redisBlocked.countDown();
+
+        // Redis 写入阻塞时实时订阅者仍收到全部事件，写入随后按序完成
+        Assertions.assertNotNull(events);
+        Assertions.assertEquals(11, events.size());
+        ArgumentCaptor<Record<String, ?>> captor = ArgumentCaptor.forClass((Class) Record.class);
+        Mockito.verify(streamOperations, Mockito.timeout(2000).times(11)).add(captor.capture());
+        Assertions.assertEquals(List.of("1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11"),
+                captor.getAllValues().stream().map(record -> ((MapRecord<?, ?, ?>) record).getValue().get("seq")).toList());
+        GenerationSessionRegistry.clearSession(8L);
+    }
+
+    @Test
+    void leavingBeforeAnyEventCancelsUpstreamImmediately() throws Exception {
+        CountDownLatch upstreamCancelled = new CountDownLatch(1);
+
+        replayLog.joinOrPublish(5L, "做一个博客", () -> Flux.<ReplayEvent>never().doOnCancel(upstreamCancelled::countDown),
+                () -> {
+                }).subscribe().dispose();
+
+        // 默认宽限期 30 秒，没有可续传的事件 ID 时不等待
+        Assertions.assertTrue(upstreamCancelled.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void leavingAfterEventsKeepsGracePeriodForResume() throws Exception {
+        AtomicBoolean upstreamCancelled = new AtomicBoolean();
+        CountDownLatch received = new CountDownLatch(1);
+        Flux<ReplayEvent> frames = Flux.just(new ReplayEvent(null, 0, null, "{}"))
+                .concatWith(Flux.never())
+                .doOnCancel(() -> upstreamCancelled.set(true));
+
+        Disposable connection = replayLog.joinOrPublish(6L, "做一个博客", () -> frames, () -> {
+        }).subscribe(event -> received.countDown());
+        Assertions.assertTrue(received.await(2, TimeUnit.SECONDS));
+        connection.dispose();
+        Thread.sleep(300);
+
+        Assertions.assertFalse(upstreamCancelled.get());
+    }
+
+    @Test
+    void slowConnectionHitsBufferCap() throws Exception {
+        config.setMaxConnectionBufferedEvents(8);
+        Flux<ReplayEvent> frames = Flux.range(0, 100).map(i -> new ReplayEvent(null, 0, null, "{\"d\":" + i + "}"));
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        CountDownLatch terminated = new CountDownLatch(1);
+        List<ReplayEvent> received = new CopyOnWriteArrayList<>();
+
+        // 只请求一条事件后不再消费，模拟客户端 socket 阻塞
+        replayLog.joinOrPublish(7L, "做一个博客", () -> frames, () -> {
+        }).subscribe(new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                subscription.request(1);
+            }
+
+            @Override
+            protected void hookOnNext(ReplayEvent value) {
+                received.add(value);
+            }
+
+            @Override
+            protected void hookOnError(Throwable throwable) {
+                error.set(throwable);
+                terminated.countDown();
+            }
+        });
+
+        Assertions.assertTrue(terminated.await(2, TimeUnit.SECONDS));
+        Assertions.assertTrue(Exceptions.isOverflow(error.get()), String.valueOf(error.get()));
+        Assertions.assertEquals(1, received.size());
+    }
+
+    private static MapRecord<String, Object, Object> record(String id, long seq, String event, String data) {
+        Map<Object, Object> fields = new HashMap<>();
+        fields.put("seq", String.valueOf(seq));
+        if (event != null) {
+            fields.put("event", event);
+        }
+        fields.put("data", data);
+        return StreamRecords.<String, Object, Object>mapBacked(fields).withStreamKey(STREAM_KEY).withId(RecordId.of(id));
+    }
+}
@@ -0,0 +1,82 @@
+package com.hachimi.mamboaiplatform.core.stream;
+
+import cn.hutool.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+class JsonStringFieldDecoderTest {
+
+    @Test
+    void decodesStringFieldsForAnyFragmentation() {
+        JSONObject arguments = new JSONObject();
+        arguments.set("relativeFilePath", "src/App.vue");
+        arguments.set("overwrite", true);
+        arguments.set("meta", new JSONObject().set("tags", List.of("a", "b}")));
+        arguments.set("content", "<template>\n  <div class=\"x\">\\ 中文 😀  </div>\n</template>");
+        String json = arguments.toString();
+        for (int size : new int[]{1, 2, 5, 13, json.length()}) {
+            RecordingListener listener = new RecordingListener();
+            JsonStringFieldDecoder decoder = new JsonStringFieldDecoder(listener);
+            for (int i = 0; i < json.length(); i += size) {
+                decoder.feed(json.substring(i, Math.min(i + size, json.length())));
+            }
+            Assertions.assertTrue(decoder.isDone());
+            Assertions.assertEquals("src/App.vue", listener.fields.get("relativeFilePath"));
+            Assertions.assertEquals(arguments.getStr("content"), listener.fields.get("content"));
+            Assertions.assertEquals(List.of("relativeFilePath", "content"), listener.ended);
+            Assertions.assertFalse(listener.splitSurrogate);
+        }
+    }
+
+    @Test
+    void unicodeEscapeSplitAcrossFragments() {
+        RecordingListener listener = new RecordingListener();
+        JsonStringFieldDecoder decoder = new JsonStringFieldDecoder(listener);
+        decoder.feed("{\"content\":\"a\\u4e");
+        decoder.feed("2d\\");
+        decoder.feed("nb\"}");
+        Assertions.assertEquals("a中\nb", listener.fields.get("content"));
+        Assertions.assertTrue(decoder.isDone());
+    }
+
+    @Test
+    void invalidInputStopsDecoding() {
+        RecordingListener listener = new RecordingListener();
+        JsonStringFieldDecoder decoder = new JsonStringFieldDecoder(listener);
+        decoder.feed("not json");
+        Assertions.assertTrue(decoder.isFailed());
+        Assertions.assertTrue(listener.fields.isEmpty());
+    }
+
+    private static class RecordingListener implements JsonStringFieldDecoder.Listener {
+
+        private final Map<String, String> fields = new LinkedHashMap<>();
+
+        private final List<String> ended = new ArrayList<>();
+
+        private boolean splitSurrogate;
+
+        @Override
+        public void onFieldStart(String name) {
+            fields.put(name, "");
+        }
+
+        @Override
+        public void onFieldChars(String name, CharSequence chars) {
+            if (Character.isHighSurrogate(chars.charAt(chars.length() - 1))) {
+                splitSurrogate = true;
+            }
+            fields.merge(name, chars.toString(), String::concat);
+        }
+
+        @Override
+        public void onFieldEnd(String name) {
+            ended.add(name);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.hachimi.mamboaiplatform.langgraph4j;
+
+import com.hachimi.mamboaiplatform.core.builder.VueProjectBuilder;
+import com.hachimi.mamboaiplatform.exception.BusinessException;
+import com.hachimi.mamboaiplatform.exception.ErrorCode;
+import com.hachimi.mamboaiplatform.exception.ThrowUtils;
+import com.hachimi.mamboaiplatform.langgraph4j.checkpoint.WorkflowCheckpoint;
+import com.hachimi.mamboaiplatform.langgraph4j.checkpoint.WorkflowCheckpointCodec;
+import com.hachimi.mamboaiplatform.langgraph4j.checkpoint.WorkflowCheckpointStore;
+import com.hachimi.mamboaiplatform.langgraph4j.executor.ParallelNodeExecutors;
+import com.hachimi.mamboaiplatform.langgraph4j.model.QualityResult;
+import com.hachimi.mamboaiplatform.langgraph4j.state.WorkflowContext;
+import com.hachimi.mamboaiplatform.model.enums.CodeGenTypeEnum;
+import com.hachimi.mamboaiplatform.utils.SpringContextUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * 项目构建失败后从检查点恢复：失败的执行保留质检之后的检查点，恢复时只重新构建
+ */
+class CodeGenWorkflowResumeTest {
+
+    private static final String RUN_ID = "run-build-failure";
+
+    private static final Long USER_ID = 1L;
+
+    private static final String CODE_DIR = "/tmp/vue_project_resume";
+
+    private final InMemoryCheckpointStore checkpointStore = new InMemoryCheckpointStore();
+
+    private final VueProjectBuilder vueProjectBuilder = Mockito.mock(VueProjectBuilder.class);
+
+    private Object previousApplicationContext;
+
+    private CodeGenWorkflow workflow;
+
+    @BeforeEach
+    void setUp() {
+        ParallelNodeExecutors parallelNodeExecutors = Mockito.mock(ParallelNodeExecutors.class);
+        Mockito.when(parallelNodeExecutors.forWorkflow(Mockito.anyString())).thenReturn((Executor) Runnable::run);
+        StaticApplicationContext applicationContext = new StaticApplicationContext();
+        applicationContext.getBeanFactory().registerSingleton("workflowCheckpointStore", checkpointStore);
+        applicationContext.getBeanFactory().registerSingleton("vueProjectBuilder", vueProjectBuilder);
+        applicationContext.getBeanFactory().registerSingleton("parallelNodeExecutors", parallelNodeExecutors);
+        applicationContext.refresh();
+        previousApplicationContext = ReflectionTestUtils.getField(SpringContextUtil.class, "applicationContext");
+        new SpringContextUtil().setApplicationContext(applicationContext);
+
+        WorkflowGraphRegistry registry = new WorkflowGraphRegistry();
+        registry.init();
+        workflow = new CodeGenWorkflow(registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.setField(SpringContextUtil.class, "applicationContext", previousApplicationContext);
+    }
+
+    @Test
+    void buildFailureKeepsCheckpointAndResumeRebuilds() {
+        checkpointStore.save(WorkflowGraphRegistry.CODE_GEN, "code_quality_check", passedQualityCheck());
+        Mockito.when(vueProjectBuilder.buildVueProject(CODE_DIR)).thenReturn(false, true);
+
+        // 构建失败：执行以失败结束，质检之后的检查点没有被删除
+        Assertions.assertThrows(Exception.class, () -> workflow.resumeWorkflow(RUN_ID, USER_ID));
+        Assertions.assertEquals("code_quality_check", checkpointStore.load(RUN_ID).getLastNode());
+
+        // 恢复：只重新执行构建，成功后删除检查点
+        WorkflowContext result = workflow.resumeWorkflow(RUN_ID, USER_ID);
+        Assertions.assertEquals(CODE_DIR + File.separator + "dist", result.getBuildResultDir());
+        Mockito.verify(vueProjectBuilder, Mockito.times(2)).buildVueProject(CODE_DIR);
+        Assertions.assertThrows(BusinessException.class, () -> checkpointStore.load(RUN_ID));
+    }
+
+    @Test
+    void buildExceptionFailsRun() {
+        checkpointStore.save(WorkflowGraphRegistry.CODE_GEN, "code_quality_check", passedQualityCheck());
+        Mockito.when(vueProjectBuilder.buildVueProject(CODE_DIR)).thenThrow(new RuntimeException("npm 不可用"));
+
+        Assertions.assertThrows(Exception.class, () -> workflow.resumeWorkflow(RUN_ID, USER_ID));
+        Assertions.assertEquals("code_quality_check", checkpointStore.load(RUN_ID).getLastNode());
+    }
+
+    /**
+     * 质检通过、等待构建的 Vue 项目
+     */
+    private static WorkflowContext passedQualityCheck() {
+        return WorkflowContext.builder()
+                .runId(RUN_ID)
+                .userId(USER_ID)
+                .originalPrompt("创建一个Vue前端项目")
+                .generationType(CodeGenTypeEnum.VUE_PROJECT)
+                .generatedCodeDir(CODE_DIR)
+                .qualityResult(QualityResult.builder().isValid(true).errors(List.of()).build())
+                .currentStep("代码质量检查")
+                .build();
+    }
+
+    /**
+     * 以编码后的 JSON 保存检查点的内存存储，与 Redis 一样每次读取得到新的上下文
+     */
+    private static final class InMemoryCheckpointStore extends WorkflowCheckpointStore {
+
+        private final Map<String, String> checkpoints = new ConcurrentHashMap<>();
+
+        @Override
+        public void save(String workflow, String node, WorkflowContext context) {
+            checkpoints.put(context.getRunId(), WorkflowCheckpointCodec.encode(WorkflowCheckpoint.builder()
+                    .runId(context.getRunId())
+                    .userId(context.getUserId())
+                    .workflow(workflow)
+                    .lastNode(node)
+                    .context(context)
+                    .updateTime(System.currentTimeMillis())
+                    .build()));
+        }
+
+        @Override
+        public WorkflowCheckpoint load(String runId) {
+            String json = checkpoints.get(runId);
+            ThrowUtils.throwIf(json == null, ErrorCode.NOT_FOUND_ERROR, "没有可恢复的检查点");
+            return WorkflowCheckpointCodec.decode(json);
+        }
+
+        @Override
+        public String lockResume(String runId) {
+            return runId;
+        }
+
+        @Override
+        public void unlockResume(String runId, String token) {
+        }
+
+        @Override
+        public void delete(String runId) {
+            checkpoints.remove(runId);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.hachimi.mamboaiplatform.langgraph4j;
 
 import com.hachimi.mamboaiplatform.langgraph4j.state.WorkflowContext;
+import jakarta.annotation.Resource;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -10,9 +11,12 @@ import static org.junit.jupiter.api.Assertions.*;
 @SpringBootTest
 class CodeGenWorkflowTest {
 
+    @Resource
+    private WorkflowGraphRegistry workflowGraphRegistry;
+
     @Test
     void testTechBlogWorkflow() {
-        WorkflowContext result = new CodeGenWorkflow().executeWorkflow("创建一个哈基米技术博客网站，需要展示编程教程和系统架构");
+        WorkflowContext result = new CodeGenWorkflow(workflowGraphRegistry).executeWorkflow("创建一个哈基米技术博客网站，需要展示编程教程和系统架构");
         Assertions.assertNotNull(result);
         System.out.println("生成类型: " + result.getGenerationType());
         System.out.println("生成的代码目录: " + result.getGeneratedCodeDir());
@@ -21,7 +25,7 @@ class CodeGenWorkflowTest {
 
     @Test
     void testCorporateWorkflow() {
-        WorkflowContext result = new CodeGenWorkflow().executeWorkflow("创建企业官网，展示公司形象和业务介绍");
+        WorkflowContext result = new CodeGenWorkflow(workflowGraphRegistry).executeWorkflow("创建企业官网，展示公司形象和业务介绍");
         Assertions.assertNotNull(result);
         System.out.println("生成类型: " + result.getGenerationType());
         System.out.println("生成的代码目录: " + result.getGeneratedCodeDir());
@@ -30,7 +34,7 @@ class CodeGenWorkflowTest {
 
     @Test
     void testVueProjectWorkflow() {
-        WorkflowContext result = new CodeGenWorkflow().executeWorkflow("创建一个Vue前端项目，包含用户管理和数据展示功能");
+        WorkflowContext result = new CodeGenWorkflow(workflowGraphRegistry).executeWorkflow("创建一个Vue前端项目，包含用户管理和数据展示功能");
         Assertions.assertNotNull(result);
         System.out.println("生成类型: " + result.getGenerationType());
         System.out.println("生成的代码目录: " + result.getGeneratedCodeDir());
@@ -39,7 +43,7 @@ class CodeGenWorkflowTest {
 
     @Test
     void testSimpleHtmlWorkflow() {
-        WorkflowContext result = new CodeGenWorkflow().executeWorkflow("创建一个简单的个人主页");
+        WorkflowContext result = new CodeGenWorkflow(workflowGraphRegistry).executeWorkflow("创建一个简单的个人主页");
         Assertions.assertNotNull(result);
         System.out.println("生成类型: " + result.getGenerationType());
         System.out.println("生成的代码目录: " + result.getGeneratedCodeDir());
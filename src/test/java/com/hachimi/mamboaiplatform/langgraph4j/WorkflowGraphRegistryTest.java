@@ -0,0 +1,105 @@
+package com.hachimi.mamboaiplatform.langgraph4j;
+
+import com.hachimi.mamboaiplatform.exception.BusinessException;
+import com.hachimi.mamboaiplatform.exception.ErrorCode;
+import org.bsc.langgraph4j.CompiledGraph;
+import org.bsc.langgraph4j.GraphRepresentation;
+import org.bsc.langgraph4j.GraphStateException;
+import org.bsc.langgraph4j.prebuilt.MessagesState;
+import org.bsc.langgraph4j.prebuilt.MessagesStateGraph;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.bsc.langgraph4j.StateGraph.START;
+
+/**
+ * 工作流图注册表：启动编译校验，编译好的图被每次请求复用，以及每次请求的图准备开销（节点只在执行时获取依赖，无需 Spring 容器）
+ */
+class WorkflowGraphRegistryTest {
+
+    private static final int ITERATIONS = 200;
+
+    @Test
+    void compilesAndRendersAllWorkflows() {
+        WorkflowGraphRegistry registry = new WorkflowGraphRegistry();
+        registry.init();
+        Assertions.assertEquals(3, registry.names().size());
+        for (String name : registry.names()) {
+            Assertions.assertNotNull(registry.get(name));
+            Assertions.assertTrue(registry.getMermaid(name).contains("code_generator"));
+        }
+        Assertions.assertSame(registry.get(WorkflowGraphRegistry.CODE_GEN), registry.get(WorkflowGraphRegistry.CODE_GEN));
+    }
+
+    @Test
+    void invalidGraphFailsAtRegistration() {
+        WorkflowGraphRegistry registry = new WorkflowGraphRegistry();
+        Assertions.assertThrows(BusinessException.class, () -> registry.register("broken", () -> {
+            try {
+                return new MessagesStateGraph<String>()
+                        .addEdge(START, "missing_node")
+                        .compile();
+            } catch (GraphStateException e) {
+                throw new BusinessException(ErrorCode.OPERATION_ERROR, e.getMessage());
+            }
+        }));
+        Assertions.assertThrows(BusinessException.class, () -> registry.get("broken"));
+    }
+
+    @Test
+    void graphIsCompiledOnceAndReused() {
+        WorkflowGraphRegistry registry = new WorkflowGraphRegistry();
+        AtomicInteger compilations = new AtomicInteger();
+        registry.register(WorkflowGraphRegistry.CODE_GEN, () -> {
+            compilations.incrementAndGet();
+            return CodeGenWorkflow.createWorkflow();
+        });
+
+        CompiledGraph<MessagesState<String>> first = registry.get(WorkflowGraphRegistry.CODE_GEN);
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertSame(first, registry.get(WorkflowGraphRegistry.CODE_GEN));
+            registry.getMermaid(WorkflowGraphRegistry.CODE_GEN);
+        }
+
+        Assertions.assertEquals(1, compilations.get());
+    }
+
+    /**
+     * 输出每次请求的图准备开销（重新编译与注册表对比），只作参考，不对耗时做断言
+     */
+    @Test
+    void reportPerRequestGraphOverhead() {
+        WorkflowGraphRegistry registry = new WorkflowGraphRegistry();
+        registry.init();
+        Map<String, Supplier<CompiledGraph<MessagesState<String>>>> factories = Map.of(
+                WorkflowGraphRegistry.CODE_GEN, CodeGenWorkflow::createWorkflow,
+                WorkflowGraphRegistry.CODE_GEN_CONCURRENT, CodeGenConcurrentWorkflow::createWorkflow,
+                WorkflowGraphRegistry.CODE_GEN_SUBGRAPH, CodeGenSubgraphWorkflow::createWorkflow);
+        factories.forEach((name, factory) -> {
+            // 不经注册表时每次请求：构建 + 编译 + 渲染 Mermaid
+            long compiledNanos = measure(() -> factory.get().getGraph(GraphRepresentation.Type.MERMAID));
+            // 经注册表时每次请求：取编译好的图
+            long cachedNanos = measure(() -> registry.get(name));
+            System.out.printf("%s 每次请求的图准备开销：重新编译 %.1f µs，注册表 %.3f µs%n", name,
+                    compiledNanos / 1000.0, cachedNanos / 1000.0);
+        });
+    }
+
+    /**
+     * 预热后多次执行的平均耗时（纳秒）
+     */
+    private static long measure(Runnable action) {
+        for (int i = 0; i < ITERATIONS; i++) {
+            action.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            action.run();
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+}
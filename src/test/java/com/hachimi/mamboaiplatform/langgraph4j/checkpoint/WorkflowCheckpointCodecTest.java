@@ -0,0 +1,88 @@
+package com.hachimi.mamboaiplatform.langgraph4j.checkpoint;
+
+import com.hachimi.mamboaiplatform.langgraph4j.model.ImageCollectionPlan;
+import com.hachimi.mamboaiplatform.langgraph4j.model.ImageResource;
+import com.hachimi.mamboaiplatform.langgraph4j.model.QualityResult;
+import com.hachimi.mamboaiplatform.langgraph4j.model.enums.ImageCategoryEnum;
+import com.hachimi.mamboaiplatform.langgraph4j.state.WorkflowContext;
+import com.hachimi.mamboaiplatform.langgraph4j.trace.WorkflowTrace;
+import com.hachimi.mamboaiplatform.model.enums.CodeGenTypeEnum;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+class WorkflowCheckpointCodecTest {
+
+    @Test
+    void roundTripsContextWithoutRuntimeFields() {
+        WorkflowCheckpoint checkpoint = checkpoint();
+
+        String json = WorkflowCheckpointCodec.encode(checkpoint);
+        WorkflowCheckpoint decoded = WorkflowCheckpointCodec.decode(json);
+
+        Assertions.assertEquals("code_generator", decoded.getLastNode());
+        Assertions.assertEquals(1L, decoded.getUserId());
+        WorkflowContext context = decoded.getContext();
+        Assertions.assertEquals("run-1", context.getRunId());
+        Assertions.assertEquals(CodeGenTypeEnum.VUE_PROJECT, context.getGenerationType());
+        Assertions.assertEquals(checkpoint.getContext().getImageList(), context.getImageList());
+        Assertions.assertEquals("cat", context.getImageCollectionPlan().getContentImageTasks().get(0).query());
+        Assertions.assertFalse(context.getQualityResult().getIsValid());
+        // 轨迹和异步计划是运行期字段，不进入检查点
+        Assertions.assertNull(context.getTrace());
+        Assertions.assertNull(context.getImageCollectionPlanFuture());
+        Assertions.assertFalse(json.contains("\"errorMessage\""));
+    }
+
+    @Test
+    void ignoresUnknownFields() {
+        String json = WorkflowCheckpointCodec.encode(checkpoint()).replaceFirst("\\{", "{\"removedField\":1,");
+        Assertions.assertEquals("run-1", WorkflowCheckpointCodec.decode(json).getRunId());
+    }
+
+    @Test
+    void smallerThanJavaSerialization() throws Exception {
+        WorkflowCheckpoint checkpoint = checkpoint();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(checkpoint.getContext());
+        }
+        int jsonSize = WorkflowCheckpointCodec.encode(checkpoint).getBytes(StandardCharsets.UTF_8).length;
+        Assertions.assertTrue(jsonSize < bytes.size());
+    }
+
+    private static WorkflowCheckpoint checkpoint() {
+        ImageCollectionPlan plan = new ImageCollectionPlan();
+        plan.setContentImageTasks(List.of(new ImageCollectionPlan.ImageSearchTask("cat")));
+        WorkflowContext context = WorkflowContext.builder()
+                .runId("run-1")
+                .originalPrompt("做一个猫咪主题的网站")
+                .enhancedPrompt("做一个猫咪主题的网站\n\n## 可用素材资源\n")
+                .currentStep("代码生成")
+                .generationType(CodeGenTypeEnum.VUE_PROJECT)
+                .generatedCodeDir("/tmp/code_output/vue_project_1")
+                .imageCollectionPlan(plan)
+                .imageList(List.of(ImageResource.builder()
+                        .category(ImageCategoryEnum.CONTENT)
+                        .description("猫")
+                        .url("https://example.com/cat.png")
+                        .build()))
+                .qualityResult(QualityResult.builder().isValid(false).errors(List.of("缺少 index.html")).build())
+                .trace(new WorkflowTrace())
+                .imageCollectionPlanFuture(CompletableFuture.completedFuture(plan))
+                .build();
+        return WorkflowCheckpoint.builder()
+                .runId("run-1")
+                .userId(1L)
+                .workflow("code_gen")
+                .lastNode("code_generator")
+                .context(context)
+                .updateTime(System.currentTimeMillis())
+                .build();
+    }
+}
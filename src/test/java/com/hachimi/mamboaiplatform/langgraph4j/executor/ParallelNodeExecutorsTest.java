@@ -0,0 +1,129 @@
+package com.hachimi.mamboaiplatform.langgraph4j.executor;
+
+import com.hachimi.mamboaiplatform.config.WorkflowExecutorConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class ParallelNodeExecutorsTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ParallelNodeExecutors executors;
+
+    @AfterEach
+    void tearDown() {
+        executors.shutdown();
+    }
+
+    @Test
+    void limitsConcurrentBranchesPerWorkflow() throws Exception {
+        executors = create(2, 100);
+        Executor executor = executors.forWorkflow("wf");
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(20);
+                running.decrementAndGet();
+            }, executor));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+        Assertions.assertEquals(2, maxRunning.get());
+        Assertions.assertSame(executor, executors.forWorkflow("wf"));
+        Assertions.assertEquals(0, meterRegistry.get("workflow_parallel_active").tag("workflow", "wf").gauge().value());
+    }
+
+    @Test
+    void rejectsWhenTooManyBranchesAreWaiting() throws Exception {
+        executors = create(1, 1);
+        Executor executor = executors.forWorkflow("wf");
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> {
+            started.countDown();
+            await(release);
+        }, executor);
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        // 第二个分支等待许可，第三个超出排队上限
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> {
+        }, executor);
+        Assertions.assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {
+        }));
+        Assertions.assertEquals(1, meterRegistry.get("workflow_parallel_rejected_total").tag("workflow", "wf")
+                .counter().count());
+        release.countDown();
+        CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void workflowsHaveIndependentLimits() throws Exception {
+        executors = create(1, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> blocking = CompletableFuture.runAsync(() -> await(release), executors.forWorkflow("a"));
+        CompletableFuture.runAsync(() -> {
+        }, executors.forWorkflow("b")).get(5, TimeUnit.SECONDS);
+        release.countDown();
+        blocking.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void backgroundTaskDoesNotTakeBranchPermit() throws Exception {
+        executors = create(1, 100);
+        CompletableFuture<String> plan = new CompletableFuture<>();
+        // 唯一的许可被等待计划的分支占用，计划仍能执行
+        CompletableFuture<String> branch = CompletableFuture.supplyAsync(plan::join, executors.forWorkflow("wf"));
+        executors.executeBackground(() -> plan.complete("plan"));
+        Assertions.assertEquals("plan", branch.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void rejectsAfterShutdown() {
+        executors = create(2, 100);
+        Executor executor = executors.forWorkflow("wf");
+        executors.shutdown();
+        Assertions.assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {
+        }));
+        Assertions.assertThrows(RejectedExecutionException.class, () -> executors.executeBackground(() -> {
+        }));
+    }
+
+    private ParallelNodeExecutors create(int concurrency, int maxQueued) {
+        WorkflowExecutorConfig config = new WorkflowExecutorConfig();
+        config.setDefaultMaxConcurrency(concurrency);
+        config.setMaxQueued(maxQueued);
+        config.setShutdownTimeoutSeconds(5);
+        ParallelNodeExecutors parallelNodeExecutors = new ParallelNodeExecutors(config, meterRegistry);
+        parallelNodeExecutors.init();
+        return parallelNodeExecutors;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
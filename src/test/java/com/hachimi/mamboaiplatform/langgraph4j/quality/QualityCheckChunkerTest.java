@@ -0,0 +1,39 @@
+package com.hachimi.mamboaiplatform.langgraph4j.quality;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+class QualityCheckChunkerTest {
+
+    @Test
+    void packsFilesInOrderUnderTokenCap() {
+        Map<String, String> contents = Map.of(
+                "a.js", "a".repeat(400),
+                "b.js", "b".repeat(400),
+                "c.js", "c".repeat(400));
+
+        List<List<String>> chunks = QualityCheckChunker.chunk(List.of("a.js", "b.js", "c.js"), contents, 250);
+
+        Assertions.assertEquals(List.of(List.of("a.js", "b.js"), List.of("c.js")), chunks);
+    }
+
+    @Test
+    void keepsOversizedFileInItsOwnChunk() {
+        Map<String, String> contents = Map.of(
+                "small.css", "body {}",
+                "huge.js", "x".repeat(10_000),
+                "tail.js", "y");
+
+        List<List<String>> chunks = QualityCheckChunker.chunk(List.of("small.css", "huge.js", "tail.js"), contents, 500);
+
+        Assertions.assertEquals(List.of(List.of("small.css"), List.of("huge.js"), List.of("tail.js")), chunks);
+    }
+
+    @Test
+    void returnsNoChunksForNoFiles() {
+        Assertions.assertTrue(QualityCheckChunker.chunk(List.of(), Map.of(), 100).isEmpty());
+    }
+}
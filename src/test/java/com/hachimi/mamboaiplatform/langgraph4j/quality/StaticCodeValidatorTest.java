@@ -0,0 +1,154 @@
+package com.hachimi.mamboaiplatform.langgraph4j.quality;
+
+import com.hachimi.mamboaiplatform.langgraph4j.quality.StaticCodeValidator.StaticValidationResult;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+class StaticCodeValidatorTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void passesWellFormedMultiFileSite() throws IOException {
+        Map<String, String> files = write(Map.of(
+                "index.html", """
+                        <!DOCTYPE html>
+                        <html>
+                        <head>
+                          <meta charset="UTF-8">
+                          <link rel="stylesheet" href="style.css">
+                          <script>if (a < b && c > d) { console.log("<div>"); }</script>
+                        </head>
+                        <body>
+                          <ul><li>one<li>two</ul>
+                          <p>text<br>more
+                          <img src="https://example.com/a.png" alt="">
+                          <a href="/about">about</a>
+                          <!-- <div> -->
+                          <script src="./script.js"></script>
+                        </body>
+                        </html>
+                        """,
+                "style.css", "body { background: url('data:image/png;base64,AA'); }\na::after { content: \"}\"; }\n",
+                "script.js", "// import x from './missing.js'\nconsole.log('ok');\n"));
+
+        StaticValidationResult result = StaticCodeValidator.validate(root.toString(), files);
+
+        Assertions.assertTrue(result.passed(), () -> String.join("\n", result.errors()));
+    }
+
+    @Test
+    void reportsUnclosedAndStrayTags() throws IOException {
+        Map<String, String> files = write(Map.of("index.html", """
+                <html>
+                <body>
+                  <div class="card">
+                    <span>text</div>
+                  </section>
+                </body>
+                </html>
+                """));
+
+        StaticValidationResult result = StaticCodeValidator.validate(root.toString(), files);
+
+        Assertions.assertEquals(List.of("index.html"), result.failedFiles());
+        Assertions.assertTrue(result.errors().get(0).contains("第 4 行的 <span>"), result.errors().get(0));
+        Assertions.assertTrue(result.errors().stream().anyMatch(error -> error.contains("</section>")));
+    }
+
+    @Test
+    void reportsBrokenLocalReferences() throws IOException {
+        Map<String, String> files = write(Map.of(
+                "index.html", "<html><head><link rel=\"stylesheet\" href=\"css/site.css\"></head><body></body></html>",
+                "main.js", "import { helper } from './utils';\nimport './missing.js';\n",
+                "utils.js", "export const helper = 1;\n"));
+
+        StaticValidationResult result = StaticCodeValidator.validate(root.toString(), files);
+
+        Assertions.assertEquals(List.of("index.html", "main.js"), result.failedFiles());
+        Assertions.assertTrue(result.errors().contains("index.html: 引用的本地文件不存在: css/site.css"));
+        Assertions.assertTrue(result.errors().contains("main.js: 导入的模块不存在: ./missing.js"));
+    }
+
+    @Test
+    void validatesJsonAndPackageJson() throws IOException {
+        Map<String, String> files = write(Map.of(
+                "package.json", "{ \"name\": \"app\", \"scripts\": { \"dev\": \"vite\" }, \"dependencies\": { \"vue\": 3 } }",
+                "tsconfig.json", "{\n  // 注释\n  \"compilerOptions\": { \"strict\": true, },\n}",
+                "data.json", "{ \"a\": 1,,\n}",
+                "src/App.vue", "<template><div></div></template>\n<script setup>\n</script>\n"));
+
+        StaticValidationResult result = StaticCodeValidator.validate(root.toString(), files);
+
+        Assertions.assertEquals(List.of("data.json", "package.json"), result.failedFiles().stream().sorted().toList());
+        Assertions.assertTrue(result.errors().contains("package.json: package.json 的 dependencies.vue 必须是字符串"));
+        Assertions.assertTrue(result.errors().contains("package.json: package.json 缺少 build 脚本，项目无法构建"));
+        Assertions.assertTrue(StaticCodeValidator.isFullyValidated("tsconfig.json"));
+        Assertions.assertFalse(StaticCodeValidator.isFullyValidated("src/App.vue"));
+    }
+
+    @Test
+    void validatesVueSingleFileComponentBlocks() throws IOException {
+        Map<String, String> files = write(Map.of(
+                "src/components/Good.vue", """
+                        <template>
+                          <div>
+                            <template v-if="a < b"><span>{{ a<b ? 'x' : 'y' }}</span></template>
+                            <MyButton :src="icon" @click="go" />
+                            <img src="@/assets/logo.png">
+                          </div>
+                        </template>
+                        <script setup>
+                        import MyButton from './MyButton.vue'
+                        </script>
+                        <style scoped>
+                        .a { color: red; }
+                        </style>
+                        """,
+                "src/components/MyButton.vue", "<template><button><slot /></button></template>\n<script>\nexport default {}\n</script>\n",
+                "src/assets/logo.png", "",
+                "src/components/Bad.vue", "<template>\n  <div>\n</template>\n<script>\n</script>\n<script>\n</script>\n",
+                "src/components/Open.vue", "<template><div></div></template>\n<script setup>\nconst a = 1\n"));
+
+        StaticValidationResult result = StaticCodeValidator.validate(root.toString(), files);
+
+        Assertions.assertEquals(List.of("src/components/Bad.vue", "src/components/Open.vue"),
+                result.failedFiles().stream().sorted().toList());
+        Assertions.assertTrue(result.errors().contains("src/components/Bad.vue: 模板中第 2 行的 <div> 没有结束标签"),
+                () -> String.join("\n", result.errors()));
+        Assertions.assertTrue(result.errors().contains("src/components/Bad.vue: 存在 2 个 <script> 块"));
+        Assertions.assertTrue(result.errors().contains("src/components/Open.vue: 第 2 行的 <script> 块没有结束标签"));
+    }
+
+    @Test
+    void reportsUnbalancedCssBraces() throws IOException {
+        Map<String, String> files = write(Map.of("style.css", "/* } */\n.a { color: red;\n.b { color: blue; }\n"));
+
+        StaticValidationResult result = StaticCodeValidator.validate(root.toString(), files);
+
+        Assertions.assertEquals(List.of("style.css: 有 1 个 { 没有闭合"), result.errors());
+    }
+
+    private Map<String, String> write(Map<String, String> files) throws IOException {
+        Map<String, String> codeFiles = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : files.entrySet().stream().sorted(Map.Entry.comparingByKey()).toList()) {
+            Path path = root.resolve(entry.getKey());
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, entry.getValue(), StandardCharsets.UTF_8);
+            if (!entry.getKey().endsWith(".png")) {
+                codeFiles.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return codeFiles;
+    }
+}
@@ -0,0 +1,100 @@
+package com.hachimi.mamboaiplatform.langgraph4j.repair;
+
+import com.hachimi.mamboaiplatform.langgraph4j.model.CodeRepairResult.FileEdit;
+import com.hachimi.mamboaiplatform.langgraph4j.repair.CodePatchEngine.PatchResult;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+class CodePatchEngineTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void replacesUniqueSnippet() throws IOException {
+        write("index.html", "<h1>Hello</h1>\n<p>World</p>\n");
+
+        PatchResult result = CodePatchEngine.apply(root.toString(),
+                List.of(new FileEdit("index.html", "<p>World</p>", "<p>Mambo</p>")));
+
+        Assertions.assertEquals(List.of("index.html"), result.changedFiles());
+        Assertions.assertTrue(result.rejected().isEmpty());
+        Assertions.assertEquals("<h1>Hello</h1>\n<p>Mambo</p>\n", read("index.html"));
+    }
+
+    @Test
+    void rejectsAmbiguousOrMissingSnippet() throws IOException {
+        write("style.css", "a { color: red; }\nb { color: red; }\n");
+
+        PatchResult result = CodePatchEngine.apply(root.toString(), List.of(
+                new FileEdit("style.css", "color: red;", "color: blue;"),
+                new FileEdit("style.css", "color: green;", "color: blue;")));
+
+        Assertions.assertTrue(result.changedFiles().isEmpty());
+        Assertions.assertEquals(2, result.rejected().size());
+        Assertions.assertEquals("a { color: red; }\nb { color: red; }\n", read("style.css"));
+    }
+
+    @Test
+    void appliesMultipleEditsToSameFileInOrder() throws IOException {
+        write("script.js", "const a = 1;\nconst b = 2;\n");
+
+        PatchResult result = CodePatchEngine.apply(root.toString(), List.of(
+                new FileEdit("./script.js", "const a = 1;", "const a = 10;"),
+                new FileEdit("script.js", "const b = 2;", "const b = 20;"),
+                new FileEdit("script.js", "const c = 3;", "const c = 30;")));
+
+        Assertions.assertEquals(List.of("script.js"), result.changedFiles());
+        Assertions.assertEquals(1, result.rejected().size());
+        Assertions.assertEquals("const a = 10;\nconst b = 20;\n", read("script.js"));
+    }
+
+    @Test
+    void createsNewFileOnlyWhenAbsent() throws IOException {
+        write("index.html", "<p>old</p>");
+
+        PatchResult result = CodePatchEngine.apply(root.toString(), List.of(
+                new FileEdit("src/utils.js", "", "export const x = 1;"),
+                new FileEdit("index.html", "", "<p>new</p>")));
+
+        Assertions.assertEquals(List.of("src/utils.js"), result.changedFiles());
+        Assertions.assertEquals(1, result.rejected().size());
+        Assertions.assertEquals("export const x = 1;", read("src/utils.js"));
+        Assertions.assertEquals("<p>old</p>", read("index.html"));
+    }
+
+    @Test
+    void rejectsPathOutsideRoot() {
+        PatchResult result = CodePatchEngine.apply(root.toString(),
+                List.of(new FileEdit("../escape.js", "", "alert(1);")));
+
+        Assertions.assertTrue(result.changedFiles().isEmpty());
+        Assertions.assertEquals(1, result.rejected().size());
+        Assertions.assertFalse(Files.exists(root.getParent().resolve("escape.js")));
+        Assertions.assertNull(CodePatchEngine.resolve(root, "a/../../b.js"));
+        Assertions.assertNull(CodePatchEngine.resolve(root, "."));
+    }
+
+    @Test
+    void normalizesRelativePaths() {
+        Assertions.assertEquals("src/App.vue", CodePatchEngine.normalizePath(" ./src\\App.vue "));
+        Assertions.assertEquals("index.html", CodePatchEngine.normalizePath("/index.html"));
+    }
+
+    private void write(String relativePath, String content) throws IOException {
+        Path path = root.resolve(relativePath);
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, content, StandardCharsets.UTF_8);
+    }
+
+    private String read(String relativePath) throws IOException {
+        return Files.readString(root.resolve(relativePath), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,80 @@
+package com.hachimi.mamboaiplatform.langgraph4j.trace;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+class WorkflowTraceTest {
+
+    private static final Map<String, Set<String>> DEPENDENCIES = Map.of(
+            "image_planning", Set.of("image_plan"),
+            "router", Set.of("image_plan"),
+            "content_image_collector", Set.of("image_plan", "image_planning"),
+            "logo_collector", Set.of("image_plan", "image_planning"),
+            "image_aggregator", Set.of("router", "content_image_collector", "logo_collector"),
+            "prompt_enhancer", Set.of("image_aggregator"),
+            "code_generator", Set.of("prompt_enhancer", "code_quality_check"),
+            "code_quality_check", Set.of("code_generator")
+    );
+
+    @Test
+    void followsSlowestBranchAndRetries() {
+        WorkflowTrace trace = new WorkflowTrace();
+        long t0 = System.nanoTime();
+        record(trace, t0, "image_plan", 0, 1);
+        record(trace, t0, "router", 1, 50);
+        record(trace, t0, "image_planning", 1, 300);
+        // 收集节点与规划同时开始，等待计划后再收集
+        record(trace, t0, "logo_collector", 1, 301);
+        record(trace, t0, "content_image_collector", 1, 320);
+        record(trace, t0, "image_aggregator", 320, 321);
+        record(trace, t0, "prompt_enhancer", 321, 322);
+        record(trace, t0, "code_generator", 322, 1000);
+        record(trace, t0, "code_quality_check", 1000, 1100);
+        record(trace, t0, "code_generator", 1100, 1500);
+        record(trace, t0, "code_quality_check", 1500, 1600);
+
+        CriticalPathReport report = trace.criticalPath(DEPENDENCIES);
+
+        Assertions.assertEquals(List.of("image_plan", "image_planning", "content_image_collector", "image_aggregator",
+                "prompt_enhancer", "code_generator", "code_quality_check", "code_generator", "code_quality_check"),
+                report.path().stream().map(CriticalPathReport.Step::node).toList());
+        Assertions.assertEquals("code_generator", report.bottleneck());
+        // 收集节点的自身耗时不含等待计划的时间
+        Assertions.assertEquals(20, report.path().get(2).selfMillis(), 1);
+        Assertions.assertEquals(1600, report.totalMillis(), 5);
+        Assertions.assertTrue(report.format().contains("瓶颈节点 code_generator"));
+    }
+
+    @Test
+    void routerBoundsAggregationWhenSlowerThanImages() {
+        WorkflowTrace trace = new WorkflowTrace();
+        long t0 = System.nanoTime();
+        record(trace, t0, "image_plan", 0, 1);
+        record(trace, t0, "image_planning", 1, 100);
+        record(trace, t0, "content_image_collector", 1, 150);
+        record(trace, t0, "router", 1, 400);
+        record(trace, t0, "image_aggregator", 400, 401);
+
+        CriticalPathReport report = trace.criticalPath(DEPENDENCIES);
+
+        Assertions.assertEquals(List.of("image_plan", "router", "image_aggregator"),
+                report.path().stream().map(CriticalPathReport.Step::node).toList());
+        Assertions.assertEquals("router", report.bottleneck());
+    }
+
+    @Test
+    void emptyTrace() {
+        CriticalPathReport report = new WorkflowTrace().criticalPath(DEPENDENCIES);
+        Assertions.assertTrue(report.path().isEmpty());
+        Assertions.assertNull(report.bottleneck());
+    }
+
+    private static void record(WorkflowTrace trace, long t0, String node, long startMillis, long endMillis) {
+        trace.record(node, t0 + TimeUnit.MILLISECONDS.toNanos(startMillis), t0 + TimeUnit.MILLISECONDS.toNanos(endMillis));
+    }
+}